@@ -32,14 +32,21 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.management.Attribute;
 import javax.management.MBeanServer;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
 import org.opennms.core.logging.Logging;
 import org.opennms.netmgt.config.service.Argument;
 import org.opennms.netmgt.config.service.Invoke;
@@ -84,7 +91,10 @@ public class Invoker {
     private InvokeAtType m_atType;
     private boolean m_reverse = false;
     private boolean m_failFast = true;
+    private boolean m_parallel = false;
+    private int m_threads = Runtime.getRuntime().availableProcessors();
     private List<InvokerService> m_services;
+    private volatile InvokerTimeline m_timeline = new InvokerTimeline();
     
     /**
      * <p>Constructor for Invoker.</p>
@@ -165,9 +175,25 @@ public class Invoker {
     /**
      * <p>invokeMethods</p>
      *
+     * <p>When running in parallel mode, the methods are invoked on a pool of
+     * threads instead of sequentially: a service runs a given pass once it
+     * has completed the previous one and all of the services it depends on
+     * have completed the same pass. Stopping services (reverse order) is
+     * always sequential.</p>
+     *
      * @return a {@link java.util.List} object.
      */
     public List<InvokerResult> invokeMethods() {
+        m_timeline = new InvokerTimeline();
+
+        if (isParallel() && !isReverse()) {
+            final List<InvokerService> ordered = getServicesInDependencyOrder();
+            if (ordered != null) {
+                return invokeMethodsInParallel(ordered);
+            }
+            LOG.warn("The dependencies between services contain a cycle, methods will be invoked sequentially");
+        }
+
         List<InvokerService> invokerServicesOrdered;
         if (isReverse()) {
             invokerServicesOrdered = new ArrayList<InvokerService>(getServices());
@@ -183,34 +209,8 @@ public class Invoker {
             
 
             for (InvokerService invokerService : invokerServicesOrdered) {
-                Service service = invokerService.getService();
-                String name = invokerService.getService().getName();
-                ObjectInstance mbean = invokerService.getMbean();
-
-                if (invokerService.isBadService()) {
-                    resultInfo.add(new InvokerResult(service, mbean, null, invokerService.getBadThrowable()));
-                    if (isFailFast()) {
-                        return resultInfo;
-                    }
-                }
-                
-                for (final Invoke invoke : invokerService.getService().getInvokes()) {
-                    if (invoke.getPass() != pass || !getAtType().equals(invoke.getAt())) {
-                        continue;
-                    }
-
-                    LOG.debug("pass {} on service {} will invoke method \"{}\"", pass, name, invoke.getMethod()); 
-                    
-
-                    try {
-                        Object result = invoke(invoke, mbean);
-                        resultInfo.add(new InvokerResult(service, mbean, result, null));
-                    } catch (Throwable t) {
-                        resultInfo.add(new InvokerResult(service, mbean, null, t));
-                        if (isFailFast()) {
-                            return resultInfo;
-                        }
-                    }
+                if (!invokePass(invokerService, pass, resultInfo) && isFailFast()) {
+                    return resultInfo;
                 }
             }
             
@@ -221,6 +221,165 @@ public class Invoker {
         return resultInfo;
     }
 
+    private List<InvokerResult> invokeMethodsInParallel(final List<InvokerService> ordered) {
+        final Map<InvokerService, List<InvokerService>> dependencies = getDependencies();
+        final List<InvokerResult> resultInfo = Collections.synchronizedList(new ArrayList<InvokerResult>(ordered.size()));
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        LOG.debug("invoking methods of {} services using {} threads", ordered.size(), getThreads());
+        final ExecutorService executor = Executors.newFixedThreadPool(getThreads(), new LogPreservingThreadFactory(Invoker.class.getSimpleName(), getThreads()));
+        try {
+            final List<CompletableFuture<Void>> all = new ArrayList<>();
+            Map<InvokerService, CompletableFuture<Void>> previousPass = Collections.emptyMap();
+            for (int pass = 0, end = getLastPass(); pass <= end; pass++) {
+                final int currentPass = pass;
+                final Map<InvokerService, CompletableFuture<Void>> thisPass = new HashMap<>();
+
+                // The services are in dependency order, so the futures of the dependencies already exist
+                for (final InvokerService invokerService : ordered) {
+                    final List<CompletableFuture<Void>> prerequisites = new ArrayList<>();
+                    if (previousPass.containsKey(invokerService)) {
+                        prerequisites.add(previousPass.get(invokerService));
+                    }
+                    for (final InvokerService dependency : dependencies.get(invokerService)) {
+                        prerequisites.add(thisPass.get(dependency));
+                    }
+
+                    final CompletableFuture<Void> future = CompletableFuture.allOf(prerequisites.toArray(new CompletableFuture<?>[0]))
+                            .thenRunAsync(() -> {
+                                if (failed.get()) {
+                                    return;
+                                }
+                                if (!invokePass(invokerService, currentPass, resultInfo) && isFailFast()) {
+                                    failed.set(true);
+                                }
+                            }, executor);
+                    thisPass.put(invokerService, future);
+                    all.add(future);
+                }
+                previousPass = thisPass;
+            }
+
+            CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        synchronized (resultInfo) {
+            return new ArrayList<>(resultInfo);
+        }
+    }
+
+    /**
+     * Invokes the methods of a service for the given pass.
+     *
+     * @return false if the service could not be loaded or one of the
+     *      invocations failed
+     */
+    private boolean invokePass(final InvokerService invokerService, final int pass, final List<InvokerResult> resultInfo) {
+        boolean successful = true;
+        Service service = invokerService.getService();
+        String name = invokerService.getService().getName();
+        ObjectInstance mbean = invokerService.getMbean();
+
+        if (invokerService.isBadService()) {
+            resultInfo.add(new InvokerResult(service, mbean, null, invokerService.getBadThrowable()));
+            if (isFailFast()) {
+                return false;
+            }
+            successful = false;
+        }
+
+        for (final Invoke invoke : invokerService.getService().getInvokes()) {
+            if (invoke.getPass() != pass || !getAtType().equals(invoke.getAt())) {
+                continue;
+            }
+
+            LOG.debug("pass {} on service {} will invoke method \"{}\"", pass, name, invoke.getMethod()); 
+
+            final long started = m_timeline.now();
+            try {
+                Object result = invoke(invoke, mbean);
+                m_timeline.record(name, invoke.getMethod(), pass, started, true);
+                resultInfo.add(new InvokerResult(service, mbean, result, null));
+            } catch (Throwable t) {
+                m_timeline.record(name, invoke.getMethod(), pass, started, false);
+                resultInfo.add(new InvokerResult(service, mbean, null, t));
+                if (isFailFast()) {
+                    return false;
+                }
+                successful = false;
+            }
+        }
+
+        return successful;
+    }
+
+    /**
+     * Resolves the services each service depends on. A service that does
+     * not declare any dependency depends on all of the services listed
+     * before it, as it would when the methods are invoked sequentially.
+     */
+    private Map<InvokerService, List<InvokerService>> getDependencies() {
+        final List<InvokerService> invokerServices = getServices();
+
+        final Map<String, InvokerService> byName = new HashMap<>();
+        for (final InvokerService invokerService : invokerServices) {
+            byName.put(invokerService.getService().getName(), invokerService);
+        }
+
+        final Map<InvokerService, List<InvokerService>> dependencies = new LinkedHashMap<>();
+        for (int i = 0; i < invokerServices.size(); i++) {
+            final InvokerService invokerService = invokerServices.get(i);
+            final List<String> dependsOn = invokerService.getService().getDependsOn();
+            if (dependsOn == null || dependsOn.isEmpty()) {
+                dependencies.put(invokerService, new ArrayList<>(invokerServices.subList(0, i)));
+                continue;
+            }
+
+            final List<InvokerService> resolved = new ArrayList<>(dependsOn.size());
+            for (final String dependency : dependsOn) {
+                final InvokerService target = byName.get(dependency);
+                if (target == null) {
+                    LOG.warn("service {} depends on unknown service {}, the dependency will be ignored", invokerService.getService().getName(), dependency);
+                } else if (!resolved.contains(target)) {
+                    resolved.add(target);
+                }
+            }
+            dependencies.put(invokerService, resolved);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Orders the services so that every service comes after the services it
+     * depends on, keeping the configured order otherwise.
+     *
+     * @return the ordered services, or null if the dependencies contain a
+     *      cycle
+     */
+    List<InvokerService> getServicesInDependencyOrder() {
+        final Map<InvokerService, List<InvokerService>> dependencies = getDependencies();
+        final List<InvokerService> remaining = new ArrayList<>(getServices());
+        final List<InvokerService> ordered = new ArrayList<>(remaining.size());
+
+        while (!remaining.isEmpty()) {
+            InvokerService next = null;
+            for (final InvokerService invokerService : remaining) {
+                if (ordered.containsAll(dependencies.get(invokerService))) {
+                    next = invokerService;
+                    break;
+                }
+            }
+            if (next == null) {
+                return null;
+            }
+            remaining.remove(next);
+            ordered.add(next);
+        }
+        return ordered;
+    }
+
     /**
      * Get the last pass for a set of InvokerServices.
      * 
@@ -351,6 +510,52 @@ public class Invoker {
         m_failFast = failFast;
     }
 
+    /**
+     * <p>isParallel</p>
+     *
+     * @return a boolean.
+     */
+    public boolean isParallel() {
+        return m_parallel;
+    }
+
+    /**
+     * <p>setParallel</p>
+     *
+     * @param parallel a boolean.
+     */
+    public void setParallel(boolean parallel) {
+        m_parallel = parallel;
+    }
+
+    /**
+     * <p>getThreads</p>
+     *
+     * @return the number of threads used to invoke methods in parallel
+     */
+    public int getThreads() {
+        return m_threads;
+    }
+
+    /**
+     * <p>setThreads</p>
+     *
+     * @param threads the number of threads used to invoke methods in parallel
+     */
+    public void setThreads(int threads) {
+        m_threads = Math.max(1, threads);
+    }
+
+    /**
+     * <p>getTimeline</p>
+     *
+     * @return the durations of the methods invoked by the last call to
+     *      {@link #invokeMethods()}
+     */
+    InvokerTimeline getTimeline() {
+        return m_timeline;
+    }
+
     /**
      * <p>isReverse</p>
      *
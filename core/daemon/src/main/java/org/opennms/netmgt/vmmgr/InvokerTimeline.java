@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.vmmgr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records when each method invoked by an {@link Invoker} started and how
+ * long it took, so that the time spent bringing up every daemon can be
+ * reported once all of the passes have completed.
+ */
+class InvokerTimeline {
+    private final long m_origin = System.nanoTime();
+    private final List<Entry> m_entries = new ArrayList<>();
+
+    static class Entry {
+        private final String m_service;
+        private final String m_method;
+        private final int m_pass;
+        private final String m_thread;
+        private final long m_offset;
+        private final long m_duration;
+        private final boolean m_successful;
+
+        private Entry(String service, String method, int pass, String thread, long offset, long duration, boolean successful) {
+            m_service = service;
+            m_method = method;
+            m_pass = pass;
+            m_thread = thread;
+            m_offset = offset;
+            m_duration = duration;
+            m_successful = successful;
+        }
+
+        String getService() {
+            return m_service;
+        }
+
+        String getMethod() {
+            return m_method;
+        }
+
+        int getPass() {
+            return m_pass;
+        }
+
+        /**
+         * @return the time, in milliseconds, between the creation of the
+         * timeline and the start of the invocation
+         */
+        long getOffset() {
+            return TimeUnit.NANOSECONDS.toMillis(m_offset);
+        }
+
+        /**
+         * @return the duration of the invocation, in milliseconds
+         */
+        long getDuration() {
+            return TimeUnit.NANOSECONDS.toMillis(m_duration);
+        }
+
+        long getEnd() {
+            return TimeUnit.NANOSECONDS.toMillis(m_offset + m_duration);
+        }
+
+        boolean isSuccessful() {
+            return m_successful;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s (pass %d): started at +%dms, took %dms on %s%s",
+                    m_service, m_method, m_pass, getOffset(), getDuration(), m_thread,
+                    m_successful ? "" : " [FAILED]");
+        }
+    }
+
+    /**
+     * @return the current value of the timeline clock, to be handed back to
+     * {@link #record(String, String, int, long, boolean)}
+     */
+    long now() {
+        return System.nanoTime();
+    }
+
+    synchronized void record(String service, String method, int pass, long started, boolean successful) {
+        final long ended = System.nanoTime();
+        m_entries.add(new Entry(service, method, pass, Thread.currentThread().getName(), started - m_origin, ended - started, successful));
+    }
+
+    /**
+     * @return the recorded invocations, ordered by the time they started
+     */
+    synchronized List<Entry> getEntries() {
+        final List<Entry> entries = new ArrayList<>(m_entries);
+        entries.sort(Comparator.comparingLong(e -> e.m_offset));
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return one line per recorded invocation, ordered by the time they
+     * started, followed by the total elapsed time
+     */
+    List<String> getReport() {
+        final List<Entry> entries = getEntries();
+        final List<String> report = new ArrayList<>(entries.size() + 1);
+        long end = 0;
+        for (final Entry entry : entries) {
+            report.add(entry.toString());
+            end = Math.max(end, entry.getEnd());
+        }
+        report.add(String.format("%d invocations completed in %dms", entries.size(), end));
+        return Collections.unmodifiableList(report);
+    }
+}
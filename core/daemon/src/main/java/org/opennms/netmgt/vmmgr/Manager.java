@@ -32,6 +32,7 @@ import java.lang.reflect.UndeclaredThrowableException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -92,6 +93,7 @@ public class Manager implements ManagerMBean {
     private static final String m_osName = System.getProperty("os.name") == null? "" : System.getProperty("os.name").toLowerCase();
     private static long startTime = System.currentTimeMillis();
     private static AtomicBoolean stopInitiated = new AtomicBoolean(false);
+    private static volatile List<String> startupTimeline = Collections.emptyList();
 
 
     /**
@@ -319,4 +321,13 @@ public class Manager implements ManagerMBean {
     public Long getUptime() {
         return (System.currentTimeMillis() - startTime);
     }
+
+    static void setStartupTimeline(List<String> timeline) {
+        startupTimeline = timeline;
+    }
+
+    @Override
+    public List<String> getStartupTimeline() {
+        return startupTimeline;
+    }
 }
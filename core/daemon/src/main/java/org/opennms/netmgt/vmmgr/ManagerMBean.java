@@ -70,4 +70,12 @@ public interface ManagerMBean {
      * since the manager first started 
      */
     public Long getUptime();
+
+    /**
+     * <p>getStartupTimeline</p>
+     *
+     * @return when each service method was invoked during startup and how
+     * long it took, in the order the invocations started
+     */
+    public List<String> getStartupTimeline();
 }
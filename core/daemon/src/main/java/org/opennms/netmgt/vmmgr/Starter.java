@@ -73,6 +73,13 @@ public class Starter {
     private static final Logger LOG = LoggerFactory.getLogger(Starter.class);
     private boolean emitStandardFileNotFoundWarnings = Boolean.parseBoolean(System.getProperty("org.opennms.netmgt.vmmgr.emitStandardFileNotFoundWarnings", "true"));
 
+    /**
+     * Start the services concurrently, following the dependencies declared
+     * with the depends-on elements of service-configuration.xml.
+     */
+    private static final String PARALLEL_STARTUP_SYS_PROP = "org.opennms.netmgt.vmmgr.parallelStartup";
+    private static final String STARTUP_THREADS_SYS_PROP = "org.opennms.netmgt.vmmgr.startupThreads";
+
     /**
      * The log4j category used to log debug messsages and statements.
      */
@@ -150,11 +157,14 @@ public class Starter {
         Invoker invoker = new Invoker();
         invoker.setServer(server);
         invoker.setAtType(InvokeAtType.START);
+        invoker.setParallel(Boolean.getBoolean(PARALLEL_STARTUP_SYS_PROP));
+        invoker.setThreads(Integer.getInteger(STARTUP_THREADS_SYS_PROP, Runtime.getRuntime().availableProcessors()));
         List<InvokerService> services = InvokerService.createServiceList(new ServiceConfigFactory().getServices());
         invoker.setServices(services);
         invoker.instantiateClasses();
 
         List<InvokerResult> resultInfo = invoker.invokeMethods();
+        reportTimeline(invoker.getTimeline());
 
         for (InvokerResult result : resultInfo) {
             if (result != null && result.getThrowable() != null) {
@@ -183,4 +193,12 @@ public class Starter {
 
         LOG.debug("Startup complete");
     }
+
+    private void reportTimeline(InvokerTimeline timeline) {
+        List<String> report = timeline.getReport();
+        Manager.setStartupTimeline(report);
+        for (String line : report) {
+            LOG.info("Startup timeline: {}", line);
+        }
+    }
 }
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.vmmgr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.config.service.Attribute;
+import org.opennms.netmgt.config.service.Invoke;
+import org.opennms.netmgt.config.service.InvokeAtType;
+import org.opennms.netmgt.config.service.Service;
+
+public class ParallelInvokerTest {
+    private static final List<String> EVENTS = Collections.synchronizedList(new ArrayList<>());
+
+    public interface RecordingServiceMBean {
+        String getLabel();
+        void setLabel(String label);
+        Boolean getFailing();
+        void setFailing(Boolean failing);
+        void init() throws Exception;
+        void start() throws Exception;
+    }
+
+    public static class RecordingService implements RecordingServiceMBean {
+        private String m_label;
+        private Boolean m_failing = false;
+
+        @Override
+        public String getLabel() {
+            return m_label;
+        }
+
+        @Override
+        public void setLabel(String label) {
+            m_label = label;
+        }
+
+        @Override
+        public Boolean getFailing() {
+            return m_failing;
+        }
+
+        @Override
+        public void setFailing(Boolean failing) {
+            m_failing = failing;
+        }
+
+        @Override
+        public void init() throws Exception {
+            record("init");
+        }
+
+        @Override
+        public void start() throws Exception {
+            record("start");
+        }
+
+        private void record(String method) throws Exception {
+            Thread.sleep(50);
+            if (m_failing) {
+                throw new IllegalStateException(m_label + " failed to " + method);
+            }
+            EVENTS.add(m_label + "." + method);
+        }
+    }
+
+    private MBeanServer m_server;
+
+    @Before
+    public void setUp() {
+        EVENTS.clear();
+        m_server = MBeanServerFactory.newMBeanServer();
+    }
+
+    @After
+    public void tearDown() {
+        EVENTS.clear();
+    }
+
+    @Test
+    public void canInvokeMethodsFollowingDependencies() {
+        final Invoker invoker = createInvoker(
+                createService("A", false),
+                createService("B", false, "A"),
+                createService("C", false, "A"),
+                createService("D", false));
+
+        assertEquals(Arrays.asList("A", "B", "C", "D"), getLabels(invoker.getServicesInDependencyOrder()));
+
+        final List<InvokerResult> results = invoker.invokeMethods();
+        assertEquals(8, results.size());
+        for (final InvokerResult result : results) {
+            assertNull(result.getThrowable());
+        }
+
+        assertEquals(8, EVENTS.size());
+        assertBefore("A.init", "B.init");
+        assertBefore("A.init", "C.init");
+        assertBefore("A.start", "B.start");
+        assertBefore("A.start", "C.start");
+        assertBefore("B.init", "B.start");
+        assertBefore("C.init", "C.start");
+        // D does not declare any dependency, so it waits for all of the services before it
+        assertBefore("B.init", "D.init");
+        assertBefore("C.init", "D.init");
+        assertBefore("B.start", "D.start");
+        assertBefore("C.start", "D.start");
+
+        final List<String> report = invoker.getTimeline().getReport();
+        assertEquals(9, report.size());
+        assertTrue(report.get(8), report.get(8).startsWith("8 invocations completed in "));
+    }
+
+    @Test
+    public void canStopAfterFailure() {
+        final Invoker invoker = createInvoker(
+                createService("A", true),
+                createService("B", false, "A"));
+
+        final List<InvokerResult> results = invoker.invokeMethods();
+        assertEquals(1, results.size());
+        assertNotNull(results.get(0).getThrowable());
+        assertEquals("A", results.get(0).getService().getName().substring(":Name=".length()));
+        assertTrue(EVENTS.isEmpty());
+
+        final List<InvokerTimeline.Entry> entries = invoker.getTimeline().getEntries();
+        assertEquals(1, entries.size());
+        assertFalse(entries.get(0).isSuccessful());
+    }
+
+    @Test
+    public void canFallBackToSequentialInvocationOnCycles() {
+        final Invoker invoker = createInvoker(
+                createService("A", false, "B"),
+                createService("B", false, "A"));
+
+        assertNull(invoker.getServicesInDependencyOrder());
+
+        final List<InvokerResult> results = invoker.invokeMethods();
+        assertEquals(4, results.size());
+        assertEquals(Arrays.asList("A.init", "B.init", "A.start", "B.start"), EVENTS);
+    }
+
+    private Invoker createInvoker(Service... services) {
+        final Invoker invoker = new Invoker();
+        invoker.setServer(m_server);
+        invoker.setAtType(InvokeAtType.START);
+        invoker.setParallel(true);
+        invoker.setThreads(4);
+        invoker.setServices(InvokerService.createServiceList(services));
+        invoker.instantiateClasses();
+        return invoker;
+    }
+
+    private static Service createService(String label, boolean failing, String... dependsOn) {
+        final Service service = new Service(":Name=" + label, RecordingService.class.getName(),
+                Arrays.asList(new Attribute("Label", String.class.getName(), label),
+                        new Attribute("Failing", Boolean.class.getName(), Boolean.toString(failing))),
+                Arrays.asList(new Invoke(InvokeAtType.START, 0, "init", null),
+                        new Invoke(InvokeAtType.START, 1, "start", null)));
+        for (final String dependency : dependsOn) {
+            service.addDependsOn(":Name=" + dependency);
+        }
+        return service;
+    }
+
+    private static List<String> getLabels(List<InvokerService> services) {
+        final List<String> labels = new ArrayList<>();
+        for (final InvokerService service : services) {
+            labels.add(service.getService().getName().substring(":Name=".length()));
+        }
+        return labels;
+    }
+
+    private static void assertBefore(String first, String second) {
+        final int firstIndex = EVENTS.indexOf(first);
+        final int secondIndex = EVENTS.indexOf(second);
+        assertTrue(first + " was not recorded in " + EVENTS, firstIndex >= 0);
+        assertTrue(second + " was not recorded in " + EVENTS, secondIndex >= 0);
+        assertTrue(first + " should come before " + second + " in " + EVENTS, firstIndex < secondIndex);
+    }
+}
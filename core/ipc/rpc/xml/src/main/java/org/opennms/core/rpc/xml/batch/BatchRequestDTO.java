@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.xml.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.opennms.core.rpc.api.RpcRequest;
+
+import io.opentracing.Span;
+
+/**
+ * Envelope used to send several requests for the same module, location and system id in a single RPC.
+ * Every request is stored in the form marshaled by the module it is destined to.
+ */
+@XmlRootElement(name = "batch-request")
+@XmlAccessorType(XmlAccessType.NONE)
+public class BatchRequestDTO implements RpcRequest {
+
+    @XmlAttribute(name = "location")
+    private String location;
+
+    @XmlAttribute(name = "system-id")
+    private String systemId;
+
+    /**
+     * Shared by all of the requests in the batch, and used to time them out individually on the remote system
+     */
+    @XmlAttribute(name = "ttl")
+    private Long timeToLiveMs;
+
+    @XmlElement(name = "request")
+    private List<String> requests = new ArrayList<>();
+
+    public BatchRequestDTO() { }
+
+    public BatchRequestDTO(String location, String systemId, Long timeToLiveMs) {
+        this.location = location;
+        this.systemId = systemId;
+        this.timeToLiveMs = timeToLiveMs;
+    }
+
+    @Override
+    public String getLocation() {
+        return location;
+    }
+
+    @Override
+    public String getSystemId() {
+        return systemId;
+    }
+
+    @Override
+    public Long getTimeToLiveMs() {
+        return timeToLiveMs;
+    }
+
+    public List<String> getRequests() {
+        return requests;
+    }
+
+    public void addRequest(String request) {
+        requests.add(request);
+    }
+
+    @Override
+    public Map<String, String> getTracingInfo() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Span getSpan() {
+        return null;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(location, systemId, timeToLiveMs, requests);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof BatchRequestDTO)) {
+            return false;
+        }
+        final BatchRequestDTO other = (BatchRequestDTO) obj;
+        return Objects.equals(this.location, other.location)
+                && Objects.equals(this.systemId, other.systemId)
+                && Objects.equals(this.timeToLiveMs, other.timeToLiveMs)
+                && Objects.equals(this.requests, other.requests);
+    }
+}
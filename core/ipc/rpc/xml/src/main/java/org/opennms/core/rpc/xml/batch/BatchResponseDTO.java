@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.xml.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.opennms.core.rpc.api.RemoteExecutionException;
+import org.opennms.core.rpc.api.RpcResponse;
+
+/**
+ * Holds the marshaled responses to a {@link BatchRequestDTO}, in the same order as the requests.
+ */
+@XmlRootElement(name = "batch-response")
+@XmlAccessorType(XmlAccessType.NONE)
+public class BatchResponseDTO implements RpcResponse {
+
+    @XmlAttribute(name = "error")
+    private String error;
+
+    @XmlElement(name = "response")
+    private List<String> responses = new ArrayList<>();
+
+    public BatchResponseDTO() { }
+
+    public BatchResponseDTO(List<String> responses) {
+        this.responses = Objects.requireNonNull(responses);
+    }
+
+    public BatchResponseDTO(Throwable ex) {
+        this.error = RemoteExecutionException.toErrorMessage(ex);
+    }
+
+    public List<String> getResponses() {
+        return responses;
+    }
+
+    @Override
+    public String getErrorMessage() {
+        return error;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(error, responses);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof BatchResponseDTO)) {
+            return false;
+        }
+        final BatchResponseDTO other = (BatchResponseDTO) obj;
+        return Objects.equals(this.error, other.error)
+                && Objects.equals(this.responses, other.responses);
+    }
+}
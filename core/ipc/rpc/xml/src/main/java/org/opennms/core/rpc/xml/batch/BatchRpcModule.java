@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.xml.batch;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.opennms.core.rpc.api.RequestTimedOutException;
+import org.opennms.core.rpc.api.RpcModule;
+import org.opennms.core.rpc.api.RpcRequest;
+import org.opennms.core.rpc.api.RpcResponse;
+import org.opennms.core.rpc.xml.AbstractXmlRpcModule;
+
+/**
+ * Executes a {@link BatchRequestDTO batch} of requests against the given module.
+ *
+ * The requests are all handed to the module up front, so they are executed concurrently
+ * by the module's own executor, and the batch completes once every request has completed
+ * or timed out. Each request is timed out on the time to live of the batch, which all of its
+ * requests share, so a single slow request can not hold back the responses of the others.
+ * Failures and timeouts are reported individually using {@link RpcModule#createResponseWithException(Throwable)}.
+ *
+ * An instance of this module must be registered alongside the module it wraps on the systems
+ * that execute the requests.
+ */
+public class BatchRpcModule<S extends RpcRequest, T extends RpcResponse> extends AbstractXmlRpcModule<BatchRequestDTO, BatchResponseDTO> {
+
+    public static final String ID_SUFFIX = "-Batch";
+
+    private final RpcModule<S, T> module;
+
+    public BatchRpcModule(RpcModule<S, T> module) {
+        super(BatchRequestDTO.class, BatchResponseDTO.class);
+        this.module = Objects.requireNonNull(module);
+    }
+
+    public RpcModule<S, T> getModule() {
+        return module;
+    }
+
+    @Override
+    public String getId() {
+        return module.getId() + ID_SUFFIX;
+    }
+
+    @Override
+    public CompletableFuture<BatchResponseDTO> execute(BatchRequestDTO batch) {
+        final List<CompletableFuture<String>> responses = batch.getRequests().stream()
+                .map(request -> executeRequest(request, batch.getTimeToLiveMs()))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(responses.toArray(new CompletableFuture[0]))
+                .thenApply(v -> new BatchResponseDTO(responses.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList())));
+    }
+
+    private CompletableFuture<String> executeRequest(String request, Long timeToLiveMs) {
+        CompletableFuture<T> future;
+        try {
+            future = module.execute(module.unmarshalRequest(request));
+        } catch (Throwable t) {
+            future = CompletableFuture.completedFuture(module.createResponseWithException(t));
+        }
+        if (timeToLiveMs != null && timeToLiveMs > 0) {
+            // Time out a dependent future, leaving the one returned by the module untouched
+            future = future.thenApply(Function.identity()).orTimeout(timeToLiveMs, TimeUnit.MILLISECONDS);
+        }
+        return future.handle((response, ex) -> module.marshalResponse(ex == null ? response : module.createResponseWithException(unwrap(ex))));
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        if (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        if (ex instanceof TimeoutException) {
+            return new RequestTimedOutException(ex);
+        }
+        return ex;
+    }
+
+    @Override
+    public BatchResponseDTO createResponseWithException(Throwable ex) {
+        return new BatchResponseDTO(ex);
+    }
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.xml.batch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.opennms.core.rpc.api.RemoteExecutionException;
+import org.opennms.core.rpc.api.RpcClient;
+import org.opennms.core.rpc.api.RpcClientFactory;
+import org.opennms.core.rpc.api.RpcModule;
+import org.opennms.core.rpc.api.RpcRequest;
+import org.opennms.core.rpc.api.RpcResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * {@link RpcClient} that groups requests for the same location, system id and time to live into a single
+ * {@link BatchRequestDTO} RPC, which is handled by the {@link BatchRpcModule} on the remote system.
+ * Since all the requests of a batch share the same time to live, none of them is held past its own.
+ *
+ * The first request for a given location, system id and time to live opens a batch, which is sent once the linger
+ * delay has elapsed, or as soon as it reaches the maximum batch size, whichever comes first. The future
+ * of each request is completed individually with its own response, or error.
+ *
+ * Batching is disabled unless a linger delay is configured using the {@link #LINGER_MS_SYS_PROP} system property.
+ */
+public class BatchingRpcClient<S extends RpcRequest, T extends RpcResponse> implements RpcClient<S, T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchingRpcClient.class);
+
+    public static final String LINGER_MS_SYS_PROP = "org.opennms.core.ipc.rpc.batch.lingerMs";
+    public static final long DEFAULT_LINGER_MS = 0;
+    public static final String MAX_BATCH_SIZE_SYS_PROP = "org.opennms.core.ipc.rpc.batch.maxSize";
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    public static final String JMX_DOMAIN_RPC_BATCH = RpcClientFactory.JMX_DOMAIN_RPC + ".batch";
+    public static final String BATCH_SIZE = "batchSize";
+    public static final String LINGER_DELAY = "lingerDelay";
+
+    private static final MetricRegistry METRICS = new MetricRegistry();
+    private static JmxReporter metricsReporter;
+
+    private final RpcModule<S, T> module;
+    private final RpcClient<S, T> client;
+    private final RpcClient<BatchRequestDTO, BatchResponseDTO> batchClient;
+    private final Predicate<S> batchable;
+    private final long lingerMs;
+    private final int maxBatchSize;
+    private final MetricRegistry metrics;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, Batch> pendingBatches = new HashMap<>();
+
+    /**
+     * Returns a client for the given module, which batches requests matching the given predicate
+     * if batching is enabled, or the client returned by the factory otherwise.
+     */
+    public static <S extends RpcRequest, T extends RpcResponse> RpcClient<S, T> getClient(RpcClientFactory rpcClientFactory, RpcModule<S, T> module, Predicate<S> batchable) {
+        final long lingerMs = Long.getLong(LINGER_MS_SYS_PROP, DEFAULT_LINGER_MS);
+        if (lingerMs <= 0) {
+            return rpcClientFactory.getClient(module);
+        }
+        final int maxBatchSize = Integer.getInteger(MAX_BATCH_SIZE_SYS_PROP, DEFAULT_MAX_BATCH_SIZE);
+        LOG.info("Batching requests for RPC module {} with a linger delay of {}ms and up to {} requests per batch.",
+                module.getId(), lingerMs, maxBatchSize);
+        startMetricsReporter();
+        return new BatchingRpcClient<>(rpcClientFactory, module, batchable, lingerMs, maxBatchSize, METRICS);
+    }
+
+    private static synchronized void startMetricsReporter() {
+        if (metricsReporter == null) {
+            metricsReporter = JmxReporter.forRegistry(METRICS).inDomain(JMX_DOMAIN_RPC_BATCH).build();
+            metricsReporter.start();
+        }
+    }
+
+    public BatchingRpcClient(RpcClientFactory rpcClientFactory, RpcModule<S, T> module, Predicate<S> batchable,
+                             long lingerMs, int maxBatchSize, MetricRegistry metrics) {
+        this.module = Objects.requireNonNull(module);
+        this.client = rpcClientFactory.getClient(module);
+        this.batchClient = rpcClientFactory.getClient(new BatchRpcModule<>(module));
+        this.batchable = Objects.requireNonNull(batchable);
+        this.lingerMs = lingerMs;
+        this.maxBatchSize = maxBatchSize;
+        this.metrics = Objects.requireNonNull(metrics);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "rpc-batch-" + module.getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<T> execute(S request) {
+        if (!batchable.test(request)) {
+            return client.execute(request);
+        }
+
+        final PendingRequest<S, T> pendingRequest = new PendingRequest<>(request);
+        final String key = request.getLocation() + "/" + request.getSystemId() + "/" + request.getTimeToLiveMs();
+        Batch fullBatch = null;
+        synchronized (pendingBatches) {
+            Batch batch = pendingBatches.get(key);
+            if (batch == null) {
+                final Batch newBatch = new Batch(request.getLocation(), request.getSystemId(), request.getTimeToLiveMs());
+                pendingBatches.put(key, newBatch);
+                scheduler.schedule(() -> flush(key, newBatch), lingerMs, TimeUnit.MILLISECONDS);
+                batch = newBatch;
+            }
+            batch.requests.add(pendingRequest);
+            if (batch.requests.size() >= maxBatchSize) {
+                pendingBatches.remove(key);
+                fullBatch = batch;
+            }
+        }
+        if (fullBatch != null) {
+            send(fullBatch);
+        }
+        return pendingRequest.future;
+    }
+
+    private void flush(String key, Batch batch) {
+        synchronized (pendingBatches) {
+            // The batch may already have been sent because it was full
+            if (!pendingBatches.remove(key, batch)) {
+                return;
+            }
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        final long now = System.currentTimeMillis();
+        for (PendingRequest<S, T> pendingRequest : batch.requests) {
+            metrics.histogram(MetricRegistry.name(batch.location, module.getId(), LINGER_DELAY)).update(now - pendingRequest.enqueuedAt);
+        }
+        metrics.histogram(MetricRegistry.name(batch.location, module.getId(), BATCH_SIZE)).update(batch.requests.size());
+
+        if (batch.requests.size() == 1) {
+            // Not worth an envelope
+            final PendingRequest<S, T> pendingRequest = batch.requests.get(0);
+            client.execute(pendingRequest.request).whenComplete(pendingRequest::complete);
+            return;
+        }
+
+        final BatchRequestDTO batchRequest;
+        try {
+            batchRequest = new BatchRequestDTO(batch.location, batch.systemId, batch.timeToLiveMs);
+            for (PendingRequest<S, T> pendingRequest : batch.requests) {
+                batchRequest.addRequest(module.marshalRequest(pendingRequest.request));
+            }
+        } catch (Throwable t) {
+            LOG.warn("Failed to marshal batch of {} requests for RPC module {}.", batch.requests.size(), module.getId(), t);
+            batch.requests.forEach(r -> r.future.completeExceptionally(t));
+            return;
+        }
+
+        batchClient.execute(batchRequest).whenComplete((batchResponse, ex) -> {
+            if (ex != null) {
+                batch.requests.forEach(r -> r.future.completeExceptionally(ex));
+                return;
+            }
+            final List<String> responses = batchResponse.getResponses();
+            if (responses.size() != batch.requests.size()) {
+                final Exception mismatch = new RemoteExecutionException(String.format("Expected %d responses in batch, got %d.",
+                        batch.requests.size(), responses.size()));
+                batch.requests.forEach(r -> r.future.completeExceptionally(mismatch));
+                return;
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                final PendingRequest<S, T> pendingRequest = batch.requests.get(i);
+                try {
+                    final T response = module.unmarshalResponse(responses.get(i));
+                    if (response.getErrorMessage() != null) {
+                        pendingRequest.future.completeExceptionally(new RemoteExecutionException(response.getErrorMessage()));
+                    } else {
+                        pendingRequest.future.complete(response);
+                    }
+                } catch (Throwable t) {
+                    pendingRequest.future.completeExceptionally(t);
+                }
+            }
+        });
+    }
+
+    private class Batch {
+        private final String location;
+        private final String systemId;
+        private final Long timeToLiveMs;
+        private final List<PendingRequest<S, T>> requests = new ArrayList<>();
+
+        private Batch(String location, String systemId, Long timeToLiveMs) {
+            this.location = location;
+            this.systemId = systemId;
+            this.timeToLiveMs = timeToLiveMs;
+        }
+    }
+
+    private static class PendingRequest<S, T> {
+        private final S request;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long enqueuedAt = System.currentTimeMillis();
+
+        private PendingRequest(S request) {
+            this.request = request;
+        }
+
+        private void complete(T response, Throwable ex) {
+            if (ex != null) {
+                future.completeExceptionally(ex);
+            } else {
+                future.complete(response);
+            }
+        }
+    }
+}
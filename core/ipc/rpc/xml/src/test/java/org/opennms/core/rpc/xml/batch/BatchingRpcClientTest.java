@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.xml.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.opennms.core.rpc.api.RemoteExecutionException;
+import org.opennms.core.rpc.api.RpcClient;
+import org.opennms.core.rpc.api.RpcClientFactory;
+import org.opennms.core.rpc.api.RpcModule;
+import org.opennms.core.rpc.api.RpcRequest;
+import org.opennms.core.rpc.api.RpcResponse;
+
+import com.codahale.metrics.MetricRegistry;
+
+import io.opentracing.Span;
+
+public class BatchingRpcClientTest {
+
+    private final List<RpcRequest> sent = new CopyOnWriteArrayList<>();
+
+    /**
+     * Executes the modules directly, as done for requests at the local location.
+     */
+    private final RpcClientFactory rpcClientFactory = new RpcClientFactory() {
+        @Override
+        public <R extends RpcRequest, S extends RpcResponse> RpcClient<R, S> getClient(RpcModule<R, S> module) {
+            return request -> {
+                sent.add(request);
+                return module.execute(request);
+            };
+        }
+    };
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void canBatchRequestsForTheSameLocation() throws Exception {
+        final BatchingRpcClient<EchoRequest, EchoResponse> client = new BatchingRpcClient<>(rpcClientFactory,
+                new EchoModule(), r -> true, TimeUnit.MINUTES.toMillis(1), 3, metrics);
+
+        final CompletableFuture<EchoResponse> a = client.execute(new EchoRequest("here", "a"));
+        final CompletableFuture<EchoResponse> b = client.execute(new EchoRequest("there", "b"));
+        final CompletableFuture<EchoResponse> c = client.execute(new EchoRequest("here", "c"));
+        assertTrue(sent.isEmpty());
+
+        // The third request for the location fills the batch
+        final CompletableFuture<EchoResponse> d = client.execute(new EchoRequest("here", "ddd"));
+        assertEquals("a", a.get().getMessage());
+        assertEquals("c", c.get().getMessage());
+        assertEquals("ddd", d.get().getMessage());
+        assertEquals(1, sent.size());
+        final BatchRequestDTO batch = (BatchRequestDTO) sent.get(0);
+        assertEquals("here", batch.getLocation());
+        assertEquals(3, batch.getRequests().size());
+        assertEquals(Long.valueOf(EchoRequest.DEFAULT_TTL), batch.getTimeToLiveMs());
+        assertEquals(false, b.isDone());
+
+        assertEquals(3, metrics.histogram(MetricRegistry.name("here", EchoModule.ID, BatchingRpcClient.BATCH_SIZE)).getSnapshot().getMax());
+    }
+
+    @Test
+    public void canSeparateBatchesByTimeToLive() throws Exception {
+        final BatchingRpcClient<EchoRequest, EchoResponse> client = new BatchingRpcClient<>(rpcClientFactory,
+                new EchoModule(), r -> true, TimeUnit.MINUTES.toMillis(1), 2, metrics);
+
+        final CompletableFuture<EchoResponse> a = client.execute(new EchoRequest("here", "a", 1000L));
+        final CompletableFuture<EchoResponse> b = client.execute(new EchoRequest("here", "b", 5000L));
+        assertTrue(sent.isEmpty());
+
+        // Only requests with the same time to live share a batch
+        final CompletableFuture<EchoResponse> c = client.execute(new EchoRequest("here", "c", 1000L));
+        assertEquals("a", a.get().getMessage());
+        assertEquals("c", c.get().getMessage());
+        assertEquals(false, b.isDone());
+        assertEquals(1, sent.size());
+        assertEquals(Long.valueOf(1000L), sent.get(0).getTimeToLiveMs());
+    }
+
+    @Test
+    public void canTimeOutRequestsIndividually() throws Exception {
+        final BatchRpcModule<EchoRequest, EchoResponse> batchModule = new BatchRpcModule<>(new EchoModule());
+        final EchoModule module = new EchoModule();
+        final BatchRequestDTO batch = new BatchRequestDTO("here", null, 100L);
+        batch.addRequest(module.marshalRequest(new EchoRequest("here", "a")));
+        batch.addRequest(module.marshalRequest(new EchoRequest("here", EchoModule.HANG)));
+        batch.addRequest(module.marshalRequest(new EchoRequest("here", "c")));
+
+        // The batch completes even though one of its requests never does
+        final List<String> responses = batchModule.execute(batch).get(5, TimeUnit.SECONDS).getResponses();
+        assertEquals(3, responses.size());
+        assertEquals("a", module.unmarshalResponse(responses.get(0)).getMessage());
+        assertTrue(module.unmarshalResponse(responses.get(1)).getErrorMessage() != null);
+        assertEquals("c", module.unmarshalResponse(responses.get(2)).getMessage());
+    }
+
+    @Test
+    public void canFlushAfterLinger() throws Exception {
+        final BatchingRpcClient<EchoRequest, EchoResponse> client = new BatchingRpcClient<>(rpcClientFactory,
+                new EchoModule(), r -> true, 100, 100, metrics);
+
+        final CompletableFuture<EchoResponse> a = client.execute(new EchoRequest("here", "a"));
+        final CompletableFuture<EchoResponse> b = client.execute(new EchoRequest("here", "b"));
+        assertEquals("a", a.get(5, TimeUnit.SECONDS).getMessage());
+        assertEquals("b", b.get(5, TimeUnit.SECONDS).getMessage());
+        assertEquals(1, sent.size());
+
+        // A lone request is sent without an envelope
+        final CompletableFuture<EchoResponse> c = client.execute(new EchoRequest("here", "c"));
+        assertEquals("c", c.get(5, TimeUnit.SECONDS).getMessage());
+        assertEquals(2, sent.size());
+        assertTrue(sent.get(1) instanceof EchoRequest);
+    }
+
+    @Test
+    public void canBypassBatching() throws Exception {
+        final BatchingRpcClient<EchoRequest, EchoResponse> client = new BatchingRpcClient<>(rpcClientFactory,
+                new EchoModule(), r -> !"local".equals(r.getLocation()), TimeUnit.MINUTES.toMillis(1), 100, metrics);
+
+        assertEquals("a", client.execute(new EchoRequest("local", "a")).get().getMessage());
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void canFailRequestsIndividually() throws Exception {
+        final BatchingRpcClient<EchoRequest, EchoResponse> client = new BatchingRpcClient<>(rpcClientFactory,
+                new EchoModule(), r -> true, TimeUnit.MINUTES.toMillis(1), 2, metrics);
+
+        final CompletableFuture<EchoResponse> a = client.execute(new EchoRequest("here", "a"));
+        final CompletableFuture<EchoResponse> b = client.execute(new EchoRequest("here", EchoModule.FAIL));
+        assertEquals("a", a.get().getMessage());
+        try {
+            b.get();
+            fail("Expected the request to fail.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RemoteExecutionException);
+        }
+    }
+
+    private static class EchoRequest implements RpcRequest {
+        private static final long DEFAULT_TTL = 60000L;
+
+        private final String location;
+        private final String message;
+        private final Long ttl;
+
+        private EchoRequest(String location, String message) {
+            this(location, message, DEFAULT_TTL);
+        }
+
+        private EchoRequest(String location, String message, Long ttl) {
+            this.location = location;
+            this.message = message;
+            this.ttl = ttl;
+        }
+
+        @Override
+        public String getLocation() {
+            return location;
+        }
+
+        @Override
+        public String getSystemId() {
+            return null;
+        }
+
+        @Override
+        public Long getTimeToLiveMs() {
+            return ttl;
+        }
+
+        @Override
+        public Map<String, String> getTracingInfo() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Span getSpan() {
+            return null;
+        }
+    }
+
+    private static class EchoResponse implements RpcResponse {
+        private final String message;
+        private final String error;
+
+        private EchoResponse(String message, String error) {
+            this.message = message;
+            this.error = error;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String getErrorMessage() {
+            return error;
+        }
+    }
+
+    private static class EchoModule implements RpcModule<EchoRequest, EchoResponse> {
+        private static final String ID = "Echo";
+        private static final String FAIL = "fail";
+        private static final String HANG = "hang";
+
+        @Override
+        public String getId() {
+            return ID;
+        }
+
+        @Override
+        public CompletableFuture<EchoResponse> execute(EchoRequest request) {
+            final CompletableFuture<EchoResponse> future = new CompletableFuture<>();
+            if (HANG.equals(request.message)) {
+                return future;
+            } else if (FAIL.equals(request.message)) {
+                future.completeExceptionally(new IllegalStateException("Failed."));
+            } else {
+                future.complete(new EchoResponse(request.message, null));
+            }
+            return future;
+        }
+
+        @Override
+        public String marshalRequest(EchoRequest request) {
+            return request.location + ":" + request.message;
+        }
+
+        @Override
+        public EchoRequest unmarshalRequest(String request) {
+            final String[] parts = request.split(":", 2);
+            return new EchoRequest(parts[0], parts[1]);
+        }
+
+        @Override
+        public String marshalResponse(EchoResponse response) {
+            return response.error != null ? "!" + response.error : response.message;
+        }
+
+        @Override
+        public EchoResponse unmarshalResponse(String response) {
+            return response.startsWith("!") ? new EchoResponse(null, response.substring(1)) : new EchoResponse(response, null);
+        }
+
+        @Override
+        public EchoResponse createResponseWithException(Throwable ex) {
+            return new EchoResponse(null, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opennms.core.sysprops.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.MessageDispatcher;
+import org.snmp4j.MessageDispatcherImpl;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.mp.MPv1;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.smi.Address;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Sends SNMPv1/v2c requests over a small pool of long-lived UDP sockets instead of
+ * creating a new session (socket and listen thread) for every request.
+ *
+ * Responses are matched to their requests by SNMP4J using the request id. The number of
+ * requests in flight is limited per agent; additional requests for the same agent are queued
+ * and sent in the order they were submitted, so a slow agent can not delay requests to other agents.
+ * Retries are handled here rather than by SNMP4J, so they can be accounted for per agent.
+ * Agents without requests for {@code org.opennms.snmp.snmp4j.sharedTransport.agentIdleTimeout} milliseconds
+ * are forgotten. The totals over all agents are exposed via JMX in the {@value #JMX_DOMAIN} domain.
+ *
+ * Enabled by setting the system property {@code org.opennms.snmp.snmp4j.sharedTransport} to {@code true}.
+ */
+public class Snmp4JSharedTransport {
+    private static final Logger LOG = LoggerFactory.getLogger(Snmp4JSharedTransport.class);
+
+    public static final String ENABLED_PROPERTY = "org.opennms.snmp.snmp4j.sharedTransport";
+    public static final String SOCKETS_PROPERTY = "org.opennms.snmp.snmp4j.sharedTransport.sockets";
+    public static final String MAX_IN_FLIGHT_PROPERTY = "org.opennms.snmp.snmp4j.sharedTransport.maxInFlightPerAgent";
+    public static final String AGENT_IDLE_TIMEOUT_PROPERTY = "org.opennms.snmp.snmp4j.sharedTransport.agentIdleTimeout";
+
+    public static final String JMX_DOMAIN = "org.opennms.netmgt.snmp.sharedTransport";
+
+    private static final boolean s_enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+    private static volatile Snmp4JSharedTransport s_instance;
+    // set once the creation failed or the transport was shut down, requests then use a session each
+    private static volatile boolean s_unavailable = false;
+    private static JmxReporter s_metricsReporter;
+
+    private final Snmp[] m_sessions;
+    private final AtomicInteger m_nextSession = new AtomicInteger();
+    private final int m_maxInFlightPerAgent;
+    private final long m_agentIdleTimeoutNanos;
+    private final AtomicLong m_lastExpiry = new AtomicLong(System.nanoTime());
+    private final Map<Address, Agent> m_agents = new ConcurrentHashMap<>();
+
+    private final MetricRegistry m_metrics = new MetricRegistry();
+    private final Meter m_totalRequests = m_metrics.meter("requests");
+    private final Meter m_totalTimeouts = m_metrics.meter("timeouts");
+    private final Meter m_totalRetries = m_metrics.meter("retries");
+    private final Meter m_totalErrors = m_metrics.meter("errors");
+
+    protected Snmp4JSharedTransport(int sockets, int maxInFlightPerAgent) throws IOException {
+        this(sockets, maxInFlightPerAgent, TimeUnit.MINUTES.toMillis(5));
+    }
+
+    protected Snmp4JSharedTransport(int sockets, int maxInFlightPerAgent, long agentIdleTimeoutMs) throws IOException {
+        if (sockets < 1 || maxInFlightPerAgent < 1) {
+            throw new IllegalArgumentException("The number of sockets and the maximum number of requests in flight must be positive");
+        }
+        m_maxInFlightPerAgent = maxInFlightPerAgent;
+        m_agentIdleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(agentIdleTimeoutMs);
+        m_metrics.register("agents", (Gauge<Integer>) m_agents::size);
+        m_metrics.register("inFlight", (Gauge<Integer>) () -> m_agents.values().stream().mapToInt(Agent::getInFlight).sum());
+        m_metrics.register("queued", (Gauge<Integer>) () -> m_agents.values().stream().mapToInt(Agent::getQueued).sum());
+        m_sessions = new Snmp[sockets];
+        try {
+            for (int i = 0; i < sockets; i++) {
+                final MessageDispatcher dispatcher = new MessageDispatcherImpl();
+                dispatcher.addMessageProcessingModel(new MPv1());
+                dispatcher.addMessageProcessingModel(new MPv2c());
+                m_sessions[i] = new Snmp(dispatcher, new DefaultUdpTransportMapping());
+                m_sessions[i].listen();
+            }
+        } catch (final IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return s_enabled;
+    }
+
+    /**
+     * Returns the shared transport, or null if it is disabled, could not be created or was shut down.
+     * The creation is only attempted once.
+     */
+    public static Snmp4JSharedTransport getInstance() {
+        if (!s_enabled) {
+            return null;
+        }
+        Snmp4JSharedTransport instance = s_instance;
+        if (instance == null && !s_unavailable) {
+            synchronized (Snmp4JSharedTransport.class) {
+                instance = s_instance;
+                if (instance == null && !s_unavailable) {
+                    try {
+                        instance = new Snmp4JSharedTransport(SystemProperties.getInteger(SOCKETS_PROPERTY, 4),
+                                SystemProperties.getInteger(MAX_IN_FLIGHT_PROPERTY, 8),
+                                SystemProperties.getLong(AGENT_IDLE_TIMEOUT_PROPERTY, TimeUnit.MINUTES.toMillis(5)));
+                        s_metricsReporter = JmxReporter.forRegistry(instance.getMetrics()).inDomain(JMX_DOMAIN).build();
+                        s_metricsReporter.start();
+                        s_instance = instance;
+                    } catch (final IOException e) {
+                        LOG.error("Failed to create the shared SNMP transport. Falling back to a session per request.", e);
+                        s_unavailable = true;
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Closes the shared transport, if it was created. Requests sent afterwards use a session each.
+     */
+    public static synchronized void shutdown() {
+        s_unavailable = true;
+        if (s_metricsReporter != null) {
+            s_metricsReporter.stop();
+            s_metricsReporter = null;
+        }
+        if (s_instance != null) {
+            s_instance.close();
+            s_instance = null;
+        }
+    }
+
+    /**
+     * The shared sockets only carry community based requests; SNMPv3 requires a USM per user.
+     */
+    public boolean supports(Snmp4JAgentConfig agentConfig) {
+        return !agentConfig.isSnmpV3();
+    }
+
+    /**
+     * Sends the given request to the agent. The listener is called exactly once, with the
+     * response, after the last retry timed out, or with the error which occurred while sending.
+     * In contrast to a dedicated session, there is no need to cancel the request in the listener.
+     */
+    public void send(Snmp4JAgentConfig agentConfig, PDU pdu, ResponseListener listener) {
+        final Target target = agentConfig.getTarget();
+        final Request request = new Request(pdu, target, listener);
+        // Retries are handled by the request itself
+        target.setRetries(0);
+        m_totalRequests.mark();
+        final Address address = target.getAddress();
+        Agent agent = m_agents.computeIfAbsent(address, Agent::new);
+        while (!agent.submit(request)) {
+            // The agent expired in the meantime
+            m_agents.remove(address, agent);
+            agent = m_agents.computeIfAbsent(address, Agent::new);
+        }
+        expireIdleAgents();
+    }
+
+    public Map<Address, AgentStatistics> getStatistics() {
+        return Collections.unmodifiableMap(m_agents);
+    }
+
+    /**
+     * @return the totals over all agents
+     */
+    public MetricRegistry getMetrics() {
+        return m_metrics;
+    }
+
+    private void expireIdleAgents() {
+        final long now = System.nanoTime();
+        final long lastExpiry = m_lastExpiry.get();
+        if (now - lastExpiry < m_agentIdleTimeoutNanos || !m_lastExpiry.compareAndSet(lastExpiry, now)) {
+            return;
+        }
+        for (final Agent agent : m_agents.values()) {
+            if (agent.expireIfIdle(now)) {
+                m_agents.remove(agent.m_address, agent);
+            }
+        }
+    }
+
+    public void close() {
+        for (final Snmp session : m_sessions) {
+            if (session != null) {
+                try {
+                    session.close();
+                } catch (final IOException e) {
+                    LOG.error("Error closing shared SNMP session", e);
+                }
+            }
+        }
+    }
+
+    private Snmp nextSession() {
+        return m_sessions[Math.floorMod(m_nextSession.getAndIncrement(), m_sessions.length)];
+    }
+
+    public interface AgentStatistics {
+        int getInFlight();
+        int getQueued();
+        long getRequests();
+        long getTimeouts();
+        long getRetries();
+        long getErrors();
+    }
+
+    private class Agent implements AgentStatistics {
+        private final Address m_address;
+        private final Queue<Request> m_queue = new ArrayDeque<>();
+        private int m_inFlight = 0;
+        private long m_idleSince = System.nanoTime();
+        private boolean m_expired = false;
+
+        private final AtomicLong m_requests = new AtomicLong();
+        private final AtomicLong m_timeouts = new AtomicLong();
+        private final AtomicLong m_retries = new AtomicLong();
+        private final AtomicLong m_errors = new AtomicLong();
+
+        private Agent(Address address) {
+            m_address = address;
+        }
+
+        /**
+         * @return false if this agent expired and the request must be submitted to a new one
+         */
+        private boolean submit(Request request) {
+            synchronized (this) {
+                if (m_expired) {
+                    return false;
+                }
+                m_requests.incrementAndGet();
+                if (m_inFlight >= m_maxInFlightPerAgent) {
+                    m_queue.add(request);
+                    return true;
+                }
+                m_inFlight++;
+            }
+            send(request);
+            return true;
+        }
+
+        private void complete() {
+            final Request next;
+            synchronized (this) {
+                next = m_queue.poll();
+                if (next == null) {
+                    if (--m_inFlight == 0) {
+                        m_idleSince = System.nanoTime();
+                    }
+                    return;
+                }
+            }
+            send(next);
+        }
+
+        private synchronized boolean expireIfIdle(long now) {
+            if (m_inFlight == 0 && now - m_idleSince >= m_agentIdleTimeoutNanos) {
+                m_expired = true;
+            }
+            return m_expired;
+        }
+
+        private void send(Request request) {
+            final Snmp session = nextSession();
+            try {
+                session.send(request.m_pdu, request.m_target, null, new ResponseListener() {
+                    @Override
+                    public void onResponse(ResponseEvent event) {
+                        session.cancel(event.getRequest(), this);
+                        if (event.getResponse() == null && event.getError() == null && request.m_retriesLeft-- > 0) {
+                            LOG.debug("Request to {} timed out, retrying", m_address);
+                            m_retries.incrementAndGet();
+                            m_totalRetries.mark();
+                            send(request);
+                            return;
+                        }
+                        if (event.getError() != null) {
+                            m_errors.incrementAndGet();
+                            m_totalErrors.mark();
+                        } else if (event.getResponse() == null) {
+                            m_timeouts.incrementAndGet();
+                            m_totalTimeouts.mark();
+                        }
+                        complete();
+                        request.m_listener.onResponse(event);
+                    }
+                });
+            } catch (final Exception e) {
+                LOG.debug("Failed to send request to {}", m_address, e);
+                m_errors.incrementAndGet();
+                m_totalErrors.mark();
+                complete();
+                request.m_listener.onResponse(new ResponseEvent(session, m_address, request.m_pdu, null, null, e));
+            }
+        }
+
+        @Override
+        public synchronized int getInFlight() {
+            return m_inFlight;
+        }
+
+        @Override
+        public synchronized int getQueued() {
+            return m_queue.size();
+        }
+
+        @Override
+        public long getRequests() {
+            return m_requests.get();
+        }
+
+        @Override
+        public long getTimeouts() {
+            return m_timeouts.get();
+        }
+
+        @Override
+        public long getRetries() {
+            return m_retries.get();
+        }
+
+        @Override
+        public long getErrors() {
+            return m_errors.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: inFlight=%d, queued=%d, requests=%d, timeouts=%d, retries=%d, errors=%d",
+                    m_address, getInFlight(), getQueued(), getRequests(), getTimeouts(), getRetries(), getErrors());
+        }
+    }
+
+    private static class Request {
+        private final PDU m_pdu;
+        private final Target m_target;
+        private final ResponseListener m_listener;
+        private int m_retriesLeft;
+
+        private Request(PDU pdu, Target target, ResponseListener listener) {
+            m_pdu = Objects.requireNonNull(pdu);
+            m_target = Objects.requireNonNull(target);
+            m_listener = Objects.requireNonNull(listener);
+            m_retriesLeft = target.getRetries();
+        }
+    }
+}
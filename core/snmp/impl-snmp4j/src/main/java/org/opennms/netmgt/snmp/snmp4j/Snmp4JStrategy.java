@@ -315,6 +315,21 @@ public class Snmp4JStrategy implements SnmpStrategy {
     }
 
     private void send(Snmp4JAgentConfig agentConfig, PDU pdu, boolean expectResponse, CompletableFuture<SnmpValue[]> future) {
+        final Snmp4JSharedTransport sharedTransport = Snmp4JSharedTransport.getInstance();
+        if (expectResponse && sharedTransport != null && sharedTransport.supports(agentConfig)) {
+            sharedTransport.send(agentConfig, pdu, new ResponseListener() {
+                @Override
+                public void onResponse(final ResponseEvent responseEvent) {
+                    try {
+                        future.complete(processResponse(agentConfig, responseEvent, pdu));
+                    } catch (final Exception e) {
+                        future.completeExceptionally(new SnmpException(e));
+                    }
+                }
+            });
+            return;
+        }
+
         Snmp session;
 
         try {
@@ -884,6 +899,17 @@ public class Snmp4JStrategy implements SnmpStrategy {
             LOG.debug("SNMP session tracker: {} sessions being tracked on {} unique threads", s_sessions.size(), s_sessions.values().stream().map(si -> {
                 return si.getThread();
             }).distinct().count());
+            final Snmp4JSharedTransport sharedTransport = Snmp4JSharedTransport.getInstance();
+            if (sharedTransport != null) {
+                sharedTransport.getStatistics().values().stream().sorted(new Comparator<Snmp4JSharedTransport.AgentStatistics>() {
+                    @Override
+                    public int compare(final Snmp4JSharedTransport.AgentStatistics o1, final Snmp4JSharedTransport.AgentStatistics o2) {
+                        return Integer.compare(o2.getInFlight() + o2.getQueued(), o1.getInFlight() + o1.getQueued());
+                    }
+                }).limit(s_trackSummaryLimit).forEach((stats) -> {
+                    LOG.debug("SNMP session tracker: shared transport agent: {}", stats);
+                });
+            }
             s_sessions.values().stream().sorted(new Comparator<SessionInfo>() {
                 @Override
                 public int compare(final SessionInfo o1, final SessionInfo o2) {
@@ -163,7 +163,10 @@ public class Snmp4JWalker extends SnmpWalker {
         @Override
         public void onResponse(ResponseEvent responseEvent) {
             // need to cancel the request here otherwise SNMP4J Keeps it around forever... go figure
-            m_session.cancel(responseEvent.getRequest(), this);
+            // (requests sent over the shared transport are cancelled by the transport itself)
+            if (m_session != null) {
+                m_session.cancel(responseEvent.getRequest(), this);
+            }
 
             // Check to see if we got an interrupted exception
             if (responseEvent.getError() instanceof InterruptedException) {
@@ -220,6 +223,13 @@ public class Snmp4JWalker extends SnmpWalker {
         @Override
     protected void sendNextPdu(WalkerPduBuilder pduBuilder) throws SnmpException {
         Snmp4JPduBuilder snmp4JPduBuilder = (Snmp4JPduBuilder)pduBuilder;
+        final Snmp4JSharedTransport sharedTransport = Snmp4JSharedTransport.getInstance();
+        if (sharedTransport != null && sharedTransport.supports(m_agentConfig)) {
+            LOG.debug("Sending tracker pdu of size {} over the shared transport", snmp4JPduBuilder.getPdu().size());
+            sharedTransport.send(m_agentConfig, snmp4JPduBuilder.getPdu(), m_listener);
+            return;
+        }
+
         try {
             if (m_session == null) {
                 m_session = m_agentConfig.createSnmpSession();
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.snmp.SnmpAgentConfig;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.snmp4j.CommandResponder;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.MessageDispatcher;
+import org.snmp4j.MessageDispatcherImpl;
+import org.snmp4j.MessageException;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.mp.StatusInformation;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+public class Snmp4JSharedTransportTest {
+
+    private DatagramSocket m_silentAgent;
+    private Snmp4JSharedTransport m_transport;
+
+    @Before
+    public void setUp() throws Exception {
+        // An agent which receives requests, but never answers them
+        m_silentAgent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        m_transport = new Snmp4JSharedTransport(2, 1);
+    }
+
+    @After
+    public void tearDown() {
+        m_transport.close();
+        m_silentAgent.close();
+    }
+
+    @Test
+    public void testQueuesRequestsPerAgentAndAccountsTimeouts() {
+        final Snmp4JAgentConfig agentConfig = createAgentConfig(m_silentAgent.getLocalPort());
+
+        final List<ResponseEvent> events = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final PDU pdu = Snmp4JStrategy.buildPdu(agentConfig, PDU.GET, new SnmpObjId[] { SnmpObjId.get(".1.3.6.1.2.1.1.2.0") }, null);
+            m_transport.send(agentConfig, pdu, events::add);
+        }
+
+        final Snmp4JSharedTransport.AgentStatistics stats = m_transport.getStatistics().values().iterator().next();
+        // Only a single request is in flight, the others wait for it to time out
+        assertEquals(1, stats.getInFlight());
+        assertEquals(2, stats.getQueued());
+
+        await().atMost(5, TimeUnit.SECONDS).until(events::size, equalTo(3));
+        for (ResponseEvent event : events) {
+            assertNull(event.getResponse());
+            assertNull(event.getError());
+        }
+        assertEquals(1, m_transport.getStatistics().size());
+        assertEquals(0, stats.getInFlight());
+        assertEquals(0, stats.getQueued());
+        assertEquals(3, stats.getRequests());
+        assertEquals(3, stats.getTimeouts());
+        assertEquals(3, stats.getRetries());
+        assertEquals(0, stats.getErrors());
+
+        assertEquals(3, m_transport.getMetrics().meter("requests").getCount());
+        assertEquals(3, m_transport.getMetrics().meter("timeouts").getCount());
+        assertEquals(3, m_transport.getMetrics().meter("retries").getCount());
+    }
+
+    @Test
+    public void testMatchesResponsesToRequests() throws Exception {
+        // An agent which answers every request with the oids of the request as values
+        final MessageDispatcher dispatcher = new MessageDispatcherImpl();
+        dispatcher.addMessageProcessingModel(new MPv2c());
+        final DefaultUdpTransportMapping agentTransport = new DefaultUdpTransportMapping(new UdpAddress(InetAddress.getLoopbackAddress(), 0));
+        final Snmp agent = new Snmp(dispatcher, agentTransport);
+        agent.addCommandResponder(new CommandResponder() {
+            @Override
+            public void processPdu(CommandResponderEvent event) {
+                final PDU response = new PDU(event.getPDU());
+                response.setType(PDU.RESPONSE);
+                for (VariableBinding vb : response.getVariableBindings()) {
+                    vb.setVariable(new OctetString(vb.getOid().toDottedString()));
+                }
+                try {
+                    event.getMessageDispatcher().returnResponsePdu(event.getMessageProcessingModel(), event.getSecurityModel(),
+                            event.getSecurityName(), event.getSecurityLevel(), response, event.getMaxSizeResponsePDU(),
+                            event.getStateReference(), new StatusInformation());
+                } catch (MessageException e) {
+                    throw new RuntimeException(e);
+                }
+                event.setProcessed(true);
+            }
+        });
+        agent.listen();
+        try {
+            m_transport.close();
+            m_transport = new Snmp4JSharedTransport(2, 4);
+            final Snmp4JAgentConfig agentConfig = createAgentConfig(agentTransport.getListenAddress().getPort());
+
+            final Map<String, ResponseEvent> events = new ConcurrentHashMap<>();
+            for (int i = 0; i < 20; i++) {
+                final String oid = ".1.3.6.1.2.1.1." + i + ".0";
+                final PDU pdu = Snmp4JStrategy.buildPdu(agentConfig, PDU.GET, new SnmpObjId[] { SnmpObjId.get(oid) }, null);
+                m_transport.send(agentConfig, pdu, event -> events.put(oid, event));
+            }
+
+            await().atMost(5, TimeUnit.SECONDS).until(events::size, equalTo(20));
+            for (Map.Entry<String, ResponseEvent> entry : events.entrySet()) {
+                final PDU response = entry.getValue().getResponse();
+                assertNotNull(response);
+                // Every listener received the response to its own request
+                assertEquals(entry.getValue().getRequest().getRequestID(), response.getRequestID());
+                assertEquals(entry.getKey().substring(1), response.get(0).getVariable().toString());
+            }
+            final Snmp4JSharedTransport.AgentStatistics stats = m_transport.getStatistics().values().iterator().next();
+            assertEquals(20, stats.getRequests());
+            assertEquals(0, stats.getTimeouts());
+            assertEquals(0, stats.getRetries());
+            assertEquals(0, stats.getInFlight());
+        } finally {
+            agent.close();
+        }
+    }
+
+    @Test
+    public void testExpiresIdleAgents() throws Exception {
+        m_transport.close();
+        m_transport = new Snmp4JSharedTransport(1, 1, 0);
+        final Snmp4JAgentConfig agentConfig = createAgentConfig(m_silentAgent.getLocalPort());
+        final PDU pdu = Snmp4JStrategy.buildPdu(agentConfig, PDU.GET, new SnmpObjId[] { SnmpObjId.get(".1.3.6.1.2.1.1.2.0") }, null);
+        final List<ResponseEvent> events = new CopyOnWriteArrayList<>();
+        m_transport.send(agentConfig, pdu, events::add);
+        // The agent is busy, so it is kept
+        assertEquals(1, m_transport.getStatistics().size());
+
+        await().atMost(5, TimeUnit.SECONDS).until(events::size, equalTo(1));
+        // Sending to another agent expires the idle one
+        final DatagramSocket otherAgent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        try {
+            final Snmp4JAgentConfig otherConfig = createAgentConfig(otherAgent.getLocalPort());
+            m_transport.send(otherConfig, Snmp4JStrategy.buildPdu(otherConfig, PDU.GET, new SnmpObjId[] { SnmpObjId.get(".1.3.6.1.2.1.1.2.0") }, null), events::add);
+            assertEquals(1, m_transport.getStatistics().size());
+            assertEquals(1, m_transport.getMetrics().getGauges().get("agents").getValue());
+            await().atMost(5, TimeUnit.SECONDS).until(events::size, equalTo(2));
+        } finally {
+            otherAgent.close();
+        }
+    }
+
+    @Test
+    public void testIsDisabledByDefault() {
+        assertFalse(Snmp4JSharedTransport.isEnabled());
+        assertNull(Snmp4JSharedTransport.getInstance());
+    }
+
+    private static Snmp4JAgentConfig createAgentConfig(int port) {
+        final SnmpAgentConfig config = new SnmpAgentConfig(InetAddress.getLoopbackAddress());
+        config.setPort(port);
+        config.setVersion(SnmpAgentConfig.VERSION2C);
+        config.setTimeout(100);
+        config.setRetries(1);
+        return new Snmp4JAgentConfig(config);
+    }
+}
@@ -99,6 +99,8 @@ public class HttpClientWrapper implements Closeable {
     private Integer m_socketTimeout;
     private Integer m_connectionTimeout;
     private Integer m_retries;
+    private Integer m_maxConnectionsTotal;
+    private Integer m_maxConnectionsPerRoute;
     private Map<String,SSLContext> m_sslContext = new HashMap<>();
 
     private Set<HttpRequestInterceptor> m_requestInterceptors = new LinkedHashSet<>();
@@ -275,6 +277,18 @@ public class HttpClientWrapper implements Closeable {
         return this;
     }
 
+    /**
+     * Set the maximum number of pooled connections, in total and per route.
+     * Only useful when the wrapper is shared between many requests.
+     */
+    public HttpClientWrapper setMaxConnections(final Integer maxTotal, final Integer maxPerRoute) {
+        LOG.debug("setMaxConnections: maxTotal={}, maxPerRoute={}", maxTotal, maxPerRoute);
+        assertNotInitialized();
+        m_maxConnectionsTotal = maxTotal;
+        m_maxConnectionsPerRoute = maxPerRoute;
+        return this;
+    }
+
     /**
      * Set the User-Agent header used when making requests.
      */
@@ -331,6 +345,16 @@ public class HttpClientWrapper implements Closeable {
      * Note that when you are done with the response, you must call {@link #closeResponse()} so that it gets cleaned up properly.
      */
     public CloseableHttpResponse execute(final HttpUriRequest method) throws ClientProtocolException, IOException {
+        return execute(method, null);
+    }
+
+    /**
+     * Execute the given HTTP method using the given context, returning an HTTP response.
+     * The context may, for example, hold a cookie store used instead of the one of this wrapper.
+     *
+     * Note that when you are done with the response, you must call {@link #closeResponse()} so that it gets cleaned up properly.
+     */
+    public CloseableHttpResponse execute(final HttpUriRequest method, final HttpContext context) throws ClientProtocolException, IOException {
         LOG.debug("execute: " + this.toString() + "; method: " + method.toString());
         // override some headers with our versions
         final HttpRequestWrapper requestWrapper = HttpRequestWrapper.wrap(method);
@@ -350,7 +374,7 @@ public class HttpClientWrapper implements Closeable {
             }
         }
 
-        return getClient().execute(requestWrapper);
+        return getClient().execute(requestWrapper, context);
     }
 
     /**
@@ -370,6 +394,8 @@ public class HttpClientWrapper implements Closeable {
         ret.m_socketTimeout = m_socketTimeout;
         ret.m_connectionTimeout = m_connectionTimeout;
         ret.m_retries = m_retries;
+        ret.m_maxConnectionsTotal = m_maxConnectionsTotal;
+        ret.m_maxConnectionsPerRoute = m_maxConnectionsPerRoute;
         for (final Map.Entry<String,SSLContext> entry : ret.m_sslContext.entrySet()) {
             ret.m_sslContext.put(entry.getKey(), entry.getValue());
         }
@@ -417,6 +443,12 @@ public class HttpClientWrapper implements Closeable {
             if (m_retries != null) {
                 httpClientBuilder.setRetryHandler(new HttpRequestRetryOnExceptionHandler(m_retries, false));
             }
+            if (m_maxConnectionsTotal != null) {
+                httpClientBuilder.setMaxConnTotal(m_maxConnectionsTotal);
+            }
+            if (m_maxConnectionsPerRoute != null) {
+                httpClientBuilder.setMaxConnPerRoute(m_maxConnectionsPerRoute);
+            }
             if (m_sslContext.size() != 0) {
                 configureSSLContext(httpClientBuilder);
             }
@@ -100,6 +100,11 @@ import io.searchbox.core.search.aggregation.TopHitsAggregation;
  * In order to avoid blocking the callbacks issued via the {@link AlarmLifecycleListener} interface while we communicate
  * with ES, the callbacks create tasks which are added to a queue. Tasks on this queue are then handled by a worker thread
  * and processed in the same order as which they were added.
+ *
+ * When more than one index worker is configured, documents are partitioned by alarm id across the workers, each with
+ * its own queue, so that updates for a given alarm are still indexed in order while distinct alarms are indexed in
+ * parallel. In this mode, snapshots are reconciled in batches against the documents that were last indexed, and only
+ * the documents that changed are sent.
  */
 public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(ElasticAlarmIndexer.class);
@@ -116,11 +121,13 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
     private final LinkedBlockingDeque<Task> taskQueue;
     private final IndexStrategy indexStrategy;
     private final IndexSelector indexSelector;
+    private final int taskQueueCapacity;
 
     private int bulkRetryCount = 3;
     private int batchSize = 200;
     private boolean usePseudoClock = false;
     private boolean indexAllUpdates = false;
+    private int indexWorkers = 1;
 
     /**
      * Duration of time in milliseconds at which the alarms should be reindexed,
@@ -140,6 +147,8 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
     private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
             .setNameFormat("ElasticAlarmIndexer")
             .build());
+    private final List<PartitionWorker> partitionWorkers = new ArrayList<>();
+    private ExecutorService workerExecutor;
     private final AtomicBoolean stopped = new AtomicBoolean(false);
     private java.util.Timer timer;
     private final Function<OnmsAlarm, AlarmDocumentDTO> documentMapper;
@@ -168,6 +177,7 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
         MapStructDocumentImpl documentImpl = new MapStructDocumentImpl(nodeInfoCache, this::getCurrentTimeMillis);
         documentMapper = documentImpl;
         documentFactory = documentImpl;
+        this.taskQueueCapacity = taskQueueCapacity;
         taskQueue = new LinkedBlockingDeque<>(taskQueueCapacity);
         alarmsToESMetrics = new ElasticAlarmMetrics(metrics, taskQueue);
         this.indexStrategy = Objects.requireNonNull(indexStrategy);
@@ -180,6 +190,13 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
             throw new IllegalStateException("Already destroyed.");
         }
         executor.execute(this);
+        if (indexWorkers > 1) {
+            createPartitionWorkers();
+            workerExecutor = Executors.newFixedThreadPool(indexWorkers, new ThreadFactoryBuilder()
+                    .setNameFormat("ElasticAlarmIndexer-Worker-%d")
+                    .build());
+            partitionWorkers.forEach(workerExecutor::execute);
+        }
         timer = new java.util.Timer("ElasticAlarmIndexer");
         timer.schedule(new TimerTask() {
             @Override
@@ -197,6 +214,9 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
         stopped.set(true);
         timer.cancel();
         executor.shutdown();
+        if (workerExecutor != null) {
+            workerExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -209,25 +229,7 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
                 task.visit(new TaskVisitor() {
                     @Override
                     public void indexAlarms(List<AlarmDocumentDTO> docs) {
-                        // If there are multiple documents for the same alarm id at the same timestamp,
-                        // then keep the last one in the list
-                        final Map<String, AlarmDocumentDTO> deduplicatedDocs = new LinkedHashMap<>();
-                        for (AlarmDocumentDTO doc : docs) {
-                            deduplicatedDocs.put(String.format("%d-%s", doc.getId(), doc.getUpdateTime()), doc);
-                        }
-                        docs = new ArrayList<>(deduplicatedDocs.values());
-
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Indexing documents for alarms with ids: {}", docs.stream().map(AlarmDocumentDTO::getId).collect(Collectors.toList()));
-                        }
-                        try (final Timer.Context ctx = alarmsToESMetrics.getBulkIndexTimer().time()) {
-                            bulkInsert(docs);
-                            LOG.debug("Successfully indexed {} documents.", docs.size());
-                            alarmsToESMetrics.getBulkIndexSizeHistogram().update(docs.size());
-                        } catch (PersistenceException|IOException e) {
-                            LOG.error("Indexing {} documents failed. These documents will be lost.", docs.size(), e);
-                            alarmsToESMetrics.getTasksFailedCounter().inc();
-                        }
+                        indexDocuments(docs);
                     }
 
                     @Override
@@ -320,6 +322,28 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
         }
     }
 
+    private void indexDocuments(List<AlarmDocumentDTO> docs) {
+        // If there are multiple documents for the same alarm id at the same timestamp,
+        // then keep the last one in the list
+        final Map<String, AlarmDocumentDTO> deduplicatedDocs = new LinkedHashMap<>();
+        for (AlarmDocumentDTO doc : docs) {
+            deduplicatedDocs.put(String.format("%d-%s", doc.getId(), doc.getUpdateTime()), doc);
+        }
+        docs = new ArrayList<>(deduplicatedDocs.values());
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Indexing documents for alarms with ids: {}", docs.stream().map(AlarmDocumentDTO::getId).collect(Collectors.toList()));
+        }
+        try (final Timer.Context ctx = alarmsToESMetrics.getBulkIndexTimer().time()) {
+            bulkInsert(docs);
+            LOG.debug("Successfully indexed {} documents.", docs.size());
+            alarmsToESMetrics.getBulkIndexSizeHistogram().update(docs.size());
+        } catch (PersistenceException|IOException e) {
+            LOG.error("Indexing {} documents failed. These documents will be lost.", docs.size(), e);
+            alarmsToESMetrics.getTasksFailedCounter().inc();
+        }
+    }
+
     public void bulkInsert(List<AlarmDocumentDTO> alarmDocuments) throws PersistenceException, IOException {
         final BulkRequest<AlarmDocumentDTO> bulkRequest = new BulkRequest<>(client, alarmDocuments, (documents) -> {
             final Bulk.Builder bulkBuilder = new Bulk.Builder();
@@ -360,23 +384,65 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
     }
 
     @Override
-    public synchronized void handleAlarmSnapshot(List<OnmsAlarm> alarms) {
-        LOG.debug("Got snapshot with {} alarms.", alarms.size());
-        flushDocumentsToIndexToTaskQueue();
-        // Index/update documents as necessary
-        final List<AlarmDocumentDTO> alarmDocuments = alarms.stream()
-                // Only consider updating, if we haven't already updated the alarm since the snapshot was taken
-                .filter(a -> !stateTracker.wasAlarmWithIdUpdated(a.getId()))
-                .map(this::getDocumentIfNeedsIndexing)
-                .flatMap(o -> o.map(Stream::of).orElseGet(Stream::empty))
-                .collect(Collectors.toList());
-        if (!alarmDocuments.isEmpty()) {
-            // Break the list up into small batches limited by the configured batch size
-            for (List<AlarmDocumentDTO> partition : Lists.partition(alarmDocuments, batchSize)) {
-                taskQueue.add(new IndexAlarmsTask(partition));
+    public void handleAlarmSnapshot(List<OnmsAlarm> alarms) {
+        if (!partitionWorkers.isEmpty()) {
+            reconcileAlarmSnapshot(alarms);
+            return;
+        }
+        synchronized (this) {
+            LOG.debug("Got snapshot with {} alarms.", alarms.size());
+            flushDocumentsToIndexToTaskQueue();
+            // Index/update documents as necessary
+            final List<AlarmDocumentDTO> alarmDocuments = alarms.stream()
+                    // Only consider updating, if we haven't already updated the alarm since the snapshot was taken
+                    .filter(a -> !stateTracker.wasAlarmWithIdUpdated(a.getId()))
+                    .map(this::getDocumentIfNeedsIndexing)
+                    .flatMap(o -> o.map(Stream::of).orElseGet(Stream::empty))
+                    .collect(Collectors.toList());
+            if (!alarmDocuments.isEmpty()) {
+                // Break the list up into small batches limited by the configured batch size
+                for (List<AlarmDocumentDTO> partition : Lists.partition(alarmDocuments, batchSize)) {
+                    taskQueue.add(new IndexAlarmsTask(partition));
+                }
             }
+            deleteAlarmsNotIn(alarms);
         }
+    }
 
+    /**
+     * Reconciles the snapshot when the documents are partitioned across multiple workers.
+     *
+     * The lock is only held for one batch of alarms at a time, so that callbacks for live updates
+     * are not blocked while a large snapshot is processed. Since documents for the same alarm always
+     * land in the same worker queue, a live update that is handled in between two batches is still
+     * indexed after any document the snapshot queued for that alarm.
+     */
+    private void reconcileAlarmSnapshot(List<OnmsAlarm> alarms) {
+        LOG.debug("Reconciling snapshot with {} alarms.", alarms.size());
+        int numChanged = 0;
+        for (List<OnmsAlarm> batch : Lists.partition(alarms, batchSize)) {
+            synchronized (this) {
+                for (OnmsAlarm alarm : batch) {
+                    // Skip alarms that were updated or deleted since the snapshot was taken
+                    if (stateTracker.wasAlarmWithIdUpdated(alarm.getId()) || stateTracker.wasAlarmWithIdDeleted(alarm.getId())) {
+                        continue;
+                    }
+                    final Optional<AlarmDocumentDTO> doc = getDocumentIfContentChanged(alarm);
+                    if (doc.isPresent()) {
+                        alarmDocumentsToIndex.add(doc.get());
+                        numChanged++;
+                    }
+                }
+                flushDocumentsToIndexToTaskQueue();
+            }
+        }
+        LOG.debug("Found {} changed alarms in snapshot.", numChanged);
+        synchronized (this) {
+            deleteAlarmsNotIn(alarms);
+        }
+    }
+
+    private void deleteAlarmsNotIn(List<OnmsAlarm> alarms) {
         // Bulk delete alarms that are not yet marked as deleted in ES, and are not present in the given list
         final Set<Integer> alarmIdsToKeep = new HashSet<>(stateTracker.getUpdatedAlarmIds());
         alarms.stream().map(OnmsAlarm::getId).forEach(alarmIdsToKeep::add);
@@ -414,11 +480,43 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
         stateTracker.trackDeletedAlarm(alarmId, reductionKey);
     }
 
-    private synchronized void flushDocumentsToIndexToTaskQueue() {
-        if (!alarmDocumentsToIndex.isEmpty()) {
+    @VisibleForTesting
+    synchronized void createPartitionWorkers() {
+        for (int i = 0; i < indexWorkers; i++) {
+            final PartitionWorker worker = new PartitionWorker(i);
+            alarmsToESMetrics.registerWorker(i, worker::getQueueSize, worker::getLagMs);
+            partitionWorkers.add(worker);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized void flushDocumentsToIndexToTaskQueue() {
+        if (alarmDocumentsToIndex.isEmpty()) {
+            return;
+        }
+        if (partitionWorkers.isEmpty()) {
             taskQueue.add(new IndexAlarmsTask(new ArrayList<>(alarmDocumentsToIndex)));
-            alarmDocumentsToIndex.clear();
+        } else {
+            // Grouping preserves the order of the documents within each partition
+            final Map<Integer, List<AlarmDocumentDTO>> docsByPartition = alarmDocumentsToIndex.stream()
+                    .collect(Collectors.groupingBy(this::getPartition, LinkedHashMap::new, Collectors.toList()));
+            docsByPartition.forEach((partition, docs) -> partitionWorkers.get(partition).add(docs));
         }
+        alarmDocumentsToIndex.clear();
+    }
+
+    private int getPartition(AlarmDocumentDTO doc) {
+        return Math.floorMod(doc.getId(), partitionWorkers.size());
+    }
+
+    /**
+     * @return the batches of documents waiting in the queue of the given worker, in the order they will be indexed
+     */
+    @VisibleForTesting
+    List<List<AlarmDocumentDTO>> getQueuedDocuments(int worker) {
+        return partitionWorkers.get(worker).queue.stream()
+                .map(queued -> queued.docs)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -459,6 +557,19 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
                 Objects.equals(document.getSituation(), alarm.isSituation());
     }
 
+    /**
+     * Used when reconciling snapshots: unlike {@link #getDocumentIfNeedsIndexing(OnmsAlarm)}, alarms are not
+     * re-indexed because the re-index duration elapsed, only when their content differs from the last indexed document.
+     */
+    @VisibleForTesting
+    Optional<AlarmDocumentDTO> getDocumentIfContentChanged(OnmsAlarm alarm) {
+        final AlarmDocumentDTO existingAlarmDocument = alarmDocumentsById.get(alarm.getId());
+        if (!indexAllUpdates && existingAlarmDocument != null && interestingEquals(existingAlarmDocument, alarm)) {
+            return Optional.empty();
+        }
+        return mapDocument(alarm);
+    }
+
     @VisibleForTesting
     Optional<AlarmDocumentDTO> getDocumentIfNeedsIndexing(OnmsAlarm alarm) {
         final AlarmDocumentDTO existingAlarmDocument = alarmDocumentsById.get(alarm.getId());
@@ -475,24 +586,28 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
         }
 
         if (needsIndexing) {
-            final AlarmDocumentDTO doc;
-            try {
-                doc = documentMapper.apply(alarm);
-            } catch (Exception e) {
-                // This may be triggered by Hibernate ObjectNotFoundExceptions if the event
-                // attached to the alarm entity is already gone. In this case, we simply want to skip
-                // the alarm for now.
-                LOG.warn("Mapping alarm to DTO failed. Document will not be indexed.", e);
-                return Optional.empty();
-            }
-
-            alarmDocumentsById.put(alarm.getId(), doc);
-            return Optional.of(doc);
+            return mapDocument(alarm);
         }
 
         return Optional.empty();
     }
 
+    private Optional<AlarmDocumentDTO> mapDocument(OnmsAlarm alarm) {
+        final AlarmDocumentDTO doc;
+        try {
+            doc = documentMapper.apply(alarm);
+        } catch (Exception e) {
+            // This may be triggered by Hibernate ObjectNotFoundExceptions if the event
+            // attached to the alarm entity is already gone. In this case, we simply want to skip
+            // the alarm for now.
+            LOG.warn("Mapping alarm to DTO failed. Document will not be indexed.", e);
+            return Optional.empty();
+        }
+
+        alarmDocumentsById.put(alarm.getId(), doc);
+        return Optional.of(doc);
+    }
+
     private long getCurrentTimeMillis() {
         if (usePseudoClock) {
             return PseudoClock.getInstance().getTime();
@@ -524,4 +639,63 @@ public class ElasticAlarmIndexer implements AlarmLifecycleListener, Runnable {
     public void setIndexAllUpdates(boolean indexAllUpdates) {
         this.indexAllUpdates = indexAllUpdates;
     }
+
+    public void setIndexWorkers(int indexWorkers) {
+        this.indexWorkers = indexWorkers;
+    }
+
+    private static class QueuedDocuments {
+        private final List<AlarmDocumentDTO> docs;
+        private final long enqueuedAt;
+
+        private QueuedDocuments(List<AlarmDocumentDTO> docs, long enqueuedAt) {
+            this.docs = docs;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * Indexes the documents of a single partition. The queue only holds documents to index: the bulk deletes
+     * issued as part of the snapshot reconciliation are always handled by the main task queue.
+     */
+    private class PartitionWorker implements Runnable {
+        private final int index;
+        private final LinkedBlockingDeque<QueuedDocuments> queue = new LinkedBlockingDeque<>(taskQueueCapacity);
+
+        private PartitionWorker(int index) {
+            this.index = index;
+        }
+
+        private void add(List<AlarmDocumentDTO> docs) {
+            queue.add(new QueuedDocuments(docs, System.currentTimeMillis()));
+        }
+
+        private int getQueueSize() {
+            return queue.size();
+        }
+
+        /**
+         * @return the age of the oldest batch waiting in the queue, in milliseconds
+         */
+        private long getLagMs() {
+            final QueuedDocuments head = queue.peekFirst();
+            return head == null ? 0 : System.currentTimeMillis() - head.enqueuedAt;
+        }
+
+        @Override
+        public void run() {
+            templateInitializer.initialize();
+            while (!stopped.get()) {
+                try {
+                    indexDocuments(queue.take().docs);
+                } catch (InterruptedException e) {
+                    LOG.info("Worker {} interrupted. Stopping.", index);
+                    return;
+                } catch (Exception e) {
+                    LOG.error("Handling of task failed on worker {}.", index, e);
+                    alarmsToESMetrics.getTasksFailedCounter().inc();
+                }
+            }
+        }
+    }
 }
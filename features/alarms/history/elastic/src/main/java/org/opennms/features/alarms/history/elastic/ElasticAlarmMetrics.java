@@ -44,8 +44,10 @@ public class ElasticAlarmMetrics {
     private final Timer bulkIndexTimer;
     private final Timer bulkDeleteTimer;
     private final Counter tasksFailedCounter;
+    private final MetricRegistry metrics;
 
     public ElasticAlarmMetrics(MetricRegistry metrics, BlockingQueue<Task> taskQueue) {
+        this.metrics = metrics;
         bulkIndexSizeHistogram = metrics.histogram("bulk-index-size");
         bulkIndexTimer = metrics.timer("bulk-index-timer");
         bulkDeleteTimer = metrics.timer("bulk-delete-timer");
@@ -53,6 +55,11 @@ public class ElasticAlarmMetrics {
         metrics.register("task-queue-size", (Gauge<Integer>) taskQueue::size);
     }
 
+    public void registerWorker(int worker, Gauge<Integer> queueSize, Gauge<Long> lagMs) {
+        metrics.register(String.format("worker-%d-task-queue-size", worker), queueSize);
+        metrics.register(String.format("worker-%d-task-lag-ms", worker), lagMs);
+    }
+
     public Histogram getBulkIndexSizeHistogram() {
         return bulkIndexSizeHistogram;
     }
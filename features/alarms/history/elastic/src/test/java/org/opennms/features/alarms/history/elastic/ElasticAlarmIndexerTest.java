@@ -33,9 +33,14 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.mock;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
+import org.opennms.features.alarms.history.elastic.dto.AlarmDocumentDTO;
 import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.OnmsEvent;
 import org.opennms.netmgt.model.OnmsMemo;
@@ -72,6 +77,104 @@ public class ElasticAlarmIndexerTest {
         updateAndTestNegative(onmsAlarm, () -> onmsAlarm.setDistPoller(new OnmsMonitoringSystem()));
     }
 
+    @Test
+    public void testGetDocumentIfContentChanged() {
+        OnmsAlarm onmsAlarm = new OnmsAlarm();
+        onmsAlarm.setId(2);
+        onmsAlarm.setReductionKey("test");
+
+        // The document is indexed the first time around
+        assertThat(elasticAlarmIndexer.getDocumentIfContentChanged(onmsAlarm).isPresent(), is(equalTo(true)));
+        assertThat(elasticAlarmIndexer.getDocumentIfContentChanged(onmsAlarm).isPresent(), is(equalTo(false)));
+
+        // Changes to interesting fields are picked up
+        onmsAlarm.setSeverityId(5);
+        assertThat(elasticAlarmIndexer.getDocumentIfContentChanged(onmsAlarm).isPresent(), is(equalTo(true)));
+        onmsAlarm.setStickyMemo(new OnmsMemo());
+        assertThat(elasticAlarmIndexer.getDocumentIfContentChanged(onmsAlarm).isPresent(), is(equalTo(true)));
+        assertThat(elasticAlarmIndexer.getDocumentIfContentChanged(onmsAlarm).isPresent(), is(equalTo(false)));
+
+        // Other fields are not
+        onmsAlarm.setLastEvent(new OnmsEvent());
+        assertThat(elasticAlarmIndexer.getDocumentIfContentChanged(onmsAlarm).isPresent(), is(equalTo(false)));
+    }
+
+    @Test
+    public void testPartitionRoutingAndOrdering() {
+        final ElasticAlarmIndexer partitionedIndexer = new ElasticAlarmIndexer(new MetricRegistry(),
+                mock(JestClient.class), mock(TemplateInitializer.class));
+        partitionedIndexer.setIndexWorkers(3);
+        partitionedIndexer.createPartitionWorkers();
+
+        final OnmsAlarm alarm1 = alarm(1);
+        final OnmsAlarm alarm4 = alarm(4);
+        final OnmsAlarm alarm2 = alarm(2);
+        for (int severity = 1; severity <= 3; severity++) {
+            alarm1.setSeverityId(severity);
+            partitionedIndexer.handleNewOrUpdatedAlarm(alarm1);
+            alarm4.setSeverityId(severity);
+            partitionedIndexer.handleNewOrUpdatedAlarm(alarm4);
+            alarm2.setSeverityId(severity);
+            partitionedIndexer.handleNewOrUpdatedAlarm(alarm2);
+            partitionedIndexer.flushDocumentsToIndexToTaskQueue();
+        }
+
+        // Alarms are routed by id, and all of the documents of an alarm land on the same worker
+        assertThat(queuedIds(partitionedIndexer, 0), is(equalTo(Collections.emptyList())));
+        assertThat(queuedIds(partitionedIndexer, 1), is(equalTo(Arrays.asList(1, 4, 1, 4, 1, 4))));
+        assertThat(queuedIds(partitionedIndexer, 2), is(equalTo(Arrays.asList(2, 2, 2))));
+
+        // The updates of an alarm are queued in the order they were received
+        assertThat(queuedSeverities(partitionedIndexer, 1, 1), is(equalTo(Arrays.asList(1, 2, 3))));
+        assertThat(queuedSeverities(partitionedIndexer, 1, 4), is(equalTo(Arrays.asList(1, 2, 3))));
+        assertThat(queuedSeverities(partitionedIndexer, 2, 2), is(equalTo(Arrays.asList(1, 2, 3))));
+    }
+
+    @Test
+    public void testWorkerGauges() throws InterruptedException {
+        final MetricRegistry metrics = new MetricRegistry();
+        final ElasticAlarmIndexer partitionedIndexer = new ElasticAlarmIndexer(metrics,
+                mock(JestClient.class), mock(TemplateInitializer.class));
+        partitionedIndexer.setIndexWorkers(2);
+        partitionedIndexer.createPartitionWorkers();
+
+        assertThat((Integer) metrics.getGauges().get("worker-0-task-queue-size").getValue(), is(equalTo(0)));
+        assertThat((Integer) metrics.getGauges().get("worker-1-task-queue-size").getValue(), is(equalTo(0)));
+        assertThat((Long) metrics.getGauges().get("worker-1-task-lag-ms").getValue(), is(equalTo(0L)));
+
+        partitionedIndexer.handleNewOrUpdatedAlarm(alarm(1));
+        partitionedIndexer.flushDocumentsToIndexToTaskQueue();
+        partitionedIndexer.handleNewOrUpdatedAlarm(alarm(3));
+        partitionedIndexer.flushDocumentsToIndexToTaskQueue();
+        Thread.sleep(20);
+
+        assertThat((Integer) metrics.getGauges().get("worker-0-task-queue-size").getValue(), is(equalTo(0)));
+        assertThat((Integer) metrics.getGauges().get("worker-1-task-queue-size").getValue(), is(equalTo(2)));
+        assertThat((Long) metrics.getGauges().get("worker-1-task-lag-ms").getValue() >= 20L, is(equalTo(true)));
+    }
+
+    private static OnmsAlarm alarm(int id) {
+        final OnmsAlarm alarm = new OnmsAlarm();
+        alarm.setId(id);
+        alarm.setReductionKey("alarm-" + id);
+        return alarm;
+    }
+
+    private static List<Integer> queuedIds(ElasticAlarmIndexer indexer, int worker) {
+        return indexer.getQueuedDocuments(worker).stream()
+                .flatMap(List::stream)
+                .map(AlarmDocumentDTO::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Integer> queuedSeverities(ElasticAlarmIndexer indexer, int worker, int alarmId) {
+        return indexer.getQueuedDocuments(worker).stream()
+                .flatMap(List::stream)
+                .filter(doc -> doc.getId() == alarmId)
+                .map(AlarmDocumentDTO::getSeverityId)
+                .collect(Collectors.toList());
+    }
+
     private void updateAndTestPositive(OnmsAlarm alarm, Runnable update) {
         update.run();
         // Since we updated, it should need to be indexed now
@@ -96,6 +96,14 @@ public interface BusinessServiceStateMachine {
      */
     void handleNewOrUpdatedAlarm(AlarmWrapper alarm);
 
+    /**
+     * Updates the states of the Business Services using the given alarms as a single batch.
+     *
+     * Every affected vertex is reduced at most once, regardless of the number of alarms
+     * in the batch which impact it.
+     */
+    void handleNewOrUpdatedAlarms(List<AlarmWrapper> alarms);
+
     /**
      * Updates the states of the Business Services using the given list of alarms.
      *
@@ -33,21 +33,25 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.imageio.ImageIO;
@@ -78,6 +82,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.math.IntMath;
 
 import edu.uci.ics.jung.algorithms.layout.KKLayout;
 import edu.uci.ics.jung.algorithms.layout.Layout;
@@ -92,7 +97,11 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
 
     private final List<BusinessServiceStateChangeHandler> m_handlers = Lists.newArrayList();
     private final ReadWriteLock m_rwLock = new ReentrantReadWriteLock();
-    private BusinessServiceGraph m_g = new BusinessServiceGraphImpl(Collections.emptyList());
+    private final Queue<AlarmWrapper> m_pendingAlarms = new ConcurrentLinkedQueue<>();
+    // The graph is only ever replaced, never structurally modified, and the statuses of its
+    // elements are volatile, so the operational status can be read without acquiring the lock
+    private volatile BusinessServiceGraph m_g = new BusinessServiceGraphImpl(Collections.emptyList());
+    private Map<GraphVertex, Integer> m_weightGcds = Collections.emptyMap();
 
     @Override
     public void setBusinessServices(List<BusinessService> businessServices) {
@@ -100,14 +109,16 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
         try {
             // Create a new graph
             BusinessServiceGraph g = new BusinessServiceGraphImpl(businessServices);
+            Map<GraphVertex, Integer> weightGcds = calculateWeightGcds(g);
 
             // Prime the graph with the state from the previous graph and
             // keep track of the new reductions keys
+            Map<GraphVertex, Status> primedStatuses = new LinkedHashMap<>();
             Set<String> reductionsKeysToLookup = Sets.newHashSet();
             for (String reductionKey : g.getReductionKeys()) {
                 GraphVertex reductionKeyVertex = m_g.getVertexByReductionKey(reductionKey);
                 if (reductionKeyVertex != null) {
-                    updateAndPropagateVertex(g, g.getVertexByReductionKey(reductionKey), reductionKeyVertex.getStatus());
+                    primedStatuses.put(g.getVertexByReductionKey(reductionKey), reductionKeyVertex.getStatus());
                 } else {
                     reductionsKeysToLookup.add(reductionKey);
                 }
@@ -122,10 +133,13 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
                 if (reductionsKeysToLookup.size() > 0) {
                     final Map<String, AlarmWrapper> lookup = m_alarmProvider.lookup(reductionsKeysToLookup);
                     for (Entry<String, AlarmWrapper> eachEntry : lookup.entrySet()) {
-                        updateAndPropagateVertex(g, g.getVertexByReductionKey(eachEntry.getKey()), eachEntry.getValue().getStatus());
+                        primedStatuses.put(g.getVertexByReductionKey(eachEntry.getKey()), eachEntry.getValue().getStatus());
                     }
                 }
             }
+            updateAndPropagateVertices(g, weightGcds, primedStatuses);
+
+            m_weightGcds = weightGcds;
             m_g = g;
         } finally {
             m_rwLock.writeLock().unlock();
@@ -134,10 +148,22 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
 
     @Override
     public void handleNewOrUpdatedAlarm(AlarmWrapper alarm) {
+        m_pendingAlarms.add(alarm);
         m_rwLock.writeLock().lock();
         try {
-            // Recursively propagate the status
-            updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(alarm.getReductionKey()), alarm.getStatus());
+            // Apply our alarm along with any other alarms that were queued while we were waiting for the lock
+            applyPendingAlarms();
+        } finally {
+            m_rwLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void handleNewOrUpdatedAlarms(List<AlarmWrapper> alarms) {
+        m_pendingAlarms.addAll(alarms);
+        m_rwLock.writeLock().lock();
+        try {
+            applyPendingAlarms();
         } finally {
             m_rwLock.writeLock().unlock();
         }
@@ -148,9 +174,13 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
         final Set<String> reductionKeysFromGivenAlarms = new HashSet<>(alarms.size());
         m_rwLock.writeLock().lock();
         try {
+            final Map<GraphVertex, Status> newStatuses = new LinkedHashMap<>();
             for (AlarmWrapper alarm : alarms) {
-                // Recursively propagate the status for all of the given alarms
-                updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(alarm.getReductionKey()), alarm.getStatus());
+                // Gather the status for all of the given alarms
+                final GraphVertex vertex = m_g.getVertexByReductionKey(alarm.getReductionKey());
+                if (vertex != null) {
+                    newStatuses.put(vertex, alarm.getStatus());
+                }
                 // Keep track of the reduction keys that have been processed
                 reductionKeysFromGivenAlarms.add(alarm.getReductionKey());
             }
@@ -158,14 +188,60 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
             for (String missingReductionKey : Sets.difference(m_g.getReductionKeys(), reductionKeysFromGivenAlarms)) {
                 // There is a vertex on the graph that corresponds to this reduction key
                 // but no alarm with this reduction key exists
-                updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(missingReductionKey), Status.INDETERMINATE);
+                newStatuses.put(m_g.getVertexByReductionKey(missingReductionKey), Status.INDETERMINATE);
             }
+
+            // Propagate all of the changes at once
+            updateAndPropagateVertices(m_g, m_weightGcds, newStatuses);
         } finally {
             m_rwLock.writeLock().unlock();
         }
     }
 
-    private void updateAndPropagateVertex(BusinessServiceGraph graph, GraphVertex vertex, Status newStatus) {
+    /**
+     * Applies all of the queued alarms as a single batch.
+     *
+     * Must be called while holding the write lock.
+     */
+    private void applyPendingAlarms() {
+        final Map<GraphVertex, Status> newStatuses = new LinkedHashMap<>();
+        AlarmWrapper alarm;
+        while ((alarm = m_pendingAlarms.poll()) != null) {
+            final GraphVertex vertex = m_g.getVertexByReductionKey(alarm.getReductionKey());
+            if (vertex != null) {
+                // The last update for a given reduction key wins
+                newStatuses.put(vertex, alarm.getStatus());
+            }
+        }
+        updateAndPropagateVertices(m_g, m_weightGcds, newStatuses);
+    }
+
+    /**
+     * Updates the status of the given vertices and propagates the changes up the graph.
+     *
+     * The affected parents are reduced level by level, starting from the deepest level,
+     * so that every vertex is reduced at most once, after all of its children were updated.
+     */
+    private void updateAndPropagateVertices(BusinessServiceGraph graph, Map<GraphVertex, Integer> weightGcds, Map<GraphVertex, Status> newStatuses) {
+        if (newStatuses.isEmpty()) {
+            // Nothing to do here
+            return;
+        }
+
+        final NavigableMap<Integer, Set<GraphVertex>> verticesToReduceByLevel = new TreeMap<>(Comparator.reverseOrder());
+        for (Entry<GraphVertex, Status> entry : newStatuses.entrySet()) {
+            updateVertex(graph, entry.getKey(), entry.getValue(), verticesToReduceByLevel);
+        }
+
+        Entry<Integer, Set<GraphVertex>> verticesAtLevel;
+        while ((verticesAtLevel = verticesToReduceByLevel.pollFirstEntry()) != null) {
+            for (GraphVertex vertex : verticesAtLevel.getValue()) {
+                updateVertex(graph, vertex, reduce(graph, weightGcds, vertex), verticesToReduceByLevel);
+            }
+        }
+    }
+
+    private void updateVertex(BusinessServiceGraph graph, GraphVertex vertex, Status newStatus, NavigableMap<Integer, Set<GraphVertex>> verticesToReduceByLevel) {
         if (vertex == null) {
             // Nothing to do here
             return;
@@ -186,7 +262,6 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
         onStatusUpdated(graph, vertex, previousStatus);
 
         // Update the edges with the mapped status
-        List<GraphEdge> updatedEges = Lists.newArrayList();
         for (GraphEdge edge : graph.getInEdges(vertex)) {
             Status mappedStatus = newStatus;
             if (newStatus.isGreaterThan(MIN_SEVERITY)) {
@@ -201,45 +276,66 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
                 continue;
             }
 
-            // Update the status and add it to the list of edges to propagate
+            // Update the status and schedule the parent for reduction
             edge.setStatus(mappedStatus);
-            updatedEges.add(edge);
-        }
-
-        // Propagate once all of the edges have been updated
-        for (GraphEdge edge : updatedEges) {
-            reduceUpdateAndPropagateVertex(graph, graph.getOpposite(vertex, edge));
+            final GraphVertex parent = graph.getOpposite(vertex, edge);
+            verticesToReduceByLevel.computeIfAbsent(parent.getLevel(), level -> new LinkedHashSet<>()).add(parent);
         }
     }
 
-    private void reduceUpdateAndPropagateVertex(BusinessServiceGraph graph, GraphVertex vertex) {
-        if (vertex == null) {
-            // Nothing to do here
-            return;
-        }
-
+    private static Status reduce(BusinessServiceGraph graph, Map<GraphVertex, Integer> weightGcds, GraphVertex vertex) {
         // Calculate the weighed statuses from the child edges
-        List<StatusWithIndex> statuses = weighEdges(graph.getOutEdges(vertex));
+        final Collection<GraphEdge> edges = graph.getOutEdges(vertex);
+        final Integer gcd = weightGcds.get(vertex);
+        List<StatusWithIndex> statuses = weighEdges(edges, gcd != null ? gcd : calculateWeightGcd(edges));
 
         // Reduce
         Optional<StatusWithIndices> reducedStatus = vertex.getReductionFunction().reduce(statuses);
-
-        Status newStatus;
         if (reducedStatus.isPresent()) {
-            newStatus = reducedStatus.get().getStatus();
+            return reducedStatus.get().getStatus();
         } else {
-            newStatus = MIN_SEVERITY;
+            return MIN_SEVERITY;
         }
+    }
 
-        // Update and propagate
-        updateAndPropagateVertex(graph, vertex, newStatus);
+    /**
+     * Pre-computes the greatest common divisor of the weights of the child edges
+     * for every vertex that has children.
+     */
+    private static Map<GraphVertex, Integer> calculateWeightGcds(BusinessServiceGraph graph) {
+        final Map<GraphVertex, Integer> weightGcds = new HashMap<>();
+        for (GraphVertex vertex : graph.getVertices()) {
+            final Collection<GraphEdge> edges = graph.getOutEdges(vertex);
+            if (!edges.isEmpty()) {
+                weightGcds.put(vertex, calculateWeightGcd(edges));
+            }
+        }
+        return weightGcds;
+    }
+
+    private static int calculateWeightGcd(Collection<GraphEdge> edges) {
+        return edges.stream()
+                .mapToInt(GraphEdge::getWeight)
+                .reduce(IntMath::gcd)
+                .orElse(1);
     }
 
     public static List<StatusWithIndex> weighEdges(Collection<GraphEdge> edges) {
-        return weighStatuses(edges.stream()
-                .collect(Collectors.toMap(Function.identity(), GraphEdge::getStatus,
-                        (u,v) -> { throw new IllegalStateException(String.format("Duplicate key %s", u)); },
-                        LinkedHashMap::new)));
+        return weighEdges(edges, calculateWeightGcd(edges));
+    }
+
+    private static List<StatusWithIndex> weighEdges(Collection<GraphEdge> edges, int gcd) {
+        // Multiply the statuses based on their relative weight
+        List<StatusWithIndex> statuses = Lists.newArrayList();
+        int k = 0;
+        for (GraphEdge edge : edges) {
+            int relativeWeight = Math.floorDiv(edge.getWeight(), gcd);
+            for (int i = 0; i < relativeWeight; i++) {
+                statuses.add(new StatusWithIndex(edge.getStatus(), k));
+            }
+            k++;
+        }
+        return statuses;
     }
 
     /**
@@ -252,10 +348,7 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
      */
     public static List<StatusWithIndex> weighStatuses(Map<GraphEdge, Status> edgesWithStatus) {
         // Find the greatest common divisor of all the weights
-        int gcd = edgesWithStatus.keySet().stream()
-                .map(GraphEdge::getWeight)
-                .reduce((a,b) -> BigInteger.valueOf(a).gcd(BigInteger.valueOf(b)).intValue())
-                .orElse(1);
+        int gcd = calculateWeightGcd(edgesWithStatus.keySet());
 
         // Multiply the statuses based on their relative weight
         List<StatusWithIndex> statuses = Lists.newArrayList();
@@ -297,58 +390,38 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
     @Override
     public Status getOperationalStatus(BusinessService businessService) {
         Objects.requireNonNull(businessService);
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByBusinessServiceId(businessService.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
+        GraphVertex vertex = getGraph().getVertexByBusinessServiceId(businessService.getId());
+        if (vertex != null) {
+            return vertex.getStatus();
         }
+        return null;
     }
 
     @Override
     public Status getOperationalStatus(IpService ipService) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByIpServiceId(ipService.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
+        GraphVertex vertex = getGraph().getVertexByIpServiceId(ipService.getId());
+        if (vertex != null) {
+            return vertex.getStatus();
         }
+        return null;
     }
 
     @Override
     public Status getOperationalStatus(String reductionKey) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByReductionKey(reductionKey);
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
+        GraphVertex vertex = getGraph().getVertexByReductionKey(reductionKey);
+        if (vertex != null) {
+            return vertex.getStatus();
         }
+        return null;
     }
 
     @Override
     public Status getOperationalStatus(Edge edge) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByEdgeId(edge.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
+        GraphVertex vertex = getGraph().getVertexByEdgeId(edge.getId());
+        if (vertex != null) {
+            return vertex.getStatus();
         }
+        return null;
     }
 
     public void setAlarmProvider(AlarmProvider alarmProvider) {
@@ -56,6 +56,7 @@ import org.opennms.netmgt.bsm.service.model.graph.GraphVertex;
 import org.opennms.netmgt.bsm.test.LoggingStateChangeHandler;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 public class DefaultBusinessServiceStateMachineTest {
@@ -156,6 +157,50 @@ public class DefaultBusinessServiceStateMachineTest {
         assertEquals(1, stateChangeHandler.getStateChanges().size());
     }
 
+    @Test
+    public void canReduceEachBusinessServiceOncePerBatch() {
+        // Create a hierarchy where b1 depends on b2, and both depend on a1 directly or indirectly
+        MockBusinessServiceHierarchy h = MockBusinessServiceHierarchy.builder()
+                .withBusinessService(1)
+                    .withName("b1")
+                    .withReductionKey(11, "a1")
+                    .withBusinessService(2)
+                        .withName("b2")
+                        .withReductionKey(21, "a2")
+                        .withReductionKey(22, "a3")
+                    .commit()
+                .commit()
+                .build();
+        BusinessService b1 = h.getBusinessServiceById(1);
+        BusinessService b2 = h.getBusinessServiceById(2);
+
+        // Setup the state machine
+        BusinessServiceStateMachine stateMachine = new DefaultBusinessServiceStateMachine();
+        LoggingStateChangeHandler stateChangeHandler = new LoggingStateChangeHandler();
+        stateMachine.addHandler(stateChangeHandler, Maps.newHashMap());
+        stateMachine.setBusinessServices(h.getBusinessServices());
+
+        // Send all of the alarms in a single batch
+        stateMachine.handleNewOrUpdatedAlarms(Lists.newArrayList(
+                new MockAlarmWrapper("a2", Status.MINOR),
+                new MockAlarmWrapper("a3", Status.MAJOR),
+                new MockAlarmWrapper("a1", Status.WARNING),
+                new MockAlarmWrapper("a1", Status.CRITICAL)));
+
+        // Verify the state
+        assertEquals(Status.CRITICAL, stateMachine.getOperationalStatus(b1));
+        assertEquals(Status.MAJOR, stateMachine.getOperationalStatus(b2));
+        assertEquals(Status.CRITICAL, stateMachine.getOperationalStatus("a1"));
+
+        // Every business service should only have been updated once
+        assertEquals(2, stateChangeHandler.getStateChanges().size());
+        assertEquals("b2", stateChangeHandler.getStateChanges().get(0).getBusinessService().getName());
+        assertEquals(Status.MAJOR, stateChangeHandler.getStateChanges().get(0).getNewSeverity());
+        assertEquals("b1", stateChangeHandler.getStateChanges().get(1).getBusinessService().getName());
+        assertEquals(Status.CRITICAL, stateChangeHandler.getStateChanges().get(1).getNewSeverity());
+        assertEquals(Status.NORMAL, stateChangeHandler.getStateChanges().get(1).getPrevSeverity());
+    }
+
     @Test
     public void canPerformRootCauseAndImpactAnalysis() {
         // Create a hierarchy using all of the available reduction functions
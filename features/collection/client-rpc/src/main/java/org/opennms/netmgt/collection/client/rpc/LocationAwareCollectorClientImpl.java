@@ -35,9 +35,11 @@ import org.opennms.core.rpc.api.RpcClientFactory;
 import org.opennms.core.rpc.utils.mate.EntityScopeProvider;
 import org.opennms.core.rpc.utils.mate.Interpolator;
 import org.opennms.core.rpc.utils.RpcTargetHelper;
+import org.opennms.core.rpc.xml.batch.BatchingRpcClient;
 import org.opennms.netmgt.collection.api.CollectorRequestBuilder;
 import org.opennms.netmgt.collection.api.LocationAwareCollectorClient;
 import org.opennms.netmgt.collection.api.ServiceCollectorRegistry;
+import org.opennms.netmgt.dao.api.MonitoringLocationUtils;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -66,7 +68,9 @@ public class LocationAwareCollectorClientImpl implements LocationAwareCollectorC
 
     @Override
     public void afterPropertiesSet() {
-        delegate = rpcClientFactory.getClient(rpcModule);
+        // Requests for the default location are executed locally, and may not be marshalable
+        delegate = BatchingRpcClient.getClient(rpcClientFactory, rpcModule,
+                request -> !MonitoringLocationUtils.isDefaultLocationName(request.getLocation()));
     }
 
     protected RpcClient<CollectorRequestDTO, CollectorResponseDTO> getDelegate() {
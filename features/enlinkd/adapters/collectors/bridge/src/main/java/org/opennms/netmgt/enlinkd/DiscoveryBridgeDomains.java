@@ -165,76 +165,86 @@ public class DiscoveryBridgeDomains extends Discovery {
             }
         }
 
-        List<Callable<String>> taskList = new ArrayList<Callable<String>>();
-        for (Integer nodeid : nodeondomainbft.keySet()) {
-            LOG.debug("run: nodes are on same domain {}",nodeondomainbft.get(nodeid).keySet());
-            try {
-                BroadcastDomain domain = find(nodeondomainbft.get(nodeid).keySet(),
-                                              nodeMacs.get(nodeid));
-                DiscoveryBridgeTopology nodebridgetopology = new DiscoveryBridgeTopology(domain);
+        // the simple connections inside a domain are searched on a separate pool,
+        // the domain tasks are waiting for them
+        final ExecutorService bridgeExecutorService = m_maxthreads > 1 ? Executors.newFixedThreadPool(m_maxthreads) : null;
+        try {
+            List<Callable<String>> taskList = new ArrayList<Callable<String>>();
+            for (Integer nodeid : nodeondomainbft.keySet()) {
+                LOG.debug("run: nodes are on same domain {}",nodeondomainbft.get(nodeid).keySet());
+                try {
+                    BroadcastDomain domain = find(nodeondomainbft.get(nodeid).keySet(),
+                                                  nodeMacs.get(nodeid));
+                    DiscoveryBridgeTopology nodebridgetopology = new DiscoveryBridgeTopology(domain);
                 
-                synchronized (domain) {
-                    for (Integer bridgeId : nodeondomainbft.get(nodeid).keySet()) {
-                        nodebridgetopology.addUpdatedBFT(bridgeId,
-                                                         nodeondomainbft.get(nodeid).get(bridgeId));
-                        m_bridgeTopologyService.updateBridgeOnDomain(domain,bridgeId);
+                    synchronized (domain) {
+                        for (Integer bridgeId : nodeondomainbft.get(nodeid).keySet()) {
+                            nodebridgetopology.addUpdatedBFT(bridgeId,
+                                                             nodeondomainbft.get(nodeid).get(bridgeId));
+                            m_bridgeTopologyService.updateBridgeOnDomain(domain,bridgeId);
+                        }
                     }
-                }
                                 
-                Callable<String> task = () -> {
-                    synchronized (domain) {
+                    Callable<String> task = () -> {
+                        synchronized (domain) {
                         
-                        Date now = new Date();
-                        LOG.debug("run: calculate start"); 
-                        nodebridgetopology.calculate();
-                        LOG.debug("run: calculate end"); 
+                            Date now = new Date();
+                            LOG.debug("run: calculate start"); 
+                            nodebridgetopology.calculate(bridgeExecutorService);
+                            LOG.debug("run: calculate end"); 
                     
-                        LOG.debug("run: save start");
-                        try {
-                            m_bridgeTopologyService.store(domain, now);
-                        } catch (BridgeTopologyException e) {
-                            LOG.error("run: saving topology failed: {}. {}", 
-                                      e.getMessage(),
-                                      e.printTopology());
-                        } catch (ConcurrentModificationException e) {
-                            LOG.error("run: bridge:[{}], saving topology failed: {}. {}",
-                                      nodebridgetopology,
-                                      e.getMessage(),
-                                      domain.printTopology());
+                            LOG.debug("run: save start");
+                            try {
+                                m_bridgeTopologyService.store(domain, now);
+                            } catch (BridgeTopologyException e) {
+                                LOG.error("run: saving topology failed: {}. {}", 
+                                          e.getMessage(),
+                                          e.printTopology());
+                            } catch (ConcurrentModificationException e) {
+                                LOG.error("run: bridge:[{}], saving topology failed: {}. {}",
+                                          nodebridgetopology,
+                                          e.getMessage(),
+                                          domain.printTopology());
+                            }
+                            LOG.debug("run: save end");
                         }
-                        LOG.debug("run: save end");
-                    }
-                    return "executed Task: " + nodebridgetopology.getInfo();
-                };
-                taskList.add(task);
-                LOG.info("run: added Task {}", nodebridgetopology.getInfo());
-            } catch (BridgeTopologyException e) {
-                LOG.error("run: node: [{}], getting broadcast domain. Failed {}",
-                          nodeid, e.getMessage());
-                continue;
+                        return "executed Task: " + nodebridgetopology.getInfo();
+                    };
+                    taskList.add(task);
+                    LOG.info("run: added Task {}", nodebridgetopology.getInfo());
+                } catch (BridgeTopologyException e) {
+                    LOG.error("run: node: [{}], getting broadcast domain. Failed {}",
+                              nodeid, e.getMessage());
+                    continue;
+                }
             }
-        }
 
-        int n = taskList.size();
-        if (n > m_maxthreads) {
-            n = m_maxthreads;
-        }
+            int n = taskList.size();
+            if (n > m_maxthreads) {
+                n = m_maxthreads;
+            }
 
-        if (n > 0) {
-            LOG.debug("run: creating executorService with {} Threads", n);
-            ExecutorService executorService = Executors.newFixedThreadPool(n);
-            LOG.debug("run: created executorService with {} Threads", n);
+            if (n > 0) {
+                LOG.debug("run: creating executorService with {} Threads", n);
+                ExecutorService executorService = Executors.newFixedThreadPool(n);
+                LOG.debug("run: created executorService with {} Threads", n);
 
-            try {
-                for (Future<String> future : executorService.invokeAll(taskList)) {
-                    LOG.info("run: {}", future.get());
+                try {
+                    for (Future<String> future : executorService.invokeAll(taskList)) {
+                        LOG.info("run: {}", future.get());
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    LOG.error("run: executing task {}", e.getMessage(), e);
+                } finally {
+                    executorService.shutdown();
                 }
-            } catch (InterruptedException | ExecutionException e) {
-                LOG.error("run: executing task {}", e.getMessage(), e);
+            } else {
+                LOG.info("run: no updates on broadcast domains");
+            }
+        } finally {
+            if (bridgeExecutorService != null) {
+                bridgeExecutorService.shutdown();
             }
-            executorService.shutdown();
-        } else {
-            LOG.info("run: no updates on broadcast domains");
         }
         LOG.info("run: calculate topology on broadcast domains. End");
 
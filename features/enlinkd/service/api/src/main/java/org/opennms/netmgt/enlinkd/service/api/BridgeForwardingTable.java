@@ -102,9 +102,11 @@ public class BridgeForwardingTable implements Topology {
                 
             BridgePortWithMacs bpwm = bridgeFt.getBridgePortWithMacs(bridgeport);
             if (bpwm == null ) {
-                bridgeFt.getPorttomac().add(BridgePortWithMacs.create(bridgeport,new HashSet<String>()));
+                bpwm = BridgePortWithMacs.create(bridgeport,new HashSet<String>());
+                bridgeFt.getPorttomac().add(bpwm);
+                bridgeFt.m_portindex.put(bridgeport, bpwm);
             }
-            bridgeFt.getBridgePortWithMacs(bridgeport).getMacs().add(link.getMacAddress());
+            bpwm.getMacs().add(link.getMacAddress());
 
             if (bridgeFt.getMactoport().containsKey(link.getMacAddress())) {
                 bridgeFt.getDuplicated().put(link.getMacAddress(), new HashSet<BridgePort>());
@@ -153,6 +155,8 @@ public class BridgeForwardingTable implements Topology {
     private Map<String, BridgePort> m_mactoport = new HashMap<String, BridgePort>();
     private Map<String, Set<BridgePort>> m_duplicated = new HashMap<String, Set<BridgePort>>();
     private Set<BridgePortWithMacs> m_porttomac = new HashSet<BridgePortWithMacs>();
+    // index on m_porttomac, avoids scanning all the ports for every mac
+    private final Map<BridgePort, BridgePortWithMacs> m_portindex = new HashMap<BridgePort, BridgePortWithMacs>();
 
     private BridgeForwardingTable(Bridge bridge, Set<BridgeForwardingTableEntry> entries) {
         m_bridge = bridge;
@@ -164,6 +168,10 @@ public class BridgeForwardingTable implements Topology {
     }
 
     public BridgePortWithMacs getBridgePortWithMacs(BridgePort port) {
+        BridgePortWithMacs indexed = m_portindex.get(port);
+        if (indexed != null) {
+            return indexed;
+        }
         for (BridgePortWithMacs bpmx: m_porttomac) {
             if (bpmx.getPort().equals(port)) {
                 return bpmx;
@@ -109,7 +109,8 @@ public class BridgeSimpleConnection implements Topology {
                     + yBridge.getNodeId() + "]", simple.getSecondPort());
         }
 
-        Set<String> macsOnSegment = xBridge.getBridgePortWithMacs(simple.getFirstPort()).getMacs();
+        // work on a copy: the forwarding table may be read concurrently by other simple connections
+        Set<String> macsOnSegment = new HashSet<String>(xBridge.getBridgePortWithMacs(simple.getFirstPort()).getMacs());
         macsOnSegment.retainAll(yBridge.getBridgePortWithMacs(simple.getSecondPort()).getMacs());
 
         return macsOnSegment;
@@ -197,7 +198,7 @@ public class BridgeSimpleConnection implements Topology {
         
         
         Set<String> commonlearnedmacs = new HashSet<String>(m_xBridge.getMactoport().keySet()); 
-        commonlearnedmacs.retainAll(new HashSet<String>(m_yBridge.getMactoport().keySet()));
+        commonlearnedmacs.retainAll(m_yBridge.getMactoport().keySet());
         if (LOG.isDebugEnabled()) {
             LOG.debug("bridge: [{}] <-> [{}] common (learned mac): {}",
                   m_yBridge.getNodeId(),
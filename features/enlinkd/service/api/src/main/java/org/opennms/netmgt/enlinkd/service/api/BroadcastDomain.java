@@ -53,14 +53,18 @@ public class BroadcastDomain implements Topology {
     }
 
     public static boolean checkMacSets(Set<String> setA, Set<String> setB) {
-        Set<String>retainedSet = new HashSet<String>(setB);
-        retainedSet.retainAll(setA);
         // should contain at list 20 or 50% of the all size
-        if (retainedSet.size() > DOMAIN_MATCH_MIN_SIZE
-            || retainedSet.size() > setA.size() * DOMAIN_MATCH_MIN_RATIO
-            || retainedSet.size() > setB.size() * DOMAIN_MATCH_MIN_RATIO
-                ) {
-            return true;
+        // count the common macs walking the smaller set, stop as soon as the threshold is exceeded
+        final double threshold = Math.min(DOMAIN_MATCH_MIN_SIZE,
+                                          Math.min(setA.size() * DOMAIN_MATCH_MIN_RATIO,
+                                                   setB.size() * DOMAIN_MATCH_MIN_RATIO));
+        final Set<String> smaller = setA.size() <= setB.size() ? setA : setB;
+        final Set<String> larger = smaller == setA ? setB : setA;
+        int retained = 0;
+        for (String mac : smaller) {
+            if (larger.contains(mac) && ++retained > threshold) {
+                return true;
+            }
         }
         return false;
     }
@@ -32,6 +32,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -180,6 +183,15 @@ public class DiscoveryBridgeTopology {
     }
 
     public  void calculate() {
+        calculate(null);
+    }
+
+    /**
+     * Calculates the topology. If an executor is given, the simple connections between
+     * the root bridge and each updated bridge, which do not depend on each other,
+     * are searched concurrently before they are merged into the domain one by one.
+     */
+    public  void calculate(ExecutorService executor) {
         Assert.notNull(m_bridgeFtMapUpdate);
         if (LOG.isDebugEnabled()) {
             LOG.debug("calculate: domain\n{}", 
@@ -251,7 +263,7 @@ public class DiscoveryBridgeTopology {
                              bridge.getNodeId(), e.getMessage(),
                              e.printTopology());
                     m_domain.clearTopology();
-                    calculate();
+                    calculate(executor);
                 }
             }
         }
@@ -288,6 +300,21 @@ public class DiscoveryBridgeTopology {
             }
         }
         
+        Map<Integer, Future<BridgeSimpleConnection>> upsimpleconns = new HashMap<Integer, Future<BridgeSimpleConnection>>();
+        if (executor != null && rootBft != null) {
+            final BridgeForwardingTable rootFT = rootBft;
+            for (Integer bridgeid: m_bridgeFtMapUpdate.keySet()) {
+                if (m_parsed.contains(bridgeid) || m_failed.contains(bridgeid)) {
+                    continue;
+                }
+                final BridgeForwardingTable bridgeFT = m_bridgeFtMapUpdate.get(bridgeid);
+                if (bridgeFT.getPorttomac().size() == 1) {
+                    continue;
+                }
+                upsimpleconns.put(bridgeid, executor.submit(() -> BridgeSimpleConnection.createAndRun(rootFT, bridgeFT)));
+            }
+        }
+
         Set<Integer> postprocessing = new HashSet<Integer>();
         for (Integer bridgeid: m_bridgeFtMapUpdate.keySet()) {
             if (m_parsed.contains(bridgeid) || m_failed.contains(bridgeid)) {
@@ -306,7 +333,9 @@ public class DiscoveryBridgeTopology {
                     
 
             try {
-                  upsimpleconn= BridgeSimpleConnection.createAndRun(rootBft, bridgeFT);
+                  upsimpleconn= upsimpleconns.containsKey(bridgeid)
+                      ? getSimpleConnection(upsimpleconns.get(bridgeid))
+                      : BridgeSimpleConnection.createAndRun(rootBft, bridgeFT);
                   if (LOG.isDebugEnabled()) {
                            LOG.debug("calculate: level: 1, bridge:[{}] -> {}", 
                                     bridgeFT.getNodeId(),
@@ -425,6 +454,20 @@ public class DiscoveryBridgeTopology {
         }
     }
     
+    private static BridgeSimpleConnection getSimpleConnection(Future<BridgeSimpleConnection> future) throws BridgeTopologyException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BridgeTopologyException) {
+                throw (BridgeTopologyException) e.getCause();
+            }
+            throw new BridgeTopologyException("calculate: simple connection failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BridgeTopologyException("calculate: interrupted");
+        }
+    }
+
     private void postprocess(BridgeForwardingTable postBridgeFT, BridgeForwardingTable rootBridgeFT,Map<Integer,BridgeForwardingTable> bridgeFtMapCalcul, Set<Integer> parsed) throws BridgeTopologyException {
         Integer postbridgeid = postBridgeFT.getBridge().getNodeId();
         for (Integer parsedbridgeid : parsed) {
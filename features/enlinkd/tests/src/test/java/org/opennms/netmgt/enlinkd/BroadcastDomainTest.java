@@ -37,6 +37,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -1209,6 +1211,40 @@ public class BroadcastDomainTest extends EnLinkdTestHelper {
     }
 
 
+    @Test 
+    public void testDEFGHILParallel() throws BridgeTopologyException {
+        DEFGHILTopology topology = new DEFGHILTopology();
+
+        BroadcastDomain domain = new BroadcastDomain();
+        Bridge.create(domain,topology.nodeDId);
+        Bridge.create(domain,topology.nodeEId);
+        Bridge.create(domain,topology.nodeFId);
+        Bridge.create(domain,topology.nodeGId);
+        Bridge.create(domain,topology.nodeHId);
+        Bridge.create(domain,topology.nodeIId);
+        Bridge.create(domain,topology.nodeLId);
+        setBridgeElements(domain,topology.elemlist);
+
+        DiscoveryBridgeTopology ndbt= new DiscoveryBridgeTopology(domain);
+        
+        ndbt.addUpdatedBFT((topology.nodeDId),topology.bftD);
+        ndbt.addUpdatedBFT((topology.nodeEId),topology.bftE);
+        ndbt.addUpdatedBFT((topology.nodeFId),topology.bftF);
+        ndbt.addUpdatedBFT((topology.nodeGId),topology.bftG);
+        ndbt.addUpdatedBFT((topology.nodeHId),topology.bftH);
+        ndbt.addUpdatedBFT((topology.nodeIId),topology.bftI);
+        ndbt.addUpdatedBFT((topology.nodeLId),topology.bftL);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ndbt.calculate(executor);
+        } finally {
+            executor.shutdown();
+        }
+        
+        topology.check(ndbt.getDomain());
+    }
+
+
     @Test 
     public void testHierarchySetUp() throws BridgeTopologyException {
         DEFGHILTopology topology = new DEFGHILTopology();
@@ -31,9 +31,15 @@ package org.opennms.netmgt.trapd;
 import static org.opennms.core.utils.InetAddressUtils.str;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.config.api.EventConfDao;
@@ -46,22 +52,59 @@ import org.opennms.netmgt.snmp.SnmpObjId;
 import org.opennms.netmgt.snmp.SnmpResult;
 import org.opennms.netmgt.snmp.SnmpValue;
 import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Snmp;
+import org.opennms.netmgt.xml.eventconf.EventMatchers;
+import org.opennms.netmgt.xml.eventconf.Events;
+import org.opennms.netmgt.xml.eventconf.Field;
+import org.opennms.netmgt.xml.eventconf.LogDestType;
+import org.opennms.netmgt.xml.eventconf.Logmsg;
+import org.opennms.netmgt.xml.eventconf.Mask;
+import org.opennms.netmgt.xml.eventconf.Maskelement;
+import org.opennms.netmgt.xml.eventconf.Varbind;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 class EventCreator {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(EventCreator.class);
 
+    private static final String DEFAULT_TRAP_UEI = "uei.opennms.org/default/trap";
+
+    /**
+     * How long the node and event definition resolved for a trap are reused.
+     * This bounds how long it takes for node and eventconf changes to be picked up.
+     * A value of 0 disables the cache.
+     */
+    static final long RESOLUTION_CACHE_TTL_MS = Long.getLong("org.opennms.netmgt.trapd.resolutionCacheTtlMs", TimeUnit.MINUTES.toMillis(1));
+
+    static final long RESOLUTION_CACHE_SIZE = Long.getLong("org.opennms.netmgt.trapd.resolutionCacheSize", 10000);
+
     private final InterfaceToNodeCache cache;
     private final EventConfDao eventConfDao;
+    private final Cache<ResolutionKey, Resolution> resolutions;
+
+    private volatile MatchFields matchFields;
 
     public EventCreator(InterfaceToNodeCache cache, EventConfDao eventConfDao) {
+        this(cache, eventConfDao, RESOLUTION_CACHE_TTL_MS, RESOLUTION_CACHE_SIZE);
+    }
+
+    public EventCreator(InterfaceToNodeCache cache, EventConfDao eventConfDao, long cacheTtlMs, long cacheSize) {
         this.cache = Objects.requireNonNull(cache);
         this.eventConfDao = Objects.requireNonNull(eventConfDao);
+        this.resolutions = cacheTtlMs > 0 && cacheSize > 0
+                ? CacheBuilder.newBuilder().expireAfterWrite(cacheTtlMs, TimeUnit.MILLISECONDS).maximumSize(cacheSize).build()
+                : null;
     }
 
     public Event createEventFrom(final TrapDTO trapDTO, final String systemId, final String location, final InetAddress trapAddress) {
+        return createTrapEventFrom(trapDTO, systemId, location, trapAddress).getEvent();
+    }
+
+    public TrapEvent createTrapEventFrom(final TrapDTO trapDTO, final String systemId, final String location, final InetAddress trapAddress) {
         LOG.debug("{} trap - trapInterface: {}", trapDTO.getVersion(), trapDTO.getAgentAddress());
 
         // Set event data
@@ -94,10 +137,6 @@ class EventCreator {
             }
         }
 
-        // Resolve Node id and set, if known by OpenNMS
-        resolveNodeId(location, trapAddress)
-                .ifPresent(eventBuilder::setNodeid);
-
         // If there was no systemId in the trap message, assume that
         // it was generated by this system. Eventd will fill in the
         // systemId of the local system if it remains null here.
@@ -105,15 +144,61 @@ class EventCreator {
             eventBuilder.setDistPoller(systemId);
         }
 
-        // Get event template and set uei, if unknown
         final Event event = eventBuilder.getEvent();
-        final org.opennms.netmgt.xml.eventconf.Event econf = eventConfDao.findByEvent(event);
+        final Resolution resolution = resolve(event, location, trapAddress);
+
+        // Set node id, if known by OpenNMS
+        if (resolution.nodeId != null) {
+            event.setNodeid(resolution.nodeId.longValue());
+        }
+        event.setUei(resolution.uei);
+        return new TrapEvent(event, resolution.discard);
+    }
+
+    /**
+     * Resolves the node and the event definition for the given event.
+     *
+     * Traps that agree on everything the event definitions can match on resolve the same way,
+     * so the result is cached by those fields: the trap's source and identity, together with the
+     * values of the varbinds that are referenced by any of the masks.
+     */
+    private Resolution resolve(Event event, String location, InetAddress trapAddress) {
+        if (resolutions == null) {
+            return doResolve(event, location, trapAddress);
+        }
+        final ResolutionKey key = new ResolutionKey(location, trapAddress, event, getMatchFields().getValues(event));
+        try {
+            return resolutions.get(key, () -> doResolve(event, location, trapAddress));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private Resolution doResolve(Event event, String location, InetAddress trapAddress) {
+        // Resolve Node id and set, if known by OpenNMS
+        final Integer nodeId = resolveNodeId(location, trapAddress).orElse(null);
+        if (nodeId != null) {
+            event.setNodeid(nodeId.longValue());
+        }
+
+        // Get event template and set uei, if unknown
+        org.opennms.netmgt.xml.eventconf.Event econf = eventConfDao.findByEvent(event);
         if (econf == null || econf.getUei() == null) {
-            event.setUei("uei.opennms.org/default/trap");
+            event.setUei(DEFAULT_TRAP_UEI);
+            // Unmatched traps are handled by the definition of the default trap UEI
+            econf = eventConfDao.findByUei(DEFAULT_TRAP_UEI);
         } else {
             event.setUei(econf.getUei());
         }
-        return event;
+        return new Resolution(nodeId, event.getUei(), shouldDiscard(econf));
+    }
+
+    private static boolean shouldDiscard(org.opennms.netmgt.xml.eventconf.Event econf) {
+        if (econf != null) {
+            final Logmsg logmsg = econf.getLogmsg();
+            return logmsg != null && LogDestType.DISCARDTRAPS.equals(logmsg.getDest());
+        }
+        return false;
     }
 
     private Optional<Integer> resolveNodeId(String location, InetAddress trapAddress) {
@@ -124,4 +209,141 @@ class EventCreator {
         }
         return cache.getFirstNodeId(location, trapAddress);
     }
+
+    private MatchFields getMatchFields() {
+        final Events rootEvents = eventConfDao.getRootEvents();
+        MatchFields current = matchFields;
+        if (current == null || current.rootEvents != rootEvents) {
+            // The event configuration was (re)loaded, drop everything we resolved against the old one
+            current = new MatchFields(rootEvents);
+            matchFields = current;
+            resolutions.invalidateAll();
+        }
+        return current;
+    }
+
+    /**
+     * A trap converted to an event.
+     */
+    static class TrapEvent {
+        private final Event event;
+        private final boolean discard;
+
+        private TrapEvent(Event event, boolean discard) {
+            this.event = event;
+            this.discard = discard;
+        }
+
+        public Event getEvent() {
+            return event;
+        }
+
+        /**
+         * @return true if the matching event definition asks for the trap to be discarded
+         */
+        public boolean shouldDiscard() {
+            return discard;
+        }
+    }
+
+    private static class Resolution {
+        private final Integer nodeId;
+        private final String uei;
+        private final boolean discard;
+
+        private Resolution(Integer nodeId, String uei, boolean discard) {
+            this.nodeId = nodeId;
+            this.uei = uei;
+            this.discard = discard;
+        }
+    }
+
+    /**
+     * The varbinds referenced by the masks of the loaded event definitions.
+     */
+    private static class MatchFields {
+        private final Events rootEvents;
+        private final List<Field> fields = new ArrayList<>();
+
+        private MatchFields(Events rootEvents) {
+            this.rootEvents = rootEvents;
+            if (rootEvents == null) {
+                return;
+            }
+            final Set<Integer> vbnumbers = new LinkedHashSet<>();
+            final Set<String> parmElements = new LinkedHashSet<>();
+            rootEvents.forEachEvent(null, (accum, econf) -> {
+                final Mask mask = econf.getMask();
+                if (mask != null) {
+                    for (Varbind varbind : mask.getVarbinds()) {
+                        if (varbind.getVbnumber() != null && varbind.getVbnumber() > 0) {
+                            vbnumbers.add(varbind.getVbnumber());
+                        }
+                    }
+                    for (Maskelement element : mask.getMaskelements()) {
+                        if (element.getMename() != null && element.getMename().startsWith("parm[")) {
+                            parmElements.add(element.getMename());
+                        }
+                    }
+                }
+                return accum;
+            });
+            vbnumbers.forEach(vbnumber -> fields.add(EventMatchers.varbind(vbnumber)));
+            parmElements.forEach(name -> fields.add(EventMatchers.field(name)));
+        }
+
+        private List<String> getValues(Event event) {
+            final List<String> values = new ArrayList<>(fields.size());
+            for (Field field : fields) {
+                values.add(field.get(event));
+            }
+            return values;
+        }
+    }
+
+    private static class ResolutionKey {
+        private final String location;
+        private final InetAddress trapAddress;
+        private final String host;
+        private final String community;
+        private final String enterpriseId;
+        private final Integer generic;
+        private final Integer specific;
+        private final String trapOID;
+        private final List<String> varbindValues;
+
+        private ResolutionKey(String location, InetAddress trapAddress, Event event, List<String> varbindValues) {
+            this.location = location;
+            this.trapAddress = trapAddress;
+            this.host = event.getHost();
+            final Snmp snmp = event.getSnmp();
+            this.community = snmp != null ? snmp.getCommunity() : null;
+            this.enterpriseId = snmp != null ? snmp.getId() : null;
+            this.generic = snmp != null && snmp.hasGeneric() ? snmp.getGeneric() : null;
+            this.specific = snmp != null && snmp.hasSpecific() ? snmp.getSpecific() : null;
+            this.trapOID = snmp != null ? snmp.getTrapOID() : null;
+            this.varbindValues = varbindValues;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final ResolutionKey that = (ResolutionKey) o;
+            return Objects.equals(location, that.location)
+                    && Objects.equals(trapAddress, that.trapAddress)
+                    && Objects.equals(host, that.host)
+                    && Objects.equals(community, that.community)
+                    && Objects.equals(enterpriseId, that.enterpriseId)
+                    && Objects.equals(generic, that.generic)
+                    && Objects.equals(specific, that.specific)
+                    && Objects.equals(trapOID, that.trapOID)
+                    && Objects.equals(varbindValues, that.varbindValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(location, trapAddress, host, community, enterpriseId, generic, specific, trapOID, varbindValues);
+        }
+    }
 }
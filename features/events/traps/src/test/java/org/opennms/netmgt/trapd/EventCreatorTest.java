@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.trapd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.config.api.EventConfDao;
+import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
+import org.opennms.netmgt.snmp.snmp4j.Snmp4JTrapNotifier;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Parm;
+import org.opennms.netmgt.xml.eventconf.Events;
+import org.opennms.netmgt.xml.eventconf.LogDestType;
+import org.opennms.netmgt.xml.eventconf.Logmsg;
+import org.opennms.netmgt.xml.eventconf.Mask;
+import org.opennms.netmgt.xml.eventconf.Maskelement;
+import org.snmp4j.PDU;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.TimeTicks;
+import org.snmp4j.smi.VariableBinding;
+
+public class EventCreatorTest {
+
+    private static final String TRAP_OID = ".1.3.6.1.4.1.5813.1.99";
+
+    private static final String STATUS_OID = ".1.3.6.1.4.1.5813.20.99";
+
+    private InterfaceToNodeCache interfaceToNodeCache;
+
+    private EventConfDao eventConfDao;
+
+    private org.opennms.netmgt.xml.eventconf.Event statusDown;
+
+    private org.opennms.netmgt.xml.eventconf.Event statusOther;
+
+    @Before
+    public void setUp() {
+        interfaceToNodeCache = mock(InterfaceToNodeCache.class);
+        when(interfaceToNodeCache.getFirstNodeId(anyString(), any())).thenReturn(Optional.of(42));
+
+        // One of the definitions depends on the value of a varbind
+        statusDown = new org.opennms.netmgt.xml.eventconf.Event();
+        statusDown.setUei("uei.opennms.org/test/statusDown");
+        final Maskelement statusElement = new Maskelement();
+        statusElement.setMename("parm[" + STATUS_OID + "]");
+        statusElement.setMevalues(Collections.singletonList("down"));
+        final Mask mask = new Mask();
+        mask.addMaskelement(statusElement);
+        statusDown.setMask(mask);
+
+        statusOther = new org.opennms.netmgt.xml.eventconf.Event();
+        statusOther.setUei("uei.opennms.org/test/statusOther");
+        final Logmsg logmsg = new Logmsg();
+        logmsg.setDest(LogDestType.DISCARDTRAPS);
+        statusOther.setLogmsg(logmsg);
+
+        final Events events = new Events();
+        events.addEvent(statusDown);
+        events.addEvent(statusOther);
+
+        eventConfDao = mock(EventConfDao.class);
+        when(eventConfDao.getRootEvents()).thenReturn(events);
+        when(eventConfDao.findByEvent(any(Event.class))).thenAnswer(invocation -> {
+            final Event event = invocation.getArgument(0);
+            if (event.getUei() != null) {
+                return statusDown.getUei().equals(event.getUei()) ? statusDown : statusOther;
+            }
+            final Parm status = event.getParm(STATUS_OID);
+            if (status != null && "unmatched".equals(status.getValue().getContent())) {
+                return null;
+            }
+            return status != null && "down".equals(status.getValue().getContent()) ? statusDown : statusOther;
+        });
+    }
+
+    @Test
+    public void canReuseResolvedTraps() throws Exception {
+        final EventCreator eventCreator = new EventCreator(interfaceToNodeCache, eventConfDao, 60000, 100);
+
+        for (int i = 0; i < 10; i++) {
+            final EventCreator.TrapEvent trapEvent = eventCreator.createTrapEventFrom(trap("down"), "system", "Default", InetAddressUtils.ONE_TWENTY_SEVEN);
+            assertEquals("uei.opennms.org/test/statusDown", trapEvent.getEvent().getUei());
+            assertEquals(Long.valueOf(42), trapEvent.getEvent().getNodeid());
+            assertFalse(trapEvent.shouldDiscard());
+        }
+
+        // The node and the event definition were only looked up for the first trap
+        verify(interfaceToNodeCache, times(1)).getFirstNodeId(anyString(), any());
+        verify(eventConfDao, times(1)).findByEvent(any(Event.class));
+    }
+
+    @Test
+    public void canDiscardUnmatchedTrapsByDefaultDefinition() throws Exception {
+        final org.opennms.netmgt.xml.eventconf.Event defaultTrap = new org.opennms.netmgt.xml.eventconf.Event();
+        defaultTrap.setUei("uei.opennms.org/default/trap");
+        final Logmsg logmsg = new Logmsg();
+        logmsg.setDest(LogDestType.DISCARDTRAPS);
+        defaultTrap.setLogmsg(logmsg);
+        when(eventConfDao.findByUei("uei.opennms.org/default/trap")).thenReturn(defaultTrap);
+
+        final EventCreator eventCreator = new EventCreator(interfaceToNodeCache, eventConfDao, 60000, 100);
+        final EventCreator.TrapEvent trapEvent = eventCreator.createTrapEventFrom(trap("unmatched"), "system", "Default", InetAddressUtils.ONE_TWENTY_SEVEN);
+
+        assertEquals("uei.opennms.org/default/trap", trapEvent.getEvent().getUei());
+        assertTrue(trapEvent.shouldDiscard());
+        verify(eventConfDao, times(1)).findByEvent(any(Event.class));
+    }
+
+    @Test
+    public void canDistinguishTrapsByReferencedVarbinds() throws Exception {
+        final EventCreator eventCreator = new EventCreator(interfaceToNodeCache, eventConfDao, 60000, 100);
+
+        final EventCreator.TrapEvent down = eventCreator.createTrapEventFrom(trap("down"), "system", "Default", InetAddressUtils.ONE_TWENTY_SEVEN);
+        final EventCreator.TrapEvent up = eventCreator.createTrapEventFrom(trap("up"), "system", "Default", InetAddressUtils.ONE_TWENTY_SEVEN);
+
+        assertEquals("uei.opennms.org/test/statusDown", down.getEvent().getUei());
+        assertFalse(down.shouldDiscard());
+        assertEquals("uei.opennms.org/test/statusOther", up.getEvent().getUei());
+        assertTrue(up.shouldDiscard());
+    }
+
+    @Test
+    public void canResolveWithoutCache() throws Exception {
+        final EventCreator eventCreator = new EventCreator(interfaceToNodeCache, eventConfDao, 0, 0);
+
+        for (int i = 0; i < 3; i++) {
+            final Event event = eventCreator.createEventFrom(trap("down"), "system", "Default", InetAddressUtils.ONE_TWENTY_SEVEN);
+            assertEquals("uei.opennms.org/test/statusDown", event.getUei());
+        }
+        verify(interfaceToNodeCache, times(3)).getFirstNodeId(anyString(), any());
+    }
+
+    @Test
+    public void canInvalidateOnEventConfReload() throws Exception {
+        final EventCreator eventCreator = new EventCreator(interfaceToNodeCache, eventConfDao, 60000, 100);
+        eventCreator.createTrapEventFrom(trap("down"), "system", "Default", InetAddressUtils.ONE_TWENTY_SEVEN);
+
+        // A reload replaces the root events
+        when(eventConfDao.getRootEvents()).thenReturn(new Events());
+        eventCreator.createTrapEventFrom(trap("down"), "system", "Default", InetAddressUtils.ONE_TWENTY_SEVEN);
+
+        verify(interfaceToNodeCache, times(2)).getFirstNodeId(anyString(), any());
+    }
+
+    private static TrapDTO trap(String status) {
+        final PDU pdu = new PDU();
+        pdu.setType(PDU.TRAP);
+        pdu.add(new VariableBinding(SnmpConstants.sysUpTime, new TimeTicks(5000)));
+        pdu.add(new VariableBinding(SnmpConstants.snmpTrapOID, new OID(TRAP_OID)));
+        pdu.add(new VariableBinding(new OID(STATUS_OID), new OctetString(status)));
+        return new TrapDTO(new Snmp4JTrapNotifier.Snmp4JV2V3TrapInformation(InetAddressUtils.ONE_TWENTY_SEVEN, "public", pdu));
+    }
+}
@@ -61,6 +61,7 @@ import org.opennms.netmgt.flows.api.Flow;
 import org.opennms.netmgt.flows.api.FlowException;
 import org.opennms.netmgt.flows.api.FlowRepository;
 import org.opennms.netmgt.flows.api.FlowSource;
+import org.opennms.netmgt.flows.elastic.agg.FlowAggregator;
 import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.model.OnmsSnmpInterface;
 import org.slf4j.Logger;
@@ -141,6 +142,11 @@ public class ElasticFlowRepository implements FlowRepository {
 
     private boolean enableFlowForwarding = false;
 
+    /**
+     * Optional aggregation of the enriched flows into the aggregate index.
+     */
+    private FlowAggregator flowAggregator;
+
     private int bulkSize = 1000;
     private int bulkRetryCount = 5;
     private int bulkFlushMs = 500;
@@ -264,6 +270,14 @@ public class ElasticFlowRepository implements FlowRepository {
                             }
                         }
                     }
+
+                    if (flowAggregator != null) {
+                        try {
+                            flowAggregator.flush(currentTimeMillis);
+                        } catch (Throwable t) {
+                            LOG.error("An error occurred while flushing the flow aggregation windows in ElasticFlowRepository.", t);
+                        }
+                    }
                 }
             }, delay, delay);
         } else {
@@ -376,6 +390,16 @@ public class ElasticFlowRepository implements FlowRepository {
                 });
             }
         }
+
+        // Aggregate last, so a failing aggregate sink never costs us the raw flows
+        if (flowAggregator != null) {
+            LOG.debug("Aggregating {} flow documents.", flowDocuments.size());
+            try {
+                flowAggregator.aggregate(flowDocuments);
+            } catch (Exception e) {
+                LOG.warn("Failed to aggregate {} flow documents.", flowDocuments.size(), e);
+            }
+        }
     }
 
     private void persistBulk(final List<FlowDocument> bulk) throws FlowException {
@@ -436,6 +460,10 @@ public class ElasticFlowRepository implements FlowRepository {
         for(final FlowBulk flowBulk : flowBulks.values()) {
             persistBulk(flowBulk.documents);
         }
+
+        if (flowAggregator != null) {
+            flowAggregator.flushAll();
+        }
     }
 
     private Tracer getTracer() {
@@ -453,6 +481,14 @@ public class ElasticFlowRepository implements FlowRepository {
         this.enableFlowForwarding = enableFlowForwarding;
     }
 
+    public FlowAggregator getFlowAggregator() {
+        return flowAggregator;
+    }
+
+    public void setFlowAggregator(FlowAggregator flowAggregator) {
+        this.flowAggregator = flowAggregator;
+    }
+
     public int getBulkSize() {
         return this.bulkSize;
     }
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.agg;
+
+import org.opennms.netmgt.flows.elastic.NodeDocument;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A pre-aggregated flow summary as stored in the aggregate index and queried by the {@link AggregatedFlowQueryService}.
+ *
+ * Member variables are sorted by the value of the @SerializedName annotation.
+ */
+public class AggregatedFlowDocument {
+
+    @SerializedName("@timestamp")
+    private long timestamp;
+
+    @SerializedName("aggregation_type")
+    private String aggregationType;
+
+    @SerializedName("application")
+    private String application;
+
+    @SerializedName("bytes_egress")
+    private long bytesEgress;
+
+    @SerializedName("bytes_ingress")
+    private long bytesIngress;
+
+    @SerializedName("bytes_total")
+    private long bytesTotal;
+
+    @SerializedName("congestion_encountered")
+    private boolean congestionEncountered;
+
+    @SerializedName("conversation_key")
+    private String conversationKey;
+
+    @SerializedName("dscp")
+    private Integer dscp;
+
+    @SerializedName("exporter")
+    private NodeDocument exporter;
+
+    @SerializedName("grouped_by")
+    private GroupedBy groupedBy;
+
+    @SerializedName("grouped_by_key")
+    private String groupedByKey;
+
+    @SerializedName("host_address")
+    private String hostAddress;
+
+    @SerializedName("host_name")
+    private String hostName;
+
+    @SerializedName("if_index")
+    private Integer ifIndex;
+
+    @SerializedName("non_ect")
+    private boolean nonEct;
+
+    @SerializedName("range_end")
+    private long rangeEnd;
+
+    @SerializedName("range_start")
+    private long rangeStart;
+
+    @SerializedName("ranking")
+    private int ranking;
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getAggregationType() {
+        return aggregationType;
+    }
+
+    public void setAggregationType(String aggregationType) {
+        this.aggregationType = aggregationType;
+    }
+
+    public String getApplication() {
+        return application;
+    }
+
+    public void setApplication(String application) {
+        this.application = application;
+    }
+
+    public long getBytesEgress() {
+        return bytesEgress;
+    }
+
+    public void setBytesEgress(long bytesEgress) {
+        this.bytesEgress = bytesEgress;
+    }
+
+    public long getBytesIngress() {
+        return bytesIngress;
+    }
+
+    public void setBytesIngress(long bytesIngress) {
+        this.bytesIngress = bytesIngress;
+    }
+
+    public long getBytesTotal() {
+        return bytesTotal;
+    }
+
+    public void setBytesTotal(long bytesTotal) {
+        this.bytesTotal = bytesTotal;
+    }
+
+    public boolean isCongestionEncountered() {
+        return congestionEncountered;
+    }
+
+    public void setCongestionEncountered(boolean congestionEncountered) {
+        this.congestionEncountered = congestionEncountered;
+    }
+
+    public String getConversationKey() {
+        return conversationKey;
+    }
+
+    public void setConversationKey(String conversationKey) {
+        this.conversationKey = conversationKey;
+    }
+
+    public Integer getDscp() {
+        return dscp;
+    }
+
+    public void setDscp(Integer dscp) {
+        this.dscp = dscp;
+    }
+
+    public NodeDocument getExporter() {
+        return exporter;
+    }
+
+    public void setExporter(NodeDocument exporter) {
+        this.exporter = exporter;
+    }
+
+    public GroupedBy getGroupedBy() {
+        return groupedBy;
+    }
+
+    public void setGroupedBy(GroupedBy groupedBy) {
+        this.groupedBy = groupedBy;
+    }
+
+    public String getGroupedByKey() {
+        return groupedByKey;
+    }
+
+    public void setGroupedByKey(String groupedByKey) {
+        this.groupedByKey = groupedByKey;
+    }
+
+    public String getHostAddress() {
+        return hostAddress;
+    }
+
+    public void setHostAddress(String hostAddress) {
+        this.hostAddress = hostAddress;
+    }
+
+    public String getHostName() {
+        return hostName;
+    }
+
+    public void setHostName(String hostName) {
+        this.hostName = hostName;
+    }
+
+    public Integer getIfIndex() {
+        return ifIndex;
+    }
+
+    public void setIfIndex(Integer ifIndex) {
+        this.ifIndex = ifIndex;
+    }
+
+    public boolean isNonEct() {
+        return nonEct;
+    }
+
+    public void setNonEct(boolean nonEct) {
+        this.nonEct = nonEct;
+    }
+
+    public long getRangeEnd() {
+        return rangeEnd;
+    }
+
+    public void setRangeEnd(long rangeEnd) {
+        this.rangeEnd = rangeEnd;
+    }
+
+    public long getRangeStart() {
+        return rangeStart;
+    }
+
+    public void setRangeStart(long rangeStart) {
+        this.rangeStart = rangeStart;
+    }
+
+    public int getRanking() {
+        return ranking;
+    }
+
+    public void setRanking(int ranking) {
+        this.ranking = ranking;
+    }
+
+    @Override
+    public String toString() {
+        return "AggregatedFlowDocument{" +
+                "groupedBy=" + groupedBy +
+                ", groupedByKey='" + groupedByKey + '\'' +
+                ", aggregationType='" + aggregationType + '\'' +
+                ", rangeStart=" + rangeStart +
+                ", rangeEnd=" + rangeEnd +
+                ", ranking=" + ranking +
+                ", bytesIngress=" + bytesIngress +
+                ", bytesEgress=" + bytesEgress +
+                '}';
+    }
+}
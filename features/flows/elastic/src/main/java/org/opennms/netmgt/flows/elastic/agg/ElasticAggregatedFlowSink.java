@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.agg;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+import org.opennms.features.jest.client.bulk.BulkRequest;
+import org.opennms.features.jest.client.bulk.BulkWrapper;
+import org.opennms.features.jest.client.index.IndexStrategy;
+import org.opennms.features.jest.client.template.IndexSettings;
+import org.opennms.netmgt.flows.api.FlowException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.searchbox.client.JestClient;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Index;
+
+/**
+ * Writes the aggregated flow summaries to the aggregate index.
+ */
+public class ElasticAggregatedFlowSink implements AggregatedFlowSink {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticAggregatedFlowSink.class);
+
+    private final JestClient client;
+
+    private final IndexStrategy indexStrategy;
+
+    private final IndexSettings indexSettings;
+
+    private int bulkRetryCount = 5;
+
+    public ElasticAggregatedFlowSink(JestClient client, IndexStrategy indexStrategy, IndexSettings indexSettings) {
+        this.client = Objects.requireNonNull(client);
+        this.indexStrategy = Objects.requireNonNull(indexStrategy);
+        this.indexSettings = Objects.requireNonNull(indexSettings);
+    }
+
+    @Override
+    public void persist(List<AggregatedFlowDocument> documents) throws FlowException {
+        LOG.debug("Persisting {} aggregated flow documents.", documents.size());
+        final BulkRequest<AggregatedFlowDocument> bulkRequest = new BulkRequest<>(client, documents, (docs) -> {
+            final Bulk.Builder bulkBuilder = new Bulk.Builder();
+            for (AggregatedFlowDocument document : docs) {
+                final String index = indexStrategy.getIndex(indexSettings, AggregatedFlowQueryService.INDEX_NAME, Instant.ofEpochMilli(document.getRangeStart()));
+                bulkBuilder.addAction(new Index.Builder(document).index(index).build());
+            }
+            return new BulkWrapper(bulkBuilder);
+        }, bulkRetryCount);
+        try {
+            bulkRequest.execute();
+        } catch (IOException ex) {
+            LOG.error("An error occurred while executing the given request: {}", ex.getMessage(), ex);
+            throw new FlowException(ex.getMessage(), ex);
+        }
+    }
+
+    public int getBulkRetryCount() {
+        return bulkRetryCount;
+    }
+
+    public void setBulkRetryCount(int bulkRetryCount) {
+        this.bulkRetryCount = bulkRetryCount;
+    }
+}
@@ -0,0 +1,451 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.agg;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.opennms.netmgt.flows.api.FlowException;
+import org.opennms.netmgt.flows.elastic.Direction;
+import org.opennms.netmgt.flows.elastic.FlowDocument;
+import org.opennms.netmgt.flows.elastic.NodeDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Aggregates the enriched flow documents into the summaries queried by the {@link AggregatedFlowQueryService}.
+ *
+ * The flows are split proportionally over tumbling windows of fixed size. For every window, the totals per
+ * exporter interface (and per exporter interface and DSCP) are tracked exactly, whereas the applications,
+ * hosts and conversations are tracked using a {@link TopKSketch} with a fixed number of counters for each
+ * exporter interface, bounding the memory used by a window.
+ *
+ * A window is closed and handed to the {@link AggregatedFlowSink} once the watermark, i.e. the latest flow end
+ * seen minus the allowed lateness, passed the end of the window. Flows arriving for closed windows are dropped.
+ */
+public class FlowAggregator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlowAggregator.class);
+
+    public static final String UNKNOWN_APPLICATION_NAME_KEY = "__unknown";
+
+    private static final String AGG_TOPK = "TOPK";
+    private static final String AGG_TOTAL = "TOTAL";
+
+    private final AggregatedFlowSink sink;
+
+    /**
+     * Number of flows (or parts of flows) dropped because their window was already closed or they exceeded the
+     * maximum flow duration
+     */
+    private final Meter lateFlowsMeter;
+
+    /**
+     * Number of windows handed to the sink
+     */
+    private final Meter windowsClosedMeter;
+
+    private boolean enabled = false;
+
+    private long windowSizeMs = 60000;
+
+    private long allowedLatenessMs = 120000;
+
+    private long maxFlowDurationMs = 3600000;
+
+    private int topK = 10;
+
+    private int sketchCapacity = 100;
+
+    private final NavigableMap<Long, Window> windows = new TreeMap<>();
+
+    private long watermark = Long.MIN_VALUE;
+
+    public FlowAggregator(MetricRegistry metricRegistry, AggregatedFlowSink sink) {
+        this.sink = Objects.requireNonNull(sink);
+        this.lateFlowsMeter = metricRegistry.meter("aggregationLateFlows");
+        this.windowsClosedMeter = metricRegistry.meter("aggregationWindowsClosed");
+    }
+
+    /**
+     * Adds the given flows to their windows and persists the windows closed by the advanced watermark.
+     */
+    public void aggregate(Collection<FlowDocument> documents) throws FlowException {
+        if (!enabled) {
+            return;
+        }
+
+        final List<Window> closed;
+        synchronized (this) {
+            long maxEnd = Long.MIN_VALUE;
+            for (final FlowDocument document : documents) {
+                maxEnd = Math.max(maxEnd, add(document));
+            }
+            closed = maxEnd != Long.MIN_VALUE ? advanceWatermark(maxEnd - allowedLatenessMs) : new ArrayList<>(0);
+        }
+        persist(closed);
+    }
+
+    /**
+     * Advances the watermark based on the current time, so the windows are closed even if no more flows arrive.
+     */
+    public void flush(long currentTimeMillis) throws FlowException {
+        if (!enabled) {
+            return;
+        }
+
+        final List<Window> closed;
+        synchronized (this) {
+            closed = advanceWatermark(currentTimeMillis - windowSizeMs - allowedLatenessMs);
+        }
+        persist(closed);
+    }
+
+    /**
+     * Closes all the windows regardless of the watermark.
+     */
+    public void flushAll() throws FlowException {
+        final List<Window> closed;
+        synchronized (this) {
+            closed = new ArrayList<>(windows.values());
+            windows.clear();
+        }
+        persist(closed);
+    }
+
+    /**
+     * @return the end of the flow or {@link Long#MIN_VALUE} if the flow can not be aggregated
+     */
+    private long add(FlowDocument document) {
+        final NodeDocument exporter = document.getNodeExporter();
+        if (exporter == null || exporter.getNodeId() == null || document.getDirection() == null) {
+            return Long.MIN_VALUE;
+        }
+        final Integer ifIndex = document.getDirection() == Direction.INGRESS ? document.getInputSnmp() : document.getOutputSnmp();
+        if (ifIndex == null) {
+            return Long.MIN_VALUE;
+        }
+
+        long bytes = document.getBytes() != null ? document.getBytes() : 0L;
+        if (document.getSamplingInterval() != null && document.getSamplingInterval() > 0) {
+            bytes = (long) (bytes * document.getSamplingInterval());
+        }
+
+        final long end = document.getLastSwitched() != null ? document.getLastSwitched() : document.getTimestamp();
+        long start = document.getDeltaSwitched() != null ? document.getDeltaSwitched()
+                : document.getFirstSwitched() != null ? document.getFirstSwitched() : end;
+        if (start > end) {
+            start = end;
+        }
+
+        final long duration = end - start;
+        final long lastWindow = duration > 0 ? windowStart(end - 1) : windowStart(end);
+
+        // Only walk the windows which are still open and within the maximum flow duration, so bogus timestamps
+        // can not make us iterate over (and allocate) a huge number of windows
+        long from = Math.max(start, end - maxFlowDurationMs);
+        if (watermark != Long.MIN_VALUE) {
+            from = Math.max(from, windowStart(watermark));
+        }
+        if (from > start && windowStart(from) > lastWindow) {
+            lateFlowsMeter.mark();
+            return end;
+        }
+
+        // Split the bytes proportionally to the overlap of the flow with each window
+        long remaining = bytes;
+        if (from > start) {
+            lateFlowsMeter.mark();
+            remaining -= (long) ((double) bytes * (from - start) / duration);
+        }
+        for (long windowStart = windowStart(from); windowStart <= lastWindow; windowStart += windowSizeMs) {
+            final long windowEnd = windowStart + windowSizeMs;
+            final long portion;
+            if (windowStart == lastWindow) {
+                portion = remaining;
+            } else {
+                final long overlap = Math.min(end, windowEnd) - Math.max(from, windowStart);
+                portion = (long) ((double) bytes * overlap / duration);
+            }
+            remaining -= portion;
+
+            if (windowEnd <= watermark) {
+                lateFlowsMeter.mark();
+                continue;
+            }
+            windows.computeIfAbsent(windowStart, Window::new).add(document, exporter, ifIndex, portion);
+        }
+        return end;
+    }
+
+    private long windowStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, windowSizeMs);
+    }
+
+    private List<Window> advanceWatermark(long newWatermark) {
+        if (newWatermark <= watermark) {
+            return new ArrayList<>(0);
+        }
+        watermark = newWatermark;
+
+        final List<Window> closed = new ArrayList<>();
+        while (!windows.isEmpty() && windows.firstEntry().getValue().end <= watermark) {
+            closed.add(windows.pollFirstEntry().getValue());
+        }
+        return closed;
+    }
+
+    private void persist(List<Window> closed) throws FlowException {
+        for (final Window window : closed) {
+            final List<AggregatedFlowDocument> documents = window.toDocuments();
+            LOG.debug("Closing window starting at {} with {} summaries.", window.start, documents.size());
+            windowsClosedMeter.mark();
+            if (!documents.isEmpty()) {
+                sink.persist(documents);
+            }
+        }
+    }
+
+    private static String exporterKey(NodeDocument exporter) {
+        if (exporter.getForeignSource() != null && exporter.getForeignId() != null) {
+            return exporter.getForeignSource() + ":" + exporter.getForeignId();
+        }
+        return Integer.toString(exporter.getNodeId());
+    }
+
+    private static class Bucket extends TopKSketch.Counter {
+        private final NodeDocument exporter;
+        private final int ifIndex;
+        private final Integer dscp;
+        private final String parentKey;
+
+        private String hostName;
+        private long bytesIngress;
+        private long bytesEgress;
+        private boolean congestionEncountered;
+        private boolean nonEct;
+
+        private Bucket(NodeDocument exporter, int ifIndex, Integer dscp, String parentKey) {
+            this.exporter = exporter;
+            this.ifIndex = ifIndex;
+            this.dscp = dscp;
+            this.parentKey = parentKey;
+        }
+
+        private void add(FlowDocument document, long bytes) {
+            if (document.getDirection() == Direction.INGRESS) {
+                bytesIngress += bytes;
+            } else {
+                bytesEgress += bytes;
+            }
+            if (document.getEcn() != null) {
+                congestionEncountered |= document.getEcn() == 3;
+                nonEct |= document.getEcn() == 0;
+            }
+        }
+
+        private AggregatedFlowDocument toDocument(GroupedBy groupedBy, String aggregationType, String groupedByKey,
+                                                  Window window, int ranking) {
+            final AggregatedFlowDocument document = new AggregatedFlowDocument();
+            document.setTimestamp(window.start);
+            document.setRangeStart(window.start);
+            document.setRangeEnd(window.end);
+            document.setGroupedBy(groupedBy);
+            document.setGroupedByKey(groupedByKey);
+            document.setAggregationType(aggregationType);
+            document.setRanking(ranking);
+            document.setExporter(exporter);
+            document.setIfIndex(ifIndex);
+            document.setDscp(dscp);
+            document.setBytesIngress(bytesIngress);
+            document.setBytesEgress(bytesEgress);
+            document.setBytesTotal(bytesIngress + bytesEgress);
+            document.setCongestionEncountered(congestionEncountered);
+            document.setNonEct(nonEct);
+            return document;
+        }
+    }
+
+    private class Window {
+        private final long start;
+        private final long end;
+
+        private final Map<String, Bucket> interfaceTotals = new HashMap<>();
+        private final Map<String, Bucket> interfaceTosTotals = new HashMap<>();
+
+        private final Map<GroupedBy, Map<String, TopKSketch<Bucket>>> sketches = new HashMap<>();
+
+        private Window(long start) {
+            this.start = start;
+            this.end = start + windowSizeMs;
+        }
+
+        private void add(FlowDocument document, NodeDocument exporter, int ifIndex, long bytes) {
+            final Integer dscp = document.getDscp() != null ? document.getDscp() : 0;
+            final String interfaceKey = exporterKey(exporter) + "-" + ifIndex;
+            final String interfaceTosKey = interfaceKey + "-" + dscp;
+
+            interfaceTotals.computeIfAbsent(interfaceKey, k -> new Bucket(exporter, ifIndex, null, k))
+                    .add(document, bytes);
+            interfaceTosTotals.computeIfAbsent(interfaceTosKey, k -> new Bucket(exporter, ifIndex, dscp, k))
+                    .add(document, bytes);
+
+            final String application = document.getApplication() != null ? document.getApplication() : UNKNOWN_APPLICATION_NAME_KEY;
+            offer(GroupedBy.EXPORTER_INTERFACE_APPLICATION, interfaceKey, null, application, null, document, exporter, ifIndex, bytes);
+            offer(GroupedBy.EXPORTER_INTERFACE_TOS_APPLICATION, interfaceTosKey, dscp, application, null, document, exporter, ifIndex, bytes);
+
+            if (document.getSrcAddr() != null) {
+                offer(GroupedBy.EXPORTER_INTERFACE_HOST, interfaceKey, null, document.getSrcAddr(), document.getSrcAddrHostname(), document, exporter, ifIndex, bytes);
+                offer(GroupedBy.EXPORTER_INTERFACE_TOS_HOST, interfaceTosKey, dscp, document.getSrcAddr(), document.getSrcAddrHostname(), document, exporter, ifIndex, bytes);
+            }
+            if (document.getDstAddr() != null) {
+                offer(GroupedBy.EXPORTER_INTERFACE_HOST, interfaceKey, null, document.getDstAddr(), document.getDstAddrHostname(), document, exporter, ifIndex, bytes);
+                offer(GroupedBy.EXPORTER_INTERFACE_TOS_HOST, interfaceTosKey, dscp, document.getDstAddr(), document.getDstAddrHostname(), document, exporter, ifIndex, bytes);
+            }
+
+            if (document.getConvoKey() != null) {
+                offer(GroupedBy.EXPORTER_INTERFACE_CONVERSATION, interfaceKey, null, document.getConvoKey(), null, document, exporter, ifIndex, bytes);
+                offer(GroupedBy.EXPORTER_INTERFACE_TOS_CONVERSATION, interfaceTosKey, dscp, document.getConvoKey(), null, document, exporter, ifIndex, bytes);
+            }
+        }
+
+        private void offer(GroupedBy groupedBy, String parentKey, Integer dscp, String key, String hostName,
+                           FlowDocument document, NodeDocument exporter, int ifIndex, long bytes) {
+            final Bucket bucket = sketches.computeIfAbsent(groupedBy, g -> new HashMap<>())
+                    .computeIfAbsent(parentKey, k -> new TopKSketch<>(sketchCapacity))
+                    .offer(key, bytes, k -> new Bucket(exporter, ifIndex, dscp, parentKey));
+            bucket.add(document, bytes);
+            if (hostName != null) {
+                bucket.hostName = hostName;
+            }
+        }
+
+        private List<AggregatedFlowDocument> toDocuments() {
+            final List<AggregatedFlowDocument> documents = new ArrayList<>();
+            for (final Bucket bucket : interfaceTotals.values()) {
+                documents.add(bucket.toDocument(GroupedBy.EXPORTER_INTERFACE, AGG_TOTAL, bucket.parentKey, this, 0));
+            }
+            for (final Bucket bucket : interfaceTosTotals.values()) {
+                documents.add(bucket.toDocument(GroupedBy.EXPORTER_INTERFACE_TOS, AGG_TOTAL, bucket.parentKey, this, 0));
+            }
+            for (final Map.Entry<GroupedBy, Map<String, TopKSketch<Bucket>>> entry : sketches.entrySet()) {
+                final GroupedBy groupedBy = entry.getKey();
+                for (final TopKSketch<Bucket> sketch : entry.getValue().values()) {
+                    int ranking = 0;
+                    for (final Bucket bucket : sketch.top(topK)) {
+                        final AggregatedFlowDocument document = bucket.toDocument(groupedBy, AGG_TOPK,
+                                bucket.parentKey + "-" + bucket.getKey(), this, ranking++);
+                        switch (groupedBy) {
+                            case EXPORTER_INTERFACE_APPLICATION:
+                            case EXPORTER_INTERFACE_TOS_APPLICATION:
+                                document.setApplication(bucket.getKey());
+                                break;
+                            case EXPORTER_INTERFACE_HOST:
+                            case EXPORTER_INTERFACE_TOS_HOST:
+                                document.setHostAddress(bucket.getKey());
+                                document.setHostName(bucket.hostName);
+                                break;
+                            case EXPORTER_INTERFACE_CONVERSATION:
+                            case EXPORTER_INTERFACE_TOS_CONVERSATION:
+                                document.setConversationKey(bucket.getKey());
+                                break;
+                            default:
+                                break;
+                        }
+                        documents.add(document);
+                    }
+                }
+            }
+            return documents;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getWindowSizeMs() {
+        return windowSizeMs;
+    }
+
+    public void setWindowSizeMs(long windowSizeMs) {
+        if (windowSizeMs <= 0) {
+            throw new IllegalArgumentException("windowSizeMs must be positive: " + windowSizeMs);
+        }
+        this.windowSizeMs = windowSizeMs;
+    }
+
+    public long getAllowedLatenessMs() {
+        return allowedLatenessMs;
+    }
+
+    public void setAllowedLatenessMs(long allowedLatenessMs) {
+        this.allowedLatenessMs = allowedLatenessMs;
+    }
+
+    public long getMaxFlowDurationMs() {
+        return maxFlowDurationMs;
+    }
+
+    public void setMaxFlowDurationMs(long maxFlowDurationMs) {
+        if (maxFlowDurationMs <= 0) {
+            throw new IllegalArgumentException("maxFlowDurationMs must be positive: " + maxFlowDurationMs);
+        }
+        this.maxFlowDurationMs = maxFlowDurationMs;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public void setTopK(int topK) {
+        this.topK = topK;
+    }
+
+    public int getSketchCapacity() {
+        return sketchCapacity;
+    }
+
+    public void setSketchCapacity(int sketchCapacity) {
+        this.sketchCapacity = sketchCapacity;
+    }
+}
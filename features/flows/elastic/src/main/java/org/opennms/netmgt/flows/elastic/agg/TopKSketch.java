@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.agg;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Weighted Space-Saving sketch keeping track of the heavy hitters with a fixed number of counters.
+ *
+ * When all counters are in use, the counter with the smallest count is reassigned to the new key,
+ * which inherits the smallest count as its error. The counts are an upper bound of the real weight
+ * of each key, overestimating it by at most the error of the counter.
+ */
+class TopKSketch<T extends TopKSketch.Counter> {
+
+    abstract static class Counter {
+        private String key;
+        private long count;
+        private long error;
+        private long sequence;
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    private static final Comparator<Counter> BY_COUNT = Comparator.comparingLong((Counter c) -> c.count)
+            .thenComparingLong(c -> c.sequence);
+
+    private final int capacity;
+
+    private final Map<String, T> counters = new HashMap<>();
+
+    private final TreeSet<T> byCount = new TreeSet<>(BY_COUNT);
+
+    private long sequence = 0;
+
+    TopKSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds the given weight to the counter of the key.
+     *
+     * @param factory creates a new counter if the key is not tracked yet
+     * @return the counter of the key
+     */
+    T offer(String key, long weight, Function<String, T> factory) {
+        T counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count += weight;
+            byCount.add(counter);
+            return counter;
+        }
+
+        long error = 0;
+        if (counters.size() >= capacity) {
+            final T min = byCount.pollFirst();
+            counters.remove(min.key);
+            error = min.count;
+        }
+
+        counter = factory.apply(key);
+        counter.key = key;
+        counter.count = error + weight;
+        counter.error = error;
+        counter.sequence = sequence++;
+        counters.put(key, counter);
+        byCount.add(counter);
+        return counter;
+    }
+
+    /**
+     * @return the counters with the largest counts in descending order
+     */
+    List<T> top(int k) {
+        final List<T> top = new ArrayList<>(Math.min(k, byCount.size()));
+        final Iterator<T> it = byCount.descendingIterator();
+        while (it.hasNext() && top.size() < k) {
+            top.add(it.next());
+        }
+        return top;
+    }
+
+    int size() {
+        return counters.size();
+    }
+}
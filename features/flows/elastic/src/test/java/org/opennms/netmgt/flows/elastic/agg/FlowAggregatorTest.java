@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.agg;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.flows.api.FlowException;
+import org.opennms.netmgt.flows.elastic.Direction;
+import org.opennms.netmgt.flows.elastic.FlowDocument;
+import org.opennms.netmgt.flows.elastic.NodeDocument;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class FlowAggregatorTest {
+
+    private final List<AggregatedFlowDocument> persisted = new ArrayList<>();
+
+    private FlowAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        aggregator = new FlowAggregator(new MetricRegistry(), persisted::addAll);
+        aggregator.setEnabled(true);
+        aggregator.setWindowSizeMs(60000);
+        aggregator.setAllowedLatenessMs(0);
+        aggregator.setTopK(2);
+    }
+
+    @Test
+    public void canAggregateTotalsAndTopApplications() throws FlowException {
+        aggregator.aggregate(Arrays.asList(
+                flow(Direction.INGRESS, "https", "10.0.0.1", "10.0.0.2", 10000, 20000, 1000),
+                flow(Direction.EGRESS, "http", "10.0.0.1", "10.0.0.3", 10000, 20000, 500),
+                flow(Direction.INGRESS, null, "10.0.0.4", "10.0.0.2", 10000, 20000, 10)));
+        // nothing is persisted until the watermark passed the end of the window
+        assertThat(persisted, hasSize(0));
+
+        aggregator.aggregate(Collections.singletonList(
+                flow(Direction.INGRESS, "https", "10.0.0.1", "10.0.0.2", 60000, 60000, 1)));
+
+        final List<AggregatedFlowDocument> totals = documents(GroupedBy.EXPORTER_INTERFACE);
+        assertThat(totals, hasSize(1));
+        assertThat(totals.get(0).getAggregationType(), equalTo("TOTAL"));
+        assertThat(totals.get(0).getGroupedByKey(), equalTo("FS:1-98"));
+        assertThat(totals.get(0).getRangeStart(), equalTo(0L));
+        assertThat(totals.get(0).getRangeEnd(), equalTo(60000L));
+        assertThat(totals.get(0).getBytesIngress(), equalTo(1010L));
+        assertThat(totals.get(0).getBytesEgress(), equalTo(500L));
+
+        final List<AggregatedFlowDocument> applications = documents(GroupedBy.EXPORTER_INTERFACE_APPLICATION);
+        assertThat(applications.stream().map(AggregatedFlowDocument::getApplication).collect(Collectors.toList()),
+                equalTo(Arrays.asList("https", "http")));
+        assertThat(applications.get(0).getBytesTotal(), equalTo(1000L));
+        assertThat(applications.get(1).getRanking(), equalTo(1));
+
+        final List<AggregatedFlowDocument> hosts = documents(GroupedBy.EXPORTER_INTERFACE_HOST);
+        assertThat(hosts.stream().map(AggregatedFlowDocument::getHostAddress).collect(Collectors.toList()),
+                equalTo(Arrays.asList("10.0.0.1", "10.0.0.2")));
+        assertThat(hosts.get(0).getBytesTotal(), equalTo(1500L));
+    }
+
+    @Test
+    public void canSplitFlowsOverWindows() throws FlowException {
+        aggregator.aggregate(Collections.singletonList(
+                flow(Direction.INGRESS, "https", "10.0.0.1", "10.0.0.2", 30000, 90000, 600)));
+        aggregator.flushAll();
+
+        final List<AggregatedFlowDocument> totals = documents(GroupedBy.EXPORTER_INTERFACE);
+        assertThat(totals, hasSize(2));
+        assertThat(totals.get(0).getRangeStart(), equalTo(0L));
+        assertThat(totals.get(0).getBytesIngress(), equalTo(300L));
+        assertThat(totals.get(1).getRangeStart(), equalTo(60000L));
+        assertThat(totals.get(1).getBytesIngress(), equalTo(300L));
+    }
+
+    @Test
+    public void canDropLateFlows() throws FlowException {
+        aggregator.aggregate(Collections.singletonList(
+                flow(Direction.INGRESS, "https", "10.0.0.1", "10.0.0.2", 130000, 130000, 100)));
+        aggregator.aggregate(Collections.singletonList(
+                flow(Direction.INGRESS, "https", "10.0.0.1", "10.0.0.2", 10000, 20000, 100)));
+        aggregator.flushAll();
+
+        final List<AggregatedFlowDocument> totals = documents(GroupedBy.EXPORTER_INTERFACE);
+        assertThat(totals, hasSize(1));
+        assertThat(totals.get(0).getRangeStart(), equalTo(120000L));
+    }
+
+    @Test
+    public void canClampLongFlowsToTheOpenWindows() throws FlowException {
+        aggregator.aggregate(Collections.singletonList(
+                flow(Direction.INGRESS, "https", "10.0.0.1", "10.0.0.2", 130000, 130000, 100)));
+        // starts long before the watermark, only the part in the open window is aggregated
+        aggregator.aggregate(Collections.singletonList(
+                flow(Direction.INGRESS, "https", "10.0.0.1", "10.0.0.2", 0, 180000, 1800)));
+        aggregator.flushAll();
+
+        final List<AggregatedFlowDocument> totals = documents(GroupedBy.EXPORTER_INTERFACE);
+        assertThat(totals, hasSize(1));
+        assertThat(totals.get(0).getRangeStart(), equalTo(120000L));
+        assertThat(totals.get(0).getBytesIngress(), equalTo(100L + 600L));
+    }
+
+    @Test(timeout = 5000)
+    public void canClampFlowsToTheMaximumDuration() throws FlowException {
+        aggregator.setMaxFlowDurationMs(120000);
+        final long end = 26666667L * 60000L;
+        // a bogus first switched of 0 must not walk all windows since the epoch
+        aggregator.aggregate(Collections.singletonList(
+                flow(Direction.INGRESS, "https", "10.0.0.1", "10.0.0.2", 0, end, 1000)));
+        aggregator.flushAll();
+
+        final List<AggregatedFlowDocument> totals = documents(GroupedBy.EXPORTER_INTERFACE);
+        assertThat(totals, hasSize(2));
+        assertThat(totals.get(0).getRangeStart(), equalTo(end - 120000L));
+    }
+
+    @Test
+    public void canBoundTheTrackedHosts() throws FlowException {
+        aggregator.setSketchCapacity(3);
+        final List<FlowDocument> flows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            flows.add(flow(Direction.INGRESS, "https", "10.0.1." + i, "10.0.0.1", 10000, 20000, 10));
+        }
+        flows.add(flow(Direction.INGRESS, "https", "10.0.0.2", "10.0.0.1", 10000, 20000, 500));
+        aggregator.aggregate(flows);
+        aggregator.flushAll();
+
+        final List<AggregatedFlowDocument> hosts = documents(GroupedBy.EXPORTER_INTERFACE_HOST);
+        assertThat(hosts.stream().map(AggregatedFlowDocument::getHostAddress).collect(Collectors.toList()),
+                equalTo(Arrays.asList("10.0.0.1", "10.0.0.2")));
+        assertThat(hosts.get(0).getBytesIngress(), equalTo(1500L));
+
+        // the totals are exact
+        assertThat(documents(GroupedBy.EXPORTER_INTERFACE).get(0).getBytesIngress(), equalTo(1500L));
+    }
+
+    private List<AggregatedFlowDocument> documents(GroupedBy groupedBy) {
+        return persisted.stream()
+                .filter(d -> d.getGroupedBy() == groupedBy)
+                .sorted(Comparator.comparingLong(AggregatedFlowDocument::getRangeStart)
+                        .thenComparingInt(AggregatedFlowDocument::getRanking))
+                .collect(Collectors.toList());
+    }
+
+    private static FlowDocument flow(Direction direction, String application, String srcAddr, String dstAddr,
+                                     long deltaSwitched, long lastSwitched, long bytes) {
+        final NodeDocument exporter = new NodeDocument();
+        exporter.setForeignSource("FS");
+        exporter.setForeignId("1");
+        exporter.setNodeId(1);
+
+        final FlowDocument document = new FlowDocument();
+        document.setNodeExporter(exporter);
+        document.setDirection(direction);
+        document.setInputSnmp(98);
+        document.setOutputSnmp(98);
+        document.setApplication(application);
+        document.setSrcAddr(srcAddr);
+        document.setDstAddr(dstAddr);
+        document.setConvoKey("[\"Default\",6,\"" + srcAddr + "\",\"" + dstAddr + "\",\"" + application + "\"]");
+        document.setTimestamp(lastSwitched);
+        document.setFirstSwitched(deltaSwitched);
+        document.setDeltaSwitched(deltaSwitched);
+        document.setLastSwitched(lastSwitched);
+        document.setBytes(bytes);
+        document.setTos(0);
+        return document;
+    }
+}
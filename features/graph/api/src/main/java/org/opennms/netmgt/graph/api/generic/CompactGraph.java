@@ -0,0 +1,620 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.graph.api.generic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.opennms.netmgt.graph.api.ImmutableGraph;
+import org.opennms.netmgt.graph.api.NodeRef;
+import org.opennms.netmgt.graph.api.VertexRef;
+import org.opennms.netmgt.graph.api.focus.Focus;
+import org.opennms.netmgt.graph.api.focus.FocusStrategy;
+import org.opennms.netmgt.graph.api.info.GraphInfo;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Memory efficient, immutable counterpart of the {@link GenericGraph}.
+ *
+ * Instead of keeping a {@link GenericVertex} or {@link GenericEdge} with its own property map for each element,
+ * the elements are stored in arrays ordered by their id:
+ * <ul>
+ *     <li>the namespace is only stored once for the whole graph,</li>
+ *     <li>elements with the same set of property keys share a single array of interned keys, so each element only holds its values,</li>
+ *     <li>edges reference the vertices of this graph by index and the adjacency is kept in primitive int arrays.</li>
+ * </ul>
+ * {@link GenericVertex} and {@link GenericEdge} objects are created on access.
+ *
+ * Use {@link #apply(ChangeSet)} to derive an updated graph, which shares all unchanged elements with this one.
+ */
+public final class CompactGraph implements ImmutableGraph<GenericVertex, GenericEdge> {
+
+    private static final Set<String> NODE_REF_KEYS = new HashSet<>(Arrays.asList(
+            GenericProperties.NODE_ID, GenericProperties.FOREIGN_SOURCE, GenericProperties.FOREIGN_ID, GenericProperties.NODE_CRITERIA));
+
+    private final Map<String, Object> properties;
+    private final String namespace;
+    private final Focus defaultFocus;
+
+    // Vertices, sorted by id
+    private final String[] vertexIds;
+    private final String[][] vertexKeys;
+    private final Object[][] vertexValues;
+
+    // Edges, sorted by id
+    private final String[] edgeIds;
+    private final String[][] edgeKeys;
+    private final Object[][] edgeValues;
+    // Index of the source/target vertex, or -1 if it belongs to another namespace
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+    // Source/target vertices of other namespaces, null if there are none
+    private final VertexRef[] foreignEdgeSources;
+    private final VertexRef[] foreignEdgeTargets;
+
+    // The edges of vertex i are adjacentEdges[adjacencyOffsets[i]] to adjacentEdges[adjacencyOffsets[i + 1] - 1]
+    private final int[] adjacencyOffsets;
+    private final int[] adjacentEdges;
+
+    private final Map<NodeRef, int[]> nodeRefToVertexIndices;
+
+    private CompactGraph(Builder builder) {
+        this.properties = ImmutableMap.copyOf(builder.properties);
+        this.namespace = builder.namespace;
+        this.defaultFocus = builder.defaultFocus;
+
+        final int vertexCount = builder.vertices.size();
+        this.vertexIds = new String[vertexCount];
+        this.vertexKeys = new String[vertexCount][];
+        this.vertexValues = new Object[vertexCount][];
+        int i = 0;
+        for (Map.Entry<String, Row> entry : builder.vertices.entrySet()) {
+            vertexIds[i] = entry.getKey();
+            vertexKeys[i] = entry.getValue().keys;
+            vertexValues[i] = entry.getValue().values;
+            i++;
+        }
+
+        // Drop edges which are connected to vertices that were removed
+        final List<Map.Entry<String, EdgeRow>> edges = builder.edges.entrySet().stream()
+                .filter(e -> !isDangling(builder, e.getValue().source) && !isDangling(builder, e.getValue().target))
+                .collect(Collectors.toList());
+        final int edgeCount = edges.size();
+        this.edgeIds = new String[edgeCount];
+        this.edgeKeys = new String[edgeCount][];
+        this.edgeValues = new Object[edgeCount][];
+        this.edgeSources = new int[edgeCount];
+        this.edgeTargets = new int[edgeCount];
+        VertexRef[] foreignSources = null;
+        VertexRef[] foreignTargets = null;
+        final int[] degrees = new int[vertexCount];
+        for (int e = 0; e < edgeCount; e++) {
+            final EdgeRow row = edges.get(e).getValue();
+            edgeIds[e] = edges.get(e).getKey();
+            edgeKeys[e] = row.keys;
+            edgeValues[e] = row.values;
+            edgeSources[e] = indexOfLocalVertex(row.source);
+            edgeTargets[e] = indexOfLocalVertex(row.target);
+            if (edgeSources[e] < 0) {
+                foreignSources = foreignSources != null ? foreignSources : new VertexRef[edgeCount];
+                foreignSources[e] = row.source;
+            } else {
+                degrees[edgeSources[e]]++;
+            }
+            if (edgeTargets[e] < 0) {
+                foreignTargets = foreignTargets != null ? foreignTargets : new VertexRef[edgeCount];
+                foreignTargets[e] = row.target;
+            } else if (edgeTargets[e] != edgeSources[e]) {
+                degrees[edgeTargets[e]]++;
+            }
+        }
+        this.foreignEdgeSources = foreignSources;
+        this.foreignEdgeTargets = foreignTargets;
+
+        // Build the adjacency lists
+        this.adjacencyOffsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyOffsets[v + 1] = adjacencyOffsets[v] + degrees[v];
+        }
+        this.adjacentEdges = new int[adjacencyOffsets[vertexCount]];
+        final int[] positions = Arrays.copyOf(adjacencyOffsets, vertexCount);
+        for (int e = 0; e < edgeCount; e++) {
+            if (edgeSources[e] >= 0) {
+                adjacentEdges[positions[edgeSources[e]]++] = e;
+            }
+            if (edgeTargets[e] >= 0 && edgeTargets[e] != edgeSources[e]) {
+                adjacentEdges[positions[edgeTargets[e]]++] = e;
+            }
+        }
+
+        // Index the vertices referencing nodes
+        final Map<NodeRef, List<Integer>> nodeRefs = new HashMap<>();
+        for (int v = 0; v < vertexCount; v++) {
+            if (Arrays.stream(vertexKeys[v]).anyMatch(NODE_REF_KEYS::contains)) {
+                final NodeRef nodeRef = vertexAt(v).getNodeRef();
+                if (nodeRef != null) {
+                    nodeRefs.computeIfAbsent(nodeRef, key -> new ArrayList<>()).add(v);
+                }
+            }
+        }
+        this.nodeRefToVertexIndices = new HashMap<>(nodeRefs.size());
+        nodeRefs.forEach((nodeRef, indices) -> nodeRefToVertexIndices.put(nodeRef, indices.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    public static CompactGraph from(GenericGraph graph) {
+        Objects.requireNonNull(graph);
+        final Builder builder = new Builder(graph.getProperties(), graph.getDefaultFocus());
+        graph.getVertices().forEach(builder::putVertex);
+        graph.getEdges().forEach(builder::putEdge);
+        return builder.build();
+    }
+
+    /**
+     * Creates a new graph by applying the given changes to this graph.
+     * All elements which are not affected by the changes are shared between both graphs.
+     * Edges connected to removed vertices are removed as well.
+     *
+     * @param changeSet the changes to apply
+     * @return the updated graph, or this graph if there are no changes
+     */
+    public CompactGraph apply(ChangeSet<?, GenericVertex, GenericEdge> changeSet) {
+        Objects.requireNonNull(changeSet);
+        if (!namespace.equals(changeSet.getNamespace())) {
+            throw new IllegalArgumentException(
+                    String.format("The namespace of the change set (%s) doesn't match the namespace of this graph (%s)",
+                            changeSet.getNamespace(), namespace));
+        }
+        if (!changeSet.hasChanges()) {
+            return this;
+        }
+
+        final Builder builder = new Builder(this);
+        changeSet.getEdgesRemoved().forEach(edge -> builder.edges.remove(edge.getId()));
+        changeSet.getVerticesRemoved().forEach(vertex -> builder.removeVertex(vertex.getId()));
+        changeSet.getVerticesAdded().forEach(builder::putVertex);
+        changeSet.getVerticesUpdated().forEach(builder::putVertex);
+        changeSet.getEdgesAdded().forEach(builder::putEdge);
+        changeSet.getEdgesUpdated().forEach(builder::putEdge);
+        if (changeSet.hasGraphInfoChanged()) {
+            final GraphInfo graphInfo = changeSet.getGraphInfo();
+            builder.property(GenericProperties.DESCRIPTION, graphInfo.getDescription());
+            builder.property(GenericProperties.LABEL, graphInfo.getLabel());
+        }
+        if (changeSet.hasFocusChanged()) {
+            builder.defaultFocus = changeSet.getFocus();
+        }
+        return builder.build();
+    }
+
+    @Override
+    public GenericGraph asGenericGraph() {
+        return GenericGraph.builder()
+                .properties(properties)
+                .addVertices(getVertices())
+                .addEdges(getEdges())
+                .focus(defaultFocus)
+                .build();
+    }
+
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @Override
+    public String getDescription() {
+        return (String) properties.get(GenericProperties.DESCRIPTION);
+    }
+
+    @Override
+    public String getLabel() {
+        return (String) properties.get(GenericProperties.LABEL);
+    }
+
+    @Override
+    public Focus getDefaultFocus() {
+        return defaultFocus;
+    }
+
+    @Override
+    public List<GenericVertex> getVertices() {
+        final List<GenericVertex> vertices = new ArrayList<>(vertexIds.length);
+        for (int i = 0; i < vertexIds.length; i++) {
+            vertices.add(vertexAt(i));
+        }
+        return vertices;
+    }
+
+    @Override
+    public List<GenericEdge> getEdges() {
+        final List<GenericEdge> edges = new ArrayList<>(edgeIds.length);
+        for (int i = 0; i < edgeIds.length; i++) {
+            edges.add(edgeAt(i));
+        }
+        return edges;
+    }
+
+    @Override
+    public GenericVertex getVertex(String id) {
+        final int index = indexOfVertex(id);
+        return index >= 0 ? vertexAt(index) : null;
+    }
+
+    @Override
+    public GenericEdge getEdge(String id) {
+        final int index = indexOfEdge(id);
+        return index >= 0 ? edgeAt(index) : null;
+    }
+
+    @Override
+    public List<String> getVertexIds() {
+        return Lists.newArrayList(vertexIds);
+    }
+
+    @Override
+    public List<String> getEdgeIds() {
+        return Lists.newArrayList(edgeIds);
+    }
+
+    @Override
+    public List<GenericVertex> resolveVertices(Collection<String> vertexIds) {
+        return vertexIds.stream()
+                .mapToInt(this::indexOfVertex)
+                .filter(index -> index >= 0)
+                .mapToObj(this::vertexAt)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<GenericVertex> resolveVertices(NodeRef nodeRef) {
+        Objects.requireNonNull(nodeRef);
+        final List<GenericVertex> resolvedVertices = Lists.newArrayList();
+        for (NodeRef eachVariant : nodeRef.getVariants()) {
+            final int[] indices = nodeRefToVertexIndices.get(eachVariant);
+            if (indices != null) {
+                for (int index : indices) {
+                    resolvedVertices.add(vertexAt(index));
+                }
+            }
+        }
+        return resolvedVertices;
+    }
+
+    @Override
+    public GenericVertex resolveVertex(VertexRef vertexRef) {
+        Objects.requireNonNull(vertexRef);
+        if (namespace.equals(vertexRef.getNamespace())) {
+            return getVertex(vertexRef.getId());
+        }
+        return null;
+    }
+
+    @Override
+    public List<GenericEdge> resolveEdges(Collection<String> edgeIds) {
+        return edgeIds.stream().map(this::getEdge).collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<GenericVertex> getNeighbors(GenericVertex eachVertex) {
+        final int index = indexOfLocalVertex(eachVertex);
+        if (index < 0) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(getNeighborIndices(index)).mapToObj(this::vertexAt).collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<GenericEdge> getConnectingEdges(GenericVertex eachVertex) {
+        final int index = indexOfLocalVertex(eachVertex);
+        if (index < 0) {
+            return Collections.emptySet();
+        }
+        final Set<GenericEdge> edges = new LinkedHashSet<>();
+        for (int i = adjacencyOffsets[index]; i < adjacencyOffsets[index + 1]; i++) {
+            edges.add(edgeAt(adjacentEdges[i]));
+        }
+        return edges;
+    }
+
+    /**
+     * Same as applying the {@link org.opennms.netmgt.graph.api.transformer.SemanticZoomLevelTransformer},
+     * but only the vertices and edges which are part of the view are materialized.
+     */
+    @Override
+    public ImmutableGraph<GenericVertex, GenericEdge> getView(Collection<GenericVertex> verticesInFocus, int szl) {
+        Preconditions.checkArgument(szl >= 0, "Semantic Zoom Level must be >= 0");
+        Objects.requireNonNull(verticesInFocus);
+
+        // Determine all vertices according to szl
+        final BitSet verticesInView = new BitSet(vertexIds.length);
+        int[] verticesToProcess = verticesInFocus.stream()
+                .mapToInt(this::indexOfLocalVertex)
+                .filter(index -> index >= 0)
+                .distinct()
+                .toArray();
+        verticesToProcess = markUnprocessed(verticesInView, verticesToProcess);
+        for (int i = 0; i < szl && verticesToProcess.length > 0; i++) {
+            verticesToProcess = markUnprocessed(verticesInView, Arrays.stream(verticesToProcess)
+                    .flatMap(index -> Arrays.stream(getNeighborIndices(index)))
+                    .distinct()
+                    .toArray());
+        }
+
+        // Now build the view, only considering the edges which have both vertices in the view
+        final GenericGraph.GenericGraphBuilder graphBuilder = GenericGraph.builder()
+                .graphInfo(this)
+                .properties(properties);
+        verticesInView.stream().forEach(index -> graphBuilder.addVertex(vertexAt(index)));
+        verticesInView.stream().forEach(index -> {
+            for (int i = adjacencyOffsets[index]; i < adjacencyOffsets[index + 1]; i++) {
+                final int edge = adjacentEdges[i];
+                if (edgeSources[edge] >= 0 && edgeTargets[edge] >= 0
+                        && verticesInView.get(edgeSources[edge]) && verticesInView.get(edgeTargets[edge])) {
+                    graphBuilder.addEdge(edgeAt(edge));
+                }
+            }
+        });
+        return graphBuilder.build();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("properties", properties)
+                .add("vertices", vertexIds.length)
+                .add("edges", edgeIds.length)
+                .add("defaultFocus", defaultFocus)
+                .toString();
+    }
+
+    private static int[] markUnprocessed(BitSet processed, int[] indices) {
+        return Arrays.stream(indices).filter(index -> {
+            if (processed.get(index)) {
+                return false;
+            }
+            processed.set(index);
+            return true;
+        }).toArray();
+    }
+
+    private int[] getNeighborIndices(int index) {
+        final int[] neighbors = new int[adjacencyOffsets[index + 1] - adjacencyOffsets[index]];
+        int count = 0;
+        for (int i = adjacencyOffsets[index]; i < adjacencyOffsets[index + 1]; i++) {
+            final int edge = adjacentEdges[i];
+            final int neighbor = edgeSources[edge] == index ? edgeTargets[edge] : edgeSources[edge];
+            if (neighbor >= 0) {
+                neighbors[count++] = neighbor;
+            }
+        }
+        return Arrays.stream(neighbors, 0, count).distinct().toArray();
+    }
+
+    private int indexOfVertex(String id) {
+        return id != null ? Arrays.binarySearch(vertexIds, id) : -1;
+    }
+
+    private int indexOfEdge(String id) {
+        return id != null ? Arrays.binarySearch(edgeIds, id) : -1;
+    }
+
+    private int indexOfLocalVertex(GenericVertex vertex) {
+        if (vertex == null || !namespace.equals(vertex.getNamespace())) {
+            return -1;
+        }
+        return indexOfVertex(vertex.getId());
+    }
+
+    private int indexOfLocalVertex(VertexRef vertexRef) {
+        if (!namespace.equals(vertexRef.getNamespace())) {
+            return -1;
+        }
+        final int index = indexOfVertex(vertexRef.getId());
+        if (index < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Adding a VertexRef to an unknown Vertex with id=%s in our namespace (%s). Please add the Vertex first to the graph",
+                            vertexRef.getId(), namespace));
+        }
+        return index;
+    }
+
+    private boolean isDangling(Builder builder, VertexRef vertexRef) {
+        return namespace.equals(vertexRef.getNamespace())
+                && builder.removedVertexIds.contains(vertexRef.getId())
+                && !builder.vertices.containsKey(vertexRef.getId());
+    }
+
+    private GenericVertex vertexAt(int index) {
+        final GenericVertex.GenericVertexBuilder builder = GenericVertex.builder()
+                .namespace(namespace)
+                .id(vertexIds[index]);
+        final String[] keys = vertexKeys[index];
+        final Object[] values = vertexValues[index];
+        for (int i = 0; i < keys.length; i++) {
+            builder.property(keys[i], values[i]);
+        }
+        return builder.build();
+    }
+
+    private GenericEdge edgeAt(int index) {
+        final GenericEdge.GenericEdgeBuilder builder = GenericEdge.builder()
+                .namespace(namespace)
+                .id(edgeIds[index])
+                .source(edgeSources[index] >= 0 ? new VertexRef(namespace, vertexIds[edgeSources[index]]) : foreignEdgeSources[index])
+                .target(edgeTargets[index] >= 0 ? new VertexRef(namespace, vertexIds[edgeTargets[index]]) : foreignEdgeTargets[index]);
+        final String[] keys = edgeKeys[index];
+        final Object[] values = edgeValues[index];
+        for (int i = 0; i < keys.length; i++) {
+            builder.property(keys[i], values[i]);
+        }
+        return builder.build();
+    }
+
+    private static class Row {
+        final String[] keys;
+        final Object[] values;
+
+        private Row(String[] keys, Object[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    private static class EdgeRow extends Row {
+        private final VertexRef source;
+        private final VertexRef target;
+
+        private EdgeRow(String[] keys, Object[] values, VertexRef source, VertexRef target) {
+            super(keys, values);
+            this.source = source;
+            this.target = target;
+        }
+    }
+
+    private static class Builder {
+        private final Map<String, Object> properties = new HashMap<>();
+        private final String namespace;
+        private Focus defaultFocus;
+        private final TreeMap<String, Row> vertices = new TreeMap<>();
+        private final TreeMap<String, EdgeRow> edges = new TreeMap<>();
+        private final Set<String> removedVertexIds = new HashSet<>();
+        // Interned arrays of property keys, shared by all elements with the same keys
+        private final Map<List<String>, String[]> shapes = new HashMap<>();
+        // Interned namespaces of the vertices of other graphs
+        private final Map<String, String> namespaces = new HashMap<>();
+
+        private Builder(Map<String, Object> properties, Focus defaultFocus) {
+            this.properties.putAll(properties);
+            this.namespace = Objects.requireNonNull((String) properties.get(GenericProperties.NAMESPACE), "Namespace is not set.");
+            this.defaultFocus = defaultFocus != null ? defaultFocus : new Focus(FocusStrategy.EMPTY);
+        }
+
+        private Builder(CompactGraph graph) {
+            this(graph.properties, graph.defaultFocus);
+            for (int i = 0; i < graph.vertexIds.length; i++) {
+                vertices.put(graph.vertexIds[i], new Row(internShape(graph.vertexKeys[i]), graph.vertexValues[i]));
+            }
+            for (int i = 0; i < graph.edgeIds.length; i++) {
+                final VertexRef source = graph.edgeSources[i] >= 0 ? new VertexRef(namespace, graph.vertexIds[graph.edgeSources[i]]) : graph.foreignEdgeSources[i];
+                final VertexRef target = graph.edgeTargets[i] >= 0 ? new VertexRef(namespace, graph.vertexIds[graph.edgeTargets[i]]) : graph.foreignEdgeTargets[i];
+                edges.put(graph.edgeIds[i], new EdgeRow(internShape(graph.edgeKeys[i]), graph.edgeValues[i], source, target));
+            }
+        }
+
+        private void property(String key, Object value) {
+            if (value != null) {
+                properties.put(key, value);
+            } else {
+                properties.remove(key);
+            }
+        }
+
+        private void putVertex(GenericVertex vertex) {
+            Objects.requireNonNull(vertex, "GenericVertex can not be null");
+            if (!namespace.equals(vertex.getNamespace())) {
+                throw new IllegalArgumentException(
+                        String.format("The namespace of the vertex (%s) doesn't match the namespace of this graph (%s). Vertex: %s ",
+                                vertex.getNamespace(), namespace, vertex.toString()));
+            }
+            final String[] keys = shapeOf(vertex.getProperties());
+            vertices.put(vertex.getId(), new Row(keys, valuesOf(keys, vertex.getProperties())));
+        }
+
+        private void removeVertex(String id) {
+            vertices.remove(id);
+            removedVertexIds.add(id);
+        }
+
+        private void putEdge(GenericEdge edge) {
+            Objects.requireNonNull(edge, "GenericEdge cannot be null");
+            if (!namespace.equals(edge.getNamespace())) {
+                throw new IllegalArgumentException(
+                        String.format("The namespace of the edge (%s) doesn't match the namespace of this graph (%s). Edge: %s ",
+                                edge.getNamespace(), namespace, edge.toString()));
+            }
+            final String[] keys = shapeOf(edge.getProperties());
+            edges.put(edge.getId(), new EdgeRow(keys, valuesOf(keys, edge.getProperties()), intern(edge.getSource()), intern(edge.getTarget())));
+        }
+
+        private String[] shapeOf(Map<String, Object> properties) {
+            // The namespace and id are not stored with the properties
+            final List<String> keys = properties.keySet().stream()
+                    .filter(key -> !GenericProperties.NAMESPACE.equals(key) && !GenericProperties.ID.equals(key))
+                    .sorted()
+                    .collect(Collectors.toList());
+            return shapes.computeIfAbsent(keys, k -> k.stream().map(String::intern).toArray(String[]::new));
+        }
+
+        private String[] internShape(String[] keys) {
+            return shapes.computeIfAbsent(Arrays.asList(keys), k -> keys);
+        }
+
+        private static Object[] valuesOf(String[] keys, Map<String, Object> properties) {
+            final Object[] values = new Object[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                values[i] = properties.get(keys[i]);
+            }
+            return values;
+        }
+
+        private VertexRef intern(VertexRef vertexRef) {
+            if (namespace.equals(vertexRef.getNamespace())) {
+                // Local vertices are referenced by index
+                return vertexRef;
+            }
+            final String otherNamespace = namespaces.computeIfAbsent(vertexRef.getNamespace(), ns -> ns);
+            return otherNamespace == vertexRef.getNamespace() ? vertexRef : new VertexRef(otherNamespace, vertexRef.getId());
+        }
+
+        private CompactGraph build() {
+            return new CompactGraph(this);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.graph.api.generic;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.opennms.netmgt.graph.api.ImmutableGraph;
+import org.opennms.netmgt.graph.api.ImmutableGraphContainer;
+import org.opennms.netmgt.graph.api.info.GraphInfo;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * {@link ImmutableGraphContainer} holding its graphs as {@link CompactGraph}s.
+ * Graphs are only converted to a {@link GenericGraph} if explicitly requested,
+ * e.g. by {@link #asGenericGraphContainer()}.
+ */
+public final class CompactGraphContainer implements ImmutableGraphContainer<CompactGraph> {
+
+    private final Map<String, Object> properties;
+    private final List<CompactGraph> graphs;
+
+    private CompactGraphContainer(Map<String, Object> properties, List<CompactGraph> graphs) {
+        this.properties = ImmutableMap.copyOf(properties);
+        this.graphs = ImmutableList.copyOf(graphs.stream().sorted(Comparator.comparing(CompactGraph::getNamespace)).collect(Collectors.toList()));
+    }
+
+    public static CompactGraphContainer from(ImmutableGraphContainer<?> container) {
+        Objects.requireNonNull(container);
+        if (container instanceof CompactGraphContainer) {
+            return (CompactGraphContainer) container;
+        }
+        final GenericGraphContainer genericGraphContainer = container.asGenericGraphContainer();
+        final List<CompactGraph> graphs = genericGraphContainer.getGraphs().stream()
+                .map(CompactGraph::from)
+                .collect(Collectors.toList());
+        return new CompactGraphContainer(genericGraphContainer.getProperties(), graphs);
+    }
+
+    /**
+     * Creates a new container reflecting the given container, by applying the changes of each graph to
+     * the corresponding graph of this container (see {@link CompactGraph#apply(ChangeSet)}).
+     * Graphs and elements which did not change are shared between both containers.
+     *
+     * @param container the current state of the container
+     * @return the updated container
+     */
+    public CompactGraphContainer update(ImmutableGraphContainer<?> container) {
+        Objects.requireNonNull(container);
+        if (container instanceof CompactGraphContainer) {
+            return (CompactGraphContainer) container;
+        }
+        final GenericGraphContainer genericGraphContainer = container.asGenericGraphContainer();
+        final List<CompactGraph> graphs = genericGraphContainer.getGraphs().stream()
+                .map(graph -> {
+                    final CompactGraph oldGraph = getGraph(graph.getNamespace());
+                    if (oldGraph == null) {
+                        return CompactGraph.from(graph);
+                    }
+                    final ChangeSet<ImmutableGraph<GenericVertex, GenericEdge>, GenericVertex, GenericEdge> changeSet =
+                            ChangeSet.<ImmutableGraph<GenericVertex, GenericEdge>, GenericVertex, GenericEdge>builder(oldGraph, graph).build();
+                    return oldGraph.apply(changeSet);
+                })
+                .collect(Collectors.toList());
+        return new CompactGraphContainer(genericGraphContainer.getProperties(), graphs);
+    }
+
+    @Override
+    public List<CompactGraph> getGraphs() {
+        return new ArrayList<>(graphs);
+    }
+
+    @Override
+    public CompactGraph getGraph(String namespace) {
+        return graphs.stream().filter(g -> g.getNamespace().equals(namespace)).findAny().orElse(null);
+    }
+
+    @Override
+    public GenericGraphContainer asGenericGraphContainer() {
+        final GenericGraphContainer.GenericGraphContainerBuilder builder = GenericGraphContainer.builder().properties(properties);
+        graphs.forEach(graph -> builder.addGraph(graph.asGenericGraph()));
+        return builder.build();
+    }
+
+    @Override
+    public String getId() {
+        return (String) properties.get(GenericProperties.ID);
+    }
+
+    @Override
+    public List<String> getNamespaces() {
+        return graphs.stream().map(CompactGraph::getNamespace).collect(Collectors.toList());
+    }
+
+    @Override
+    public String getDescription() {
+        return (String) properties.get(GenericProperties.DESCRIPTION);
+    }
+
+    @Override
+    public String getLabel() {
+        return (String) properties.get(GenericProperties.LABEL);
+    }
+
+    @Override
+    public GraphInfo getGraphInfo(String namespace) {
+        Objects.requireNonNull(namespace);
+        return getGraph(namespace);
+    }
+
+    @Override
+    public GraphInfo getPrimaryGraphInfo() {
+        return graphs.get(0);
+    }
+
+    @Override
+    public List<GraphInfo> getGraphInfos() {
+        return new ArrayList<>(graphs);
+    }
+
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+}
@@ -31,8 +31,11 @@ package org.opennms.netmgt.graph.api.service;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.opennms.netmgt.graph.api.ImmutableGraph;
+import org.opennms.netmgt.graph.api.generic.GenericEdge;
 import org.opennms.netmgt.graph.api.generic.GenericGraph;
 import org.opennms.netmgt.graph.api.generic.GenericGraphContainer;
+import org.opennms.netmgt.graph.api.generic.GenericVertex;
 import org.opennms.netmgt.graph.api.info.GraphContainerInfo;
 import org.opennms.netmgt.graph.api.info.GraphInfo;
 
@@ -58,4 +61,21 @@ public interface GraphService {
         }
         throw new NoSuchElementException("Could not find a Graph with namespace '" + namespace + "'.");
     }
+
+    /**
+     * Returns the graph without converting it to a {@link GenericGraph} first.
+     * Implementations may return a more memory efficient representation, which only creates
+     * the vertices and edges actually accessed, e.g. when only a view of the graph is requested.
+     */
+    default ImmutableGraph<GenericVertex, GenericEdge> getImmutableGraph(String containerId, String graphNamespace) {
+        return getGraph(containerId, graphNamespace);
+    }
+
+    default ImmutableGraph<GenericVertex, GenericEdge> getImmutableGraph(String namespace) {
+        final GraphContainerInfo graphContainerInfo = getGraphContainerInfoByNamespace(namespace);
+        if (graphContainerInfo != null) {
+            return getImmutableGraph(graphContainerInfo.getId(), namespace);
+        }
+        throw new NoSuchElementException("Could not find a Graph with namespace '" + namespace + "'.");
+    }
 }
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.graph.api.generic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.netmgt.graph.api.ImmutableGraph;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to compare the {@link GenericGraph} with the {@link CompactGraph}.
+ * <p>
+ * The graph is a chain of vertices, where each vertex is additionally connected to the vertex 10 positions ahead.
+ */
+public class CompactGraphBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    public static GenericGraph createGraph(int vertexCount, int offset) {
+        final GenericGraph.GenericGraphBuilder builder = TestObjectCreator.createGraphBuilderEmpty();
+        final List<GenericVertex> vertices = new ArrayList<>(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            final GenericVertex vertex = GenericVertex.builder()
+                    .namespace(TestObjectCreator.NAMESPACE)
+                    .id("v" + (i + offset))
+                    .label("Vertex " + (i + offset))
+                    .nodeRef("fs", Integer.toString(i + offset))
+                    .build();
+            vertices.add(vertex);
+            builder.addVertex(vertex);
+        }
+        for (int i = 1; i < vertexCount; i++) {
+            builder.addEdge(TestObjectCreator.createEdge(vertices.get(i - 1), vertices.get(i)));
+            if (i >= 10) {
+                builder.addEdge(TestObjectCreator.createEdge(vertices.get(i - 10), vertices.get(i)));
+            }
+        }
+        return builder.focus().first().apply().build();
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"1000", "10000"})
+        public int vertexCount;
+
+        private GenericGraph genericGraph;
+        private CompactGraph compactGraph;
+        private ChangeSet<GenericGraph, GenericVertex, GenericEdge> changeSet;
+        private List<GenericVertex> focus;
+
+        @Setup
+        public void setup() {
+            genericGraph = createGraph(vertexCount, 0);
+            compactGraph = CompactGraph.from(genericGraph);
+            // shift the graph by 1% of its vertices
+            changeSet = ChangeSet.builder(genericGraph, createGraph(vertexCount, vertexCount / 100)).build();
+            focus = Lists.newArrayList(genericGraph.getVertex("v" + vertexCount / 2));
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public CompactGraph compact(BState state) {
+        return CompactGraph.from(state.genericGraph);
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public CompactGraph applyChangeSet(BState state) {
+        return state.compactGraph.apply(state.changeSet);
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public ImmutableGraph<GenericVertex, GenericEdge> genericView(BState state) {
+        return state.genericGraph.getView(state.focus, 3);
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public ImmutableGraph<GenericVertex, GenericEdge> compactView(BState state) {
+        return state.compactGraph.getView(state.focus, 3);
+    }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.graph.api.generic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Compares the heap retained by {@link GenericGraph}s with the heap retained by the equivalent {@link CompactGraph}s.
+ * <p>
+ * JMH does not measure retained heap, so this is a plain main method:
+ * a number of copies of the graph is created and the used heap after a full GC is compared to the used heap before.
+ * Run with a fixed heap size, e.g. -Xms4g -Xmx4g, to get stable results.
+ * The graph is the one of {@link CompactGraphBenchmark}.
+ */
+public class CompactGraphMemoryBenchmark {
+
+    private static final int COPIES = 5;
+
+    public static void main(String[] args) {
+        final int[] vertexCounts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10000, 100000, 250000};
+        // warm up, so class loading and JIT compilation do not distort the first measurement
+        retainedHeapPerGraph(i -> CompactGraph.from(CompactGraphBenchmark.createGraph(1000, i)));
+        System.out.printf("%12s %20s %20s %8s%n", "vertices", "GenericGraph [B]", "CompactGraph [B]", "ratio");
+        for (int vertexCount : vertexCounts) {
+            final long generic = retainedHeapPerGraph(i -> CompactGraphBenchmark.createGraph(vertexCount, i));
+            final long compact = retainedHeapPerGraph(i -> CompactGraph.from(CompactGraphBenchmark.createGraph(vertexCount, i)));
+            System.out.printf("%12d %20d %20d %8.2f%n", vertexCount, generic, compact, (double) compact / generic);
+        }
+    }
+
+    private static long retainedHeapPerGraph(IntFunction<Object> graphFactory) {
+        final long before = usedHeapAfterGc();
+        final List<Object> graphs = new ArrayList<>(COPIES);
+        for (int i = 0; i < COPIES; i++) {
+            // use distinct ids for each copy, so no strings are shared between the copies
+            graphs.add(graphFactory.apply(i * 1000000));
+        }
+        final long after = usedHeapAfterGc();
+        if (graphs.size() != COPIES) {
+            throw new IllegalStateException(); // keeps the graphs reachable until after the measurement
+        }
+        return (after - before) / COPIES;
+    }
+
+    private static long usedHeapAfterGc() {
+        final Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.graph.api.generic;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.opennms.netmgt.graph.api.ImmutableGraph;
+import org.opennms.netmgt.graph.api.NodeRef;
+import org.opennms.netmgt.graph.api.VertexRef;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
+
+import com.google.common.collect.Lists;
+
+public class CompactGraphTest {
+
+    @Test
+    public void shouldBeEqualToGenericGraph() {
+        final GenericGraph genericGraph = createGraph();
+        final CompactGraph compactGraph = CompactGraph.from(genericGraph);
+
+        assertEquals(genericGraph, compactGraph.asGenericGraph());
+        assertEquals(genericGraph.getNamespace(), compactGraph.getNamespace());
+        assertEquals(genericGraph.getLabel(), compactGraph.getLabel());
+        assertEquals(genericGraph.getDescription(), compactGraph.getDescription());
+        assertEquals(genericGraph.getDefaultFocus(), compactGraph.getDefaultFocus());
+        assertThat(compactGraph.getVertices(), containsInAnyOrder(genericGraph.getVertices().toArray()));
+        assertThat(compactGraph.getEdges(), containsInAnyOrder(genericGraph.getEdges().toArray()));
+    }
+
+    @Test
+    public void shouldResolveElements() {
+        final GenericGraph genericGraph = createGraph();
+        final CompactGraph compactGraph = CompactGraph.from(genericGraph);
+
+        for (GenericVertex vertex : genericGraph.getVertices()) {
+            assertEquals(vertex, compactGraph.getVertex(vertex.getId()));
+            assertEquals(vertex, compactGraph.resolveVertex(vertex.getVertexRef()));
+            assertThat(compactGraph.getNeighbors(vertex), containsInAnyOrder(genericGraph.getNeighbors(vertex).toArray()));
+            assertThat(compactGraph.getConnectingEdges(vertex), containsInAnyOrder(genericGraph.getConnectingEdges(vertex).toArray()));
+        }
+        for (GenericEdge edge : genericGraph.getEdges()) {
+            assertEquals(edge, compactGraph.getEdge(edge.getId()));
+        }
+        assertNull(compactGraph.getVertex("unknown"));
+        assertNull(compactGraph.resolveVertex(new VertexRef("other", "v1")));
+        assertEquals(genericGraph.resolveVertices(NodeRef.from("fs", "1")), compactGraph.resolveVertices(NodeRef.from("fs", "1")));
+        assertThat(compactGraph.resolveVertices(NodeRef.from("fs", "1")), hasSize(1));
+    }
+
+    @Test
+    public void shouldCreateSameViewAsGenericGraph() {
+        final GenericGraph genericGraph = createGraph();
+        final CompactGraph compactGraph = CompactGraph.from(genericGraph);
+        final GenericVertex vertex = genericGraph.getVertex("v1");
+
+        for (int szl = 0; szl < 4; szl++) {
+            final ImmutableGraph<GenericVertex, GenericEdge> expected = genericGraph.getView(Lists.newArrayList(vertex), szl);
+            final ImmutableGraph<GenericVertex, GenericEdge> actual = compactGraph.getView(Lists.newArrayList(vertex), szl);
+            assertThat(actual.getVertices(), containsInAnyOrder(expected.getVertices().toArray()));
+            assertThat(actual.getEdges(), containsInAnyOrder(expected.getEdges().toArray()));
+        }
+    }
+
+    @Test
+    public void shouldApplyChangeSet() {
+        final GenericGraph oldGraph = createGraph();
+        final GenericVertex v1 = oldGraph.getVertex("v1");
+        final GenericVertex v2 = GenericVertex.builder().vertex(oldGraph.getVertex("v2")).label("updated").build();
+        final GenericVertex v3 = oldGraph.getVertex("v3");
+        final GenericVertex v5 = TestObjectCreator.createVertex(TestObjectCreator.NAMESPACE, "v5");
+        final GenericGraph newGraph = GenericGraph.builder()
+                .properties(oldGraph.getProperties())
+                .label("new label")
+                .addVertices(Arrays.asList(v1, v2, v3, v5))
+                .addEdge(TestObjectCreator.createEdge(v1, v2))
+                .addEdge(TestObjectCreator.createEdge(v2, v3))
+                .addEdge(TestObjectCreator.createEdge(v1, v5))
+                .focus(oldGraph.getDefaultFocus())
+                .build();
+
+        final CompactGraph compactGraph = CompactGraph.from(oldGraph);
+        final ChangeSet<GenericGraph, GenericVertex, GenericEdge> changeSet = ChangeSet.builder(oldGraph, newGraph).build();
+        final CompactGraph updatedGraph = compactGraph.apply(changeSet);
+
+        assertEquals(CompactGraph.from(newGraph).asGenericGraph(), updatedGraph.asGenericGraph());
+        assertThat(updatedGraph.getLabel(), is("new label"));
+        assertSame(compactGraph, compactGraph.apply(ChangeSet.builder(oldGraph, oldGraph).build()));
+    }
+
+    private static GenericGraph createGraph() {
+        final GenericVertex v1 = TestObjectCreator.createVertex(TestObjectCreator.NAMESPACE, "v1");
+        final GenericVertex v2 = TestObjectCreator.createVertex(TestObjectCreator.NAMESPACE, "v2");
+        final GenericVertex v3 = GenericVertex.builder().namespace(TestObjectCreator.NAMESPACE).id("v3").nodeRef("fs", "1").build();
+        final GenericVertex v4 = GenericVertex.builder().namespace(TestObjectCreator.NAMESPACE).id("v4").property("custom", 42).build();
+        final GenericVertex other = TestObjectCreator.createVertex("other", "o1");
+        return TestObjectCreator.createGraphBuilderEmpty()
+                .addVertices(Arrays.asList(v1, v2, v3, v4))
+                .addEdge(TestObjectCreator.createEdge(v1, v2))
+                .addEdge(TestObjectCreator.createEdge(v2, v3))
+                .addEdge(TestObjectCreator.createEdge(v3, v4))
+                .addEdge(TestObjectCreator.createEdge(v4, v4))
+                .addEdge(TestObjectCreator.createEdge(v1, other))
+                .focus().first().apply()
+                .build();
+    }
+}
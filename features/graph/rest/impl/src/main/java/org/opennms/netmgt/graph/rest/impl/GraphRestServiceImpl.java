@@ -38,6 +38,7 @@ import org.json.JSONObject;
 import org.opennms.netmgt.graph.api.ImmutableGraph;
 import org.opennms.netmgt.graph.api.ImmutableGraphContainer;
 import org.opennms.netmgt.graph.api.enrichment.EnrichmentService;
+import org.opennms.netmgt.graph.api.generic.GenericEdge;
 import org.opennms.netmgt.graph.api.generic.GenericGraph;
 import org.opennms.netmgt.graph.api.generic.GenericVertex;
 import org.opennms.netmgt.graph.api.info.GraphContainerInfo;
@@ -92,7 +93,7 @@ public class GraphRestServiceImpl implements GraphRestService {
 
     @Override
     public Response getView(String containerId, String namespace, Query query) {
-        final GenericGraph graph = graphService.getGraph(containerId, namespace);
+        final ImmutableGraph<GenericVertex, GenericEdge> graph = graphService.getImmutableGraph(containerId, namespace);
         if (graph == null) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
@@ -85,7 +85,7 @@ public class NodeSearchProvider implements SearchProvider {
     public List<GenericVertex> resolve(GraphService graphService, SearchCriteria searchCriteria) {
         final OnmsNode node = nodeDao.get(searchCriteria.getCriteria());
         final NodeRef nodeRef = NodeRef.from(node.getId(), node.getForeignSource(), node.getForeignId());
-        final List<GenericVertex> vertices = graphService.getGraph(searchCriteria.getNamespace()).resolveVertices(nodeRef);
+        final List<GenericVertex> vertices = graphService.getImmutableGraph(searchCriteria.getNamespace()).resolveVertices(nodeRef);
         return vertices;
     }
 }
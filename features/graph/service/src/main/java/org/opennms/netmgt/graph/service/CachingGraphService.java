@@ -33,9 +33,13 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.opennms.netmgt.graph.api.ImmutableGraph;
 import org.opennms.netmgt.graph.api.ImmutableGraphContainer;
+import org.opennms.netmgt.graph.api.generic.CompactGraphContainer;
+import org.opennms.netmgt.graph.api.generic.GenericEdge;
 import org.opennms.netmgt.graph.api.generic.GenericGraph;
 import org.opennms.netmgt.graph.api.generic.GenericGraphContainer;
+import org.opennms.netmgt.graph.api.generic.GenericVertex;
 import org.opennms.netmgt.graph.api.info.GraphContainerInfo;
 import org.opennms.netmgt.graph.api.info.GraphInfo;
 import org.opennms.netmgt.graph.api.service.GraphContainerCache;
@@ -46,14 +50,33 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
+/**
+ * Caches the graph containers of the delegate.
+ *
+ * If the system property {@value #COMPACT_CACHE_PROPERTY} is set to true, the containers are cached as
+ * {@link CompactGraphContainer}s, which retain considerably less heap than {@link GenericGraphContainer}s.
+ * Graphs are then converted to a {@link GenericGraph} on each request, unless requested via
+ * {@link #getImmutableGraph(String, String)}.
+ * When a compact container is reloaded, only the changes compared to the previously loaded container are applied
+ * (see {@link CompactGraphContainer#update(ImmutableGraphContainer)}), so unchanged graphs and elements are reused.
+ */
 public class CachingGraphService implements GraphService, GraphContainerCache {
 
+    public static final String COMPACT_CACHE_PROPERTY = "org.opennms.netmgt.graph.compactCache";
+
     private final GraphService delegate;
+    private final boolean compact;
     private final LoadingCache<String, ImmutableGraphContainer> cache;
     private final Map<String, Long> expireMap = new ConcurrentHashMap<>();
+    private final Map<String, CompactGraphContainer> compactContainers = new ConcurrentHashMap<>();
 
     public CachingGraphService(final GraphService delegate) {
+        this(delegate, Boolean.getBoolean(COMPACT_CACHE_PROPERTY));
+    }
+
+    public CachingGraphService(final GraphService delegate, final boolean compact) {
         this.delegate = Objects.requireNonNull(delegate);
+        this.compact = compact;
         this.cache = Caffeine.newBuilder()
             .expireAfter(new Expiry<String, ImmutableGraphContainer>() {
                 @Override
@@ -73,7 +96,24 @@ public class CachingGraphService implements GraphService, GraphContainerCache {
                 }
             })
             .recordStats()
-            .build(delegate::getGraphContainer);
+            .build(this::load);
+    }
+
+    private ImmutableGraphContainer load(String containerId) {
+        final GenericGraphContainer graphContainer = delegate.getGraphContainer(containerId);
+        if (compact) {
+            if (graphContainer == null) {
+                compactContainers.remove(containerId);
+                return null;
+            }
+            final CompactGraphContainer previousContainer = compactContainers.get(containerId);
+            final CompactGraphContainer compactContainer = previousContainer != null
+                    ? previousContainer.update(graphContainer)
+                    : CompactGraphContainer.from(graphContainer);
+            compactContainers.put(containerId, compactContainer);
+            return compactContainer;
+        }
+        return graphContainer;
     }
 
     @Override
@@ -111,9 +151,20 @@ public class CachingGraphService implements GraphService, GraphContainerCache {
 
     @Override
     public GenericGraph getGraph(String containerId, String graphNamespace) {
-        final GenericGraphContainer graphContainer = getGraphContainer(containerId);
-        if (graphContainer != null) {
-            return graphContainer.getGraph(graphNamespace);
+        final ImmutableGraph<GenericVertex, GenericEdge> graph = getImmutableGraph(containerId, graphNamespace);
+        if (graph != null) {
+            // Only converts the requested graph, not the whole container
+            return graph.asGenericGraph();
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ImmutableGraph<GenericVertex, GenericEdge> getImmutableGraph(String containerId, String graphNamespace) {
+        final ImmutableGraphContainer immutableGraphContainer = get(containerId);
+        if (immutableGraphContainer != null) {
+            return (ImmutableGraph<GenericVertex, GenericEdge>) immutableGraphContainer.getGraph(graphNamespace);
         }
         return null;
     }
@@ -133,6 +184,7 @@ public class CachingGraphService implements GraphService, GraphContainerCache {
             final String containerId = graphContainerProvider.getContainerInfo().getId();
             cache.invalidate(containerId);
             expireMap.remove(containerId);
+            compactContainers.remove(containerId);
         }
     }
 
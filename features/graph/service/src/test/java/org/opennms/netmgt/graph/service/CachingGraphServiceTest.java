@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.graph.service;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.graph.api.ImmutableGraph;
+import org.opennms.netmgt.graph.api.generic.CompactGraph;
+import org.opennms.netmgt.graph.api.generic.CompactGraphContainer;
+import org.opennms.netmgt.graph.api.generic.GenericEdge;
+import org.opennms.netmgt.graph.api.generic.GenericGraph;
+import org.opennms.netmgt.graph.api.generic.GenericGraphContainer;
+import org.opennms.netmgt.graph.api.generic.GenericVertex;
+import org.opennms.netmgt.graph.api.service.GraphService;
+
+public class CachingGraphServiceTest {
+
+    private static final String CONTAINER_ID = "container";
+
+    private GraphService delegate;
+    private GenericGraphContainer container;
+
+    @Before
+    public void setUp() {
+        container = GenericGraphContainer.builder()
+                .id(CONTAINER_ID)
+                .label("Container")
+                .addGraph(createGraph("ns1"))
+                .addGraph(createGraph("ns2"))
+                .build();
+        delegate = mock(GraphService.class);
+        when(delegate.getGraphContainer(CONTAINER_ID)).thenReturn(container);
+    }
+
+    @Test
+    public void shouldCacheGenericGraphContainer() {
+        final CachingGraphService graphService = new CachingGraphService(delegate, false);
+
+        assertSame(container, graphService.get(CONTAINER_ID));
+        assertSame(container.getGraph("ns1"), graphService.getGraph(CONTAINER_ID, "ns1"));
+        assertSame(container.getGraph("ns1"), graphService.getImmutableGraph(CONTAINER_ID, "ns1"));
+        verify(delegate, times(1)).getGraphContainer(CONTAINER_ID);
+    }
+
+    @Test
+    public void shouldCacheCompactGraphContainer() {
+        final CachingGraphService graphService = new CachingGraphService(delegate, true);
+
+        assertThat(graphService.get(CONTAINER_ID), instanceOf(CompactGraphContainer.class));
+        assertEquals(container, graphService.getGraphContainer(CONTAINER_ID));
+        assertEquals(container.getGraph("ns1"), graphService.getGraph(CONTAINER_ID, "ns1"));
+        assertEquals(container.getGraph("ns2"), graphService.getGraph(CONTAINER_ID, "ns2"));
+        assertNull(graphService.getGraph(CONTAINER_ID, "unknown"));
+
+        final ImmutableGraph<GenericVertex, GenericEdge> graph = graphService.getImmutableGraph(CONTAINER_ID, "ns1");
+        assertThat(graph, instanceOf(CompactGraph.class));
+        assertSame(graph, graphService.getImmutableGraph(CONTAINER_ID, "ns1"));
+        assertEquals(container.getGraph("ns1").getVertex("v1"), graph.getVertex("v1"));
+        verify(delegate, times(1)).getGraphContainer(CONTAINER_ID);
+    }
+
+    @Test
+    public void shouldReloadInvalidatedContainer() {
+        final CachingGraphService graphService = new CachingGraphService(delegate, true);
+
+        final ImmutableGraph<GenericVertex, GenericEdge> graph = graphService.getImmutableGraph(CONTAINER_ID, "ns1");
+        graphService.invalidate(CONTAINER_ID);
+        assertEquals(graph.asGenericGraph(), graphService.getImmutableGraph(CONTAINER_ID, "ns1").asGenericGraph());
+        verify(delegate, times(2)).getGraphContainer(CONTAINER_ID);
+    }
+
+    @Test
+    public void shouldApplyChangesOnReload() {
+        final CachingGraphService graphService = new CachingGraphService(delegate, true);
+
+        final ImmutableGraph<GenericVertex, GenericEdge> ns1 = graphService.getImmutableGraph(CONTAINER_ID, "ns1");
+        final ImmutableGraph<GenericVertex, GenericEdge> ns2 = graphService.getImmutableGraph(CONTAINER_ID, "ns2");
+
+        // Only ns1 changes
+        final GenericGraph changedGraph = GenericGraph.builder()
+                .graph(container.getGraph("ns1"))
+                .addVertex(GenericVertex.builder().namespace("ns1").id("v3").label("Vertex 3").build())
+                .build();
+        final GenericGraphContainer changedContainer = GenericGraphContainer.builder()
+                .id(CONTAINER_ID)
+                .label("Container")
+                .addGraph(changedGraph)
+                .addGraph(container.getGraph("ns2"))
+                .build();
+        when(delegate.getGraphContainer(CONTAINER_ID)).thenReturn(changedContainer);
+        graphService.invalidate(CONTAINER_ID);
+
+        assertEquals(changedGraph, graphService.getGraph(CONTAINER_ID, "ns1"));
+        assertNotSame(ns1, graphService.getImmutableGraph(CONTAINER_ID, "ns1"));
+        assertSame(ns2, graphService.getImmutableGraph(CONTAINER_ID, "ns2"));
+        verify(delegate, times(2)).getGraphContainer(CONTAINER_ID);
+    }
+
+    @Test
+    public void shouldNotCacheUnknownContainer() {
+        final CachingGraphService graphService = new CachingGraphService(delegate, true);
+
+        assertNull(graphService.getGraphContainer("unknown"));
+        assertNull(graphService.getImmutableGraph("unknown", "ns1"));
+    }
+
+    private static GenericGraph createGraph(String namespace) {
+        final GenericVertex v1 = GenericVertex.builder().namespace(namespace).id("v1").label("Vertex 1").nodeRef("fs", "1").build();
+        final GenericVertex v2 = GenericVertex.builder().namespace(namespace).id("v2").label("Vertex 2").build();
+        return GenericGraph.builder()
+                .namespace(namespace)
+                .label("Graph " + namespace)
+                .addVertex(v1)
+                .addVertex(v2)
+                .addEdge(GenericEdge.builder().namespace(namespace).source(v1.getVertexRef()).target(v2.getVertexRef()).build())
+                .build();
+    }
+}
@@ -35,16 +35,25 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.opennms.core.db.DataSourceFactory;
 import org.opennms.core.spring.BeanUtils;
+import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ParameterMap;
 import org.opennms.netmgt.collectd.jdbc.JdbcAgentState;
+import org.opennms.netmgt.collectd.jdbc.JdbcPoolSettings;
 import org.opennms.netmgt.collection.api.AbstractRemoteServiceCollector;
 import org.opennms.netmgt.collection.api.AttributeType;
 import org.opennms.netmgt.collection.api.CollectionAgent;
@@ -63,6 +72,11 @@ import org.opennms.netmgt.rrd.RrdRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 public class JdbcCollector extends AbstractRemoteServiceCollector {
     private static final Logger LOG = LoggerFactory.getLogger(JdbcCollector.class);
 
@@ -72,6 +86,14 @@ public class JdbcCollector extends AbstractRemoteServiceCollector {
             new SimpleEntry<>(JDBC_COLLECTION_KEY, JdbcDataCollection.class))
             .collect(Collectors.toMap((e) -> e.getKey(), (e) -> e.getValue())));
 
+    private static final String JMX_DOMAIN_JDBC_COLLECTOR = "org.opennms.netmgt.collectd.jdbc";
+
+    // Per-target query latency and error counts
+    private static final MetricRegistry METRICS = new MetricRegistry();
+    private static JmxReporter s_metricsReporter;
+
+    private static ExecutorService s_queryExecutor;
+
     private JdbcDataCollectionConfigDao m_jdbcCollectionDao;
 
     public JdbcCollector() {
@@ -81,6 +103,7 @@ public class JdbcCollector extends AbstractRemoteServiceCollector {
     @Override
     public void initialize() {
         LOG.debug("initialize: Initializing JdbcCollector.");
+        startMetricsReporter();
         if (m_jdbcCollectionDao == null) {
             // Retrieve the DAO for our configuration file.
             m_jdbcCollectionDao = BeanUtils.getBean("daoContext", "jdbcDataCollectionConfigDao", JdbcDataCollectionConfigDao.class);
@@ -110,125 +133,232 @@ public class JdbcCollector extends AbstractRemoteServiceCollector {
     @Override
     public CollectionSet collect(CollectionAgent agent, Map<String, Object> parameters) throws CollectionException {
         final JdbcDataCollection collection = (JdbcDataCollection)parameters.get(JDBC_COLLECTION_KEY);
-        
-        JdbcAgentState agentState = null;
-        Connection con = null;
-        ResultSet results = null;
-        Statement stmt = null;
-        try {
-            agentState = createAgentState(agent.getAddress(), parameters);
-            agentState.setupDatabaseConnections(parameters);
-
-            // Create a new collection set.
-            CollectionSetBuilder builder = new CollectionSetBuilder(agent);
-
-            // Creating a single resource object, because all node-level metric must belong to the exact same resource.
-            final NodeLevelResource nodeResource = new NodeLevelResource(agent.getNodeId());
-
-            // Cycle through all of the queries for this collection
-            for(JdbcQuery query : collection.getQueries()) {
-                // Verify if we should check for availability of a query.
-                if (agentState.shouldCheckAvailability(query.getQueryName(), query.getRecheckInterval())) {
-                    // Check to see if the query is available.
-                    if (!isGroupAvailable(agentState, query)) {
-                        LOG.warn("Group is not available.");
+
+        final JdbcAgentState agentState = createAgentState(agent.getAddress(), parameters);
+        agentState.setupDatabaseConnections(parameters);
+
+        // Create a new collection set.
+        CollectionSetBuilder builder = new CollectionSetBuilder(agent);
+
+        // Creating a single resource object, because all node-level metric must belong to the exact same resource.
+        final NodeLevelResource nodeResource = new NodeLevelResource(agent.getNodeId());
+
+        // Cycle through all of the queries for this collection and keep the ones we can collect
+        final List<JdbcQuery> queries = new ArrayList<>();
+        for(JdbcQuery query : collection.getQueries()) {
+            // Verify if we should check for availability of a query.
+            if (agentState.shouldCheckAvailability(query.getQueryName(), query.getRecheckInterval())) {
+                // Check to see if the query is available.
+                if (!isGroupAvailable(agentState, query)) {
+                    LOG.warn("Group is not available.");
+                    continue;
+                }
+            }
+            // If the query is available, lets collect it.
+            if (agentState.groupIsAvailable(query.getQueryName())) {
+                queries.add(query);
+            }
+        }
+
+        final String target = InetAddressUtils.str(agent.getAddress());
+        final QueryResult[] queryResults = executeQueries(agentState, queries, getQueryConcurrency(agentState, parameters), target);
+
+        for (int i = 0; i < queries.size(); i++) {
+            final JdbcQuery query = queries.get(i);
+            final QueryResult queryResult = queryResults[i];
+            if (queryResult == null) {
+                continue;
+            }
+            if (queryResult.failure != null) {
+                throw queryResult.failure;
+            }
+
+            // Iterate through each row.
+            for (QueryRow row : queryResult.rows) {
+                Resource resource = null;
+
+                // Create the appropriate resource container.
+                if(queryResult.singleInstance) {
+                    resource = nodeResource;
+                } else {
+                    resource = new DeferredGenericTypeResource(nodeResource, query.getResourceType(), row.instance);
+                }
+
+                for(JdbcColumn curColumn : query.getJdbcColumns()) {
+                    final AttributeType type = curColumn.getDataType();
+
+                    String columnValue = row.values.get(getColumnName(curColumn));
+                    if (columnValue == null) {
+                        LOG.debug("Skipping column named '{}' with null value.", curColumn.getColumnName());
                         continue;
                     }
-                }
 
-                try {
-                    // If the query is available, lets collect it.
-                    if (agentState.groupIsAvailable(query.getQueryName())) {
-                        if(agentState.getUseDataSourceName()) {
-                            initDatabaseConnectionFactory(agentState.getDataSourceName());
-                            con = DataSourceFactory.getInstance(agentState.getDataSourceName()).getConnection();
-                        } else {
-                            con = agentState.getJdbcConnection();
-                        }
-                        stmt = agentState.createStatement(con);
-                        results = agentState.executeJdbcQuery(stmt, query);
-                    
-                        // Determine if there were any results for this query to                    
-                        if (results.isBeforeFirst() && results.isAfterLast()) {
-                            LOG.warn("Query '{}' returned no results.", query.getQueryName());
-                            // Close the statement, but retain the connection.
-                            agentState.closeResultSet(results);
-                            agentState.closeStmt(stmt);
+                    if (type.isNumeric()) {
+                        Double numericValue = Double.NaN;
+                        try {
+                            numericValue = Double.parseDouble(columnValue);
+                        } catch (NumberFormatException e) {
+                            LOG.warn("Value '{}' for column named '{}' cannot be converted to a number. Skipping.", columnValue, curColumn.getColumnName());
                             continue;
                         }
-                        
-                        // Determine if there are results and how many.
-                        results.last();
-                        boolean singleInstance = (results.getRow()==1)?true:false;
-                        results.beforeFirst();
-
-                        // Iterate through each row.
-                        while(results.next() ) {
-                            Resource resource = null;
-
-                            // Create the appropriate resource container.
-                            if(singleInstance) {
-                                resource = nodeResource;
-                            } else {
-                                // Retrieve the name of the column to use as the instance key for multi-row queries.
-                                String instance = results.getString(query.getInstanceColumn());
-                                resource = new DeferredGenericTypeResource(nodeResource, query.getResourceType(), instance);
-                            }
-
-                            for(JdbcColumn curColumn : query.getJdbcColumns()) {
-                                final AttributeType type = curColumn.getDataType();
-
-                                String columnName = null;
-                                if(curColumn.getDataSourceName() != null && curColumn.getDataSourceName().length() != 0) {
-                                    columnName = curColumn.getDataSourceName();
-                                } else {
-                                    columnName = curColumn.getColumnName();
-                                }
-
-                                String columnValue = results.getString(columnName);
-                                if (columnValue == null) {
-                                    LOG.debug("Skipping column named '{}' with null value.", curColumn.getColumnName());
-                                    continue;
-                                }
-
-                                if (type.isNumeric()) {
-                                    Double numericValue = Double.NaN;
-                                    try {
-                                        numericValue = Double.parseDouble(columnValue);
-                                    } catch (NumberFormatException e) {
-                                        LOG.warn("Value '{}' for column named '{}' cannot be converted to a number. Skipping.", columnValue, curColumn.getColumnName());
-                                        continue;
-                                    }
-                                    builder.withNumericAttribute(resource, query.getQueryName(), curColumn.getAlias(), numericValue, type);
-                                } else {
-                                    builder.withStringAttribute(resource, query.getQueryName(), curColumn.getAlias(), columnValue);
-                                }
-                            }
-                        }
+                        builder.withNumericAttribute(resource, query.getQueryName(), curColumn.getAlias(), numericValue, type);
+                    } else {
+                        builder.withStringAttribute(resource, query.getQueryName(), curColumn.getAlias(), columnValue);
                     }
-                } catch(SQLException e) {
-                    // Close the statement but retain the connection, log the exception and continue to the next query.
-                    LOG.warn("There was a problem executing query '{}' Please review the query or configuration. Reason: {}", query.getQueryName(), e.getMessage());
-                    continue;
-                } finally {
-                    agentState.closeResultSet(results);
-                    agentState.closeStmt(stmt);
-                    agentState.closeConnection(con);
                 }
             }
-            builder.withStatus(CollectionStatus.SUCCEEDED);
-            return builder.build();
-        } finally {
-            if(agentState != null) {
-                // Make sure that when we're done we close all results, statements and connections.
-                agentState.closeResultSet(results);
-                agentState.closeStmt(stmt);
-                agentState.closeConnection(con);
-                //agentState.closeAgentConnection();
+        }
+        builder.withStatus(CollectionStatus.SUCCEEDED);
+        return builder.build();
+    }
+
+    private static int getQueryConcurrency(JdbcAgentState agentState, Map<String, Object> parameters) {
+        // Each query running at the same time needs its own connection, so by default we only go as wide as the pool
+        final JdbcPoolSettings poolSettings = agentState.getPoolSettings();
+        final int defaultConcurrency = poolSettings != null && poolSettings.isEnabled() ? poolSettings.getMaxSize() : 1;
+        return Math.max(1, ParameterMap.getKeyedInteger(parameters, "query-concurrency", defaultConcurrency));
+    }
+
+    /**
+     * Runs the given queries, at most {@code concurrency} at a time. The calling thread
+     * takes part in the work, so a concurrency of one runs them all right here.
+     */
+    private static QueryResult[] executeQueries(JdbcAgentState agentState, List<JdbcQuery> queries, int concurrency, String target) throws CollectionException {
+        final QueryResult[] queryResults = new QueryResult[queries.size()];
+        final AtomicInteger nextQuery = new AtomicInteger();
+        final Runnable worker = () -> {
+            int i;
+            while ((i = nextQuery.getAndIncrement()) < queries.size()) {
+                queryResults[i] = executeQuery(agentState, queries.get(i), target);
             }
+        };
+
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int k = 1; k < Math.min(concurrency, queries.size()); k++) {
+            futures.add(getQueryExecutor().submit(worker));
+        }
+        worker.run();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new CollectionException("Interrupted while waiting for JDBC queries to complete.", e);
+        } catch (ExecutionException e) {
+            throw new CollectionException("Failed to execute JDBC queries.", e.getCause());
+        }
+        return queryResults;
+    }
+
+    private static QueryResult executeQuery(JdbcAgentState agentState, JdbcQuery query, String target) {
+        Connection con = null;
+        ResultSet results = null;
+        Statement stmt = null;
+        final Timer.Context latency = METRICS.timer(MetricRegistry.name(target, "queries")).time();
+        try {
+            con = getConnection(agentState);
+            stmt = agentState.prepareStatement(con, query);
+            results = agentState.executeJdbcQuery(stmt, query);
+
+            // Determine if there were any results for this query to
+            if (results.isBeforeFirst() && results.isAfterLast()) {
+                LOG.warn("Query '{}' returned no results.", query.getQueryName());
+                return null;
+            }
+
+            // Determine if there are results and how many.
+            results.last();
+            final QueryResult queryResult = new QueryResult(results.getRow() == 1);
+            results.beforeFirst();
+
+            // Read all of the rows, the collection set is built by the calling thread
+            while (results.next()) {
+                final QueryRow row = new QueryRow();
+                if (!queryResult.singleInstance) {
+                    // Retrieve the name of the column to use as the instance key for multi-row queries.
+                    row.instance = results.getString(query.getInstanceColumn());
+                }
+                for (JdbcColumn curColumn : query.getJdbcColumns()) {
+                    final String columnName = getColumnName(curColumn);
+                    row.values.put(columnName, results.getString(columnName));
+                }
+                queryResult.rows.add(row);
+            }
+            return queryResult;
+        } catch(SQLException e) {
+            // Log the exception and continue to the next query.
+            METRICS.meter(MetricRegistry.name(target, "errors")).mark();
+            LOG.warn("There was a problem executing query '{}' Please review the query or configuration. Reason: {}", query.getQueryName(), e.getMessage());
+            return null;
+        } catch (RuntimeException e) {
+            METRICS.meter(MetricRegistry.name(target, "errors")).mark();
+            return new QueryResult(e);
+        } finally {
+            latency.stop();
+            // Hands the connection back to the pool, when there is one
+            agentState.closeResultSet(results);
+            agentState.closeStmt(stmt);
+            agentState.closeConnection(con);
+        }
+    }
+
+    private static Connection getConnection(JdbcAgentState agentState) throws SQLException {
+        if(agentState.getUseDataSourceName()) {
+            initDatabaseConnectionFactory(agentState.getDataSourceName());
+            return DataSourceFactory.getInstance(agentState.getDataSourceName()).getConnection();
+        } else {
+            return agentState.getJdbcConnection();
         }
     }
 
+    private static String getColumnName(JdbcColumn column) {
+        if(column.getDataSourceName() != null && column.getDataSourceName().length() != 0) {
+            return column.getDataSourceName();
+        } else {
+            return column.getColumnName();
+        }
+    }
+
+    private static synchronized ExecutorService getQueryExecutor() {
+        if (s_queryExecutor == null) {
+            s_queryExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setNameFormat("jdbc-collector-query-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        return s_queryExecutor;
+    }
+
+    private static synchronized void startMetricsReporter() {
+        if (s_metricsReporter == null) {
+            s_metricsReporter = JmxReporter.forRegistry(METRICS).inDomain(JMX_DOMAIN_JDBC_COLLECTOR).build();
+            s_metricsReporter.start();
+        }
+    }
+
+    private static class QueryResult {
+        private final boolean singleInstance;
+        private final List<QueryRow> rows = new ArrayList<>();
+        private final RuntimeException failure;
+
+        private QueryResult(boolean singleInstance) {
+            this.singleInstance = singleInstance;
+            this.failure = null;
+        }
+
+        private QueryResult(RuntimeException failure) {
+            this.singleInstance = false;
+            this.failure = failure;
+        }
+    }
+
+    private static class QueryRow {
+        private String instance;
+        private final Map<String, String> values = new HashMap<>();
+    }
+
     // Simply check the database the query is supposed to connect to to see if it is available.
     private static boolean isGroupAvailable(JdbcAgentState agentState, JdbcQuery query) {
         LOG.debug("Checking availability of group {}", query.getQueryName());
@@ -237,13 +367,8 @@ public class JdbcCollector extends AbstractRemoteServiceCollector {
         Connection con = null;
         
         try {
-            if(agentState.getUseDataSourceName()) {
-                initDatabaseConnectionFactory(agentState.getDataSourceName());
-                con = DataSourceFactory.getInstance(agentState.getDataSourceName()).getConnection();
-            } else {
-                con = agentState.getJdbcConnection();
-            }
-            
+            con = getConnection(agentState);
+
             DatabaseMetaData metadata = con.getMetaData();
             resultset = metadata.getCatalogs();
             while (resultset.next()) {
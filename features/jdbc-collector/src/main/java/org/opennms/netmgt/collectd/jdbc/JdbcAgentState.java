@@ -31,6 +31,7 @@ package org.opennms.netmgt.collectd.jdbc;
 import java.net.InetAddress;
 import java.sql.Connection;
 import java.sql.Driver;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -57,6 +58,7 @@ public class JdbcAgentState {
     
     Driver m_driver = null;
     Properties m_dbProps = null;
+    JdbcPoolSettings m_poolSettings = null;
     
     private String m_address;
     private Map<String, JdbcGroupState> m_groupStates = new HashMap<String, JdbcGroupState>();
@@ -109,6 +111,8 @@ public class JdbcAgentState {
         m_dbProps = new Properties();
         m_dbProps.setProperty("user", dbUser);
         m_dbProps.setProperty("password", dbPass);
+
+        m_poolSettings = new JdbcPoolSettings(parameters);
     }
     
     public Connection getJdbcConnection() throws JdbcCollectorException {
@@ -117,6 +121,9 @@ public class JdbcAgentState {
         }
 
         try {
+            if (m_poolSettings != null && m_poolSettings.isEnabled()) {
+                return JdbcConnectionPools.getInstance().getConnection(m_driver, m_dbUrl, m_dbProps, m_poolSettings);
+            }
             final Connection con = m_driver.connect(m_dbUrl, m_dbProps);
             if (con == null) {
                 throw new SQLException("Driver returned null!");
@@ -136,8 +143,24 @@ public class JdbcAgentState {
         }
     }
     
+    /**
+     * Prepares the query's statement. Drivers that cache prepared statements per
+     * connection get to reuse them across collections when the connection is pooled.
+     */
+    public PreparedStatement prepareStatement(Connection con, JdbcQuery query) {
+        try {
+            return con.prepareStatement(query.getJdbcStatement().getJdbcQuery(), ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        } catch(SQLException e) {
+            LOG.warn("Unable to prepare SQL statement: {}", e.getMessage());
+            throw new JdbcCollectorException("Unable to prepare SQL statement: " + e.getMessage(), e);
+        }
+    }
+
     public ResultSet executeJdbcQuery(Statement stmt, JdbcQuery query) {
         try {
+            if (stmt instanceof PreparedStatement) {
+                return ((PreparedStatement)stmt).executeQuery();
+            }
             return stmt.executeQuery(query.getJdbcStatement().getJdbcQuery());
         } catch(SQLException e) {
             //closeAgentConnection();
@@ -231,6 +254,10 @@ public class JdbcAgentState {
         m_dataSourceName = dataSourceName;
     }
 
+    public JdbcPoolSettings getPoolSettings() {
+        return m_poolSettings;
+    }
+
     public boolean getUseDataSourceName() {
         return m_useDataSourceName;
     }
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd.jdbc;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Keeps one connection pool per JDBC target so that the collector does not
+ * have to set up a new connection on every collection.
+ *
+ * Pools hold no idle connections longer than their idle timeout and are closed
+ * altogether once they have not been used for {@link #POOL_EXPIRY_MS}.
+ */
+public class JdbcConnectionPools {
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcConnectionPools.class);
+
+    /**
+     * Pools that have not handed out a connection for this long are closed.
+     */
+    public static final long POOL_EXPIRY_MS = TimeUnit.MINUTES.toMillis(30);
+
+    private static final JdbcConnectionPools INSTANCE = new JdbcConnectionPools();
+
+    private final Map<PoolKey, PoolHolder> m_pools = new ConcurrentHashMap<>();
+    private final AtomicInteger m_poolIds = new AtomicInteger();
+
+    // Shared by all pools, so we don't end up with a housekeeping thread per target
+    private final ScheduledExecutorService m_scheduler = Executors.newScheduledThreadPool(1, new ThreadFactoryBuilder()
+            .setNameFormat("jdbc-collector-pool-housekeeper-%d")
+            .setDaemon(true)
+            .build());
+
+    protected JdbcConnectionPools() {
+        m_scheduler.scheduleWithFixedDelay(this::closeExpiredPools, 1, 1, TimeUnit.MINUTES);
+    }
+
+    public static JdbcConnectionPools getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Borrows a connection from the pool for the given target, creating the pool
+     * on first use. Closing the returned connection hands it back to the pool.
+     */
+    public Connection getConnection(Driver driver, String url, Properties props, JdbcPoolSettings settings) throws SQLException {
+        final PoolKey key = new PoolKey(driver.getClass().getName(), url, props, settings);
+        // Touch the pool under the map's lock, so it can't expire between lookup and use
+        final PoolHolder holder = m_pools.compute(key, (k, h) -> {
+            final PoolHolder touched = h != null ? h : new PoolHolder();
+            touched.lastUsed = System.currentTimeMillis();
+            return touched;
+        });
+        return holder.getDataSource(driver, key).getConnection();
+    }
+
+    public int getPoolCount() {
+        return m_pools.size();
+    }
+
+    protected void closeExpiredPools() {
+        final long now = System.currentTimeMillis();
+        for (PoolKey key : m_pools.keySet()) {
+            m_pools.computeIfPresent(key, (k, holder) -> {
+                if (now - holder.lastUsed < POOL_EXPIRY_MS || holder.getActiveConnections() > 0) {
+                    return holder;
+                }
+                LOG.debug("Closing unused connection pool for {}", k.url);
+                holder.close();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Closes all of the pools.
+     */
+    public void closeAll() {
+        m_pools.entrySet().removeIf(e -> {
+            e.getValue().close();
+            return true;
+        });
+    }
+
+    private class PoolHolder {
+        private volatile long lastUsed;
+        private HikariDataSource m_dataSource;
+
+        private synchronized HikariDataSource getDataSource(Driver driver, PoolKey key) throws SQLException {
+            if (m_dataSource == null) {
+                final JdbcPoolSettings settings = key.settings;
+                final HikariConfig config = new HikariConfig();
+                config.setPoolName("jdbc-collector-" + m_poolIds.incrementAndGet());
+                config.setDataSource(new DriverDataSource(driver, key.url, key.props));
+                config.setMinimumIdle(0);
+                config.setMaximumPoolSize(settings.getMaxSize());
+                config.setMaxLifetime(settings.getMaxLifetime());
+                config.setIdleTimeout(settings.getIdleTimeout());
+                config.setConnectionTimeout(settings.getConnectionTimeout());
+                config.setValidationTimeout(settings.getValidationTimeout());
+                // Without a test query, connections are checked with Connection.isValid() before being handed out
+                config.setConnectionTestQuery(settings.getValidationQuery());
+                config.setScheduledExecutor(m_scheduler);
+                try {
+                    m_dataSource = new HikariDataSource(config);
+                } catch (RuntimeException e) {
+                    // The pool fails fast when the target can't be reached; try again on the next collection
+                    throw new SQLException("Unable to initialize connection pool for JDBC URL: '" + key.url + "'", e);
+                }
+                LOG.debug("Created connection pool {} for {}", config.getPoolName(), key.url);
+            }
+            return m_dataSource;
+        }
+
+        private synchronized int getActiveConnections() {
+            if (m_dataSource == null || m_dataSource.getHikariPoolMXBean() == null) {
+                return 0;
+            }
+            return m_dataSource.getHikariPoolMXBean().getActiveConnections();
+        }
+
+        private synchronized void close() {
+            if (m_dataSource != null) {
+                m_dataSource.close();
+                m_dataSource = null;
+            }
+        }
+    }
+
+    private static class PoolKey {
+        private final String driverClass;
+        private final String url;
+        private final Properties props;
+        private final JdbcPoolSettings settings;
+
+        private PoolKey(String driverClass, String url, Properties props, JdbcPoolSettings settings) {
+            this.driverClass = driverClass;
+            this.url = url;
+            this.props = props;
+            this.settings = settings;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final PoolKey that = (PoolKey) o;
+            return Objects.equals(driverClass, that.driverClass)
+                    && Objects.equals(url, that.url)
+                    && Objects.equals(props, that.props)
+                    && Objects.equals(settings, that.settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(driverClass, url, props, settings);
+        }
+    }
+
+    /**
+     * Hands out new connections from a driver that was loaded by this bundle, so that
+     * the pool doesn't need to be able to see the driver class itself.
+     */
+    private static class DriverDataSource implements DataSource {
+        private final Driver m_driver;
+        private final String m_url;
+        private final Properties m_props;
+        private PrintWriter m_logWriter;
+        private int m_loginTimeout;
+
+        private DriverDataSource(Driver driver, String url, Properties props) {
+            m_driver = driver;
+            m_url = url;
+            m_props = props;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection con = m_driver.connect(m_url, m_props);
+            if (con == null) {
+                throw new SQLException("Driver returned null!");
+            }
+            return con;
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            final Properties props = new Properties();
+            props.putAll(m_props);
+            props.setProperty("user", username);
+            props.setProperty("password", password);
+            return m_driver.connect(m_url, props);
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return m_logWriter;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+            m_logWriter = out;
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+            m_loginTimeout = seconds;
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return m_loginTimeout;
+        }
+
+        @Override
+        public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException("getParentLogger not supported");
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            throw new SQLException("Not a wrapper");
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd.jdbc;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.core.utils.ParameterMap;
+
+/**
+ * Connection pool settings, read from the collector's service parameters.
+ */
+public class JdbcPoolSettings {
+    public static final int DEFAULT_MAX_SIZE = 2;
+    public static final long DEFAULT_MAX_LIFETIME = TimeUnit.MINUTES.toMillis(30);
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+    public static final long DEFAULT_CONNECTION_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    public static final long DEFAULT_VALIDATION_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private final boolean m_enabled;
+    private final int m_maxSize;
+    private final long m_maxLifetime;
+    private final long m_idleTimeout;
+    private final long m_connectionTimeout;
+    private final long m_validationTimeout;
+    private final String m_validationQuery;
+
+    public JdbcPoolSettings(Map<String, Object> parameters) {
+        m_enabled = ParameterMap.getKeyedBoolean(parameters, "use-pool", true);
+        m_maxSize = Math.max(1, ParameterMap.getKeyedInteger(parameters, "pool-max-size", DEFAULT_MAX_SIZE));
+        m_maxLifetime = ParameterMap.getKeyedLong(parameters, "pool-max-lifetime", DEFAULT_MAX_LIFETIME);
+        m_idleTimeout = ParameterMap.getKeyedLong(parameters, "pool-idle-timeout", DEFAULT_IDLE_TIMEOUT);
+        m_connectionTimeout = ParameterMap.getKeyedLong(parameters, "pool-connection-timeout", DEFAULT_CONNECTION_TIMEOUT);
+        m_validationTimeout = ParameterMap.getKeyedLong(parameters, "pool-validation-timeout", DEFAULT_VALIDATION_TIMEOUT);
+        m_validationQuery = ParameterMap.getKeyedString(parameters, "pool-validation-query", null);
+    }
+
+    public boolean isEnabled() {
+        return m_enabled;
+    }
+
+    public int getMaxSize() {
+        return m_maxSize;
+    }
+
+    public long getMaxLifetime() {
+        return m_maxLifetime;
+    }
+
+    public long getIdleTimeout() {
+        return m_idleTimeout;
+    }
+
+    public long getConnectionTimeout() {
+        return m_connectionTimeout;
+    }
+
+    public long getValidationTimeout() {
+        return m_validationTimeout;
+    }
+
+    public String getValidationQuery() {
+        return m_validationQuery;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final JdbcPoolSettings that = (JdbcPoolSettings) o;
+        return m_enabled == that.m_enabled
+                && m_maxSize == that.m_maxSize
+                && m_maxLifetime == that.m_maxLifetime
+                && m_idleTimeout == that.m_idleTimeout
+                && m_connectionTimeout == that.m_connectionTimeout
+                && m_validationTimeout == that.m_validationTimeout
+                && Objects.equals(m_validationQuery, that.m_validationQuery);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(m_enabled, m_maxSize, m_maxLifetime, m_idleTimeout, m_connectionTimeout, m_validationTimeout, m_validationQuery);
+    }
+}
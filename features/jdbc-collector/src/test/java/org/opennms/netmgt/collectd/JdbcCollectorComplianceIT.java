@@ -28,21 +28,39 @@
 
 package org.opennms.netmgt.collectd;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
+import org.junit.After;
+import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.opennms.core.collection.test.CollectionSetUtils;
 import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
 import org.opennms.core.test.db.MockDatabase;
+import org.opennms.core.test.db.TemporaryDatabase;
+import org.opennms.core.test.db.TemporaryDatabaseAware;
 import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.collectd.jdbc.JdbcConnectionPools;
+import org.opennms.netmgt.collection.api.AttributeType;
+import org.opennms.netmgt.collection.api.CollectionAgent;
+import org.opennms.netmgt.collection.api.CollectionSet;
+import org.opennms.netmgt.collection.api.CollectionStatus;
 import org.opennms.netmgt.collection.test.api.CollectorComplianceTest;
 import org.opennms.netmgt.config.api.ResourceTypesDao;
+import org.opennms.netmgt.config.jdbc.JdbcColumn;
 import org.opennms.netmgt.config.jdbc.JdbcDataCollection;
+import org.opennms.netmgt.config.jdbc.JdbcQuery;
 import org.opennms.netmgt.config.jdbc.JdbcRrd;
+import org.opennms.netmgt.config.jdbc.JdbcStatement;
 import org.opennms.netmgt.dao.JdbcDataCollectionConfigDao;
+import org.opennms.netmgt.model.ResourcePath;
 import org.opennms.netmgt.rrd.RrdRepository;
 import org.opennms.test.JUnitConfigurationEnvironment;
 import org.springframework.test.context.ContextConfiguration;
@@ -55,10 +73,12 @@ import com.google.common.collect.ImmutableMap;
 })
 @JUnitConfigurationEnvironment
 @JUnitTemporaryDatabase(tempDbClass=MockDatabase.class,reuseDatabase=true)
-public class JdbcCollectorComplianceIT extends CollectorComplianceTest {
+public class JdbcCollectorComplianceIT extends CollectorComplianceTest implements TemporaryDatabaseAware<MockDatabase> {
 
     private static final String COLLECTION = "default";
 
+    private MockDatabase m_database;
+
     public JdbcCollectorComplianceIT() {
         super(JdbcCollector.class, true);
     }
@@ -91,4 +111,74 @@ public class JdbcCollectorComplianceIT extends CollectorComplianceTest {
                 .build();
     }
 
+    @Override
+    public void setTemporaryDatabase(MockDatabase database) {
+        m_database = database;
+    }
+
+    @After
+    public void tearDown() {
+        JdbcConnectionPools.getInstance().closeAll();
+    }
+
+    /**
+     * Collects from the temporary database through the connection pool, running
+     * the queries concurrently, and verifies that the collections share a single pool.
+     */
+    @Test
+    public void canCollectUsingPooledConnections() throws Exception {
+        JdbcDataCollection collection = new JdbcDataCollection();
+        collection.setJdbcRrd(new JdbcRrd());
+        collection.addQuery(nodeLevelQuery("pooled_first", "SELECT 42 AS answer", "answer"));
+        collection.addQuery(nodeLevelQuery("pooled_second", "SELECT 7 AS seven", "seven"));
+
+        JdbcDataCollectionConfigDao jdbcCollectionDao = mock(JdbcDataCollectionConfigDao.class, RETURNS_DEEP_STUBS);
+        when(jdbcCollectionDao.getDataCollectionByName(COLLECTION)).thenReturn(collection);
+
+        JdbcCollector jdbcCollector = new JdbcCollector();
+        jdbcCollector.setJdbcCollectionDao(jdbcCollectionDao);
+        jdbcCollector.initialize();
+
+        CollectionAgent agent = mock(CollectionAgent.class);
+        when(agent.getNodeId()).thenReturn(1);
+        when(agent.getAddress()).thenReturn(InetAddressUtils.ONE_TWENTY_SEVEN);
+        when(agent.getStorageResourcePath()).thenReturn(ResourcePath.get("snmp", "1"));
+
+        // Connect with the driver, instead of the data source, so that the connections are pooled
+        Map<String, Object> params = new HashMap<>();
+        params.put("collection", COLLECTION);
+        params.put("driver", System.getProperty(TemporaryDatabase.DRIVER_PROPERTY, TemporaryDatabase.DEFAULT_DRIVER));
+        params.put("url", System.getProperty(TemporaryDatabase.URL_PROPERTY, TemporaryDatabase.DEFAULT_URL) + m_database.getTestDatabase());
+        params.put("user", System.getProperty(TemporaryDatabase.ADMIN_USER_PROPERTY, TemporaryDatabase.DEFAULT_ADMIN_USER));
+        params.put("password", System.getProperty(TemporaryDatabase.ADMIN_PASSWORD_PROPERTY, TemporaryDatabase.DEFAULT_ADMIN_PASSWORD));
+        params.put("use-pool", "true");
+        params.put("pool-max-size", "2");
+        params.putAll(jdbcCollector.getRuntimeAttributes(agent, params));
+
+        final int poolCount = JdbcConnectionPools.getInstance().getPoolCount();
+        for (int i = 0; i < 3; i++) {
+            CollectionSet collectionSet = jdbcCollector.collect(agent, params);
+            assertEquals(CollectionStatus.SUCCEEDED, collectionSet.getStatus());
+            assertEquals(Arrays.asList("snmp/1/pooled_first/answer[null,42.0]", "snmp/1/pooled_second/seven[null,7.0]"),
+                    CollectionSetUtils.flatten(collectionSet));
+        }
+        assertEquals(poolCount + 1, JdbcConnectionPools.getInstance().getPoolCount());
+    }
+
+    private static JdbcQuery nodeLevelQuery(String name, String sql, String columnName) {
+        JdbcStatement statement = new JdbcStatement();
+        statement.setJdbcQuery(sql);
+
+        JdbcQuery query = new JdbcQuery();
+        query.setIfType("ignore");
+        query.setQueryName(name);
+        query.setJdbcStatement(statement);
+
+        JdbcColumn column = new JdbcColumn();
+        column.setColumnName(columnName);
+        column.setAlias(columnName);
+        column.setDataType(AttributeType.GAUGE);
+        query.addJdbcColumn(column);
+        return query;
+    }
 }
@@ -29,17 +29,22 @@
 package org.opennms.netmgt.collectd;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyObject;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.net.InetAddress;
 import java.sql.ResultSet;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -162,11 +167,71 @@ public class JdbcCollectorTest {
                     collectionSetKeys);
     }
 
+    @Test
+    public void canCollectQueriesConcurrently() throws Exception {
+        JdbcQuery first = nodeLevelQuery("first", "a");
+        JdbcQuery second = nodeLevelQuery("second", "b");
+
+        JdbcDataCollection collection = new JdbcDataCollection();
+        collection.addQuery(first);
+        collection.addQuery(second);
+
+        ResultSet firstResultSet = singleRowResultSet("a", "1");
+        ResultSet secondResultSet = singleRowResultSet("b", "2");
+
+        // The first query only completes once the second one has started
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        JdbcAgentState jdbcAgentState = mock(JdbcAgentState.class);
+        when(jdbcAgentState.executeJdbcQuery(anyObject(), eq(first))).thenAnswer(invocation -> {
+            assertTrue(secondStarted.await(10, TimeUnit.SECONDS));
+            return firstResultSet;
+        });
+        when(jdbcAgentState.executeJdbcQuery(anyObject(), eq(second))).thenAnswer(invocation -> {
+            secondStarted.countDown();
+            return secondResultSet;
+        });
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("query-concurrency", "2");
+        CollectionSet collectionSet = collect(collection, jdbcAgentState, params);
+        assertEquals(CollectionStatus.SUCCEEDED, collectionSet.getStatus());
+        // Attributes are still added in the order of the queries
+        assertEquals(Arrays.asList("snmp/1/first/a[null,1.0]", "snmp/1/second/b[null,2.0]"),
+                CollectionSetUtils.flatten(collectionSet));
+    }
+
+    private static JdbcQuery nodeLevelQuery(String name, String columnName) {
+        JdbcQuery query = new JdbcQuery();
+        query.setIfType("ignore");
+        query.setQueryName(name);
+
+        JdbcColumn column = new JdbcColumn();
+        column.setColumnName(columnName);
+        column.setAlias(columnName);
+        column.setDataType(AttributeType.GAUGE);
+        query.addJdbcColumn(column);
+        return query;
+    }
+
+    private static ResultSet singleRowResultSet(String columnName, String value) throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getRow()).thenReturn(1);
+        when(resultSet.getString(columnName)).thenReturn(value);
+        when(resultSet.next()).thenReturn(true).thenReturn(false);
+        return resultSet;
+    }
+
     public CollectionSet collect(JdbcDataCollection collection) throws Exception {
         return collect(collection, null);
     }
 
     public CollectionSet collect(JdbcDataCollection collection, ResultSet resultSet, ResourceType...resourceTypes) throws Exception {
+        JdbcAgentState jdbcAgentState = mock(JdbcAgentState.class);
+        when(jdbcAgentState.executeJdbcQuery(anyObject(), anyObject())).thenReturn(resultSet);
+        return collect(collection, jdbcAgentState, Collections.emptyMap(), resourceTypes);
+    }
+
+    public CollectionSet collect(JdbcDataCollection collection, JdbcAgentState jdbcAgentState, Map<String, Object> parameters, ResourceType...resourceTypes) throws Exception {
         final int nodeId = 1;
 
         JdbcDataCollectionConfig config = new JdbcDataCollectionConfig();
@@ -194,12 +259,10 @@ public class JdbcCollectorTest {
         when(agent.getAddress()).thenReturn(InetAddressUtils.ONE_TWENTY_SEVEN);
         when(agent.getStorageResourcePath()).thenReturn(ResourcePath.get("snmp", Integer.toString(nodeId)));
 
-        JdbcAgentState jdbcAgentState = mock(JdbcAgentState.class);
         when(jdbcAgentState.groupIsAvailable(any(String.class))).thenReturn(true);
-        when(jdbcAgentState.executeJdbcQuery(anyObject(), anyObject())).thenReturn(resultSet);
         jdbcCollector.setJdbcAgentState(jdbcAgentState);
 
-        Map<String, Object> params = new HashMap<>();
+        Map<String, Object> params = new HashMap<>(parameters);
         params.putAll(jdbcCollector.getRuntimeAttributes(agent, params));
         CollectionSet collectionSet = jdbcCollector.collect(agent, params);
 
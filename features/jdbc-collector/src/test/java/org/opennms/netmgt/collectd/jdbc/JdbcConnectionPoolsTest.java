@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JdbcConnectionPoolsTest {
+
+    private final AtomicInteger connectionsOpened = new AtomicInteger();
+
+    private JdbcConnectionPools pools;
+
+    private Driver driver;
+
+    @Before
+    public void setUp() throws Exception {
+        pools = new JdbcConnectionPools();
+        driver = mock(Driver.class);
+        when(driver.connect(anyString(), any(Properties.class))).thenAnswer(invocation -> {
+            connectionsOpened.incrementAndGet();
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            return connection;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        pools.closeAll();
+    }
+
+    @Test
+    public void canReuseConnections() throws Exception {
+        final JdbcPoolSettings settings = new JdbcPoolSettings(new HashMap<>());
+        pools.getConnection(driver, "jdbc:test://127.0.0.1/db", credentials(), settings).close();
+        final int opened = connectionsOpened.get();
+
+        // Borrowing again hands out the connection that was returned to the pool
+        for (int i = 0; i < 10; i++) {
+            pools.getConnection(driver, "jdbc:test://127.0.0.1/db", credentials(), settings).close();
+        }
+        assertEquals(opened, connectionsOpened.get());
+        assertEquals(1, pools.getPoolCount());
+    }
+
+    @Test
+    public void canKeepPoolsPerTarget() throws Exception {
+        final Map<String, Object> parameters = new HashMap<>();
+        final JdbcPoolSettings settings = new JdbcPoolSettings(parameters);
+        pools.getConnection(driver, "jdbc:test://127.0.0.1/db", credentials(), settings).close();
+        pools.getConnection(driver, "jdbc:test://127.0.0.2/db", credentials(), settings).close();
+        assertEquals(2, pools.getPoolCount());
+
+        // Changing the pool settings gets us a new pool
+        parameters.put("pool-max-size", "4");
+        pools.getConnection(driver, "jdbc:test://127.0.0.1/db", credentials(), new JdbcPoolSettings(parameters)).close();
+        assertEquals(3, pools.getPoolCount());
+
+        pools.closeAll();
+        assertEquals(0, pools.getPoolCount());
+    }
+
+    private static Properties credentials() {
+        final Properties props = new Properties();
+        props.setProperty("user", "opennms");
+        props.setProperty("password", "opennms");
+        return props;
+    }
+}
@@ -156,6 +156,54 @@ public class FetchResults {
             .toString();
     }
 
+    /**
+     * Consolidates the rows into at most <code>maxrows</code> rows by averaging
+     * consecutive rows, ignoring NaN values.
+     *
+     * The timestamp of each consolidated row is the timestamp of the last row in
+     * the bucket, similar to RRD consolidation. The column arrays are only
+     * allocated once per column and no boxing is performed.
+     *
+     * @param maxrows maximum number of rows - no limit when <= 0
+     * @return this instance if no consolidation is required, a new instance otherwise
+     */
+    public FetchResults downsample(final int maxrows) {
+        final int numRows = m_timestamps.length;
+        if (maxrows <= 0 || numRows <= maxrows) {
+            return this;
+        }
+
+        final int rowsPerBucket = (numRows + maxrows - 1) / maxrows;
+        final int numBuckets = (numRows + rowsPerBucket - 1) / rowsPerBucket;
+
+        final long[] timestamps = new long[numBuckets];
+        for (int b = 0; b < numBuckets; b++) {
+            timestamps[b] = m_timestamps[Math.min((b + 1) * rowsPerBucket, numRows) - 1];
+        }
+
+        final Map<String, double[]> columns = Maps.newLinkedHashMap(); // preserve ordering
+        for (final Map.Entry<String, double[]> entry : m_columns.entrySet()) {
+            final double[] values = entry.getValue();
+            final double[] consolidated = new double[numBuckets];
+            for (int b = 0; b < numBuckets; b++) {
+                final int from = b * rowsPerBucket;
+                final int to = Math.min(from + rowsPerBucket, numRows);
+                double sum = 0;
+                int count = 0;
+                for (int k = from; k < to; k++) {
+                    if (!Double.isNaN(values[k])) {
+                        sum += values[k];
+                        count++;
+                    }
+                }
+                consolidated[b] = count > 0 ? sum / count : Double.NaN;
+            }
+            columns.put(entry.getKey(), consolidated);
+        }
+
+        return new FetchResults(timestamps, columns, m_step * rowsPerBucket, m_constants, m_metadata);
+    }
+
     public RowSortedTable<Long, String, Double> asRowSortedTable() {
         RowSortedTable<Long, String, Double> table = TreeBasedTable.create();
 
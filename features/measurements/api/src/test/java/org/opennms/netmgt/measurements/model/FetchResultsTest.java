@@ -30,10 +30,12 @@ package org.opennms.netmgt.measurements.model;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.junit.Test;
@@ -89,4 +91,29 @@ public class FetchResultsTest {
         assertEquals(Double.NaN, table.get(1L, "y"), delta);
         assertEquals(99d, table.get(2L, "y"), delta);
     }
+
+    @Test
+    public void canDownsampleToMaxRows() {
+        final double delta = 0.0000001;
+
+        final Map<String, double[]> columns = new LinkedHashMap<>();
+        columns.put("x", new double[]{1d, 3d, Double.NaN, 5d, Double.NaN, Double.NaN, 7d});
+        final FetchResults results = new FetchResults(new long[]{100, 200, 300, 400, 500, 600, 700}, columns, 100,
+                Collections.emptyMap(), null);
+
+        // No consolidation required
+        assertSame(results, results.downsample(0));
+        assertSame(results, results.downsample(7));
+
+        // Buckets of 3 rows
+        final FetchResults downsampled = results.downsample(3);
+        assertEquals(300, downsampled.getStep());
+        assertArrayEquals(new long[]{300, 600, 700}, downsampled.getTimestamps());
+        assertArrayEquals(new double[]{2d, 5d, 7d}, downsampled.getColumns().get("x"), delta);
+
+        // Buckets containing only NaN values stay NaN
+        final FetchResults pairs = results.downsample(4);
+        assertArrayEquals(new long[]{200, 400, 600, 700}, pairs.getTimestamps());
+        assertArrayEquals(new double[]{2d, 5d, Double.NaN, 7d}, pairs.getColumns().get("x"), delta);
+    }
 }
@@ -169,6 +169,34 @@ public class MeasurementsRestService {
     @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.APPLICATION_ATOM_XML})
     @Transactional(readOnly=true)
     public QueryResponse query(final QueryRequest request) {
+        return execute(request);
+    }
+
+    /**
+     * Same as {@link #query(QueryRequest)}, but streams the columns directly
+     * from the primitive arrays to the output instead of marshalling the response.
+     *
+     * Use the <code>format</code> parameter to choose between <code>json</code> and
+     * the compact <code>binary</code> format described in {@link MeasurementsStreamingOutput}.
+     * Unlike {@link #query(QueryRequest)}, the rows are consolidated to honor
+     * <code>maxrows</code> when the fetch strategy returned more rows than requested.
+     */
+    @POST
+    @Path("stream")
+    @Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.APPLICATION_ATOM_XML})
+    @Produces({MediaType.APPLICATION_JSON, MeasurementsStreamingOutput.APPLICATION_BINARY})
+    @Transactional(readOnly=true)
+    public Response streamingQuery(final QueryRequest request, @DefaultValue("json") @QueryParam("format") final String format) {
+        final QueryResponse response = MeasurementsStreamingOutput.consolidate(execute(request), request.getMaxRows());
+        if ("binary".equalsIgnoreCase(format)) {
+            return Response.ok(MeasurementsStreamingOutput.binary(response), MeasurementsStreamingOutput.APPLICATION_BINARY).build();
+        } else if ("json".equalsIgnoreCase(format)) {
+            return Response.ok(MeasurementsStreamingOutput.json(response), MediaType.APPLICATION_JSON).build();
+        }
+        throw getException(Status.BAD_REQUEST, "Unsupported format '{}', expected one of 'json' or 'binary'.", format);
+    }
+
+    private QueryResponse execute(final QueryRequest request) {
         Preconditions.checkState(service != null);
         LOG.debug("Executing query with {}", request);
         QueryResponse response = null;
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.rest.v1;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.MappingJsonFactory;
+import org.opennms.netmgt.measurements.api.FetchResults;
+import org.opennms.netmgt.measurements.model.QueryResponse;
+import org.opennms.netmgt.measurements.model.QueryResponse.QueryConstant;
+import org.opennms.netmgt.measurements.model.QueryResponse.WrappedPrimitive;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Writes a {@link QueryResponse} directly to the output stream, reading
+ * the values straight from the primitive arrays instead of having the
+ * JAX-RS providers marshal the whole object graph.
+ *
+ * Two formats are supported:
+ * <ul>
+ *   <li>JSON, using the same structure as the marshalled {@link QueryResponse}</li>
+ *   <li>a compact, big-endian, columnar binary format:
+ *   <pre>
+ *   int    magic ({@link #BINARY_MAGIC})
+ *   byte   version ({@link #BINARY_VERSION})
+ *   long   step, start, end
+ *   int    number of rows (R), number of columns (C)
+ *   long[R] timestamps
+ *   C x { utf label, double[R] values }
+ *   int    number of constants, followed by { utf key, utf value }
+ *   </pre>
+ *   </li>
+ * </ul>
+ *
+ * The binary format does not include the resource metadata.
+ *
+ * Only the writing is streamed: the measurements service still fetches
+ * and holds the whole {@link QueryResponse} in memory before it is written.
+ */
+public abstract class MeasurementsStreamingOutput implements StreamingOutput {
+
+    public static final String APPLICATION_BINARY = "application/x-opennms-measurements";
+
+    public static final int BINARY_MAGIC = 0x4f4e4d53; // "ONMS"
+
+    public static final byte BINARY_VERSION = 1;
+
+    private static final JsonFactory JSON_FACTORY = new MappingJsonFactory();
+
+    protected final QueryResponse response;
+
+    private MeasurementsStreamingOutput(final QueryResponse response) {
+        this.response = Preconditions.checkNotNull(response, "response argument");
+    }
+
+    public static MeasurementsStreamingOutput json(final QueryResponse response) {
+        return new Json(response);
+    }
+
+    public static MeasurementsStreamingOutput binary(final QueryResponse response) {
+        return new Binary(response);
+    }
+
+    /**
+     * Consolidates (averages) the rows of the response to honor maxrows, for
+     * the fetch strategies which returned more rows than requested.
+     */
+    static QueryResponse consolidate(final QueryResponse response, final int maxRows) {
+        final long[] timestamps = response.getTimestamps();
+        if (maxRows <= 0 || timestamps == null || timestamps.length <= maxRows) {
+            return response;
+        }
+
+        final String[] labels = response.getLabels();
+        final WrappedPrimitive[] columns = response.getColumns();
+        final Map<String, double[]> values = new LinkedHashMap<>(); // preserve ordering
+        for (int i = 0; i < columns.length; i++) {
+            values.put(labels[i], getValues(columns[i], timestamps.length));
+        }
+
+        final FetchResults results = new FetchResults(timestamps, values, response.getStep(), Collections.emptyMap(), response.getMetadata())
+                .downsample(maxRows);
+        response.setStep(results.getStep());
+        response.setTimestamps(results.getTimestamps());
+        response.setColumns(results.getColumns());
+        return response;
+    }
+
+    /**
+     * @return the values of the column, or NaN for each row if the column has none
+     */
+    private static double[] getValues(final WrappedPrimitive column, final int rows) {
+        if (column.getList() != null) {
+            return column.getList();
+        }
+        final double[] values = new double[rows];
+        Arrays.fill(values, Double.NaN);
+        return values;
+    }
+
+    private static class Json extends MeasurementsStreamingOutput {
+        private Json(final QueryResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void write(final OutputStream output) throws IOException {
+            final JsonGenerator gen = JSON_FACTORY.createJsonGenerator(output, JsonEncoding.UTF8);
+            gen.writeStartObject();
+            gen.writeNumberField("step", response.getStep());
+            gen.writeNumberField("start", response.getStart());
+            gen.writeNumberField("end", response.getEnd());
+
+            gen.writeArrayFieldStart("timestamps");
+            final long[] timestamps = response.getTimestamps();
+            if (timestamps != null) {
+                for (final long timestamp : timestamps) {
+                    gen.writeNumber(timestamp);
+                }
+            }
+            gen.writeEndArray();
+
+            gen.writeArrayFieldStart("labels");
+            final String[] labels = response.getLabels();
+            if (labels != null) {
+                for (final String label : labels) {
+                    gen.writeString(label);
+                }
+            }
+            gen.writeEndArray();
+
+            gen.writeArrayFieldStart("columns");
+            final WrappedPrimitive[] columns = response.getColumns();
+            if (columns != null) {
+                for (final WrappedPrimitive column : columns) {
+                    gen.writeStartObject();
+                    gen.writeArrayFieldStart("values");
+                    final double[] values = column.getList() != null ? column.getList() : new double[0];
+                    for (final double value : values) {
+                        // Jackson serializes non-finite values as strings
+                        if (Double.isNaN(value) || Double.isInfinite(value)) {
+                            gen.writeString(Double.toString(value));
+                        } else {
+                            gen.writeNumber(value);
+                        }
+                    }
+                    gen.writeEndArray();
+                    gen.writeEndObject();
+                }
+            }
+            gen.writeEndArray();
+
+            gen.writeArrayFieldStart("constants");
+            final List<QueryConstant> constants = response.getConstants();
+            if (constants != null) {
+                for (final QueryConstant constant : constants) {
+                    gen.writeStartObject();
+                    gen.writeStringField("key", constant.getKey());
+                    gen.writeStringField("value", constant.getValue());
+                    gen.writeEndObject();
+                }
+            }
+            gen.writeEndArray();
+
+            if (response.getMetadata() != null) {
+                gen.writeFieldName("metadata");
+                gen.writeObject(response.getMetadata());
+            }
+
+            gen.writeEndObject();
+            gen.flush();
+        }
+    }
+
+    private static class Binary extends MeasurementsStreamingOutput {
+        private Binary(final QueryResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void write(final OutputStream output) throws IOException {
+            final long[] timestamps = response.getTimestamps() != null ? response.getTimestamps() : new long[0];
+            final String[] labels = response.getLabels() != null ? response.getLabels() : new String[0];
+            final WrappedPrimitive[] columns = response.getColumns() != null ? response.getColumns() : new WrappedPrimitive[0];
+            final List<QueryConstant> constants = response.getConstants();
+
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 64 * 1024));
+            out.writeInt(BINARY_MAGIC);
+            out.writeByte(BINARY_VERSION);
+            out.writeLong(response.getStep());
+            out.writeLong(response.getStart());
+            out.writeLong(response.getEnd());
+            out.writeInt(timestamps.length);
+            out.writeInt(columns.length);
+
+            for (final long timestamp : timestamps) {
+                out.writeLong(timestamp);
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                out.writeUTF(labels[i]);
+                // Every column has one value for each row
+                for (final double value : getValues(columns[i], timestamps.length)) {
+                    out.writeDouble(value);
+                }
+            }
+
+            if (constants == null) {
+                out.writeInt(0);
+            } else {
+                out.writeInt(constants.size());
+                for (final QueryConstant constant : constants) {
+                    out.writeUTF(constant.getKey());
+                    out.writeUTF(constant.getValue());
+                }
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.rest.v1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+import org.opennms.netmgt.measurements.model.QueryResponse;
+
+public class MeasurementsStreamingOutputTest {
+
+    @Test
+    public void canStreamJson() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MeasurementsStreamingOutput.json(createResponse()).write(output);
+
+        final JsonNode json = new ObjectMapper().readTree(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(300, json.get("step").getLongValue());
+        assertEquals(1000, json.get("start").getLongValue());
+        assertEquals(2000, json.get("end").getLongValue());
+
+        assertEquals(3, json.get("timestamps").size());
+        assertEquals(1300, json.get("timestamps").get(0).getLongValue());
+        assertEquals(1900, json.get("timestamps").get(2).getLongValue());
+
+        assertEquals(2, json.get("labels").size());
+        assertEquals("x", json.get("labels").get(0).getTextValue());
+        assertEquals("y", json.get("labels").get(1).getTextValue());
+
+        final JsonNode x = json.get("columns").get(0).get("values");
+        assertEquals(1d, x.get(0).getDoubleValue(), 0);
+        assertEquals(2d, x.get(1).getDoubleValue(), 0);
+        // Non-finite values are written as strings, the way Jackson marshals them
+        assertEquals("NaN", x.get(2).getTextValue());
+        assertEquals(99d, json.get("columns").get(1).get("values").get(2).getDoubleValue(), 0);
+
+        assertEquals(1, json.get("constants").size());
+        assertEquals("threshold", json.get("constants").get(0).get("key").getTextValue());
+        assertEquals("10", json.get("constants").get(0).get("value").getTextValue());
+
+        assertFalse(json.has("metadata"));
+    }
+
+    @Test
+    public void canStreamBinary() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MeasurementsStreamingOutput.binary(createResponse()).write(output);
+
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(MeasurementsStreamingOutput.BINARY_MAGIC, input.readInt());
+        assertEquals(MeasurementsStreamingOutput.BINARY_VERSION, input.readByte());
+        assertEquals(300, input.readLong());
+        assertEquals(1000, input.readLong());
+        assertEquals(2000, input.readLong());
+        assertEquals(3, input.readInt());
+        assertEquals(2, input.readInt());
+
+        assertArrayEquals(new long[]{1300, 1600, 1900},
+                new long[]{input.readLong(), input.readLong(), input.readLong()});
+
+        assertEquals("x", input.readUTF());
+        assertArrayEquals(new double[]{1d, 2d, Double.NaN},
+                new double[]{input.readDouble(), input.readDouble(), input.readDouble()}, 0);
+        assertEquals("y", input.readUTF());
+        assertArrayEquals(new double[]{Double.NaN, Double.NaN, 99d},
+                new double[]{input.readDouble(), input.readDouble(), input.readDouble()}, 0);
+
+        assertEquals(1, input.readInt());
+        assertEquals("threshold", input.readUTF());
+        assertEquals("10", input.readUTF());
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    public void canStreamEmptyResponse() throws IOException {
+        final QueryResponse response = new QueryResponse();
+        response.setStep(300);
+
+        final ByteArrayOutputStream jsonOutput = new ByteArrayOutputStream();
+        MeasurementsStreamingOutput.json(response).write(jsonOutput);
+        final JsonNode json = new ObjectMapper().readTree(new ByteArrayInputStream(jsonOutput.toByteArray()));
+        assertEquals(0, json.get("timestamps").size());
+        assertEquals(0, json.get("columns").size());
+        assertEquals(0, json.get("constants").size());
+
+        final ByteArrayOutputStream binaryOutput = new ByteArrayOutputStream();
+        MeasurementsStreamingOutput.binary(response).write(binaryOutput);
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(binaryOutput.toByteArray()));
+        input.skipBytes(4 + 1 + 3 * 8);
+        assertEquals(0, input.readInt());
+        assertEquals(0, input.readInt());
+        assertEquals(0, input.readInt());
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    public void canStreamColumnsWithoutValues() throws IOException {
+        final QueryResponse response = createResponse();
+        response.getColumns()[0] = new QueryResponse.WrappedPrimitive();
+
+        final ByteArrayOutputStream jsonOutput = new ByteArrayOutputStream();
+        MeasurementsStreamingOutput.json(response).write(jsonOutput);
+        final JsonNode json = new ObjectMapper().readTree(new ByteArrayInputStream(jsonOutput.toByteArray()));
+        assertEquals(0, json.get("columns").get(0).get("values").size());
+        assertEquals(3, json.get("columns").get(1).get("values").size());
+
+        // The binary format has a value for each row
+        final ByteArrayOutputStream binaryOutput = new ByteArrayOutputStream();
+        MeasurementsStreamingOutput.binary(response).write(binaryOutput);
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(binaryOutput.toByteArray()));
+        input.skipBytes(4 + 1 + 3 * 8 + 2 * 4 + 3 * 8);
+        assertEquals("x", input.readUTF());
+        assertArrayEquals(new double[]{Double.NaN, Double.NaN, Double.NaN},
+                new double[]{input.readDouble(), input.readDouble(), input.readDouble()}, 0);
+        assertEquals("y", input.readUTF());
+    }
+
+    @Test
+    public void canConsolidateToMaxRows() {
+        final QueryResponse response = createResponse();
+        assertSame(response, MeasurementsStreamingOutput.consolidate(response, 0));
+        assertArrayEquals(new long[]{1300, 1600, 1900}, MeasurementsStreamingOutput.consolidate(response, 3).getTimestamps());
+
+        MeasurementsStreamingOutput.consolidate(response, 2);
+        assertEquals(600, response.getStep());
+        assertArrayEquals(new long[]{1600, 1900}, response.getTimestamps());
+        assertArrayEquals(new String[]{"x", "y"}, response.getLabels());
+        assertArrayEquals(new double[]{1.5d, Double.NaN}, response.getColumns()[0].getList(), 0);
+        assertArrayEquals(new double[]{Double.NaN, 99d}, response.getColumns()[1].getList(), 0);
+    }
+
+    private static QueryResponse createResponse() {
+        final Map<String, double[]> columns = new LinkedHashMap<>();
+        columns.put("x", new double[]{1d, 2d, Double.NaN});
+        columns.put("y", new double[]{Double.NaN, Double.NaN, 99d});
+
+        final Map<String, Object> constants = new LinkedHashMap<>();
+        constants.put("threshold", 10);
+
+        final QueryResponse response = new QueryResponse();
+        response.setStep(300);
+        response.setStart(1000);
+        response.setEnd(2000);
+        response.setTimestamps(new long[]{1300, 1600, 1900});
+        response.setColumns(columns);
+        response.setConstants(constants);
+        return response;
+    }
+}
@@ -0,0 +1,479 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.newts.support;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.opennms.newts.api.Context;
+import org.opennms.newts.api.Resource;
+import org.opennms.newts.cassandra.search.ResourceMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * A memory efficient alternative to the {@link GuavaSearchableResourceMetadataCache}.
+ *
+ * Instead of storing a key and a {@link ResourceMetadata} object per resource, resource ids are
+ * split into their elements and stored in a prefix tree made of primitive arrays, where each node
+ * references an interned symbol for its element. The metrics and attributes of a resource are
+ * stored as interned arrays of symbols, which are shared by all the resources with the same
+ * metrics or attributes. The tree is used both for lookups and for searching by prefix, so there is
+ * no second structure to keep in sync.
+ *
+ * When the cache is full, resources are evicted using the CLOCK algorithm, an approximation of LRU.
+ * Resources which were not used since they were added are evicted first.
+ *
+ * Entries are returned as new {@link ResourceMetadata} objects, so changes made to them are not
+ * reflected in the cache unless they are merged.
+ */
+public class CompactSearchableResourceMetadataCache implements SearchableResourceMetadataCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompactSearchableResourceMetadataCache.class);
+
+    private static final char SEPARATOR = ':';
+
+    private static final int NONE = -1;
+
+    private final long m_maxSize;
+
+    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+
+    private final SymbolTable m_symbols = new SymbolTable();
+    private final IntArrayPool m_metricSets = new IntArrayPool();
+    private final IntArrayPool m_attributeSets = new IntArrayPool();
+
+    /**
+     * Root node of every context
+     */
+    private final Map<String, Integer> m_roots = new HashMap<>();
+
+    /**
+     * Child node by parent node and symbol
+     */
+    private final LongIntHashMap m_children = new LongIntHashMap(1024);
+
+    // Nodes of the prefix tree
+    private int[] m_parent = new int[1024];
+    private int[] m_symbol = new int[1024];
+    private int[] m_firstChild = new int[1024];
+    private int[] m_nextSibling = new int[1024];
+    private int[] m_previousSibling = new int[1024];
+    private int[] m_metrics = new int[1024];
+    private int[] m_attributes = new int[1024];
+    private byte[] m_referenced = new byte[1024];
+    private int m_nodeCount = 0;
+    private int m_freeNodes = NONE;
+
+    private int m_clockHand = 0;
+    private long m_size = 0;
+
+    private final Meter m_metricReqs;
+    private final Meter m_attributeReqs;
+    private final Meter m_metricMisses;
+    private final Meter m_attributeMisses;
+
+    @Inject
+    public CompactSearchableResourceMetadataCache(@Named("search.resourceMetadata.maxCacheEntries") long maxSize, @Named("newtsMetricRegistry") MetricRegistry registry) {
+        // The newly added resource is never evicted, so the cache must be able to hold at least one
+        Preconditions.checkArgument(maxSize > 0, "The maximum number of cache entries must be positive, but was %s", maxSize);
+        LOG.info("Initializing compact resource metadata cache ({} max entries)", maxSize);
+        m_maxSize = maxSize;
+
+        m_metricReqs = registry.meter(name("cache", "metric-reqs"));
+        m_metricMisses = registry.meter(name("cache", "metric-misses"));
+        m_attributeReqs = registry.meter(name("cache", "attribute-reqs"));
+        m_attributeMisses = registry.meter(name("cache", "attribute-misses"));
+
+        registry.register(MetricRegistry.name("cache", "size"),
+                new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return getSize();
+                    }
+                });
+        registry.register(MetricRegistry.name("cache", "max-size"),
+                new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return maxSize;
+                    }
+                });
+    }
+
+    @Override
+    public Optional<ResourceMetadata> get(Context context, Resource resource) {
+        m_lock.readLock().lock();
+        try {
+            final int node = findNode(context.getId(), resource.getId());
+            if (node == NONE || m_metrics[node] == NONE) {
+                return Optional.absent();
+            }
+            m_referenced[node] = 1;
+
+            final ResourceMetadata metadata = new ResourceMetadata(m_metricReqs, m_attributeReqs, m_metricMisses, m_attributeMisses);
+            for (final int metric : m_metricSets.get(m_metrics[node])) {
+                metadata.putMetric(m_symbols.get(metric));
+            }
+            final int[] attributes = m_attributeSets.get(m_attributes[node]);
+            for (int i = 0; i < attributes.length; i += 2) {
+                metadata.putAttribute(m_symbols.get(attributes[i]), m_symbols.get(attributes[i + 1]));
+            }
+            return Optional.of(metadata);
+        } finally {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void merge(Context context, Resource resource, ResourceMetadata metadata) {
+        m_lock.writeLock().lock();
+        try {
+            final int node = getOrCreateNode(context.getId(), resource.getId());
+
+            // New entries only get a second chance once they are used, so that resources which are
+            // only seen once do not push out the ones in use
+            if (m_metrics[node] == NONE) {
+                m_metrics[node] = internMetrics(new TreeSet<>(metadata.getMetrics()));
+                m_attributes[node] = internAttributes(new HashMap<>(metadata.getAttributes()));
+                m_size++;
+                evict(node);
+                return;
+            }
+
+            m_referenced[node] = 1;
+
+            // Only replace the interned sets if the merge adds anything
+            final int[] metrics = m_metricSets.get(m_metrics[node]);
+            final TreeSet<String> mergedMetrics = new TreeSet<>();
+            for (final int metric : metrics) {
+                mergedMetrics.add(m_symbols.get(metric));
+            }
+            if (mergedMetrics.addAll(metadata.getMetrics())) {
+                final int previous = m_metrics[node];
+                m_metrics[node] = internMetrics(mergedMetrics);
+                releaseSet(m_metricSets, previous);
+            }
+
+            final int[] attributes = m_attributeSets.get(m_attributes[node]);
+            final Map<String, String> mergedAttributes = new HashMap<>();
+            for (int i = 0; i < attributes.length; i += 2) {
+                mergedAttributes.put(m_symbols.get(attributes[i]), m_symbols.get(attributes[i + 1]));
+            }
+            boolean changed = false;
+            for (final Map.Entry<String, String> attribute : metadata.getAttributes().entrySet()) {
+                if (!attribute.getValue().equals(mergedAttributes.put(attribute.getKey(), attribute.getValue()))) {
+                    changed = true;
+                }
+            }
+            if (changed) {
+                final int previous = m_attributes[node];
+                m_attributes[node] = internAttributes(mergedAttributes);
+                releaseSet(m_attributeSets, previous);
+            }
+        } finally {
+            m_lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(final Context context, final Resource resource) {
+        m_lock.writeLock().lock();
+        try {
+            final int node = findNode(context.getId(), resource.getId());
+            if (node != NONE && m_metrics[node] != NONE) {
+                removeMetadata(node);
+            }
+        } finally {
+            m_lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> getResourceIdsWithPrefix(Context context, String resourceIdPrefix) {
+        final List<String> resourceIds = new ArrayList<>();
+        m_lock.readLock().lock();
+        try {
+            final Integer root = m_roots.get(context.getId());
+            if (root == null) {
+                return resourceIds;
+            }
+
+            // Walk down the complete elements of the prefix, the last element may be partial
+            final List<String> elements = split(resourceIdPrefix);
+            int node = root;
+            for (int i = 0; i < elements.size() - 1; i++) {
+                node = findChild(node, elements.get(i));
+                if (node == NONE) {
+                    return resourceIds;
+                }
+            }
+
+            final String partial = elements.get(elements.size() - 1);
+            final int lastSeparator = resourceIdPrefix.lastIndexOf(SEPARATOR);
+            final String parentId = lastSeparator < 0 ? null : resourceIdPrefix.substring(0, lastSeparator);
+            for (int child = m_firstChild[node]; child != NONE; child = m_nextSibling[child]) {
+                final String element = m_symbols.get(m_symbol[child]);
+                if (element.startsWith(partial)) {
+                    collect(child, new StringBuilder(parentId == null ? element : parentId + SEPARATOR + element), resourceIds);
+                }
+            }
+            return resourceIds;
+        } finally {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    public long getSize() {
+        m_lock.readLock().lock();
+        try {
+            return m_size;
+        } finally {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    private void collect(final int node, final StringBuilder resourceId, final List<String> resourceIds) {
+        if (m_metrics[node] != NONE) {
+            resourceIds.add(resourceId.toString());
+        }
+        final int length = resourceId.length();
+        for (int child = m_firstChild[node]; child != NONE; child = m_nextSibling[child]) {
+            resourceId.append(SEPARATOR).append(m_symbols.get(m_symbol[child]));
+            collect(child, resourceId, resourceIds);
+            resourceId.setLength(length);
+        }
+    }
+
+    private int findNode(final String contextId, final String resourceId) {
+        final Integer root = m_roots.get(contextId);
+        if (root == null) {
+            return NONE;
+        }
+        int node = root;
+        for (final String element : split(resourceId)) {
+            node = findChild(node, element);
+            if (node == NONE) {
+                return NONE;
+            }
+        }
+        return node;
+    }
+
+    private int findChild(final int node, final String element) {
+        final int symbol = m_symbols.find(element);
+        return symbol == NONE ? NONE : m_children.get(edge(node, symbol));
+    }
+
+    private int getOrCreateNode(final String contextId, final String resourceId) {
+        Integer root = m_roots.get(contextId);
+        if (root == null) {
+            root = allocateNode(NONE, NONE);
+            m_roots.put(contextId, root);
+        }
+        int node = root;
+        for (final String element : split(resourceId)) {
+            int child = findChild(node, element);
+            if (child == NONE) {
+                child = allocateNode(node, m_symbols.acquire(element));
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private int allocateNode(final int parent, final int symbol) {
+        final int node;
+        if (m_freeNodes != NONE) {
+            node = m_freeNodes;
+            m_freeNodes = m_nextSibling[node];
+        } else {
+            node = m_nodeCount++;
+            if (node == m_parent.length) {
+                final int capacity = node + (node >> 1);
+                m_parent = Arrays.copyOf(m_parent, capacity);
+                m_symbol = Arrays.copyOf(m_symbol, capacity);
+                m_firstChild = Arrays.copyOf(m_firstChild, capacity);
+                m_nextSibling = Arrays.copyOf(m_nextSibling, capacity);
+                m_previousSibling = Arrays.copyOf(m_previousSibling, capacity);
+                m_metrics = Arrays.copyOf(m_metrics, capacity);
+                m_attributes = Arrays.copyOf(m_attributes, capacity);
+                m_referenced = Arrays.copyOf(m_referenced, capacity);
+            }
+        }
+        m_parent[node] = parent;
+        m_symbol[node] = symbol;
+        m_firstChild[node] = NONE;
+        m_previousSibling[node] = NONE;
+        m_metrics[node] = NONE;
+        m_attributes[node] = NONE;
+        m_referenced[node] = 0;
+        if (parent != NONE) {
+            m_nextSibling[node] = m_firstChild[parent];
+            if (m_firstChild[parent] != NONE) {
+                m_previousSibling[m_firstChild[parent]] = node;
+            }
+            m_firstChild[parent] = node;
+            m_children.put(edge(parent, symbol), node);
+        } else {
+            m_nextSibling[node] = NONE;
+        }
+        return node;
+    }
+
+    private void removeMetadata(final int node) {
+        releaseSet(m_metricSets, m_metrics[node]);
+        releaseSet(m_attributeSets, m_attributes[node]);
+        m_metrics[node] = NONE;
+        m_attributes[node] = NONE;
+        m_size--;
+
+        // Remove the nodes which no longer lead to any resource, except for the roots
+        int current = node;
+        while (m_parent[current] != NONE && m_firstChild[current] == NONE && m_metrics[current] == NONE) {
+            final int parent = m_parent[current];
+            if (m_previousSibling[current] != NONE) {
+                m_nextSibling[m_previousSibling[current]] = m_nextSibling[current];
+            } else {
+                m_firstChild[parent] = m_nextSibling[current];
+            }
+            if (m_nextSibling[current] != NONE) {
+                m_previousSibling[m_nextSibling[current]] = m_previousSibling[current];
+            }
+            m_children.remove(edge(parent, m_symbol[current]));
+            m_symbols.release(m_symbol[current]);
+
+            m_parent[current] = NONE;
+            m_symbol[current] = NONE;
+            m_nextSibling[current] = m_freeNodes;
+            m_freeNodes = current;
+            current = parent;
+        }
+    }
+
+    /**
+     * Evicts resources until the cache is within its bounds, giving a second chance to recently used resources.
+     */
+    private void evict(final int inserted) {
+        while (m_size > m_maxSize) {
+            if (m_clockHand >= m_nodeCount) {
+                m_clockHand = 0;
+            }
+            final int node = m_clockHand++;
+            if (m_metrics[node] == NONE || node == inserted) {
+                continue;
+            }
+            if (m_referenced[node] != 0) {
+                m_referenced[node] = 0;
+                continue;
+            }
+            removeMetadata(node);
+        }
+    }
+
+    private int internMetrics(final TreeSet<String> metrics) {
+        final int[] symbols = new int[metrics.size()];
+        int i = 0;
+        for (final String metric : metrics) {
+            symbols[i++] = m_symbols.acquire(metric);
+        }
+        Arrays.sort(symbols);
+        return internSet(m_metricSets, symbols);
+    }
+
+    private int internAttributes(final Map<String, String> attributes) {
+        final long[] pairs = new long[attributes.size()];
+        int i = 0;
+        for (final Map.Entry<String, String> attribute : attributes.entrySet()) {
+            pairs[i++] = ((long)m_symbols.acquire(attribute.getKey()) << 32) | m_symbols.acquire(attribute.getValue());
+        }
+        Arrays.sort(pairs);
+        final int[] symbols = new int[pairs.length * 2];
+        for (i = 0; i < pairs.length; i++) {
+            symbols[2 * i] = (int)(pairs[i] >>> 32);
+            symbols[2 * i + 1] = (int)pairs[i];
+        }
+        return internSet(m_attributeSets, symbols);
+    }
+
+    /**
+     * Interns the given symbols, which were acquired by the caller.
+     * The references to the symbols are kept by the set, or released if an identical set already exists.
+     */
+    private int internSet(final IntArrayPool pool, final int[] symbols) {
+        final int id = pool.acquire(symbols);
+        if (pool.get(id) != symbols) {
+            for (final int symbol : symbols) {
+                m_symbols.release(symbol);
+            }
+        }
+        return id;
+    }
+
+    private void releaseSet(final IntArrayPool pool, final int id) {
+        final int[] released = pool.release(id);
+        if (released != null) {
+            for (final int symbol : released) {
+                m_symbols.release(symbol);
+            }
+        }
+    }
+
+    private static long edge(final int parent, final int symbol) {
+        return ((long)parent << 32) | (symbol & 0xFFFFFFFFL);
+    }
+
+    private static List<String> split(final String resourceId) {
+        final List<String> elements = new ArrayList<>();
+        int start = 0;
+        int end;
+        while ((end = resourceId.indexOf(SEPARATOR, start)) >= 0) {
+            elements.add(resourceId.substring(start, end));
+            start = end + 1;
+        }
+        elements.add(resourceId.substring(start));
+        return elements;
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.newts.support;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns sorted arrays of symbols as reference counted ids. Resources of the same type usually
+ * have exactly the same metrics, so each distinct set is only stored once.
+ *
+ * This class is not thread-safe.
+ */
+class IntArrayPool {
+
+    private final Map<Key, Integer> m_ids = new HashMap<>();
+
+    private int[][] m_arrays = new int[256][];
+    private int[] m_references = new int[256];
+    private int[] m_free = new int[16];
+    private int m_freeSize = 0;
+    private int m_next = 0;
+
+    /**
+     * Interns the given array and increments the references to it. The array must not be modified afterwards.
+     */
+    int acquire(final int[] array) {
+        final Key key = new Key(array);
+        final Integer existing = m_ids.get(key);
+        if (existing != null) {
+            m_references[existing]++;
+            return existing;
+        }
+        final int id;
+        if (m_freeSize > 0) {
+            id = m_free[--m_freeSize];
+        } else {
+            id = m_next++;
+            if (id == m_arrays.length) {
+                m_arrays = Arrays.copyOf(m_arrays, id << 1);
+                m_references = Arrays.copyOf(m_references, id << 1);
+            }
+        }
+        m_arrays[id] = array;
+        m_references[id] = 1;
+        m_ids.put(key, id);
+        return id;
+    }
+
+    /**
+     * Decrements the references to the given array.
+     *
+     * @return the array if it is no longer referenced, so that the symbols it holds can be released, otherwise null
+     */
+    int[] release(final int id) {
+        if (--m_references[id] > 0) {
+            return null;
+        }
+        final int[] array = m_arrays[id];
+        m_ids.remove(new Key(array));
+        m_arrays[id] = null;
+        if (m_freeSize == m_free.length) {
+            m_free = Arrays.copyOf(m_free, m_freeSize << 1);
+        }
+        m_free[m_freeSize++] = id;
+        return array;
+    }
+
+    int[] get(final int id) {
+        return m_arrays[id];
+    }
+
+    int size() {
+        return m_ids.size();
+    }
+
+    private static class Key {
+        private final int[] m_array;
+        private final int m_hashCode;
+
+        private Key(final int[] array) {
+            m_array = array;
+            m_hashCode = Arrays.hashCode(array);
+        }
+
+        @Override
+        public int hashCode() {
+            return m_hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Key && Arrays.equals(m_array, ((Key)obj).m_array);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.newts.support;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive longs to non-negative ints, without boxing or entry objects.
+ *
+ * This class is not thread-safe.
+ */
+class LongIntHashMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] m_keys;
+    private int[] m_values;
+    private int m_mask;
+    private int m_size = 0;
+
+    LongIntHashMap(final int expectedSize) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    int size() {
+        return m_size;
+    }
+
+    /**
+     * @return the value of the given key, or -1 if there is none
+     */
+    int get(final long key) {
+        int i = index(key);
+        while (m_keys[i] != EMPTY) {
+            if (m_keys[i] == key) {
+                return m_values[i];
+            }
+            i = (i + 1) & m_mask;
+        }
+        return -1;
+    }
+
+    void put(final long key, final int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Reserved key: " + key);
+        }
+        int i = index(key);
+        while (m_keys[i] != EMPTY) {
+            if (m_keys[i] == key) {
+                m_values[i] = value;
+                return;
+            }
+            i = (i + 1) & m_mask;
+        }
+        m_keys[i] = key;
+        m_values[i] = value;
+        if (++m_size > (m_mask + 1) * 3 / 4) {
+            rehash((m_mask + 1) << 1);
+        }
+    }
+
+    void remove(final long key) {
+        int i = index(key);
+        while (m_keys[i] != EMPTY) {
+            if (m_keys[i] == key) {
+                m_keys[i] = EMPTY;
+                m_size--;
+                // Shift the following entries of the cluster back, so that no tombstones are needed
+                int j = (i + 1) & m_mask;
+                while (m_keys[j] != EMPTY) {
+                    final long k = m_keys[j];
+                    final int v = m_values[j];
+                    m_keys[j] = EMPTY;
+                    m_size--;
+                    put(k, v);
+                    j = (j + 1) & m_mask;
+                }
+                return;
+            }
+            i = (i + 1) & m_mask;
+        }
+    }
+
+    /**
+     * @return the number of bytes used by the table
+     */
+    long getMemoryUsage() {
+        return (m_mask + 1) * (long)(Long.BYTES + Integer.BYTES);
+    }
+
+    private int index(final long key) {
+        // Fibonacci hashing spreads the sequential parts of the keys
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32)) & m_mask;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] keys = m_keys;
+        final int[] values = m_values;
+        allocate(capacity);
+        m_size = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                put(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        m_keys = new long[capacity];
+        m_values = new int[capacity];
+        m_mask = capacity - 1;
+        Arrays.fill(m_keys, EMPTY);
+    }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.newts.support;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns strings as reference counted int symbols, so that strings shared by many resources,
+ * like the elements of the resource ids, the metric names and the attributes, are only stored once.
+ *
+ * This class is not thread-safe.
+ */
+class SymbolTable {
+
+    private final Map<String, Integer> m_ids = new HashMap<>();
+
+    private String[] m_symbols = new String[1024];
+    private int[] m_references = new int[1024];
+    private int[] m_free = new int[16];
+    private int m_freeSize = 0;
+    private int m_next = 0;
+
+    /**
+     * @return the symbol of the given string, or -1 if it was not interned
+     */
+    int find(final String value) {
+        final Integer id = m_ids.get(value);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Interns the given string and increments the references to its symbol.
+     */
+    int acquire(final String value) {
+        final Integer existing = m_ids.get(value);
+        if (existing != null) {
+            m_references[existing]++;
+            return existing;
+        }
+        final int id;
+        if (m_freeSize > 0) {
+            id = m_free[--m_freeSize];
+        } else {
+            id = m_next++;
+            if (id == m_symbols.length) {
+                m_symbols = Arrays.copyOf(m_symbols, id << 1);
+                m_references = Arrays.copyOf(m_references, id << 1);
+            }
+        }
+        m_symbols[id] = value;
+        m_references[id] = 1;
+        m_ids.put(value, id);
+        return id;
+    }
+
+    /**
+     * Decrements the references to the given symbol, and forgets it once unreferenced.
+     */
+    void release(final int id) {
+        if (--m_references[id] == 0) {
+            m_ids.remove(m_symbols[id]);
+            m_symbols[id] = null;
+            if (m_freeSize == m_free.length) {
+                m_free = Arrays.copyOf(m_free, m_freeSize << 1);
+            }
+            m_free[m_freeSize++] = id;
+        }
+    }
+
+    String get(final int id) {
+        return m_symbols[id];
+    }
+
+    int size() {
+        return m_ids.size();
+    }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.newts.support.osgi;
+
+import java.util.Objects;
+
+import org.opennms.netmgt.newts.support.CompactSearchableResourceMetadataCache;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class CompactCacheFactory implements CacheFactory<CompactSearchableResourceMetadataCache> {
+
+    private final long cacheSize;
+    private final MetricRegistry metricRegistry;
+
+    public CompactCacheFactory(long cacheSize, MetricRegistry metricRegistry) {
+        this.cacheSize = cacheSize;
+        this.metricRegistry = Objects.requireNonNull(metricRegistry);
+    }
+
+    @Override
+    public Class<CompactSearchableResourceMetadataCache> supportedType() {
+        return CompactSearchableResourceMetadataCache.class;
+    }
+
+    @Override
+    public CompactSearchableResourceMetadataCache createCache() {
+        return new CompactSearchableResourceMetadataCache(cacheSize, metricRegistry);
+    }
+}
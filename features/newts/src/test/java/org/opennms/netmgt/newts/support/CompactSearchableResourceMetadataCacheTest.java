@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.newts.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.opennms.newts.api.Context;
+import org.opennms.newts.api.Resource;
+import org.opennms.newts.cassandra.search.ResourceMetadata;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class CompactSearchableResourceMetadataCacheTest {
+
+    private final Context m_context = Context.DEFAULT_CONTEXT;
+
+    @Test
+    public void canGetEntriesWithPrefix() {
+        CompactSearchableResourceMetadataCache cache = new CompactSearchableResourceMetadataCache(2048, new MetricRegistry());
+
+        assertTrue(cache.getResourceIdsWithPrefix(m_context, "a").isEmpty());
+
+        cache.merge(m_context, new Resource("a:b:c"), new ResourceMetadata());
+        cache.merge(m_context, new Resource("a:bc"), new ResourceMetadata());
+
+        assertEquals(Arrays.asList("a:b:c", "a:bc"), sorted(cache.getResourceIdsWithPrefix(m_context, "a")));
+        assertEquals(Arrays.asList("a:b:c", "a:bc"), sorted(cache.getResourceIdsWithPrefix(m_context, "a:b")));
+        assertEquals(Arrays.asList("a:b:c"), cache.getResourceIdsWithPrefix(m_context, "a:b:"));
+        assertEquals(Arrays.asList("a:b:c"), cache.getResourceIdsWithPrefix(m_context, "a:b:c"));
+        assertTrue(cache.getResourceIdsWithPrefix(m_context, "a:b:c:d").isEmpty());
+        assertTrue(cache.getResourceIdsWithPrefix(m_context, "b").isEmpty());
+        assertTrue(cache.getResourceIdsWithPrefix(new Context("other"), "a").isEmpty());
+    }
+
+    @Test
+    public void canMergeMetadata() {
+        CompactSearchableResourceMetadataCache cache = new CompactSearchableResourceMetadataCache(2048, new MetricRegistry());
+        Resource resource = new Resource("snmp:1:eth0:mib2-interfaces");
+
+        assertFalse(cache.get(m_context, resource).isPresent());
+
+        cache.merge(m_context, resource, new ResourceMetadata().putMetric("ifHCInOctets").putAttribute("ifName", "eth0"));
+        cache.merge(m_context, resource, new ResourceMetadata().putMetric("ifHCOutOctets").putAttribute("ifName", "eth1").putAttribute("ifSpeed", "1000"));
+
+        ResourceMetadata metadata = cache.get(m_context, resource).get();
+        assertTrue(metadata.containsMetric("ifHCInOctets"));
+        assertTrue(metadata.containsMetric("ifHCOutOctets"));
+        assertFalse(metadata.containsMetric("ifInErrors"));
+        assertTrue(metadata.containsAttribute("ifName", "eth1"));
+        assertFalse(metadata.containsAttribute("ifName", "eth0"));
+        assertTrue(metadata.containsAttribute("ifSpeed", "1000"));
+
+        // Parent elements of a resource are not resources themselves
+        assertFalse(cache.get(m_context, new Resource("snmp:1:eth0")).isPresent());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void canDeleteEntries() {
+        CompactSearchableResourceMetadataCache cache = new CompactSearchableResourceMetadataCache(2048, new MetricRegistry());
+        cache.merge(m_context, new Resource("a:b:c"), new ResourceMetadata().putMetric("m1"));
+        cache.merge(m_context, new Resource("a:b"), new ResourceMetadata().putMetric("m1"));
+
+        cache.delete(m_context, new Resource("a:b:c"));
+        assertFalse(cache.get(m_context, new Resource("a:b:c")).isPresent());
+        assertTrue(cache.get(m_context, new Resource("a:b")).isPresent());
+        assertEquals(Arrays.asList("a:b"), cache.getResourceIdsWithPrefix(m_context, "a"));
+
+        cache.delete(m_context, new Resource("a:b"));
+        assertTrue(cache.getResourceIdsWithPrefix(m_context, "").isEmpty());
+        assertEquals(0, cache.getSize());
+
+        // Entries can be added again once the nodes of the tree were released
+        cache.merge(m_context, new Resource("a:b:c"), new ResourceMetadata().putMetric("m2"));
+        assertTrue(cache.get(m_context, new Resource("a:b:c")).get().containsMetric("m2"));
+        assertFalse(cache.get(m_context, new Resource("a:b:c")).get().containsMetric("m1"));
+    }
+
+    @Test
+    public void canEvictEntries() {
+        CompactSearchableResourceMetadataCache cache = new CompactSearchableResourceMetadataCache(100, new MetricRegistry());
+        Resource hot = new Resource("snmp:0:hot");
+        cache.merge(m_context, hot, new ResourceMetadata().putMetric("m"));
+
+        for (int i = 1; i <= 1000; i++) {
+            cache.merge(m_context, new Resource(String.format("snmp:%d:eth0", i)), new ResourceMetadata().putMetric("m"));
+            // Recently used entries get a second chance
+            assertTrue(cache.get(m_context, hot).isPresent());
+        }
+
+        assertEquals(100, cache.getSize());
+        assertEquals(100, cache.getResourceIdsWithPrefix(m_context, "snmp:").size());
+    }
+
+    @Test
+    public void canHoldSingleEntry() {
+        CompactSearchableResourceMetadataCache cache = new CompactSearchableResourceMetadataCache(1, new MetricRegistry());
+        for (int i = 1; i <= 10; i++) {
+            cache.merge(m_context, new Resource(String.format("snmp:%d:eth0", i)), new ResourceMetadata().putMetric("m"));
+        }
+
+        assertEquals(1, cache.getSize());
+        assertTrue(cache.get(m_context, new Resource("snmp:10:eth0")).isPresent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotCreateCacheWithoutEntries() {
+        new CompactSearchableResourceMetadataCache(0, new MetricRegistry());
+    }
+
+    private static List<String> sorted(List<String> list) {
+        Collections.sort(list);
+        return list;
+    }
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.newts.support;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.newts.api.Context;
+import org.opennms.newts.api.Resource;
+import org.opennms.newts.cassandra.search.ResourceMetadata;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to compare the {@link GuavaSearchableResourceMetadataCache}
+ * with the {@link CompactSearchableResourceMetadataCache}.
+ * <p>
+ * The resources mimic SNMP interface resources: every node has the same interfaces, and every
+ * interface resource has the same metrics and an ifName attribute. The heap retained by the
+ * populated cache is printed during the setup.
+ */
+public class SearchableResourceMetadataCacheBenchmark {
+
+    private static final String[] METRICS = new String[] { "ifHCInOctets", "ifHCOutOctets", "ifInErrors", "ifOutErrors",
+            "ifInDiscards", "ifOutDiscards", "ifHCInUcastPkts", "ifHCOutUcastPkts" };
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    private static Resource resource(int node, int intf) {
+        return new Resource(String.format("snmp:fs:NODES:node%d:eth%d-0050568%05d:mib2-X-interfaces", node, intf, node));
+    }
+
+    private static ResourceMetadata metadata(int intf) {
+        final ResourceMetadata metadata = new ResourceMetadata();
+        for (String metric : METRICS) {
+            metadata.putMetric(metric);
+        }
+        return metadata.putAttribute("ifName", "eth" + intf);
+    }
+
+    @State(Scope.Benchmark)
+    public static class CacheState {
+
+        @Param({"guava", "compact"})
+        public String type;
+
+        @Param({"200000"})
+        public int resourceCount;
+
+        public int interfacesPerNode = 20;
+
+        private final Context context = Context.DEFAULT_CONTEXT;
+
+        private SearchableResourceMetadataCache cache;
+
+        @Setup
+        public void setUp() {
+            final long before = usedHeap();
+            if ("guava".equals(type)) {
+                cache = new GuavaSearchableResourceMetadataCache(resourceCount, new MetricRegistry());
+            } else {
+                cache = new CompactSearchableResourceMetadataCache(resourceCount, new MetricRegistry());
+            }
+            for (int i = 0; i < resourceCount; i++) {
+                final int intf = i % interfacesPerNode;
+                cache.merge(context, resource(i / interfacesPerNode, intf), metadata(intf));
+            }
+            final long after = usedHeap();
+            System.out.printf("%n%s cache retains ~%d bytes per resource%n", type, (after - before) / resourceCount);
+        }
+
+        private Resource randomResource() {
+            final int i = ThreadLocalRandom.current().nextInt(resourceCount);
+            return resource(i / interfacesPerNode, i % interfacesPerNode);
+        }
+
+        private static long usedHeap() {
+            final Runtime runtime = Runtime.getRuntime();
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public Optional<ResourceMetadata> get(CacheState state) {
+        return state.cache.get(state.context, state.randomResource());
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void mergeExisting(CacheState state) {
+        final int i = ThreadLocalRandom.current().nextInt(state.resourceCount);
+        state.cache.merge(state.context, resource(i / state.interfacesPerNode, i % state.interfacesPerNode), metadata(i % state.interfacesPerNode));
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public int getResourceIdsWithPrefix(CacheState state) {
+        final int node = ThreadLocalRandom.current().nextInt(state.resourceCount / state.interfacesPerNode);
+        return state.cache.getResourceIdsWithPrefix(state.context, "snmp:fs:NODES:node" + node + ":").size();
+    }
+}
@@ -34,6 +34,8 @@ import org.opennms.core.rpc.api.RpcClient;
 import org.opennms.core.rpc.api.RpcClientFactory;
 import org.opennms.core.rpc.utils.mate.EntityScopeProvider;
 import org.opennms.core.rpc.utils.RpcTargetHelper;
+import org.opennms.core.rpc.xml.batch.BatchingRpcClient;
+import org.opennms.netmgt.dao.api.MonitoringLocationUtils;
 import org.opennms.netmgt.poller.LocationAwarePollerClient;
 import org.opennms.netmgt.poller.PollerRequestBuilder;
 import org.opennms.netmgt.poller.ServiceMonitorRegistry;
@@ -68,7 +70,9 @@ public class LocationAwarePollerClientImpl implements LocationAwarePollerClient,
 
     @Override
     public void afterPropertiesSet() {
-        delegate = rpcClientFactory.getClient(pollerClientRpcModule);
+        // Requests for the default location are executed locally, and may not be marshalable
+        delegate = BatchingRpcClient.getClient(rpcClientFactory, pollerClientRpcModule,
+                request -> !MonitoringLocationUtils.isDefaultLocationName(request.getLocation()));
     }
 
     protected RpcClient<PollerRequestDTO, PollerResponseDTO> getDelegate() {
@@ -23,6 +23,9 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 import org.hawkular.agent.prometheus.PrometheusMetricDataParser;
 import org.hawkular.agent.prometheus.Util;
@@ -42,6 +45,11 @@ import org.slf4j.LoggerFactory;
 public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<MetricFamily> {
     private static final Logger log = LoggerFactory.getLogger(TextPrometheusMetricDataParser.class);
 
+    private static final Pattern WHITESPACE = Pattern.compile("[ \t]+");
+
+    private final Predicate<String> familyFilter;
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+
     private String lastLineReadFromStream; // this is only set when we break from the while loop in parse()
 
     /**
@@ -51,7 +59,19 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
      * @param inputStream the stream where the metric data can be found
      */
     public TextPrometheusMetricDataParser(InputStream inputStream) {
+        this(inputStream, name -> true);
+    }
+
+    /**
+     * Same as {@link #TextPrometheusMetricDataParser(InputStream)}, but the samples of the metric families
+     * whose name is rejected by the given filter are skipped without being parsed.
+     *
+     * @param inputStream the stream where the metric data can be found
+     * @param familyFilter accepts the names of the metric families which should be returned
+     */
+    public TextPrometheusMetricDataParser(InputStream inputStream, Predicate<String> familyFilter) {
         super(inputStream);
+        this.familyFilter = Objects.requireNonNull(familyFilter);
     }
 
     private class ParserContext {
@@ -64,9 +84,12 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
         public MetricType type = null;
         public List<String> allowedNames = new ArrayList<>();
         public List<TextSample> textSamples = new ArrayList<>();
+        // the family was rejected by the filter, its samples are not parsed
+        public boolean skip = false;
 
         // starts a fresh metric family
         public void clear() {
+            skip = false;
             name = "";
             help = "";
             type = null;
@@ -189,29 +212,46 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
 
     @Override
     public MetricFamily parse() throws IOException {
+        while (true) {
+            // determine the first line we should process. If we were previously called, we already
+            // read a line - start from that last line read. Otherwise, prime the pump and read
+            // the first line from the stream.
+            String line;
+            if (lastLineReadFromStream != null) {
+                line = lastLineReadFromStream;
+                lastLineReadFromStream = null;
+            } else {
+                line = readLine(getInputStream());
+            }
 
-        // determine the first line we should process. If we were previously called, we already
-        // read a line - start from that last line read. Otherwise, prime the pump and read
-        // the first line from the stream.
-        String line;
-        if (lastLineReadFromStream != null) {
-            line = lastLineReadFromStream;
-            lastLineReadFromStream = null;
-        } else {
-            line = readLine(getInputStream());
-        }
+            if (line == null) {
+                return null;
+            }
 
-        if (line == null) {
-            return null;
-        }
+            // do a quick check to see if we are getting passed in binary format rather than text
+            if (!line.isEmpty() && line.charAt(0) > 0x7F) {
+                throw new IOException("Doesn't look like the metric data is in text format");
+            }
 
-        // do a quick check to see if we are getting passed in binary format rather than text
-        if (!line.isEmpty() && !new String(new char[] { line.charAt(0) }).matches("\\p{ASCII}*")) {
-            throw new IOException("Doesn't look like the metric data is in text format");
-        }
+            ParserContext context = new ParserContext();
+            parse(context, line);
+
+            if (context.skip) {
+                // the family was not wanted, continue with the next one
+                log.trace("Skipped metric family: {}", context.name);
+                continue;
+            }
 
-        ParserContext context = new ParserContext();
+            if (!context.name.isEmpty()) {
+                // finish the metric family we previously were building up
+                context.finishMetricFamily();
+            }
+
+            return context.finishedMetricFamily;
+        }
+    }
 
+    private void parse(ParserContext context, String line) throws IOException {
         while (line != null) {
             line = line.trim();
 
@@ -219,7 +259,7 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
                 if (line.isEmpty()) {
                     // ignore blank lines
                 } else if (line.charAt(0) == '#') {
-                    String[] parts = line.split("[ \t]+", 4); // 0 is #, 1 is HELP or TYPE, 2 is metric name, 3 is doc
+                    String[] parts = WHITESPACE.split(line, 4); // 0 is #, 1 is HELP or TYPE, 2 is metric name, 3 is doc
                     if (parts.length < 2) {
                         // ignore line - probably a comment
                     } else if (parts[1].equals("HELP")) {
@@ -233,11 +273,14 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
                             // start anew
                             context.clear();
                             context.name = parts[2];
+                            context.skip = !familyFilter.test(context.name);
                             context.type = MetricType.GAUGE; // default in case we don't get a TYPE
                             context.allowedNames.add(parts[2]);
                         }
 
-                        if (parts.length == 4) {
+                        if (context.skip) {
+                            // no need to unescape the help of a skipped family
+                        } else if (parts.length == 4) {
                             context.help = unescapeHelp(parts[3]);
                         } else {
                             context.help = "";
@@ -252,12 +295,16 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
                             // start anew
                             context.clear();
                             context.name = parts[2];
+                            context.skip = !familyFilter.test(context.name);
                         }
-                        context.type = MetricType.valueOf(parts[3].toUpperCase());
+                        context.type = toMetricType(parts[3]);
                         context.allowedNames.clear();
                         switch (context.type) {
                             case COUNTER:
                                 context.allowedNames.add(context.name);
+                                // OpenMetrics counter samples are suffixed with _total
+                                context.allowedNames.add(context.name + "_total");
+                                context.allowedNames.add(context.name + "_created");
                                 break;
                             case GAUGE:
                                 context.allowedNames.add(context.name);
@@ -268,16 +315,24 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
                             case SUMMARY:
                                 context.allowedNames.add(context.name + "_count");
                                 context.allowedNames.add(context.name + "_sum");
+                                context.allowedNames.add(context.name + "_created");
                                 context.allowedNames.add(context.name);
                                 break;
                             case HISTOGRAM:
                                 context.allowedNames.add(context.name + "_count");
                                 context.allowedNames.add(context.name + "_sum");
+                                context.allowedNames.add(context.name + "_created");
                                 context.allowedNames.add(context.name + "_bucket");
                                 break;
                         }
                     } else {
-                        // ignore other tokens - probably a comment
+                        // ignore other tokens - probably a comment, or OpenMetrics UNIT and EOF
+                    }
+                } else if (context.skip) {
+                    // only check if the sample still belongs to the skipped family, without parsing it
+                    if (!startsWithAllowedName(line, context.allowedNames)) {
+                        this.lastLineReadFromStream = line;
+                        break;
                     }
                 } else {
                     // parse the sample line that contains a single metric (or part of a metric as in summary/histo)
@@ -290,6 +345,8 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
                         }
                         context.clear();
                         log.debug("Ignoring an unexpected metric: {}", line);
+                    } else if (sample.getName().endsWith("_created") && !sample.getName().equals(context.name)) {
+                        // OpenMetrics creation timestamps are not metrics on their own
                     } else {
                         // add the sample to the family we are building up
                         context.textSamples.add(sample);
@@ -303,13 +360,33 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
             // go to the next line
             line = readLine(getInputStream());
         }
+    }
 
-        if (!context.name.isEmpty()) {
-            // finish the metric family we previously were building up
-            context.finishMetricFamily();
+    private static MetricType toMetricType(String type) {
+        switch (type.toLowerCase()) {
+            case "unknown":
+                // OpenMetrics name of the untyped metric
+                return MetricType.UNTYPED;
+            case "gaugehistogram":
+                return MetricType.HISTOGRAM;
+            default:
+                return MetricType.valueOf(type.toUpperCase());
         }
+    }
 
-        return context.finishedMetricFamily;
+    private static boolean startsWithAllowedName(String line, List<String> allowedNames) {
+        for (String allowedName : allowedNames) {
+            if (line.startsWith(allowedName)) {
+                if (line.length() == allowedName.length()) {
+                    return true;
+                }
+                final char next = line.charAt(allowedName.length());
+                if (next == '{' || next == ' ' || next == '\t') {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     private TextSample parseSampleLine(String line) {
@@ -468,7 +545,8 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
 
     private String readLine(InputStream inputStream) throws IOException {
         int lineChar;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ByteArrayOutputStream baos = lineBuffer;
+        baos.reset();
 
         // Prometheus end of line character is a newline
         for (lineChar = inputStream.read(); (lineChar != '\n' && lineChar != -1); lineChar = inputStream.read()) {
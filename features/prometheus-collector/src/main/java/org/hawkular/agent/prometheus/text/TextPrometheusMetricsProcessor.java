@@ -17,6 +17,7 @@
 package org.hawkular.agent.prometheus.text;
 
 import java.io.InputStream;
+import java.util.function.Predicate;
 
 import org.hawkular.agent.prometheus.PrometheusMetricsProcessor;
 import org.hawkular.agent.prometheus.types.MetricFamily;
@@ -26,13 +27,23 @@ import org.hawkular.agent.prometheus.walkers.PrometheusMetricsWalker;
  * This will iterate over a list of Prometheus metrics that are given as text data.
  */
 public class TextPrometheusMetricsProcessor extends PrometheusMetricsProcessor<MetricFamily> {
+    private final Predicate<String> familyFilter;
+
     public TextPrometheusMetricsProcessor(InputStream inputStream, PrometheusMetricsWalker theWalker) {
+        this(inputStream, theWalker, name -> true);
+    }
+
+    /**
+     * @param familyFilter only the metric families whose name is accepted by the filter are walked
+     */
+    public TextPrometheusMetricsProcessor(InputStream inputStream, PrometheusMetricsWalker theWalker, Predicate<String> familyFilter) {
         super(inputStream, theWalker);
+        this.familyFilter = familyFilter;
     }
 
     @Override
     public TextPrometheusMetricDataParser createPrometheusMetricDataParser() {
-        return new TextPrometheusMetricDataParser(getInputStream());
+        return new TextPrometheusMetricDataParser(getInputStream(), familyFilter);
     }
 
     @Override
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd.prometheus;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.opennms.netmgt.config.prometheus.Group;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.OpAnd;
+import org.springframework.expression.spel.ast.OpEQ;
+import org.springframework.expression.spel.ast.OpOr;
+import org.springframework.expression.spel.ast.OperatorMatches;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+/**
+ * Derives a filter on the metric family names from the filter expressions of the groups,
+ * so that the families which can never match any of the groups are skipped while parsing.
+ *
+ * Only the constraints on the name of the metric, i.e. <code>name matches '...'</code> and
+ * <code>name == '...'</code>, are taken into account. Whenever a group filter does not
+ * constrain the name, all the families are accepted.
+ */
+public class FamilyNameFilter {
+    private static final Logger LOG = LoggerFactory.getLogger(FamilyNameFilter.class);
+
+    private static final String NAME_PROPERTY = "name";
+
+    public static Predicate<String> forGroups(List<Group> groups) {
+        if (groups == null) {
+            return name -> true;
+        }
+        Predicate<String> filter = name -> false;
+        for (Group group : groups) {
+            final Predicate<String> groupFilter = forExpression(group.getFilterExp());
+            if (groupFilter == null) {
+                return name -> true;
+            }
+            filter = filter.or(groupFilter);
+        }
+        return filter;
+    }
+
+    /**
+     * @return the predicate the name of every metric matched by the given expression satisfies,
+     *         or <code>null</code> if the expression does not constrain the name.
+     */
+    private static Predicate<String> forExpression(String filterExpression) {
+        if (filterExpression == null) {
+            return null;
+        }
+        try {
+            final SpelExpression exp = (SpelExpression)new SpelExpressionParser().parseExpression(filterExpression);
+            return forNode(exp.getAST());
+        } catch (Exception e) {
+            LOG.debug("Failed to analyze expression '{}'. No metric families will be skipped.", filterExpression, e);
+            return null;
+        }
+    }
+
+    private static Predicate<String> forNode(SpelNode node) {
+        if (node instanceof OpAnd) {
+            // either side is enough to constrain the name
+            final Predicate<String> left = forNode(node.getChild(0));
+            final Predicate<String> right = forNode(node.getChild(1));
+            if (left == null) {
+                return right;
+            } else if (right == null) {
+                return left;
+            }
+            return left.and(right);
+        } else if (node instanceof OpOr) {
+            // both sides need to constrain the name
+            final Predicate<String> left = forNode(node.getChild(0));
+            final Predicate<String> right = forNode(node.getChild(1));
+            if (left == null || right == null) {
+                return null;
+            }
+            return left.or(right);
+        } else if (node instanceof OperatorMatches || node instanceof OpEQ) {
+            final String literal = getNameLiteral(node);
+            if (literal == null) {
+                return null;
+            } else if (node instanceof OperatorMatches) {
+                final Pattern pattern = Pattern.compile(literal);
+                return name -> pattern.matcher(name).matches();
+            }
+            return name -> Objects.equals(literal, name);
+        }
+        return null;
+    }
+
+    private static String getNameLiteral(SpelNode node) {
+        if (node.getChildCount() != 2
+                || !(node.getChild(0) instanceof PropertyOrFieldReference)
+                || !(node.getChild(1) instanceof StringLiteral)) {
+            return null;
+        }
+        if (!NAME_PROPERTY.equals(((PropertyOrFieldReference)node.getChild(0)).getName())) {
+            return null;
+        }
+        return (String)((StringLiteral)node.getChild(1)).getLiteralValue().getValue();
+    }
+}
@@ -118,6 +118,13 @@ public class PrometheusCollector extends AbstractRemoteServiceCollector {
         }
     }
  
+    /**
+     * Closes the HTTP clients shared by the scrapes.
+     */
+    public void destroy() {
+        PrometheusScraper.closeClients();
+    }
+
     @Override
     public Map<String, Object> getRuntimeAttributes(CollectionAgent agent, Map<String, Object> parameters) {
         final Map<String, Object> runtimeAttributes = new HashMap<>();
@@ -158,7 +165,7 @@ public class PrometheusCollector extends AbstractRemoteServiceCollector {
 
         final MetricCollectingWalker walker = new MetricCollectingWalker();
         try {
-            PrometheusScraper.scrape(parsedUri, map, walker);
+            PrometheusScraper.scrape(parsedUri, map, walker, FamilyNameFilter.forGroups(request.getGroups()));
         } catch (IOException e) {
             throw new CollectionException("Failed to scrape metrics for: " + parsedUri, e);
         }
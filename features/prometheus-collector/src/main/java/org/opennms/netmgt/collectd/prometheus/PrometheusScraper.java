@@ -30,51 +30,118 @@ package org.opennms.netmgt.collectd.prometheus;
 
 import static org.opennms.core.web.HttpClientWrapperConfigHelper.setUseSystemProxyIfDefined;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.BasicCookieStore;
 import org.hawkular.agent.prometheus.PrometheusMetricsProcessor;
 import org.hawkular.agent.prometheus.text.TextPrometheusMetricsProcessor;
 import org.hawkular.agent.prometheus.walkers.MetricCollectingWalker;
+import org.hawkular.agent.prometheus.walkers.PrometheusMetricsWalker;
+import org.opennms.core.sysprops.SystemProperties;
 import org.opennms.core.utils.ParameterMap;
 import org.opennms.core.web.HttpClientWrapper;
 import org.opennms.netmgt.collection.api.ServiceParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class PrometheusScraper {
+    private static final Logger LOG = LoggerFactory.getLogger(PrometheusScraper.class);
+
     private static final int DEFAULT_RETRY_COUNT = 2;
     private static final int DEFAULT_SO_TIMEOUT_MS = 10000;
 
     private static final String HEADER_PREFIX_PARM_KEY = "header-";
     public static final String DEFAULT_ACCEPT_HEADER = "application/openmetrics-text; version=0.0.1,text/plain;version=0.0.4;q=0.5,*/*;q=0.1";
 
+    private static final int MAX_CONNECTIONS = SystemProperties.getInteger("org.opennms.netmgt.collectd.prometheus.maxConnections", 200);
+    private static final int MAX_CONNECTIONS_PER_ROUTE = SystemProperties.getInteger("org.opennms.netmgt.collectd.prometheus.maxConnectionsPerRoute", 2);
+
+    /**
+     * Clients are shared between the scrapes with the same timeout, retries and proxy settings,
+     * so the connections to the exporters are kept alive and pooled instead of being opened for each scrape.
+     * Each scrape uses its own cookie store, so no cookies are passed from one exporter to another.
+     * The clients are closed by {@link #closeClients()} when the {@link PrometheusCollector} is destroyed.
+     */
+    private static final Map<List<Object>, HttpClientWrapper> CLIENTS = new ConcurrentHashMap<>();
+
     public static void scrape(URI uri, Map<String, Object> parameters, MetricCollectingWalker walker) throws IOException {
-        try (HttpClientWrapper httpClientWrapper = createHttpClientFromParmMap(parameters)) {
-            final HttpGet get = new HttpGet(uri);
-            get.setHeader(HttpHeaders.ACCEPT, DEFAULT_ACCEPT_HEADER);
-            // Derive additional headers from the parameter map
-            parameters.forEach((k,v) -> {
-                if (k.startsWith(HEADER_PREFIX_PARM_KEY) && v instanceof String) {
-                    String headerName = k.substring(HEADER_PREFIX_PARM_KEY.length());
-                    get.setHeader(headerName, (String)v);
-                }
-            });
+        scrape(uri, parameters, walker, name -> true);
+    }
 
-            try(CloseableHttpResponse response = httpClientWrapper.execute(get)) {
-                final HttpEntity entity = response.getEntity();
-                if (entity == null) {
-                    throw new IOException("No HTTP response entity from URL " + uri);
-                }
-                PrometheusMetricsProcessor<?> processor = new TextPrometheusMetricsProcessor(entity.getContent(), walker);
+    /**
+     * Scrapes the given URI, only walking the metric families whose name is accepted by the given filter.
+     * The samples of all the other families are skipped without being parsed.
+     */
+    public static void scrape(URI uri, Map<String, Object> parameters, PrometheusMetricsWalker walker, Predicate<String> familyFilter) throws IOException {
+        final HttpClientWrapper httpClientWrapper = getHttpClient(parameters);
+        final HttpGet get = new HttpGet(uri);
+        get.setHeader(HttpHeaders.ACCEPT, DEFAULT_ACCEPT_HEADER);
+        // Derive additional headers from the parameter map
+        parameters.forEach((k,v) -> {
+            if (k.startsWith(HEADER_PREFIX_PARM_KEY) && v instanceof String) {
+                String headerName = k.substring(HEADER_PREFIX_PARM_KEY.length());
+                get.setHeader(headerName, (String)v);
+            }
+        });
+
+        final HttpClientContext context = HttpClientContext.create();
+        context.setCookieStore(new BasicCookieStore());
+        try(CloseableHttpResponse response = httpClientWrapper.execute(get, context)) {
+            final HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                throw new IOException("No HTTP response entity from URL " + uri);
+            }
+            try (InputStream content = new BufferedInputStream(entity.getContent())) {
+                PrometheusMetricsProcessor<?> processor = new TextPrometheusMetricsProcessor(content, walker, familyFilter);
                 processor.walk();
             }
         }
     }
 
+    private static HttpClientWrapper getHttpClient(Map<String, Object> parameters) {
+        final List<Object> key = Arrays.asList(
+                ParameterMap.getKeyedInteger(parameters, ServiceParameters.ParameterName.TIMEOUT.toString(), DEFAULT_SO_TIMEOUT_MS),
+                ParameterMap.getKeyedInteger(parameters, ServiceParameters.ParameterName.RETRY.toString(), DEFAULT_RETRY_COUNT),
+                ParameterMap.getKeyedBoolean(parameters, "use-system-proxy", false));
+        return CLIENTS.computeIfAbsent(key, k -> {
+            final HttpClientWrapper clientWrapper = createHttpClientFromParmMap(parameters)
+                    .setMaxConnections(MAX_CONNECTIONS, MAX_CONNECTIONS_PER_ROUTE);
+            // Build the client now, so it isn't lazily created by concurrent scrapes
+            clientWrapper.getClient();
+            return clientWrapper;
+        });
+    }
+
+    /**
+     * Closes the pooled clients. Later scrapes create new ones.
+     */
+    public static void closeClients() {
+        final Iterator<HttpClientWrapper> it = CLIENTS.values().iterator();
+        while (it.hasNext()) {
+            final HttpClientWrapper clientWrapper = it.next();
+            it.remove();
+            try {
+                clientWrapper.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the HTTP client {}.", clientWrapper, e);
+            }
+        }
+    }
+
     public static HttpClientWrapper createHttpClientFromParmMap(Map<String, Object> parameters) {
         // Timeouts and retries
         HttpClientWrapper clientWrapper = HttpClientWrapper.create()
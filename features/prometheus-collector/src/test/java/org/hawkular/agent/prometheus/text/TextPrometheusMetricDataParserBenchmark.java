@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.agent.prometheus.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.hawkular.agent.prometheus.types.MetricFamily;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to measure parsing a large exposition,
+ * with and without a filter on the metric families.
+ */
+public class TextPrometheusMetricDataParserBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExpositionState {
+        byte[] exposition;
+
+        @Setup
+        public void setUp() {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                sb.append("# HELP family_").append(i).append("_total The family ").append(i).append("\n");
+                sb.append("# TYPE family_").append(i).append("_total counter\n");
+                for (int j = 0; j < 20; j++) {
+                    sb.append("family_").append(i).append("_total{instance=\"host").append(j)
+                            .append("\",mode=\"idle\"} ").append(i * j).append(".5\n");
+                }
+            }
+            exposition = sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public int parseAll(ExpositionState state) throws IOException {
+        return parse(new TextPrometheusMetricDataParser(new ByteArrayInputStream(state.exposition)));
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public int parseFiltered(ExpositionState state) throws IOException {
+        return parse(new TextPrometheusMetricDataParser(new ByteArrayInputStream(state.exposition),
+                name -> name.startsWith("family_1_")));
+    }
+
+    private static int parse(TextPrometheusMetricDataParser parser) throws IOException {
+        int count = 0;
+        MetricFamily family;
+        while ((family = parser.parse()) != null) {
+            count += family.getMetrics().size();
+        }
+        return count;
+    }
+}
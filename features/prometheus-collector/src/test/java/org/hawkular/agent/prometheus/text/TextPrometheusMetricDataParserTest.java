@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.agent.prometheus.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.hawkular.agent.prometheus.types.Counter;
+import org.hawkular.agent.prometheus.types.Gauge;
+import org.hawkular.agent.prometheus.types.MetricFamily;
+import org.hawkular.agent.prometheus.types.MetricType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TextPrometheusMetricDataParserTest {
+
+    private static final String EXPOSITION = "# HELP one_counter_total This is the first\n"
+            + "# TYPE one_counter_total counter\n"
+            + "one_counter_total{a=\"1\"} 111\n"
+            + "one_counter_total{a=\"2\"} 112\n"
+            + "# HELP skipped_gauge This one is \\\\ skipped\n"
+            + "# TYPE skipped_gauge gauge\n"
+            + "skipped_gauge{a=\"1\"} 1\n"
+            + "skipped_gauge{a=\"2\"} 2\n"
+            + "# TYPE two_gauge gauge\n"
+            + "two_gauge 222\n";
+
+    private static final String OPENMETRICS = "# TYPE requests counter\n"
+            + "# HELP requests The requests\n"
+            + "requests_total 10\n"
+            + "requests_created 1.6e9\n"
+            + "# TYPE things unknown\n"
+            + "things 3\n"
+            + "# EOF\n";
+
+    @Test
+    public void testParseAll() throws IOException {
+        List<MetricFamily> families = parse(EXPOSITION, name -> true);
+        Assert.assertEquals(3, families.size());
+        Assert.assertEquals("one_counter_total", families.get(0).getName());
+        Assert.assertEquals(2, families.get(0).getMetrics().size());
+        Assert.assertEquals("skipped_gauge", families.get(1).getName());
+        Assert.assertEquals(2, families.get(1).getMetrics().size());
+        Assert.assertEquals(222, ((Gauge) families.get(2).getMetrics().get(0)).getValue(), 0);
+    }
+
+    @Test
+    public void testSkipFilteredFamilies() throws IOException {
+        List<MetricFamily> families = parse(EXPOSITION, name -> !name.startsWith("skipped"));
+        Assert.assertEquals(2, families.size());
+        Assert.assertEquals("one_counter_total", families.get(0).getName());
+        Assert.assertEquals(112, ((Counter) families.get(0).getMetrics().get(1)).getValue(), 0);
+        Assert.assertEquals("two_gauge", families.get(1).getName());
+        Assert.assertEquals(222, ((Gauge) families.get(1).getMetrics().get(0)).getValue(), 0);
+
+        Assert.assertTrue(parse(EXPOSITION, name -> false).isEmpty());
+    }
+
+    @Test
+    public void testOpenMetrics() throws IOException {
+        List<MetricFamily> families = parse(OPENMETRICS, name -> true);
+        Assert.assertEquals(2, families.size());
+        Assert.assertEquals("requests", families.get(0).getName());
+        Assert.assertEquals(MetricType.COUNTER, families.get(0).getType());
+        Assert.assertEquals(1, families.get(0).getMetrics().size());
+        Assert.assertEquals(10, ((Counter) families.get(0).getMetrics().get(0)).getValue(), 0);
+        Assert.assertEquals("things", families.get(1).getName());
+        Assert.assertEquals(MetricType.UNTYPED, families.get(1).getType());
+    }
+
+    private static List<MetricFamily> parse(String text, Predicate<String> familyFilter) throws IOException {
+        TextPrometheusMetricDataParser parser = new TextPrometheusMetricDataParser(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), familyFilter);
+        List<MetricFamily> families = new ArrayList<>();
+        MetricFamily family;
+        while ((family = parser.parse()) != null) {
+            families.add(family);
+        }
+        return families;
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennnms.netmgt.collectd.prometheus;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import org.opennms.netmgt.collectd.prometheus.FamilyNameFilter;
+import org.opennms.netmgt.config.prometheus.Group;
+
+public class FamilyNameFilterTest {
+
+    @Test
+    public void canFilterOnNameMatches() {
+        final Predicate<String> filter = FamilyNameFilter.forGroups(Arrays.asList(
+                group("name matches 'node_load.*'"),
+                group("name == 'node_cpu_seconds_total'")));
+        assertTrue(filter.test("node_load1"));
+        assertTrue(filter.test("node_cpu_seconds_total"));
+        assertFalse(filter.test("node_cpu_seconds"));
+        assertFalse(filter.test("go_gc_duration_seconds"));
+    }
+
+    @Test
+    public void canFilterOnConjunctionsAndDisjunctions() {
+        final Predicate<String> filter = FamilyNameFilter.forGroups(Arrays.asList(
+                group("name matches 'node_filesystem_.*' and labels[mountpoint] matches '.*home'"),
+                group("name matches 'node_network_.*' and !(name matches 'node_network_trans.*')"),
+                group("name matches 'windows_net_.*' or name matches 'windows_cpu_.*'")));
+        assertTrue(filter.test("node_filesystem_free_bytes"));
+        assertTrue(filter.test("node_network_receive_bytes_total"));
+        // the negation is not taken into account
+        assertTrue(filter.test("node_network_transmit_bytes_total"));
+        assertTrue(filter.test("windows_net_current_bandwidth"));
+        assertTrue(filter.test("windows_cpu_time_total"));
+        assertFalse(filter.test("windows_logical_disk_free_bytes"));
+    }
+
+    @Test
+    public void acceptsAllWhenNameIsNotConstrained() {
+        assertTrue(FamilyNameFilter.forGroups(Arrays.asList(
+                group("name matches 'node_load.*'"),
+                group(null))).test("anything"));
+        assertTrue(FamilyNameFilter.forGroups(Arrays.asList(
+                group("!(name matches 'windows_net_current_bandwidth')"))).test("anything"));
+        assertTrue(FamilyNameFilter.forGroups(Arrays.asList(
+                group("name matches 'node_load.*' or labels[mode] == 'idle'"))).test("anything"));
+        assertTrue(FamilyNameFilter.forGroups(Arrays.asList(
+                group("name matches"))).test("anything"));
+    }
+
+    private static Group group(String filterExp) {
+        final Group group = new Group();
+        group.setFilterExp(filterExp);
+        return group;
+    }
+}
@@ -29,29 +29,36 @@
 package org.opennnms.netmgt.collectd.prometheus;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.net.URI;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.hawkular.agent.prometheus.walkers.MetricCollectingWalker;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.opennms.core.collection.test.CollectionSetUtils;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.collectd.prometheus.PrometheusCollector;
+import org.opennms.netmgt.collectd.prometheus.PrometheusScraper;
 import org.opennms.netmgt.collection.api.CollectionAgent;
 import org.opennms.netmgt.collection.api.CollectionException;
 import org.opennms.netmgt.collection.api.CollectionSet;
@@ -74,6 +81,7 @@ import org.springframework.transaction.PlatformTransactionManager;
 
 import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
@@ -105,6 +113,29 @@ public class PrometheusCollectorIT {
                 .willReturn(aResponse()
                         .withHeader("Content-Type", "Content-Type: text/plain; version=0.0.4")
                         .withBodyFile("flink.metrics")));
+        stubFor(get(urlEqualTo("/cookie"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "Content-Type: text/plain; version=0.0.4")
+                        .withHeader("Set-Cookie", "session=42; Path=/")
+                        .withBody("up 1\n")));
+    }
+
+    @After
+    public void tearDown() {
+        collector.destroy();
+    }
+
+    @Test
+    public void doesNotShareCookiesBetweenScrapes() throws Exception {
+        final URI uri = URI.create(String.format("http://localhost:%d/cookie", wireMockRule.port()));
+        PrometheusScraper.scrape(uri, new HashMap<>(), new MetricCollectingWalker());
+        PrometheusScraper.scrape(uri, new HashMap<>(), new MetricCollectingWalker());
+
+        final List<LoggedRequest> requests = findAll(getRequestedFor(urlEqualTo("/cookie")));
+        assertEquals(2, requests.size());
+        for (LoggedRequest request : requests) {
+            assertFalse(request.containsHeader("Cookie"));
+        }
     }
 
     @Test
@@ -46,6 +46,7 @@ import org.opennms.core.logging.Logging;
 import org.opennms.reporting.datablock.IfService;
 import org.opennms.reporting.datablock.Interface;
 import org.opennms.reporting.datablock.Node;
+import org.opennms.reporting.datablock.OutageIntervalIndex;
 import org.opennms.reporting.datablock.OutageSince;
 import org.opennms.reporting.datablock.OutageSvcTimesList;
 import org.opennms.reporting.datablock.Service;
@@ -61,6 +62,10 @@ import org.slf4j.LoggerFactory;
  * Availability Month To Date Daily Availability Month To Date Total
  * Availability
  *
+ * The outages of the category are indexed once, so that the down time of any
+ * day or month is computed in O(log n) rather than by walking every outage of
+ * every node.
+ *
  * @author <A HREF="mailto:jacinta@oculan.com">Jacinta Remedios </A>
  */
 public class AvailCalculations extends Object {
@@ -107,9 +112,19 @@ public class AvailCalculations extends Object {
     private static final int NMONTHS = 12;
 
     /**
-     * Nodes that match this category.
+     * Index over the outages of all the nodes that match this category.
+     */
+    private OutageIntervalIndex m_outageIndex;
+
+    /**
+     * Number of services of all the nodes that match this category.
      */
-    private List<Node> m_nodes;
+    private int m_serviceCount;
+
+    /**
+     * Index over the outages of each monitored service.
+     */
+    private Map<String, OutageIntervalIndex> m_serviceOutageIndexes = null;
 
     /**
      * Monitored Services for the category
@@ -179,7 +194,8 @@ public class AvailCalculations extends Object {
                 m_daysInLastMonth = getDaysForMonth(m_endLastMonthTime);
                 m_report = report;
 
-                m_nodes = nodes;
+                m_serviceCount = serviceCount;
+                m_outageIndex = OutageIntervalIndex.of(getOutageLists(nodes));
 
                 String label;
                 String descr;
@@ -358,7 +374,11 @@ public class AvailCalculations extends Object {
                 }
 
                 LOG.debug("Services {}", m_services);
-                m_nodes = null;
+                m_serviceOutageIndexes = new HashMap<String, OutageIntervalIndex>();
+                for (Entry<String, Map<IfService, OutageSvcTimesList>> serviceEntry : m_services.entrySet()) {
+                    m_serviceOutageIndexes.put(serviceEntry.getKey(), OutageIntervalIndex.of(serviceEntry.getValue().values()));
+                }
+                m_outageIndex = null;
                 //
                 // N Days Daily Service Availability
                 //
@@ -411,6 +431,7 @@ public class AvailCalculations extends Object {
                 }
 
                 m_services = null;
+                m_serviceOutageIndexes = null;
                 category.addCatSections(catSections);
                 categories.addCategory(category);
 
@@ -421,6 +442,26 @@ public class AvailCalculations extends Object {
         });
     }
 
+    private static List<OutageSvcTimesList> getOutageLists(List<Node> nodes) {
+        final List<OutageSvcTimesList> outageLists = new ArrayList<OutageSvcTimesList>();
+        for (Node node : nodes) {
+            if (node == null) {
+                continue;
+            }
+            for (Interface intf : node.getInterfaces()) {
+                if (intf == null || intf.getServices() == null) {
+                    continue;
+                }
+                for (Service svc : intf.getServices()) {
+                    if (svc != null) {
+                        outageLists.add(svc.getOutages());
+                    }
+                }
+            }
+        }
+        return outageLists;
+    }
+
     /**
      * <p>getSectionIndex</p>
      *
@@ -741,10 +782,8 @@ public class AvailCalculations extends Object {
             //
             // get the outage and service count.
             //
-            for(Node node : m_nodes) {
-                outage += node.getOutage(endTime, ROLLING_WINDOW);
-                serviceCount += node.getServiceCount();
-            }
+            outage += m_outageIndex.getDownTime(endTime, ROLLING_WINDOW);
+            serviceCount += m_serviceCount;
             double percentAvail;
             if (serviceCount > 0){
 
@@ -820,10 +859,8 @@ public class AvailCalculations extends Object {
             //
             // get the outage and service count.
             //
-            for(Node node : m_nodes) {
-                outage += node.getOutage(endTime, ROLLING_WINDOW);
-                serviceCount += node.getServiceCount();
-            }
+            outage += m_outageIndex.getDownTime(endTime, ROLLING_WINDOW);
+            serviceCount += m_serviceCount;
             double percentAvail;
             if (serviceCount > 0)
                 percentAvail = 100.0 * (1 - (outage * 1.0) / (1.0 * serviceCount * ROLLING_WINDOW));
@@ -901,10 +938,8 @@ public class AvailCalculations extends Object {
             //
             // get the outage and service count.
             //
-            for(Node node : m_nodes) {
-                serviceCount += node.getServiceCount();
-                outage += node.getOutage(endTime, ROLLING_WINDOW);
-            }
+            serviceCount += m_serviceCount;
+            outage += m_outageIndex.getDownTime(endTime, ROLLING_WINDOW);
             periodFrom = fmt.format(new java.util.Date(endTime)) + " to " + periodEnd;
             endTime -= ROLLING_WINDOW;
         }
@@ -986,10 +1021,8 @@ public class AvailCalculations extends Object {
             //
             // get the outage and service count.
             //
-            for(Node node : m_nodes) {
-                serviceCount += node.getServiceCount();
-                outage += node.getOutage(endTime, rollingWindow);
-            }
+            serviceCount += m_serviceCount;
+            outage += m_outageIndex.getDownTime(endTime, rollingWindow);
             double percentAvail;
             if (serviceCount > 0)
                 percentAvail = 100.0 * (1 - (outage * 1.0) / (1.0 * serviceCount * rollingWindow));
@@ -1118,7 +1151,6 @@ public class AvailCalculations extends Object {
 
         final SimpleDateFormat fmtmp = new SimpleDateFormat("dd MMM, yyyy");
 
-        long outage;
         String periodFrom = "";
         String periodTo = "";
         periodTo = fmtmp.format(new java.util.Date(endTime));
@@ -1176,29 +1208,13 @@ public class AvailCalculations extends Object {
                 m_sectionIndex++;
                 catSections.addSection(section);
             } else {
+                final OutageIntervalIndex serviceOutageIndex = m_serviceOutageIndexes.get(service);
+                // Keep track of the number of services being monitored.
+                final int serviceCnt = svcOutages.size();
                 int daysCnt = 0;
                 while (daysCnt++ < days) {
                     LOG.debug("DAy : {} end time {} ROLLING_WINDOW {}", daysCnt, new Date(curTime), ROLLING_WINDOW);
-                    int serviceCnt = 0;
-                    long outageTime = 0;
-                    // For each node in the service table.
-                    //
-                    // Iterate each svc node for getting the ifservice
-                    for (final Map.Entry<IfService, OutageSvcTimesList> entry : svcOutages.entrySet()) {
-                        final IfService ifservice = entry.getKey();
-                        final OutageSvcTimesList outageList = entry.getValue();
-
-                        LOG.debug(ifservice.toString());
-
-                        if (outageList != null) {
-                            outage = outageList.getDownTime(curTime, ROLLING_WINDOW);
-                            // Keep track of the number of services being
-                            // monitored.
-                            //
-                            outageTime += outage;
-                        }
-                        serviceCnt++;
-                    }
+                    final long outageTime = serviceOutageIndex.getDownTime(curTime, ROLLING_WINDOW);
                     LOG.debug("Outage Time {}", outageTime);
                     long den = (ROLLING_WINDOW * serviceCnt);
                     double outag = 1.0 * outageTime;
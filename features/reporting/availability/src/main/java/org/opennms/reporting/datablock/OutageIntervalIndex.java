@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.reporting.datablock;
+
+import java.util.Arrays;
+
+/**
+ * Answers the total down time of a set of outages over any rolling window in
+ * O(log n), yielding the same result as summing
+ * {@link Outage#getDownTime(long, long)} over all of the outages.
+ *
+ * The down time of an outage within [start, end] is the time the outage spent
+ * down before end, minus the time it spent down before start. Summed over all of
+ * the outages, the time spent down before t is:
+ *
+ * <pre>
+ *   sum(regained &lt; t) + t * (count(lost &lt; t) - count(regained &lt; t)) - sum(lost &lt; t)
+ * </pre>
+ *
+ * which is evaluated with a binary search over the sorted lost and regained
+ * times, and their prefix sums. Outages that were not regained never contribute
+ * a regained time, and outages that were regained before they were lost are
+ * ignored, since they never contribute any down time.
+ */
+public class OutageIntervalIndex {
+
+    private final long[] m_lostTimes;
+
+    private final long[] m_lostTimeSums;
+
+    private final long[] m_regainedTimes;
+
+    private final long[] m_regainedTimeSums;
+
+    private OutageIntervalIndex(long[] lostTimes, long[] regainedTimes) {
+        m_lostTimes = lostTimes;
+        m_regainedTimes = regainedTimes;
+        Arrays.parallelSort(m_lostTimes);
+        Arrays.parallelSort(m_regainedTimes);
+        m_lostTimeSums = prefixSums(m_lostTimes);
+        m_regainedTimeSums = prefixSums(m_regainedTimes);
+    }
+
+    /**
+     * Builds an index over all of the outages in the given lists.
+     *
+     * @param outageLists
+     *            the outage lists, null lists are ignored
+     * @return the index
+     */
+    public static OutageIntervalIndex of(Iterable<OutageSvcTimesList> outageLists) {
+        int numLost = 0;
+        int numRegained = 0;
+        for (OutageSvcTimesList outages : outageLists) {
+            if (outages == null) {
+                continue;
+            }
+            for (Outage outage : outages) {
+                if (isOpen(outage)) {
+                    numLost++;
+                } else if (outage.getRegainedTime() >= outage.getLostTime()) {
+                    numLost++;
+                    numRegained++;
+                }
+            }
+        }
+
+        final long[] lostTimes = new long[numLost];
+        final long[] regainedTimes = new long[numRegained];
+        int i = 0;
+        int j = 0;
+        for (OutageSvcTimesList outages : outageLists) {
+            if (outages == null) {
+                continue;
+            }
+            for (Outage outage : outages) {
+                if (isOpen(outage)) {
+                    lostTimes[i++] = outage.getLostTime();
+                } else if (outage.getRegainedTime() >= outage.getLostTime()) {
+                    lostTimes[i++] = outage.getLostTime();
+                    regainedTimes[j++] = outage.getRegainedTime();
+                }
+            }
+        }
+        return new OutageIntervalIndex(lostTimes, regainedTimes);
+    }
+
+    /**
+     * Calculate the total down time of the indexed outages for the last
+     * 'rollingWindow' time ending at 'curTime'.
+     *
+     * @param curTime
+     *            the end of the rolling window
+     * @param rollingWindow
+     *            the length of the rolling window
+     * @return total down time of the indexed outages
+     */
+    public long getDownTime(long curTime, long rollingWindow) {
+        return getDownTimeBefore(curTime) - getDownTimeBefore(curTime - rollingWindow);
+    }
+
+    /**
+     * Returns the number of indexed outages.
+     *
+     * @return a int.
+     */
+    public int size() {
+        return m_lostTimes.length;
+    }
+
+    private static boolean isOpen(Outage outage) {
+        return outage.getRegainedTime() == -1;
+    }
+
+    private long getDownTimeBefore(long time) {
+        final int lost = countBefore(m_lostTimes, time);
+        final int regained = countBefore(m_regainedTimes, time);
+        return m_regainedTimeSums[regained] + time * (lost - regained) - m_lostTimeSums[lost];
+    }
+
+    private static int countBefore(long[] sorted, long time) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (sorted[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long[] prefixSums(long[] values) {
+        final long[] sums = new long[values.length + 1];
+        for (int i = 0; i < values.length; i++) {
+            sums[i + 1] = sums[i] + values[i];
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.reporting.datablock;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OutageIntervalIndexTest {
+
+    private static final long DAY = 86400000L;
+
+    @Test
+    public void canComputeDownTimeAroundWindowBoundaries() {
+        final OutageSvcTimesList outages = new OutageSvcTimesList();
+        // Spans the start of the window
+        outages.addSvcTime(9 * DAY - 1000, 9 * DAY + 1000);
+        // Within the window
+        outages.addSvcTime(9 * DAY + 5000, 9 * DAY + 6000);
+        // Ends exactly at the start of the window
+        outages.addSvcTime(8 * DAY, 9 * DAY);
+        // Starts exactly at the end of the window
+        outages.addSvcTime(10 * DAY, 10 * DAY + 1000);
+        // Still down
+        outages.addSvcTime(10 * DAY - 2000);
+
+        final OutageIntervalIndex index = OutageIntervalIndex.of(Collections.singletonList(outages));
+        assertEquals(5, index.size());
+        assertEquals(1000 + 1000 + 2000, index.getDownTime(10 * DAY, DAY));
+        assertEquals(outages.getDownTime(10 * DAY, DAY), index.getDownTime(10 * DAY, DAY));
+        assertEquals(outages.getDownTime(11 * DAY, 2 * DAY), index.getDownTime(11 * DAY, 2 * DAY));
+        assertEquals(0, index.getDownTime(8 * DAY, DAY));
+    }
+
+    @Test
+    public void canIgnoreOutagesRegainedBeforeTheyWereLost() {
+        final OutageSvcTimesList outages = new OutageSvcTimesList();
+        outages.add(new Outage(9 * DAY + 1000, 9 * DAY));
+
+        final OutageIntervalIndex index = OutageIntervalIndex.of(Arrays.asList(outages, null));
+        assertEquals(0, index.size());
+        assertEquals(outages.getDownTime(10 * DAY, DAY), index.getDownTime(10 * DAY, DAY));
+    }
+
+    @Test
+    public void canMatchDownTimeOfOutageLists() {
+        final Random random = new Random(42);
+        final List<OutageSvcTimesList> outageLists = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final OutageSvcTimesList outages = new OutageSvcTimesList();
+            final int numOutages = random.nextInt(20);
+            for (int j = 0; j < numOutages; j++) {
+                final long lost = random.nextInt(60) * DAY + random.nextInt((int) DAY);
+                if (random.nextInt(10) == 0) {
+                    outages.addSvcTime(lost);
+                } else {
+                    // Outages of the same service may overlap
+                    outages.addSvcTime(lost, lost + random.nextInt((int) (3 * DAY)));
+                }
+            }
+            outageLists.add(outages);
+        }
+
+        final OutageIntervalIndex index = OutageIntervalIndex.of(outageLists);
+        for (long window : new long[] { DAY, 7 * DAY, 30 * DAY }) {
+            for (long end = 0; end <= 70 * DAY; end += DAY / 4 + 1) {
+                long expected = 0;
+                for (OutageSvcTimesList outages : outageLists) {
+                    expected += outages.getDownTime(end, window);
+                }
+                assertEquals(expected, index.getDownTime(end, window));
+            }
+        }
+    }
+}
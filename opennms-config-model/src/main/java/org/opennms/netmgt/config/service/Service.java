@@ -64,6 +64,9 @@ public class Service implements Serializable {
     @XmlElement(name = "invoke")
     private List<Invoke> m_invokes = new ArrayList<>();
 
+    @XmlElement(name = "depends-on")
+    private List<String> m_dependsOn = new ArrayList<>();
+
     public Service() {
     }
 
@@ -140,8 +143,32 @@ public class Service implements Serializable {
         return m_invokes.remove(invoke);
     }
 
+    /**
+     * Names of the services that must have completed a given pass before
+     * this service runs the same pass when the manager starts services in
+     * parallel.
+     */
+    @XmlTransient
+    public List<String> getDependsOn() {
+        return m_dependsOn;
+    }
+
+    public void setDependsOn(final List<String> dependsOn) {
+        if (dependsOn == m_dependsOn) return;
+        m_dependsOn.clear();
+        if (dependsOn != null) m_dependsOn.addAll(dependsOn);
+    }
+
+    public void addDependsOn(final String dependsOn) {
+        m_dependsOn.add(dependsOn);
+    }
+
+    public boolean removeDependsOn(final String dependsOn) {
+        return m_dependsOn.remove(dependsOn);
+    }
+
     public int hashCode() {
-        return Objects.hash(m_enabled, m_name, m_className, m_attributes, m_invokes);
+        return Objects.hash(m_enabled, m_name, m_className, m_attributes, m_invokes, m_dependsOn);
     }
 
     @Override()
@@ -156,7 +183,8 @@ public class Service implements Serializable {
                     Objects.equals(this.m_name, that.m_name) &&
                     Objects.equals(this.m_className, that.m_className) &&
                     Objects.equals(this.m_attributes, that.m_attributes) &&
-                    Objects.equals(this.m_invokes, that.m_invokes);
+                    Objects.equals(this.m_invokes, that.m_invokes) &&
+                    Objects.equals(this.m_dependsOn, that.m_dependsOn);
         }
         return false;
     }
@@ -52,7 +52,7 @@ import com.google.common.base.MoreObjects;
 @XmlAccessorType(XmlAccessType.NONE)
 @ValidateUsing("eventconf.xsd")
 @XmlType(propOrder={})
-public class Event implements Serializable, Comparable<Event> {
+public class Event implements Serializable, Cloneable, Comparable<Event> {
     private static final long serialVersionUID = 2L;
 
     /**
@@ -540,6 +540,18 @@ public class Event implements Serializable, Comparable<Event> {
         return m_matcher.matches(matchingEvent);
     }
 
+    /**
+     * Returns a copy of this event definition, which shares its elements with this one,
+     * but can be initialized without affecting it.
+     */
+    public Event copy() {
+        try {
+            return (Event) super.clone();
+        } catch (final CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public void initialize(final EventOrderIndex eventOrderIndex) {
         m_index = eventOrderIndex;
         m_matcher = constructMatcher();
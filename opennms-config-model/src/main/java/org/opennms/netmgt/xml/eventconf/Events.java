@@ -42,6 +42,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -85,6 +86,22 @@ public class Events implements Serializable {
         public boolean matches(Event e);
     }
 
+    /**
+     * Parses the included event files that need to be (re)loaded.  The
+     * returned map must contain an entry for every given path.
+     */
+    public interface EventFileParser {
+        public Map<String, Events> parse(Map<String, Resource> eventResources) throws IOException;
+    }
+
+    private static final EventFileParser SEQUENTIAL_PARSER = eventResources -> {
+        final Map<String, Events> parsed = new LinkedHashMap<>();
+        for (final Entry<String, Resource> entry : eventResources.entrySet()) {
+            parsed.put(entry.getKey(), JaxbUtils.unmarshal(Events.class, entry.getValue()));
+        }
+        return parsed;
+    };
+
     private static final long serialVersionUID = 2L;
 
     /**
@@ -182,12 +199,20 @@ public class Events implements Serializable {
     }
 
     public Map<String, Long> loadEventFiles(final Resource configResource) throws IOException {
+        return loadEventFiles(configResource, SEQUENTIAL_PARSER);
+    }
+
+    public Map<String, Long> loadEventFiles(final Resource configResource, final EventFileParser parser) throws IOException {
         final Map<String, Long> lastModifiedEventFiles = new LinkedHashMap<String, Long>();
-        loadEventFilesIfModified(configResource, lastModifiedEventFiles);
+        loadEventFilesIfModified(configResource, lastModifiedEventFiles, parser);
         return lastModifiedEventFiles;
     }
 
     public void loadEventFilesIfModified(final Resource configResource, final Map<String, Long> lastModifiedEventFiles) throws IOException {
+        loadEventFilesIfModified(configResource, lastModifiedEventFiles, SEQUENTIAL_PARSER);
+    }
+
+    public void loadEventFilesIfModified(final Resource configResource, final Map<String, Long> lastModifiedEventFiles, final EventFileParser parser) throws IOException {
         // Remove any event files that we're previously loaded, and no
         // longer appear in the list of event files
         for(Iterator<Map.Entry<String, Events>> it = m_loadedEventFiles.entrySet().iterator(); it.hasNext(); ) {
@@ -199,7 +224,8 @@ public class Events implements Serializable {
             }
         }
 
-        // Conditionally load or reload the event files
+        // Determine which event files need to be loaded or reloaded
+        final Map<String, Resource> eventResources = new LinkedHashMap<>();
         for(final String eventFile : m_eventFiles) {
             final Resource eventResource = getRelative(configResource, eventFile);
             final long lastModified = eventResource.lastModified();
@@ -220,8 +246,14 @@ public class Events implements Serializable {
             }
 
             lastModifiedEventFiles.put(eventFile, lastModified);
+            eventResources.put(eventFile, eventResource);
+        }
 
-            final Events events = JaxbUtils.unmarshal(Events.class, eventResource);
+        final Map<String, Events> parsedEventFiles = eventResources.isEmpty() ? Collections.emptyMap() : parser.parse(eventResources);
+        for (final Entry<String, Resource> entry : eventResources.entrySet()) {
+            final String eventFile = entry.getKey();
+            final Resource eventResource = entry.getValue();
+            final Events events = parsedEventFiles.get(eventFile);
             if (events.getEvents().isEmpty()) {
                 throw new IllegalStateException("Uh oh! An event file "+eventResource.getFile()+" with no events has been laoded!");
             }
@@ -452,6 +484,32 @@ public class Events implements Serializable {
         }
     }
 
+    /**
+     * Returns a copy of this configuration and of its loaded event files, which can be
+     * initialized without affecting this one, while this one is still in use.
+     * The copied event definitions share their elements with the original ones.
+     */
+    public Events copy() {
+        final Events copy = new Events();
+        copy.m_global = m_global;
+        // Skip the prioritized events which initialize() added to the list, they are added again when the copy is
+        // initialized: the ones of the loaded event files, and the second occurrence of the ones of this file
+        final Set<Event> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final Events eventsFile : m_loadedEventFiles.values()) {
+            skipped.addAll(eventsFile.getPrioritizedEvents());
+        }
+        for (final Event event : m_events) {
+            if (skipped.add(event)) {
+                copy.m_events.add(event.copy());
+            }
+        }
+        copy.m_eventFiles.addAll(m_eventFiles);
+        for (final Entry<String, Events> loadedEvents : m_loadedEventFiles.entrySet()) {
+            copy.m_loadedEventFiles.put(loadedEvents.getKey(), loadedEvents.getValue().copy());
+        }
+        return copy;
+    }
+
     public Events getLoadEventsByFile(final String relativePath) {
         return m_loadedEventFiles.get(relativePath);
     }
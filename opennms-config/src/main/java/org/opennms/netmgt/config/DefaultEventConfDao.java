@@ -63,13 +63,19 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 	private static final Logger LOG = LoggerFactory.getLogger(DefaultEventConfDao.class);
 	private static final String DEFAULT_PROGRAMMATIC_STORE_RELATIVE_PATH = "events/programmatic.events.xml";
 
+	/**
+	 * Number of threads used to parse the included event files.  Defaults
+	 * to 1, which parses them one after the other on the calling thread.
+	 */
+	public static final String LOAD_THREADS_PROPERTY = "org.opennms.netmgt.eventconf.loadThreads";
+
     /**
      * Relative URL for the programmatic store configuration, relative to the
      * root configuration resource (which must be resolvable to a URL).
      */
     private String m_programmaticStoreRelativePath = DEFAULT_PROGRAMMATIC_STORE_RELATIVE_PATH;
 
-	private Events m_events;
+	private volatile Events m_events;
 
 	private Resource m_configResource;
 
@@ -83,6 +89,8 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 
 	private ConfigReloadContainer<Events> m_extContainer;
 
+	private final ParallelJaxbLoader<Events> m_eventFileLoader = new ParallelJaxbLoader<>(Events.class, Integer.getInteger(LOAD_THREADS_PROPERTY, 1));
+
 	public String getProgrammaticStoreRelativeUrl() {
 		return m_programmaticStoreRelativePath;
 	}
@@ -247,6 +255,13 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 		return m_events;
 	}
 
+	/**
+	 * @return the time in milliseconds spent loading each included event file during the last (re)load
+	 */
+	public Map<String, Long> getEventFileLoadTimes() {
+		return m_eventFileLoader.getLoadTimes();
+	}
+
 	public void setConfigResource(Resource configResource) throws IOException {
 		m_configResource = configResource;
 	}
@@ -303,32 +318,49 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
             Set<String> eventFiles = new HashSet<>();
             eventFiles.addAll(events.getEventFiles());
 
+            // Work on a copy so a failed reload leaves the current state untouched
+            final Map<String, Long> lastModifiedEventFiles = new LinkedHashMap<>(m_lastModifiedEventFiles);
+
             // Copy the loaded event files from the current root to the new root
-            // if and only if they exist in the new root
+            // if and only if they exist in the new root.  They are still in use,
+            // so the new root gets copies which it can initialize on its own.
             for (String eventFile : m_events.getEventFiles()) {
                 if (!eventFiles.contains(eventFile)) {
-                    m_lastModifiedEventFiles.remove(eventFile);
+                    lastModifiedEventFiles.remove(eventFile);
                     continue;
                 }
-                events.addLoadedEventFile(eventFile, m_events.getLoadEventsByFile(eventFile));
+                events.addLoadedEventFile(eventFile, m_events.getLoadEventsByFile(eventFile).copy());
             }
 
             // Load/reload the event files as necessary
-            events.loadEventFilesIfModified(m_configResource, m_lastModifiedEventFiles);
+            events.loadEventFilesIfModified(m_configResource, lastModifiedEventFiles, this::reloadEventFiles);
+            m_eventFileLoader.retainAll(eventFiles);
 
             // Order the events for efficient searching
             events.initialize(m_partition, new EventOrdering());
 
+            // Swap in the new configuration
             m_events = events;
+            m_lastModifiedEventFiles = lastModifiedEventFiles;
         } catch (Exception e) {
             throw new DataRetrievalFailureException("Unable to load " + m_configResource, e);
         }
     }
 
+    /**
+     * The loader returns the same object for a file whose content did not change,
+     * which may still be in use by the current root, so it is copied as well.
+     */
+    private Map<String, Events> reloadEventFiles(Map<String, Resource> eventResources) throws IOException {
+        final Map<String, Events> eventFiles = new LinkedHashMap<>();
+        m_eventFileLoader.load(eventResources).forEach((eventFile, events) -> eventFiles.put(eventFile, events.copy()));
+        return eventFiles;
+    }
+
 	private synchronized void loadConfig() throws DataAccessException {
 		try {
 			Events events = JaxbUtils.unmarshal(Events.class, m_configResource);
-			m_lastModifiedEventFiles = events.loadEventFiles(m_configResource);
+			m_lastModifiedEventFiles = events.loadEventFiles(m_configResource, m_eventFileLoader::load);
 
 			m_partition = new EnterpriseIdPartition();
 			events.initialize(m_partition, new EventOrdering());
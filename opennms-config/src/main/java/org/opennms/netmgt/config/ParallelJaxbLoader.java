@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.xml.JaxbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileCopyUtils;
+import org.xml.sax.InputSource;
+
+/**
+ * Unmarshals a set of configuration files, optionally on several threads.
+ *
+ * Parsed objects are remembered together with the SHA-256 checksum of the
+ * file they were read from, so a file whose content did not change (even
+ * if it was touched or copied over) is not parsed again.  The time spent
+ * on every file of the last load is kept for reporting.
+ *
+ * @param <T> the JAXB type of the files
+ */
+public class ParallelJaxbLoader<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelJaxbLoader.class);
+
+    private static class Parsed<T> {
+        private final String m_checksum;
+        private final T m_object;
+        private final long m_nanos;
+        private final boolean m_reused;
+
+        private Parsed(final String checksum, final T object, final long nanos, final boolean reused) {
+            m_checksum = checksum;
+            m_object = object;
+            m_nanos = nanos;
+            m_reused = reused;
+        }
+    }
+
+    private final Class<T> m_clazz;
+
+    private final int m_threads;
+
+    /** Guarded by this, read by the parsing threads while a load is in progress. */
+    private Map<String, Parsed<T>> m_parsed = new HashMap<>();
+
+    private volatile Map<String, Long> m_loadTimes = Collections.emptyMap();
+
+    /**
+     * @param clazz the JAXB type of the files
+     * @param threads the maximum number of files parsed at the same time
+     */
+    public ParallelJaxbLoader(final Class<T> clazz, final int threads) {
+        m_clazz = clazz;
+        m_threads = Math.max(1, threads);
+    }
+
+    /**
+     * Loads the given files.
+     *
+     * @param resources the files to load, keyed by a name such as their relative path
+     * @return the parsed objects, keyed and ordered like the given files
+     * @throws IOException if one of the files cannot be read
+     */
+    public synchronized Map<String, T> load(final Map<String, Resource> resources) throws IOException {
+        final long start = System.nanoTime();
+        final int threads = Math.min(m_threads, resources.size());
+        final Map<String, Parsed<T>> loaded = new LinkedHashMap<>();
+
+        if (threads > 1) {
+            final ExecutorService executor = Executors.newFixedThreadPool(threads, new LogPreservingThreadFactory(m_clazz.getSimpleName() + "-Loader", threads));
+            try {
+                final Map<String, Future<Parsed<T>>> futures = new LinkedHashMap<>();
+                for (final Entry<String, Resource> entry : resources.entrySet()) {
+                    futures.put(entry.getKey(), executor.submit(() -> parse(entry.getKey(), entry.getValue())));
+                }
+                for (final Entry<String, Future<Parsed<T>>> entry : futures.entrySet()) {
+                    loaded.put(entry.getKey(), get(entry.getValue()));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } else {
+            for (final Entry<String, Resource> entry : resources.entrySet()) {
+                loaded.put(entry.getKey(), parse(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        final Map<String, T> objects = new LinkedHashMap<>();
+        final Map<String, Long> loadTimes = new LinkedHashMap<>();
+        int reused = 0;
+        String slowest = null;
+        for (final Entry<String, Parsed<T>> entry : loaded.entrySet()) {
+            final Parsed<T> parsed = entry.getValue();
+            objects.put(entry.getKey(), parsed.m_object);
+            loadTimes.put(entry.getKey(), TimeUnit.NANOSECONDS.toMillis(parsed.m_nanos));
+            m_parsed.put(entry.getKey(), parsed);
+            if (parsed.m_reused) {
+                reused++;
+            }
+            if (slowest == null || parsed.m_nanos > loaded.get(slowest).m_nanos) {
+                slowest = entry.getKey();
+            }
+            LOG.debug("load: {} {} in {}ms", parsed.m_reused ? "checksum unchanged, reused" : "parsed", entry.getKey(), loadTimes.get(entry.getKey()));
+        }
+        m_loadTimes = Collections.unmodifiableMap(loadTimes);
+
+        LOG.info("load: loaded {} {} file(s) in {}ms on {} thread(s); {} parsed, {} unchanged; slowest was {} ({}ms)",
+                 resources.size(), m_clazz.getSimpleName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                 Math.max(1, threads), resources.size() - reused, reused, slowest, slowest == null ? 0 : loadTimes.get(slowest));
+        return objects;
+    }
+
+    /**
+     * Forgets the parsed objects of all files but the given ones.
+     *
+     * @param names the names of the files that are still in use
+     */
+    public synchronized void retainAll(final Collection<String> names) {
+        m_parsed.keySet().retainAll(names);
+    }
+
+    /**
+     * @return the time in milliseconds spent on each file of the last load
+     */
+    public Map<String, Long> getLoadTimes() {
+        return m_loadTimes;
+    }
+
+    private Parsed<T> parse(final String name, final Resource resource) throws IOException {
+        final long start = System.nanoTime();
+        final byte[] content;
+        try (InputStream in = resource.getInputStream()) {
+            content = FileCopyUtils.copyToByteArray(in);
+        }
+        final String checksum = DigestUtils.sha256Hex(content);
+
+        final Parsed<T> previous = m_parsed.get(name);
+        if (previous != null && previous.m_checksum.equals(checksum)) {
+            return new Parsed<>(checksum, previous.m_object, System.nanoTime() - start, true);
+        }
+
+        // parse from bytes so the XML parser detects the encoding, like unmarshalling the resource does
+        final T object = JaxbUtils.unmarshal(m_clazz, new InputSource(new ByteArrayInputStream(content)));
+        return new Parsed<>(checksum, object, System.nanoTime() - start, false);
+    }
+
+    private static <T> T get(final Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading configuration files", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
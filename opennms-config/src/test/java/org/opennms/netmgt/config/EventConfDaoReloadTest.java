@@ -30,9 +30,14 @@ package org.opennms.netmgt.config;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
@@ -43,6 +48,8 @@ import org.junit.rules.TemporaryFolder;
 import org.opennms.core.test.MockLogAppender;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.xml.eventconf.Event;
+import org.opennms.netmgt.xml.eventconf.EventOrdering.EventOrderIndex;
+import org.opennms.netmgt.xml.eventconf.Events;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
@@ -157,6 +164,51 @@ public class EventConfDaoReloadTest {
         assertEquals(5, eventConfDao.getAllEvents().size());
     }
 
+    /**
+     * Verify that reloading builds a new root without re-initializing
+     * the event files which are still in use by the current one.
+     */
+    @Test
+    public void canReloadWithoutModifyingCurrentRoot() throws Exception {
+        File eventconfXml = copyEventConfig("reloaded/eventconf.xml", "eventconf.xml");
+        copyEventConfig("reloaded/BGP4.events.xml", "BGP4.events.xml");
+
+        // Load
+        DefaultEventConfDao eventConfDao = new DefaultEventConfDao();
+        eventConfDao.setConfigResource(new FileSystemResource(eventconfXml));
+        eventConfDao.afterPropertiesSet();
+        assertEquals(3, eventConfDao.getAllEvents().size());
+
+        final Events currentRoot = eventConfDao.getRootEvents();
+        final Events currentBgp4Events = currentRoot.getLoadEventsByFile("BGP4.events.xml");
+        final List<Event> currentEvents = new ArrayList<>(currentRoot.getEvents());
+        final List<Event> currentBgp4EventList = new ArrayList<>(currentBgp4Events.getEvents());
+        final List<EventOrderIndex> currentIndexes = currentBgp4EventList.stream()
+                .map(Event::getIndex)
+                .collect(Collectors.toList());
+
+        // Reload, the BGP4 events are unchanged and reused
+        eventConfDao.reload();
+        assertEquals(3, eventConfDao.getAllEvents().size());
+
+        final Events newRoot = eventConfDao.getRootEvents();
+        assertNotSame(currentRoot, newRoot);
+        assertNotSame(currentBgp4Events, newRoot.getLoadEventsByFile("BGP4.events.xml"));
+
+        // The current root and its event files were left as they were
+        assertEquals(currentEvents, currentRoot.getEvents());
+        assertEquals(currentBgp4EventList, currentBgp4Events.getEvents());
+        for (int i = 0; i < currentBgp4EventList.size(); i++) {
+            assertSame(currentIndexes.get(i), currentBgp4EventList.get(i).getIndex());
+        }
+        assertSame(currentBgp4Events, currentRoot.getLoadEventsByFile("BGP4.events.xml"));
+
+        // Reloading the copies again does not accumulate events
+        eventConfDao.reload();
+        assertEquals(3, eventConfDao.getAllEvents().size());
+        assertEquals(newRoot.getEvents().size(), eventConfDao.getRootEvents().getEvents().size());
+    }
+
     /**
      * Verify that the order of the includes is maintained
      * when new event configuration files are added, and reloaded.
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.netmgt.xml.eventconf.Events;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+public class ParallelJaxbLoaderTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void canLoadFilesInParallelInOrder() throws IOException {
+        final Map<String, Resource> resources = new LinkedHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            final String name = i + ".events.xml";
+            resources.put(name, new FileSystemResource(copy(i % 2 == 0 ? "BGP4.events.xml" : "BGP4.more.events.xml", name)));
+        }
+
+        final ParallelJaxbLoader<Events> loader = new ParallelJaxbLoader<>(Events.class, 4);
+        final Map<String, Events> loaded = loader.load(resources);
+
+        assertEquals(new ArrayList<>(resources.keySet()), new ArrayList<>(loaded.keySet()));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i % 2 == 0 ? 2 : 4, loaded.get(i + ".events.xml").getEvents().size());
+        }
+        assertEquals(resources.keySet(), loader.getLoadTimes().keySet());
+    }
+
+    @Test
+    public void canReuseFilesWithUnchangedChecksum() throws IOException {
+        final File file = copy("BGP4.events.xml", "BGP4.events.xml");
+        final Map<String, Resource> resources = Collections.singletonMap("BGP4.events.xml", new FileSystemResource(file));
+        final ParallelJaxbLoader<Events> loader = new ParallelJaxbLoader<>(Events.class, 1);
+
+        final Events first = loader.load(resources).get("BGP4.events.xml");
+
+        // Rewriting the same content does not parse the file again
+        copy("BGP4.events.xml", "BGP4.events.xml");
+        assertSame(first, loader.load(resources).get("BGP4.events.xml"));
+
+        // Changing the content does
+        copy("BGP4.more.events.xml", "BGP4.events.xml");
+        final Events second = loader.load(resources).get("BGP4.events.xml");
+        assertNotSame(first, second);
+        assertEquals(4, second.getEvents().size());
+
+        // Forgotten files are parsed again
+        loader.retainAll(Collections.emptySet());
+        assertNotSame(second, loader.load(resources).get("BGP4.events.xml"));
+        assertTrue(loader.getLoadTimes().get("BGP4.events.xml") >= 0);
+    }
+
+    private File copy(final String from, final String to) throws IOException {
+        final File dest = new File(tempFolder.getRoot(), to);
+        FileUtils.copyInputStreamToFile(new ClassPathResource("/org/opennms/netmgt/config/eventd/reloaded/" + from).getInputStream(), dest);
+        return dest;
+    }
+}
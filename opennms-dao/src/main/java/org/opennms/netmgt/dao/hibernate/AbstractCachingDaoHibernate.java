@@ -28,18 +28,33 @@
 
 package org.opennms.netmgt.dao.hibernate;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Function;
 
 import org.springframework.dao.DataAccessException;
 
 /**
  * AbstractCachingDaoHibernate
  *
+ * <p>Entities are cached per thread or, when it is enabled, in a
+ * {@link ReadMostlyCache} shared by all threads. The shared cache is
+ * invalidated whenever an entity is written through this DAO. It only
+ * holds detached copies of the entities and hands out a new copy on every
+ * hit, so an entity is never attached to more than one session and changes
+ * made by one caller are not seen by the others.</p>
+ *
  * @author brozow
  * @version $Id: $
  */
@@ -47,6 +62,8 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
 
     private final ThreadLocal<HashMap<CacheKey, T>> m_cache = new ThreadLocal<HashMap<CacheKey, T>>();
     private final boolean m_dbKeyMatchesCacheKey;
+    private final boolean m_threadCache;
+    private final ReadMostlyCache<CacheKey, T> m_sharedCache;
 
     /**
      * <p>Constructor for AbstractCachingDaoHibernate.</p>
@@ -58,8 +75,22 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
      * @param <CacheKey> a CacheKey object.
      */
     public AbstractCachingDaoHibernate(Class<T> entityClass, boolean dbKeyMatchesCacheKey) {
+        this(entityClass, dbKeyMatchesCacheKey, true);
+    }
+
+    /**
+     * <p>Constructor for AbstractCachingDaoHibernate.</p>
+     *
+     * @param entityClass a {@link java.lang.Class} object.
+     * @param dbKeyMatchesCacheKey a boolean.
+     * @param threadCache false if the entities must only be cached in the
+     *      shared cache, when it is enabled
+     */
+    protected AbstractCachingDaoHibernate(Class<T> entityClass, boolean dbKeyMatchesCacheKey, boolean threadCache) {
         super(entityClass);
         m_dbKeyMatchesCacheKey = dbKeyMatchesCacheKey;
+        m_threadCache = threadCache;
+        m_sharedCache = ReadMostlyCache.create(entityClass.getSimpleName());
     }
     
     /**
@@ -70,6 +101,73 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
      */
     abstract protected CacheKey getKey(T t);
 
+    /**
+     * Called before a copy of an entity is stored in the shared cache, where
+     * it will be used outside of the session it was loaded from.
+     * Implementations must initialize the lazy associations of the entity
+     * that callers may access. The entity must be {@link Serializable}.
+     *
+     * @param t a T object.
+     */
+    protected void initializeForSharedCache(T t) {
+    }
+
+    /**
+     * Returns the entity for the given key from the shared cache. On a miss,
+     * the entity loaded in the current session is returned and a copy of it
+     * is cached.
+     */
+    private T getShared(CacheKey key, Function<CacheKey, T> loader) {
+        final List<T> loaded = new ArrayList<>(1);
+        final T cached = m_sharedCache.get(key, k -> {
+            final T t = loader.apply(k);
+            if (t == null) {
+                return null;
+            }
+            loaded.add(t);
+            initializeForSharedCache(t);
+            return copy(t);
+        });
+        if (!loaded.isEmpty()) {
+            return loaded.get(0);
+        }
+        return cached == null ? null : copy(cached);
+    }
+
+    /**
+     * Copies the entity by serializing it. Resolves the classes with the
+     * class loader of the DAOs, which sees both the model and Hibernate.
+     */
+    @SuppressWarnings("unchecked")
+    private T copy(T t) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(t);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to copy " + t + " for the shared cache", e);
+        }
+        try (final ObjectInputStream in = new DaoObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T)in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Failed to copy " + t + " for the shared cache", e);
+        }
+    }
+
+    private static class DaoObjectInputStream extends ObjectInputStream {
+        private DaoObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, AbstractCachingDaoHibernate.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public void clear() {
@@ -89,6 +187,7 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
         }
         
         super.deleteAll(entities);
+        m_sharedCache.invalidateAll();
         
         if (m_cache.get() != null) {
             for(CacheKey id : ids) {
@@ -102,6 +201,7 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
     public void delete(T entity) throws DataAccessException {
         CacheKey id = getKey(entity);
         super.delete(entity);
+        m_sharedCache.invalidateAll();
         if (m_cache.get() != null) {
             m_cache.get().remove(id);
         }
@@ -111,6 +211,9 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
     @Override
     public List<T> findAll() throws DataAccessException {
         List<T> entities = super.findAll();
+        if (!m_threadCache) {
+            return entities;
+        }
         
         HashMap<CacheKey, T> map = new HashMap<CacheKey, T>();
         for(T t : entities) {
@@ -124,7 +227,15 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
     /** {@inheritDoc} */
     @Override
     public T get(DbKey id) throws DataAccessException {
-        
+        if (m_dbKeyMatchesCacheKey && m_sharedCache.isEnabled()) {
+            @SuppressWarnings("unchecked")
+            final CacheKey key = (CacheKey)id;
+            return getShared(key, k -> super.get(id));
+        }
+        if (!m_threadCache) {
+            return super.get(id);
+        }
+
         if (m_cache.get() == null) {
             m_cache.set(new HashMap<CacheKey, T>());
         }
@@ -149,6 +260,10 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
     /** {@inheritDoc} */
     @Override
     public T load(DbKey id) throws DataAccessException {
+        if (!m_threadCache) {
+            return super.load(id);
+        }
+
         if (m_cache.get() == null) {
             m_cache.set(new HashMap<CacheKey, T>());
         }
@@ -174,6 +289,7 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
     @Override
     public void merge(T entity) {
         super.merge(entity);
+        m_sharedCache.invalidateAll();
         if (m_cache.get() != null) {
             m_cache.get().put(getKey(entity), entity);
         }
@@ -183,6 +299,7 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
     @Override
     public DbKey save(T entity) throws DataAccessException {
         DbKey retval = super.save(entity);
+        m_sharedCache.invalidateAll();
         if (m_cache.get() != null) {
             m_cache.get().put(getKey(entity), entity);
         }
@@ -193,6 +310,7 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
     @Override
     public void saveOrUpdate(T entity) throws DataAccessException {
         super.saveOrUpdate(entity);
+        m_sharedCache.invalidateAll();
         if (m_cache.get() != null) {
             m_cache.get().put(getKey(entity), entity);
         }
@@ -202,6 +320,7 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
     @Override
     public void update(T entity) throws DataAccessException {
         super.update(entity);
+        m_sharedCache.invalidateAll();
         if (m_cache.get() != null) {
             m_cache.get().put(getKey(entity), entity);
         }
@@ -215,6 +334,13 @@ public abstract class AbstractCachingDaoHibernate<T, DbKey extends Serializable,
      * @return a T object.
      */
     protected T findByCacheKey(String queryString, CacheKey key) {
+        if (m_sharedCache.isEnabled()) {
+            return getShared(key, k -> findUnique(queryString, k));
+        }
+        if (!m_threadCache) {
+            return findUnique(queryString, key);
+        }
+
         T t = null;
         if (m_cache.get() != null) {
             t = m_cache.get().get(key);
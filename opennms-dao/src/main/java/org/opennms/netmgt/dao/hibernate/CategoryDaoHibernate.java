@@ -78,6 +78,12 @@ public class CategoryDaoHibernate extends AbstractCachingDaoHibernate<OnmsCatego
     protected String getKey(OnmsCategory category) {
         return category.getName();
     }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void initializeForSharedCache(OnmsCategory category) {
+        initialize(category.getAuthorizedGroups());
+    }
     
     /**
      * <p>getAllCategoryNames</p>
@@ -31,13 +31,25 @@ package org.opennms.netmgt.dao.hibernate;
 import org.opennms.netmgt.dao.api.DistPollerDao;
 import org.opennms.netmgt.model.OnmsDistPoller;
 
-public class DistPollerDaoHibernate extends AbstractDaoHibernate<OnmsDistPoller, String> implements DistPollerDao {
+public class DistPollerDaoHibernate extends AbstractCachingDaoHibernate<OnmsDistPoller, String, String> implements DistPollerDao {
 
     /**
      * <p>Constructor for DistPollerDaoHibernate.</p>
      */
     public DistPollerDaoHibernate() {
-        super(OnmsDistPoller.class);
+        super(OnmsDistPoller.class, true, false);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getKey(OnmsDistPoller distPoller) {
+        return distPoller.getId();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void initializeForSharedCache(OnmsDistPoller distPoller) {
+        initialize(distPoller.getProperties());
     }
 
     @Override
@@ -39,12 +39,23 @@ import org.slf4j.LoggerFactory;
  * @author Seth
  * @author <a href="mailto:david@opennms.org">David Hustace</a>
  */
-public class MonitoringLocationDaoHibernate extends AbstractDaoHibernate<OnmsMonitoringLocation, String> implements MonitoringLocationDao {
+public class MonitoringLocationDaoHibernate extends AbstractCachingDaoHibernate<OnmsMonitoringLocation, String, String> implements MonitoringLocationDao {
 
     private static final Logger LOG = LoggerFactory.getLogger(MonitoringLocationDaoHibernate.class);
 
     public MonitoringLocationDaoHibernate() {
-        super(OnmsMonitoringLocation.class);
+        super(OnmsMonitoringLocation.class, true, false);
+    }
+
+    @Override
+    protected String getKey(OnmsMonitoringLocation location) {
+        return location.getLocationName();
+    }
+
+    @Override
+    protected void initializeForSharedCache(OnmsMonitoringLocation location) {
+        // The tags are only exposed through a read-only view of the lazy collection
+        location.getTags().size();
     }
 
     public OnmsMonitoringLocation getDefaultLocation() {
@@ -61,6 +61,7 @@ import org.opennms.netmgt.model.SurveillanceStatus;
 import org.opennms.netmgt.model.monitoringLocations.OnmsMonitoringLocation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.util.StringUtils;
 
@@ -73,6 +74,9 @@ import org.springframework.util.StringUtils;
 public class NodeDaoHibernate extends AbstractDaoHibernate<OnmsNode, Integer> implements NodeDao {
     private static final Logger LOG = LoggerFactory.getLogger(NodeDaoHibernate.class);
 
+    private static final ReadMostlyCache<Integer, String> LABEL_CACHE = ReadMostlyCache.create("nodeLabels");
+    private static final ReadMostlyCache<Integer, String> LOCATION_CACHE = ReadMostlyCache.create("nodeLocations");
+
     /**
      * <p>Constructor for NodeDaoHibernate.</p>
      */
@@ -96,14 +100,75 @@ public class NodeDaoHibernate extends AbstractDaoHibernate<OnmsNode, Integer> im
      */
     @Override
     public String getLabelForId(Integer id) {
-        List<String> list = findObjects(String.class, "select n.label from OnmsNode as n where n.id = ?", id);
-        return list == null || list.isEmpty() ? null : list.get(0);
+        return LABEL_CACHE.get(id, nodeId -> {
+            List<String> list = findObjects(String.class, "select n.label from OnmsNode as n where n.id = ?", nodeId);
+            return list == null || list.isEmpty() ? null : list.get(0);
+        });
     }
 
     @Override
     public String getLocationForId(Integer id) {
-        List<OnmsMonitoringLocation> list = findObjects(OnmsMonitoringLocation.class, "select n.location from OnmsNode as n where n.id = ?", id);
-        return list == null || list.isEmpty() ? null : list.get(0).getLocationName();
+        return LOCATION_CACHE.get(id, nodeId -> {
+            List<OnmsMonitoringLocation> list = findObjects(OnmsMonitoringLocation.class, "select n.location from OnmsNode as n where n.id = ?", nodeId);
+            return list == null || list.isEmpty() ? null : list.get(0).getLocationName();
+        });
+    }
+
+    /**
+     * Removes the label and location of the given node from the shared
+     * caches, when they are enabled.
+     *
+     * @param nodeId the ID of the node that was changed
+     */
+    public static void invalidateNode(Integer nodeId) {
+        LABEL_CACHE.invalidate(nodeId);
+        LOCATION_CACHE.invalidate(nodeId);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Integer save(OnmsNode node) throws DataAccessException {
+        final Integer id = super.save(node);
+        invalidateNode(id);
+        return id;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void saveOrUpdate(OnmsNode node) throws DataAccessException {
+        super.saveOrUpdate(node);
+        invalidateNode(node.getId());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void update(OnmsNode node) throws DataAccessException {
+        super.update(node);
+        invalidateNode(node.getId());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void merge(OnmsNode node) {
+        super.merge(node);
+        invalidateNode(node.getId());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void delete(OnmsNode node) throws DataAccessException {
+        final Integer id = node.getId();
+        super.delete(node);
+        invalidateNode(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteAll(Collection<OnmsNode> nodes) throws DataAccessException {
+        super.deleteAll(nodes);
+        for (final OnmsNode node : nodes) {
+            invalidateNode(node.getId());
+        }
     }
 
     /** {@inheritDoc} */
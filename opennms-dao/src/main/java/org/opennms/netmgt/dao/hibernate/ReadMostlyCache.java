@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.dao.hibernate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+
+/**
+ * A cache shared by all threads for entities and projections that are read
+ * much more often than they are written, like service types, categories,
+ * monitoring locations or node labels.
+ *
+ * <p>The cache is disabled, and simply delegates to the loader, unless the
+ * {@value #ENABLED_SYS_PROP} system property is set to true. Entries are
+ * invalidated when they are written through the DAOs, and expire after
+ * {@value #TTL_SYS_PROP} milliseconds (5 minutes by default, 0 disables the
+ * expiration) to bound how stale they can become when the database is
+ * modified by another process. Deployments where several OpenNMS instances
+ * share the same database should keep the cache disabled or use a short
+ * TTL.</p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public class ReadMostlyCache<K, V> {
+    public static final String ENABLED_SYS_PROP = "org.opennms.dao.readMostlyCache.enabled";
+    public static final String TTL_SYS_PROP = "org.opennms.dao.readMostlyCache.ttl";
+
+    private static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(5);
+
+    private static final MetricRegistry METRICS = new MetricRegistry();
+
+    private static class Entry<V> {
+        private final V m_value;
+        private final long m_expires;
+
+        private Entry(V value, long expires) {
+            m_value = value;
+            m_expires = expires;
+        }
+    }
+
+    private final boolean m_enabled;
+    private final long m_ttl;
+    private final ConcurrentMap<K, Entry<V>> m_entries = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on every invalidation so that a value loaded while the
+     * cache was being invalidated is not stored.
+     */
+    private final AtomicLong m_generation = new AtomicLong();
+
+    private final Counter m_hits;
+    private final Counter m_misses;
+    private final Counter m_invalidations;
+
+    /**
+     * Creates a cache configured from the system properties, whose metrics
+     * are registered under the given name.
+     */
+    public static <K, V> ReadMostlyCache<K, V> create(String name) {
+        return new ReadMostlyCache<>(name, Boolean.getBoolean(ENABLED_SYS_PROP), Long.getLong(TTL_SYS_PROP, DEFAULT_TTL));
+    }
+
+    /**
+     * @return the registry holding the hit, miss and invalidation counts of
+     * all of the caches
+     */
+    public static MetricRegistry getMetricRegistry() {
+        return METRICS;
+    }
+
+    /**
+     * @return true if the caches created from the system properties are enabled
+     */
+    public static boolean isEnabledBySystemProperty() {
+        return Boolean.getBoolean(ENABLED_SYS_PROP);
+    }
+
+    protected ReadMostlyCache(String name, boolean enabled, long ttl) {
+        m_enabled = enabled;
+        m_ttl = ttl;
+
+        m_hits = METRICS.counter(MetricRegistry.name(name, "hits"));
+        m_misses = METRICS.counter(MetricRegistry.name(name, "misses"));
+        m_invalidations = METRICS.counter(MetricRegistry.name(name, "invalidations"));
+
+        // Replace the gauges of a previous cache with the same name
+        METRICS.remove(MetricRegistry.name(name, "hitRate"));
+        METRICS.register(MetricRegistry.name(name, "hitRate"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(m_hits.getCount(), m_hits.getCount() + m_misses.getCount());
+            }
+        });
+        METRICS.remove(MetricRegistry.name(name, "size"));
+        METRICS.register(MetricRegistry.name(name, "size"), (Gauge<Integer>) m_entries::size);
+    }
+
+    public boolean isEnabled() {
+        return m_enabled;
+    }
+
+    /**
+     * Returns the cached value for the given key, or loads it. Null values
+     * are not cached.
+     *
+     * @param key the key of the value
+     * @param loader used to load the value when it is not cached, or when
+     *      the cache is disabled
+     * @return the value
+     */
+    public V get(K key, Function<K, V> loader) {
+        if (!m_enabled || key == null) {
+            return loader.apply(key);
+        }
+
+        final Entry<V> entry = m_entries.get(key);
+        if (entry != null && !isExpired(entry)) {
+            m_hits.inc();
+            return entry.m_value;
+        }
+        m_misses.inc();
+
+        final long generation = m_generation.get();
+        final V value = loader.apply(key);
+        if (value == null) {
+            if (entry != null) {
+                m_entries.remove(key, entry);
+            }
+        } else if (m_generation.get() == generation) {
+            m_entries.put(key, new Entry<>(value, m_ttl > 0 ? System.currentTimeMillis() + m_ttl : Long.MAX_VALUE));
+        }
+        return value;
+    }
+
+    /**
+     * Removes the value of the given key. When called within a transaction,
+     * the value is removed again once the transaction completes so that a
+     * value loaded by another thread before the commit is not kept.
+     */
+    public void invalidate(final K key) {
+        if (!m_enabled || key == null) {
+            return;
+        }
+        doInvalidate(key);
+        afterCompletion(() -> doInvalidate(key));
+    }
+
+    /**
+     * Removes all of the cached values, again once the current transaction
+     * completes if there is one.
+     */
+    public void invalidateAll() {
+        if (!m_enabled) {
+            return;
+        }
+        doInvalidateAll();
+        afterCompletion(this::doInvalidateAll);
+    }
+
+    public long getHitCount() {
+        return m_hits.getCount();
+    }
+
+    public long getMissCount() {
+        return m_misses.getCount();
+    }
+
+    public int size() {
+        return m_entries.size();
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return entry.m_expires < System.currentTimeMillis();
+    }
+
+    private void doInvalidate(K key) {
+        m_generation.incrementAndGet();
+        if (m_entries.remove(key) != null) {
+            m_invalidations.inc();
+        }
+    }
+
+    private void doInvalidateAll() {
+        m_generation.incrementAndGet();
+        m_invalidations.inc(m_entries.size());
+        m_entries.clear();
+    }
+
+    private static void afterCompletion(final Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    runnable.run();
+                }
+            });
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReadMostlyCache[enabled=%s, ttl=%d, size=%d, hits=%d, misses=%d]",
+                m_enabled, m_ttl, size(), getHitCount(), getMissCount());
+    }
+}
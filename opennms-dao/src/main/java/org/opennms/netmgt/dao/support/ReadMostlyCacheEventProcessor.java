@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.dao.support;
+
+import org.opennms.netmgt.dao.hibernate.NodeDaoHibernate;
+import org.opennms.netmgt.dao.hibernate.ReadMostlyCache;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.annotations.EventHandler;
+import org.opennms.netmgt.events.api.annotations.EventListener;
+import org.opennms.netmgt.events.api.model.IEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.codahale.metrics.JmxReporter;
+
+/**
+ * Invalidates the node labels and locations held by the read-mostly caches
+ * of the DAOs when nodes are changed outside of the DAOs, and exposes the
+ * hit rates of the caches over JMX.
+ *
+ * @see ReadMostlyCache
+ */
+@EventListener(name="OpenNMS.ReadMostlyCache", logPrefix="eventd")
+public class ReadMostlyCacheEventProcessor implements InitializingBean, DisposableBean {
+    private static final Logger LOG = LoggerFactory.getLogger(ReadMostlyCacheEventProcessor.class);
+
+    private JmxReporter m_jmxReporter;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (ReadMostlyCache.isEnabledBySystemProperty()) {
+            m_jmxReporter = JmxReporter.forRegistry(ReadMostlyCache.getMetricRegistry()).inDomain("org.opennms.netmgt.dao.cache").build();
+            m_jmxReporter.start();
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (m_jmxReporter != null) {
+            m_jmxReporter.stop();
+            m_jmxReporter = null;
+        }
+    }
+
+    @EventHandler(ueis={
+            EventConstants.NODE_UPDATED_EVENT_UEI,
+            EventConstants.NODE_LABEL_CHANGED_EVENT_UEI,
+            EventConstants.NODE_LOCATION_CHANGED_EVENT_UEI,
+            EventConstants.NODE_DELETED_EVENT_UEI
+    })
+    public void handleNodeChanged(IEvent event) {
+        Long nodeId = event.getNodeid();
+        LOG.debug("Received event: {} with nodeId = {}", event.getUei(), nodeId);
+        if (nodeId == null) {
+            LOG.error("{} : Event with no node ID: {}", event.getUei(), event.toString());
+            return;
+        }
+        NodeDaoHibernate.invalidateNode(nodeId.intValue());
+    }
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.dao.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opennms.core.spring.BeanUtils;
+import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
+import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
+import org.opennms.netmgt.model.OnmsServiceType;
+import org.opennms.test.JUnitConfigurationEnvironment;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@RunWith(OpenNMSJUnit4ClassRunner.class)
+@ContextConfiguration(locations={
+        "classpath:/META-INF/opennms/applicationContext-soa.xml",
+        "classpath:/META-INF/opennms/applicationContext-dao.xml",
+        "classpath*:/META-INF/opennms/component-dao.xml",
+        "classpath:/META-INF/opennms/applicationContext-commonConfigs.xml",
+        "classpath:/META-INF/opennms/applicationContext-minimal-conf.xml"
+})
+@JUnitConfigurationEnvironment
+@JUnitTemporaryDatabase(reuseDatabase=false)
+public class AbstractCachingDaoHibernateIT implements InitializingBean {
+    @Autowired
+    private SessionFactory m_sessionFactory;
+
+    @Autowired
+    private TransactionTemplate m_transTemplate;
+
+    private ServiceTypeDaoHibernate m_serviceTypeDao;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        BeanUtils.assertAutowiring(this);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        // Only enable the shared cache for the DAO of this test, not for the ones of the context
+        System.setProperty(ReadMostlyCache.ENABLED_SYS_PROP, "true");
+        try {
+            m_serviceTypeDao = new ServiceTypeDaoHibernate();
+        } finally {
+            System.clearProperty(ReadMostlyCache.ENABLED_SYS_PROP);
+        }
+        m_serviceTypeDao.setSessionFactory(m_sessionFactory);
+        m_transTemplate.execute(status -> {
+            try {
+                m_serviceTypeDao.afterPropertiesSet();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            m_serviceTypeDao.save(new OnmsServiceType("ICMP"));
+            return null;
+        });
+    }
+
+    @Test
+    public void canShareCachedEntityBetweenSessions() {
+        final long hits = ReadMostlyCache.getMetricRegistry().counter("OnmsServiceType.hits").getCount();
+
+        // Loaded and cached in the first session
+        final OnmsServiceType first = m_transTemplate.execute(status -> {
+            final OnmsServiceType serviceType = m_serviceTypeDao.findByName("ICMP");
+            assertTrue(m_sessionFactory.getCurrentSession().contains(serviceType));
+            return serviceType;
+        });
+
+        // Read from the cache in the second session, which must not get the instance of the first one
+        final OnmsServiceType second = m_transTemplate.execute(status -> {
+            final OnmsServiceType serviceType = m_serviceTypeDao.findByName("ICMP");
+            assertFalse(m_sessionFactory.getCurrentSession().contains(serviceType));
+            // Neither flushed, nor visible to the other readers
+            serviceType.setName("changed");
+            return serviceType;
+        });
+        assertEquals(hits + 1, ReadMostlyCache.getMetricRegistry().counter("OnmsServiceType.hits").getCount());
+        assertNotSame(first, second);
+        assertEquals(first.getId(), second.getId());
+
+        m_transTemplate.execute(status -> {
+            assertEquals("ICMP", m_serviceTypeDao.findByName("ICMP").getName());
+            assertEquals("ICMP", m_serviceTypeDao.get(first.getId()).getName());
+            assertEquals("ICMP", m_sessionFactory.getCurrentSession().createQuery("select name from OnmsServiceType where id = ?")
+                    .setInteger(0, first.getId()).uniqueResult());
+            return null;
+        });
+    }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.dao.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ReadMostlyCacheTest {
+
+    @Test
+    public void canLoadEveryTimeWhenDisabled() {
+        final ReadMostlyCache<Integer, String> cache = new ReadMostlyCache<>("disabled", false, 0);
+        final AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("node1", cache.get(1, id -> "node" + loads.incrementAndGet()));
+        assertEquals("node2", cache.get(1, id -> "node" + loads.incrementAndGet()));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void canCacheValues() {
+        final ReadMostlyCache<Integer, String> cache = new ReadMostlyCache<>("values", true, 0);
+        final AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("node1", cache.get(1, id -> "node" + loads.incrementAndGet()));
+        assertEquals("node1", cache.get(1, id -> "node" + loads.incrementAndGet()));
+        assertEquals("node1", cache.get(1, id -> "node" + loads.incrementAndGet()));
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // Missing values are looked up again
+        assertNull(cache.get(2, id -> null));
+        assertEquals("node2", cache.get(2, id -> "node2"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void canInvalidateValues() {
+        final ReadMostlyCache<Integer, String> cache = new ReadMostlyCache<>("invalidate", true, 0);
+
+        cache.get(1, id -> "node1");
+        cache.get(2, id -> "node2");
+
+        cache.invalidate(1);
+        assertEquals("renamed1", cache.get(1, id -> "renamed1"));
+        assertEquals("node2", cache.get(2, id -> "renamed2"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals("renamed2", cache.get(2, id -> "renamed2"));
+    }
+
+    @Test
+    public void canExpireValues() throws InterruptedException {
+        final ReadMostlyCache<Integer, String> cache = new ReadMostlyCache<>("expire", true, 1);
+
+        cache.get(1, id -> "node1");
+        Thread.sleep(10);
+        assertEquals("renamed1", cache.get(1, id -> "renamed1"));
+    }
+
+    @Test
+    public void canDiscardValuesLoadedDuringInvalidation() {
+        final ReadMostlyCache<Integer, String> cache = new ReadMostlyCache<>("race", true, 0);
+
+        // The node is changed while its previous label is being loaded
+        assertEquals("node1", cache.get(1, id -> {
+            cache.invalidate(1);
+            return "node1";
+        }));
+        assertEquals(0, cache.size());
+        assertEquals("renamed1", cache.get(1, id -> "renamed1"));
+    }
+}
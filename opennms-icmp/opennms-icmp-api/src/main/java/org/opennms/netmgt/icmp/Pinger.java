@@ -32,6 +32,8 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.util.List;
 
+import org.opennms.netmgt.icmp.sweep.SweepEngine;
+
 /**
  * <p>Pinger class.</p>
  *
@@ -159,4 +161,13 @@ public interface Pinger {
 	 * @return
 	 */
 	public boolean isV6Available();
+
+	/**
+	 * The engine used to sweep large ranges of addresses.
+	 *
+	 * @return the engine, or null if this implementation does not provide one
+	 */
+	default SweepEngine getSweepEngine() throws Exception {
+	    return null;
+	}
 }
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.sweep;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+/**
+ * Tracks the outstanding probes of the {@link SweepEngine} in parallel arrays indexed by the probe id,
+ * instead of allocating a request object for every probe.
+ *
+ * Probe ids are handed out sequentially and the slot of a probe is its id modulo the capacity, so the
+ * table behaves like a ring buffer: a new probe can only be added once the slot of the probe added
+ * <i>capacity</i> ids earlier was released. Probes expire in the order they were added.
+ *
+ * This class is not thread-safe.
+ */
+class ProbeTable<T> {
+
+    private static final long FREE = -1L;
+
+    private final int m_mask;
+    private final long[] m_ids;
+    private final long[] m_deadlines;
+    private final int[] m_retries;
+    private final InetAddress[] m_addresses;
+    private final Object[] m_owners;
+
+    /**
+     * Ring of the ids of the probes which expired and wait to be retransmitted
+     */
+    private final long[] m_pending;
+    private int m_pendingHead = 0;
+    private int m_pendingSize = 0;
+
+    private long m_nextId = 0;
+    private long m_oldestId = 0;
+    private int m_size = 0;
+
+    ProbeTable(final int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        m_mask = capacity - 1;
+        m_ids = new long[capacity];
+        m_deadlines = new long[capacity];
+        m_retries = new int[capacity];
+        m_addresses = new InetAddress[capacity];
+        m_owners = new Object[capacity];
+        m_pending = new long[capacity];
+        Arrays.fill(m_ids, FREE);
+    }
+
+    int size() {
+        return m_size;
+    }
+
+    boolean hasCapacity() {
+        advanceOldest();
+        return m_nextId - m_oldestId <= m_mask;
+    }
+
+    /**
+     * @return the id of the new probe
+     */
+    long add(final InetAddress address, final long deadline, final int retries, final T owner) {
+        if (!hasCapacity()) {
+            throw new IllegalStateException("No free slot for probe " + m_nextId);
+        }
+        final long id = m_nextId++;
+        final int slot = slot(id);
+        m_ids[slot] = id;
+        m_deadlines[slot] = deadline;
+        m_retries[slot] = retries;
+        m_addresses[slot] = address;
+        m_owners[slot] = owner;
+        m_size++;
+        return id;
+    }
+
+    /**
+     * @return the slot of the probe with the given id, or -1 if the probe is not outstanding
+     */
+    int find(final long id) {
+        if (id < 0) {
+            return -1;
+        }
+        final int slot = slot(id);
+        return m_ids[slot] == id ? slot : -1;
+    }
+
+    /**
+     * @return the slot of the oldest probe whose deadline passed, or -1 if there is none
+     */
+    int pollExpired(final long now) {
+        advanceOldest();
+        if (m_oldestId == m_nextId) {
+            return -1;
+        }
+        final int slot = slot(m_oldestId);
+        return m_deadlines[slot] <= now ? slot : -1;
+    }
+
+    /**
+     * @return the deadline of the oldest probe, or {@link Long#MAX_VALUE} if there is none
+     */
+    long nextDeadline() {
+        advanceOldest();
+        if (m_oldestId == m_nextId) {
+            return Long.MAX_VALUE;
+        }
+        return m_deadlines[slot(m_oldestId)];
+    }
+
+    /**
+     * Moves the expired probe in the given slot to a new id, queued for retransmission.
+     * The probe does not expire before it was retransmitted.
+     *
+     * @return the new id of the probe
+     */
+    long requeue(final int slot) {
+        final InetAddress address = m_addresses[slot];
+        final int retries = m_retries[slot] - 1;
+        @SuppressWarnings("unchecked")
+        final T owner = (T)m_owners[slot];
+        release(slot);
+
+        final long id = add(address, Long.MAX_VALUE, retries, owner);
+        m_pending[(m_pendingHead + m_pendingSize) & m_mask] = id;
+        m_pendingSize++;
+        return id;
+    }
+
+    /**
+     * @return the id of the next probe to retransmit, or -1 if there is none
+     */
+    long peekPending() {
+        return m_pendingSize > 0 ? m_pending[m_pendingHead] : -1L;
+    }
+
+    /**
+     * Marks the next probe to retransmit as sent.
+     */
+    void pollPending(final long deadline) {
+        final long id = m_pending[m_pendingHead];
+        m_pendingHead = (m_pendingHead + 1) & m_mask;
+        m_pendingSize--;
+        final int slot = find(id);
+        if (slot >= 0) {
+            m_deadlines[slot] = deadline;
+        }
+    }
+
+    InetAddress getAddress(final int slot) {
+        return m_addresses[slot];
+    }
+
+    int getRetries(final int slot) {
+        return m_retries[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    T getOwner(final int slot) {
+        return (T)m_owners[slot];
+    }
+
+    void release(final int slot) {
+        m_ids[slot] = FREE;
+        m_addresses[slot] = null;
+        m_owners[slot] = null;
+        m_size--;
+    }
+
+    private void advanceOldest() {
+        while (m_oldestId < m_nextId && m_ids[slot(m_oldestId)] != m_oldestId) {
+            m_oldestId++;
+        }
+    }
+
+    private int slot(final long id) {
+        return (int)(id & m_mask);
+    }
+}
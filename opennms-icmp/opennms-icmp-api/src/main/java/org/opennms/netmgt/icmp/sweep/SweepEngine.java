@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.sweep;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sweeps large ranges of addresses with ICMP echo requests.
+ *
+ * All the probes are transmitted from a single sender thread, paced by a {@link TokenBucket} per sweep.
+ * The outstanding probes are tracked in a {@link ProbeTable} keyed by the probe id carried in the echo
+ * request, so no object is allocated per probe. The results are handed to the {@link SweepListener} as
+ * soon as a reply is received or a probe timed out, instead of after the whole sweep completed.
+ *
+ * Sweeps are transmitted one after the other: the next sweep starts as soon as all the addresses of the
+ * previous one were sent, while its replies are still outstanding.
+ */
+public class SweepEngine {
+    private static final Logger LOG = LoggerFactory.getLogger(SweepEngine.class);
+
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final SweepTransport m_transport;
+
+    private final ProbeTable<Sweep> m_table;
+
+    private final ConcurrentLinkedQueue<Sweep> m_sweeps = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The sweeps which are not completed yet, either queued or with outstanding probes.
+     */
+    private final Set<Sweep> m_pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong m_sent = new AtomicLong();
+    private final AtomicLong m_retransmitted = new AtomicLong();
+    private final AtomicLong m_replies = new AtomicLong();
+    private final AtomicLong m_timeouts = new AtomicLong();
+    private final AtomicLong m_errors = new AtomicLong();
+    private final long m_createdNanos = System.nanoTime();
+
+    private Thread m_sender;
+    private volatile boolean m_stopped = false;
+
+    public SweepEngine(final SweepTransport transport) {
+        this(transport, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of outstanding probes, must be a power of two
+     */
+    public SweepEngine(final SweepTransport transport, final int capacity) {
+        m_transport = Objects.requireNonNull(transport);
+        m_table = new ProbeTable<>(capacity);
+    }
+
+    /**
+     * Sweeps the given addresses.
+     *
+     * @param addresses the addresses to probe, iterated lazily from the sender thread
+     * @param timeout the time to wait for a reply, in milliseconds
+     * @param retries the number of retransmissions when no reply is received
+     * @param packetSize the size of the echo requests
+     * @param packetsPerSecond the rate at which the probes of this sweep are sent
+     * @param listener receives the result of every address
+     * @return completes when all the addresses were replied to or timed out, or fails if the engine is stopped before
+     */
+    public CompletableFuture<SweepStatistics> sweep(final Iterator<InetAddress> addresses, final long timeout, final int retries,
+                                                    final int packetSize, final double packetsPerSecond, final SweepListener listener) throws IOException {
+        final Sweep sweep = new Sweep(addresses, timeout, retries, packetSize, packetsPerSecond, listener);
+        synchronized (this) {
+            if (m_stopped) {
+                sweep.m_future.completeExceptionally(new IllegalStateException("The sweep engine is stopped."));
+                return sweep.m_future;
+            }
+            if (!addresses.hasNext()) {
+                sweep.complete();
+                return sweep.m_future;
+            }
+            start();
+            m_pending.add(sweep);
+            m_sweeps.add(sweep);
+        }
+        LockSupport.unpark(m_sender);
+        return sweep.m_future;
+    }
+
+    /**
+     * Handles the echo reply carrying the given probe id. Called by the {@link SweepTransport}.
+     */
+    public void handleReply(final long probeId, final double rttMillis) {
+        final InetAddress address;
+        final Sweep sweep;
+        synchronized (m_table) {
+            final int slot = m_table.find(probeId);
+            if (slot < 0) {
+                // late or duplicate reply
+                return;
+            }
+            address = m_table.getAddress(slot);
+            sweep = m_table.getOwner(slot);
+            m_table.release(slot);
+            sweep.m_replies++;
+        }
+        m_replies.incrementAndGet();
+        sweep.m_listener.onReply(address, rttMillis);
+        sweep.probeDone();
+    }
+
+    /**
+     * @return the statistics of all the probes sent since this engine was created
+     */
+    public SweepStatistics getStatistics() {
+        return new SweepStatistics(m_sent.get(), m_retransmitted.get(), m_replies.get(), m_timeouts.get(), m_errors.get(),
+                System.nanoTime() - m_createdNanos);
+    }
+
+    /**
+     * Stops the sender thread and the transport. The sweeps which are not completed yet fail, and no new sweeps are accepted.
+     */
+    public synchronized void stop() {
+        m_stopped = true;
+        if (m_sender != null) {
+            LockSupport.unpark(m_sender);
+            m_sender = null;
+            m_transport.stop();
+        }
+        m_sweeps.clear();
+        final IllegalStateException stopped = new IllegalStateException("The sweep engine was stopped before the sweep completed.");
+        for (final Sweep sweep : m_pending) {
+            sweep.m_future.completeExceptionally(stopped);
+        }
+        m_pending.clear();
+    }
+
+    private synchronized void start() throws IOException {
+        if (m_sender != null) {
+            return;
+        }
+        m_transport.start(this);
+        m_sender = new Thread(this::run, "ICMP-Sweep-Sender");
+        m_sender.setDaemon(true);
+        m_sender.start();
+    }
+
+    private void run() {
+        Sweep current = null;
+        while (!m_stopped) {
+            final long now = System.nanoTime();
+            expire(now);
+
+            // Retransmissions take precedence over new probes
+            final long pendingId;
+            final Sweep sweep;
+            synchronized (m_table) {
+                pendingId = m_table.peekPending();
+                if (pendingId >= 0) {
+                    sweep = m_table.getOwner(m_table.find(pendingId));
+                } else {
+                    if (current == null) {
+                        current = m_sweeps.poll();
+                    }
+                    sweep = current;
+                }
+            }
+
+            if (sweep == null) {
+                // Nothing to send, wait for new sweeps or the next deadline
+                park(now);
+                continue;
+            }
+
+            final long wait;
+            synchronized (m_table) {
+                if (pendingId < 0 && !m_table.hasCapacity()) {
+                    wait = MAX_PARK_NANOS;
+                } else {
+                    wait = sweep.m_bucket.tryAcquire(now);
+                }
+            }
+            if (wait > 0) {
+                LockSupport.parkNanos(Math.min(wait, MAX_PARK_NANOS));
+                continue;
+            }
+
+            // The addresses are only ever iterated from this thread, so no need to hold the lock
+            InetAddress nextAddress = null;
+            boolean exhausted = false;
+            if (pendingId < 0) {
+                try {
+                    nextAddress = sweep.m_addresses.next();
+                    exhausted = !sweep.m_addresses.hasNext();
+                } catch (final RuntimeException e) {
+                    LOG.warn("Failed to iterate the addresses of the sweep. Aborting the sweep.", e);
+                    current = null;
+                    sweep.fail(e);
+                    continue;
+                }
+            }
+
+            final InetAddress address;
+            final long probeId;
+            synchronized (m_table) {
+                if (pendingId >= 0) {
+                    probeId = pendingId;
+                    address = m_table.getAddress(m_table.find(pendingId));
+                    m_table.pollPending(now + sweep.m_timeoutNanos);
+                    sweep.m_retransmitted++;
+                    m_retransmitted.incrementAndGet();
+                } else {
+                    address = nextAddress;
+                    probeId = m_table.add(address, now + sweep.m_timeoutNanos, sweep.m_retries, sweep);
+                    sweep.m_outstanding++;
+                    if (exhausted) {
+                        sweep.m_exhausted = true;
+                        current = null;
+                    }
+                }
+                sweep.m_sent++;
+            }
+            m_sent.incrementAndGet();
+
+            try {
+                m_transport.send(address, probeId, sweep.m_packetSize);
+            } catch (final Throwable t) {
+                LOG.debug("Failed to send echo request to {}.", address, t);
+                boolean failed = false;
+                synchronized (m_table) {
+                    final int slot = m_table.find(probeId);
+                    if (slot >= 0) {
+                        m_table.release(slot);
+                        sweep.m_errors++;
+                        failed = true;
+                    }
+                }
+                if (failed) {
+                    m_errors.incrementAndGet();
+                    sweep.m_listener.onTimeout(address);
+                    sweep.probeDone();
+                }
+            }
+            sweep.completeIfDone();
+        }
+    }
+
+    private void expire(final long now) {
+        List<InetAddress> timedOut = null;
+        List<Sweep> timedOutSweeps = null;
+        synchronized (m_table) {
+            int slot;
+            while ((slot = m_table.pollExpired(now)) >= 0) {
+                if (m_table.getRetries(slot) > 0) {
+                    m_table.requeue(slot);
+                    continue;
+                }
+                final Sweep sweep = m_table.getOwner(slot);
+                if (timedOut == null) {
+                    timedOut = new ArrayList<>();
+                    timedOutSweeps = new ArrayList<>();
+                }
+                timedOut.add(m_table.getAddress(slot));
+                timedOutSweeps.add(sweep);
+                m_table.release(slot);
+                sweep.m_timeouts++;
+            }
+        }
+        if (timedOut != null) {
+            m_timeouts.addAndGet(timedOut.size());
+            for (int i = 0; i < timedOut.size(); i++) {
+                timedOutSweeps.get(i).m_listener.onTimeout(timedOut.get(i));
+                timedOutSweeps.get(i).probeDone();
+            }
+        }
+    }
+
+    private void park(final long now) {
+        final long nextDeadline;
+        synchronized (m_table) {
+            nextDeadline = m_table.nextDeadline();
+        }
+        final long wait = nextDeadline == Long.MAX_VALUE ? TimeUnit.SECONDS.toNanos(1) : nextDeadline - now;
+        if (wait > 0 && m_sweeps.isEmpty()) {
+            LockSupport.parkNanos(Math.min(wait, TimeUnit.SECONDS.toNanos(1)));
+        }
+    }
+
+    private class Sweep {
+        private final Iterator<InetAddress> m_addresses;
+        private final long m_timeoutNanos;
+        private final int m_retries;
+        private final int m_packetSize;
+        private final TokenBucket m_bucket;
+        private final SweepListener m_listener;
+        private final CompletableFuture<SweepStatistics> m_future = new CompletableFuture<>();
+        private final long m_startNanos = System.nanoTime();
+
+        // guarded by m_table, only decremented once the listener was invoked for the probe
+        private int m_outstanding = 0;
+        private boolean m_exhausted = false;
+        private long m_sent = 0;
+        private long m_retransmitted = 0;
+        private long m_replies = 0;
+        private long m_timeouts = 0;
+        private long m_errors = 0;
+
+        private Sweep(final Iterator<InetAddress> addresses, final long timeout, final int retries, final int packetSize,
+                      final double packetsPerSecond, final SweepListener listener) {
+            m_addresses = Objects.requireNonNull(addresses);
+            m_timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            m_retries = retries;
+            m_packetSize = packetSize;
+            // allow to catch up for up to 10ms, since parking the sender is not precise enough for high rates
+            m_bucket = new TokenBucket(packetsPerSecond, (int)Math.max(1, packetsPerSecond / 100));
+            m_listener = Objects.requireNonNull(listener);
+        }
+
+        private void probeDone() {
+            synchronized (m_table) {
+                m_outstanding--;
+            }
+            completeIfDone();
+        }
+
+        private void completeIfDone() {
+            final boolean done;
+            synchronized (m_table) {
+                done = m_exhausted && m_outstanding == 0 && !m_future.isDone();
+            }
+            if (done) {
+                complete();
+            }
+        }
+
+        /**
+         * Fails the sweep without sending the remaining addresses. The outstanding probes are still
+         * reported to the listener.
+         */
+        private void fail(final Throwable cause) {
+            synchronized (m_table) {
+                m_exhausted = true;
+            }
+            m_future.completeExceptionally(cause);
+            m_pending.remove(this);
+        }
+
+        private void complete() {
+            final SweepStatistics statistics;
+            synchronized (m_table) {
+                statistics = new SweepStatistics(m_sent, m_retransmitted, m_replies, m_timeouts, m_errors, System.nanoTime() - m_startNanos);
+            }
+            if (m_future.complete(statistics)) {
+                LOG.debug("Sweep completed: {}", statistics);
+            }
+            m_pending.remove(this);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.sweep;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The number of probes sent and their outcome.
+ */
+public class SweepStatistics {
+
+    private final long m_sent;
+    private final long m_retransmitted;
+    private final long m_replies;
+    private final long m_timeouts;
+    private final long m_errors;
+    private final long m_elapsedNanos;
+
+    public SweepStatistics(final long sent, final long retransmitted, final long replies, final long timeouts, final long errors, final long elapsedNanos) {
+        m_sent = sent;
+        m_retransmitted = retransmitted;
+        m_replies = replies;
+        m_timeouts = timeouts;
+        m_errors = errors;
+        m_elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the number of probes sent, including the retransmissions
+     */
+    public long getSent() {
+        return m_sent;
+    }
+
+    public long getRetransmitted() {
+        return m_retransmitted;
+    }
+
+    public long getReplies() {
+        return m_replies;
+    }
+
+    public long getTimeouts() {
+        return m_timeouts;
+    }
+
+    public long getErrors() {
+        return m_errors;
+    }
+
+    public long getElapsed(final TimeUnit unit) {
+        return unit.convert(m_elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public double getProbesPerSecond() {
+        return m_elapsedNanos > 0 ? m_sent * 1e9 / m_elapsedNanos : 0.0;
+    }
+
+    /**
+     * @return the ratio of the probes sent which were not answered
+     */
+    public double getLoss() {
+        return m_sent > 0 ? (double)(m_sent - m_replies) / m_sent : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("sent=%d, retransmitted=%d, replies=%d, timeouts=%d, errors=%d, elapsed=%dms, rate=%.1f probes/s, loss=%.1f%%",
+                m_sent, m_retransmitted, m_replies, m_timeouts, m_errors, getElapsed(TimeUnit.MILLISECONDS),
+                getProbesPerSecond(), getLoss() * 100);
+    }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.sweep;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Sends the echo requests of the {@link SweepEngine} and hands the matching replies back to it.
+ */
+public interface SweepTransport {
+
+    /**
+     * Starts receiving replies. Every echo reply carrying a probe id sent by this transport
+     * must be passed to {@link SweepEngine#handleReply(long, double)}.
+     */
+    void start(SweepEngine engine) throws IOException;
+
+    /**
+     * Sends a single echo request carrying the given probe id.
+     */
+    void send(InetAddress address, long probeId, int packetSize) throws IOException;
+
+    /**
+     * Stops receiving replies and releases the sockets. Called by {@link SweepEngine#stop()}.
+     */
+    void stop();
+
+}
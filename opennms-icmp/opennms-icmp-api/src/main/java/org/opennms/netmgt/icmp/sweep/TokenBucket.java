@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.sweep;
+
+/**
+ * Paces the probes sent by the {@link SweepEngine}.
+ *
+ * Implemented as a generic cell rate algorithm: instead of counting tokens, the bucket tracks
+ * the theoretical time at which the next token is available, so no refill is needed.
+ * This class is not thread-safe and is meant to be used from a single sender thread.
+ */
+public class TokenBucket {
+
+    private final long m_nanosPerToken;
+
+    private final long m_tolerance;
+
+    private long m_theoreticalArrival = Long.MIN_VALUE;
+
+    /**
+     * @param tokensPerSecond the rate at which tokens are handed out, unlimited if not positive
+     * @param burst the number of tokens which can be taken at once after being idle
+     */
+    public TokenBucket(final double tokensPerSecond, final int burst) {
+        m_nanosPerToken = tokensPerSecond > 0 ? (long)(1000000000L / tokensPerSecond) : 0L;
+        m_tolerance = Math.max(0, burst - 1) * m_nanosPerToken;
+    }
+
+    /**
+     * Tries to take a token.
+     *
+     * @param nowNanos the current value of {@link System#nanoTime()}
+     * @return 0 if a token was taken, otherwise the nanoseconds to wait until a token is available
+     */
+    public long tryAcquire(final long nowNanos) {
+        if (m_nanosPerToken == 0) {
+            return 0;
+        }
+        final long arrival = m_theoreticalArrival == Long.MIN_VALUE ? nowNanos : Math.max(m_theoreticalArrival, nowNanos);
+        final long wait = arrival - nowNanos - m_tolerance;
+        if (wait > 0) {
+            return wait;
+        }
+        m_theoreticalArrival = arrival + m_nanosPerToken;
+        return 0;
+    }
+}
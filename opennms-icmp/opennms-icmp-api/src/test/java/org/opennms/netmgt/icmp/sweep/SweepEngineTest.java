@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.icmp.sweep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SweepEngineTest {
+
+    private SweepEngine m_engine;
+
+    @After
+    public void tearDown() {
+        if (m_engine != null) {
+            m_engine.stop();
+        }
+    }
+
+    @Test
+    public void canSweepWithRepliesAndTimeouts() throws Exception {
+        // Only the even addresses reply
+        final FakeTransport transport = new FakeTransport(address -> (address.getAddress()[3] & 1) == 0, false);
+        m_engine = new SweepEngine(transport, 64);
+
+        final RecordingListener listener = new RecordingListener();
+        final SweepStatistics statistics = m_engine.sweep(addresses(200).iterator(), 50, 1, 64, 0, listener)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(100, listener.replies.size());
+        assertEquals(100, listener.timeouts.size());
+        assertEquals(100, statistics.getReplies());
+        assertEquals(100, statistics.getTimeouts());
+        // Every timed out address was retried once
+        assertEquals(100, statistics.getRetransmitted());
+        assertEquals(300, statistics.getSent());
+        // 200 of the 300 echo requests were not answered
+        assertEquals(2.0 / 3.0, statistics.getLoss(), 0.001);
+        for (InetAddress address : listener.replies) {
+            assertEquals(0, address.getAddress()[3] & 1);
+        }
+    }
+
+    @Test
+    public void canReceiveReplyToRetransmission() throws Exception {
+        // The first echo request to every address is lost
+        final FakeTransport transport = new FakeTransport(address -> true, true);
+        m_engine = new SweepEngine(transport, 16);
+
+        final RecordingListener listener = new RecordingListener();
+        final SweepStatistics statistics = m_engine.sweep(addresses(40).iterator(), 50, 2, 64, 0, listener)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(40, listener.replies.size());
+        assertEquals(0, listener.timeouts.size());
+        assertEquals(40, statistics.getRetransmitted());
+        assertEquals(80, statistics.getSent());
+    }
+
+    @Test
+    public void canPaceProbes() throws Exception {
+        final FakeTransport transport = new FakeTransport(address -> true, false);
+        m_engine = new SweepEngine(transport);
+
+        final RecordingListener listener = new RecordingListener();
+        final SweepStatistics statistics = m_engine.sweep(addresses(50).iterator(), 1000, 0, 64, 100, listener)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(50, statistics.getReplies());
+        // 50 probes at 100 per second take about half a second
+        assertTrue(statistics.getElapsed(TimeUnit.MILLISECONDS) >= 400);
+    }
+
+    @Test
+    public void canCompleteEmptySweep() throws Exception {
+        m_engine = new SweepEngine(new FakeTransport(address -> true, false));
+        final SweepStatistics statistics = m_engine.sweep(new ArrayList<InetAddress>().iterator(), 50, 0, 64, 0, new RecordingListener())
+                .get(1, TimeUnit.SECONDS);
+        assertEquals(0, statistics.getSent());
+    }
+
+    @Test
+    public void canFailPendingSweepsOnStop() throws Exception {
+        // Nothing replies and the probes only time out after a minute
+        m_engine = new SweepEngine(new FakeTransport(address -> false, false));
+        final CompletableFuture<SweepStatistics> sent = m_engine.sweep(addresses(10).iterator(), 60000, 0, 64, 0, new RecordingListener());
+        // Paced to one probe per minute, so most of the addresses are still queued
+        final CompletableFuture<SweepStatistics> queued = m_engine.sweep(addresses(10).iterator(), 60000, 0, 64, 1.0 / 60, new RecordingListener());
+
+        m_engine.stop();
+        assertStopped(sent);
+        assertStopped(queued);
+    }
+
+    @Test
+    public void canRejectSweepsAfterStop() throws Exception {
+        m_engine = new SweepEngine(new FakeTransport(address -> true, false));
+        m_engine.stop();
+        assertStopped(m_engine.sweep(addresses(10).iterator(), 50, 0, 64, 0, new RecordingListener()));
+        assertStopped(m_engine.sweep(new ArrayList<InetAddress>().iterator(), 50, 0, 64, 0, new RecordingListener()));
+    }
+
+    @Test
+    public void canStopTransport() throws Exception {
+        final FakeTransport transport = new FakeTransport(address -> true, false);
+        m_engine = new SweepEngine(transport);
+        m_engine.sweep(addresses(10).iterator(), 50, 0, 64, 0, new RecordingListener()).get(10, TimeUnit.SECONDS);
+        assertFalse(transport.m_stopped);
+
+        m_engine.stop();
+        assertTrue(transport.m_stopped);
+    }
+
+    @Test
+    public void canFailSweepWhenAddressesCannotBeIterated() throws Exception {
+        final FakeTransport transport = new FakeTransport(address -> true, false);
+        m_engine = new SweepEngine(transport);
+
+        final Iterator<InetAddress> addresses = addresses(10).iterator();
+        final Iterator<InetAddress> failing = new Iterator<InetAddress>() {
+            private int m_count = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public InetAddress next() {
+                if (m_count++ == 5) {
+                    throw new IllegalArgumentException("Invalid range");
+                }
+                return addresses.next();
+            }
+        };
+        final RecordingListener failedListener = new RecordingListener();
+        try {
+            m_engine.sweep(failing, 50, 0, 64, 0, failedListener).get(10, TimeUnit.SECONDS);
+            fail("The sweep should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+
+        // The sender is still running
+        final RecordingListener listener = new RecordingListener();
+        final SweepStatistics statistics = m_engine.sweep(addresses(10).iterator(), 50, 0, 64, 0, listener)
+                .get(10, TimeUnit.SECONDS);
+        assertEquals(10, statistics.getReplies());
+        assertEquals(10, listener.replies.size());
+    }
+
+    @Test
+    public void canLimitRateWithTokenBucket() {
+        final long second = TimeUnit.SECONDS.toNanos(1);
+        final TokenBucket bucket = new TokenBucket(10, 2);
+
+        // The burst can be taken at once
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(second / 10, bucket.tryAcquire(0));
+
+        // A token is available every 100ms
+        assertEquals(0, bucket.tryAcquire(second / 10));
+        assertEquals(second / 10, bucket.tryAcquire(second / 10));
+
+        // Being idle does not accumulate more than the burst
+        assertEquals(0, bucket.tryAcquire(10 * second));
+        assertEquals(0, bucket.tryAcquire(10 * second));
+        assertTrue(bucket.tryAcquire(10 * second) > 0);
+    }
+
+    private static void assertStopped(final CompletableFuture<SweepStatistics> future) throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("The sweep should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static List<InetAddress> addresses(final int count) throws UnknownHostException {
+        final List<InetAddress> addresses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            addresses.add(InetAddress.getByAddress(new byte[] { 10, 0, (byte)(i >> 8), (byte)i }));
+        }
+        return addresses;
+    }
+
+    private interface Responder {
+        boolean replies(InetAddress address);
+    }
+
+    private static class FakeTransport implements SweepTransport {
+        private final Responder m_responder;
+        private final boolean m_dropFirst;
+        private final Set<InetAddress> m_seen = ConcurrentHashMap.newKeySet();
+        private SweepEngine m_engine;
+        private volatile boolean m_stopped = false;
+
+        private FakeTransport(final Responder responder, final boolean dropFirst) {
+            m_responder = responder;
+            m_dropFirst = dropFirst;
+        }
+
+        @Override
+        public void start(final SweepEngine engine) {
+            m_engine = engine;
+        }
+
+        @Override
+        public void send(final InetAddress address, final long probeId, final int packetSize) {
+            if (m_dropFirst && m_seen.add(address)) {
+                return;
+            }
+            if (m_responder.replies(address)) {
+                m_engine.handleReply(probeId, 0.1);
+            }
+        }
+
+        @Override
+        public void stop() {
+            m_stopped = true;
+        }
+    }
+
+    private static class RecordingListener implements SweepListener {
+        private final List<InetAddress> replies = new ArrayList<>();
+        private final List<InetAddress> timeouts = new ArrayList<>();
+
+        @Override
+        public synchronized void onReply(final InetAddress address, final double rttMillis) {
+            replies.add(address);
+        }
+
+        @Override
+        public synchronized void onTimeout(final InetAddress address) {
+            timeouts.add(address);
+        }
+    }
+}
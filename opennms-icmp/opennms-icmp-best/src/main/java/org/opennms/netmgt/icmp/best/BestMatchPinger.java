@@ -34,6 +34,7 @@ import java.util.List;
 import org.opennms.netmgt.icmp.NullPinger;
 import org.opennms.netmgt.icmp.PingResponseCallback;
 import org.opennms.netmgt.icmp.Pinger;
+import org.opennms.netmgt.icmp.sweep.SweepEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -108,6 +109,12 @@ public class BestMatchPinger implements Pinger {
         return m_pinger.isV6Available();
     }
 
+    @Override
+    public SweepEngine getSweepEngine() throws Exception {
+        initialize();
+        return m_pinger.getSweepEngine();
+    }
+
     @Override
     public void setAllowFragmentation(final boolean allow) throws Exception {
         if (m_pinger != null) {
@@ -43,6 +43,7 @@ import org.opennms.netmgt.icmp.ParallelPingResponseCallback;
 import org.opennms.netmgt.icmp.PingResponseCallback;
 import org.opennms.netmgt.icmp.Pinger;
 import org.opennms.netmgt.icmp.SinglePingResponseCallback;
+import org.opennms.netmgt.icmp.sweep.SweepEngine;
 import org.opennms.protocols.rt.IDBasedRequestLocator;
 import org.opennms.protocols.rt.RequestTracker;
 import org.slf4j.Logger;
@@ -61,6 +62,7 @@ public class JnaPinger implements Pinger {
 
     private RequestTracker<JnaPingRequest, JnaPingReply> m_pingTracker;
     private JnaIcmpMessenger m_messenger;
+    private SweepEngine m_sweepEngine;
 
     /**
      * Initializes this singleton
@@ -257,6 +259,24 @@ public class JnaPinger implements Pinger {
         return parallelPing(host, count, timeout, pingInterval, DEFAULT_PACKET_SIZE);
     }
 
+    @Override
+    public synchronized SweepEngine getSweepEngine() throws Exception {
+        if (m_sweepEngine == null) {
+            m_sweepEngine = new SweepEngine(new JnaSweepTransport());
+        }
+        return m_sweepEngine;
+    }
+
+    /**
+     * Stops the sweep engine, if any, and releases its sockets.
+     */
+    public synchronized void destroy() {
+        if (m_sweepEngine != null) {
+            m_sweepEngine.stop();
+            m_sweepEngine = null;
+        }
+    }
+
     @Override
     public void setAllowFragmentation(boolean allow) throws Exception {
         initialize();
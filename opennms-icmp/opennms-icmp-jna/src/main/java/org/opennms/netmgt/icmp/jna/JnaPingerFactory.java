@@ -37,4 +37,10 @@ public class JnaPingerFactory extends AbstractPingerFactory {
     public Class<? extends Pinger> getPingerClass() {
         return JnaPinger.class;
     }
+
+    public void destroy() {
+        m_pingers.asMap().values().stream()
+                .filter(pinger -> pinger instanceof JnaPinger)
+                .forEach(pinger -> ((JnaPinger) pinger).destroy());
+    }
 }
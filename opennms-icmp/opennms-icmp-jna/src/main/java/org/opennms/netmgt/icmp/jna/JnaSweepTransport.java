@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.jna;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.netmgt.icmp.EchoPacket;
+import org.opennms.netmgt.icmp.IcmpMessengerIOException;
+import org.opennms.netmgt.icmp.sweep.SweepEngine;
+import org.opennms.netmgt.icmp.sweep.SweepTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the probes of the {@link SweepEngine} on dedicated ICMP sockets, so the replies are not
+ * matched against the requests of the {@link JnaPinger}. The probe id is carried in the thread id
+ * field of the echo request.
+ */
+public class JnaSweepTransport implements SweepTransport, PingReplyListener {
+    private static final Logger LOG = LoggerFactory.getLogger(JnaSweepTransport.class);
+
+    private final int m_pingerId = new SecureRandom().nextInt(Short.MAX_VALUE);
+
+    private volatile V4Pinger m_v4;
+    private volatile V6Pinger m_v6;
+    private volatile SweepEngine m_engine;
+
+    @Override
+    public void start(final SweepEngine engine) throws IOException {
+        m_engine = engine;
+        Throwable error = null;
+        try {
+            m_v4 = new V4Pinger(m_pingerId);
+            m_v4.addPingReplyListener(this);
+            m_v4.start();
+        } catch (final Throwable t) {
+            LOG.debug("Unable to initialize IPv4 sweep socket.", t);
+            error = t;
+            m_v4 = null;
+        }
+
+        try {
+            m_v6 = new V6Pinger(m_pingerId);
+            m_v6.addPingReplyListener(this);
+            m_v6.start();
+        } catch (final Throwable t) {
+            LOG.debug("Unable to initialize IPv6 sweep socket.", t);
+            if (error == null) error = t;
+            m_v6 = null;
+        }
+
+        if (m_v4 == null && m_v6 == null) {
+            throw new IcmpMessengerIOException("IPv4 and IPv6 are not available.", error);
+        }
+    }
+
+    @Override
+    public void send(final InetAddress address, final long probeId, final int packetSize) throws IOException {
+        final int sequenceNumber = (int)(probeId & 0xFFFF);
+        if (address instanceof Inet4Address) {
+            final V4Pinger v4 = m_v4;
+            if (v4 == null) {
+                throw new IOException("IPv4 is not available.");
+            }
+            new V4PingRequest(m_pingerId, sequenceNumber, probeId, packetSize).send(v4.getPingSocket(), address);
+        } else if (address instanceof Inet6Address) {
+            final V6Pinger v6 = m_v6;
+            if (v6 == null) {
+                throw new IOException("IPv6 is not available.");
+            }
+            new V6PingRequest(m_pingerId, sequenceNumber, probeId, packetSize).send(v6.getPingSocket(), address);
+        } else {
+            throw new IOException("Unsupported address: " + address);
+        }
+    }
+
+    @Override
+    public void stop() {
+        final V4Pinger v4 = m_v4;
+        m_v4 = null;
+        stop(v4);
+        final V6Pinger v6 = m_v6;
+        m_v6 = null;
+        stop(v6);
+    }
+
+    private static void stop(final AbstractPinger<?> pinger) {
+        if (pinger == null) {
+            return;
+        }
+        try {
+            pinger.stop();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pinger.closeSocket();
+        }
+    }
+
+    @Override
+    public void onPingReply(final InetAddress address, final EchoPacket packet) {
+        m_engine.handleReply(packet.getThreadId(), packet.elapsedTime(TimeUnit.MILLISECONDS));
+    }
+}
@@ -28,6 +28,7 @@
 
 package org.opennms.netmgt.icmp.proxy;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -48,8 +49,13 @@ import org.opennms.netmgt.icmp.EchoPacket;
 import org.opennms.netmgt.icmp.PingResponseCallback;
 import org.opennms.netmgt.icmp.Pinger;
 import org.opennms.netmgt.icmp.PingerFactory;
+import org.opennms.netmgt.icmp.sweep.SweepEngine;
+import org.opennms.netmgt.icmp.sweep.SweepListener;
+import org.opennms.netmgt.icmp.sweep.SweepStatistics;
 import org.opennms.netmgt.model.discovery.IPPollAddress;
 import org.opennms.netmgt.model.discovery.IPPollRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -61,6 +67,8 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 @Component
 public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO, PingSweepResponseDTO> {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PingSweepRpcModule.class);
+
     public static final String RPC_MODULE_ID = "PING-SWEEP";
 
     private final ThreadFactory threadFactory = new ThreadFactoryBuilder()
@@ -79,6 +87,17 @@ public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO
     @Override
     public CompletableFuture<PingSweepResponseDTO> execute(PingSweepRequestDTO request) {
         final Pinger pinger = pingerFactory.getInstance();
+
+        SweepEngine sweepEngine = null;
+        try {
+            sweepEngine = pinger.getSweepEngine();
+        } catch (Exception e) {
+            LOG.warn("Failed to initialize the sweep engine. Falling back to individual pings.", e);
+        }
+        if (sweepEngine != null) {
+            return sweep(sweepEngine, request);
+        }
+
         final PingSweepResultTracker tracker = new PingSweepResultTracker();
 
         String location = request.getLocation();
@@ -118,6 +137,48 @@ public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO
 
     }
 
+    /**
+     * Sweeps the ranges with the engine, which paces the probes and collects the results as they arrive,
+     * without materializing the addresses of the ranges.
+     */
+    private CompletableFuture<PingSweepResponseDTO> sweep(SweepEngine sweepEngine, PingSweepRequestDTO request) {
+        final PingSweepResponseDTO responseDTO = new PingSweepResponseDTO();
+        final SweepListener listener = new SweepListener() {
+            @Override
+            public void onReply(InetAddress address, double rttMillis) {
+                final PingSweepResultDTO sweepResult = new PingSweepResultDTO();
+                sweepResult.setAddress(address);
+                sweepResult.setRtt(rttMillis);
+                synchronized (responseDTO) {
+                    responseDTO.addPingSweepResult(sweepResult);
+                }
+            }
+
+            @Override
+            public void onTimeout(InetAddress address) {
+                // only the responding addresses are part of the response
+            }
+        };
+
+        final List<CompletableFuture<SweepStatistics>> futures = new ArrayList<>();
+        try {
+            for (IPRangeDTO dto : request.getIpRanges()) {
+                final IPPollRange pollRange = new IPPollRange(null, request.getLocation(), dto.getBegin(), dto.getEnd(), dto.getTimeout(), dto.getRetries());
+                futures.add(sweepEngine.sweep(pollRange.getAddressRange().iterator(), pollRange.getTimeout(), pollRange.getRetries(),
+                        request.getPacketSize(), request.getPacketsPerSecond(), listener));
+            }
+        } catch (IOException e) {
+            final CompletableFuture<PingSweepResponseDTO> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            LOG.debug("Ping sweep at location {} completed. Engine statistics: {}", request.getLocation(), sweepEngine.getStatistics());
+            return responseDTO;
+        });
+    }
+
     private static class PingSweepResultTracker extends CompletableFuture<PingSweepResponseDTO>
             implements PingResponseCallback {
 
@@ -31,6 +31,8 @@ package org.opennms.netmgt.provision.detector.client.rpc;
 import org.opennms.core.rpc.api.RpcClient;
 import org.opennms.core.rpc.api.RpcClientFactory;
 import org.opennms.core.rpc.utils.mate.EntityScopeProvider;
+import org.opennms.core.rpc.xml.batch.BatchingRpcClient;
+import org.opennms.netmgt.dao.api.MonitoringLocationUtils;
 import org.opennms.netmgt.provision.DetectorRequestBuilder;
 import org.opennms.netmgt.provision.LocationAwareDetectorClient;
 import org.opennms.netmgt.provision.detector.registry.api.ServiceDetectorRegistry;
@@ -55,7 +57,9 @@ public class LocationAwareDetectorClientRpcImpl implements LocationAwareDetector
 
     @Override
     public void afterPropertiesSet() {
-        delegate = rpcClientFactory.getClient(detectorClientRpcModule);
+        // Requests for the default location are executed locally, and may not be marshalable
+        delegate = BatchingRpcClient.getClient(rpcClientFactory, detectorClientRpcModule,
+                request -> !MonitoringLocationUtils.isDefaultLocationName(request.getLocation()));
     }
 
     @Override
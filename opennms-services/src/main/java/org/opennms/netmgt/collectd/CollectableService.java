@@ -138,6 +138,8 @@ class CollectableService implements ReadyRunnable {
 
     private ThresholdingSession m_thresholdingSession;
 
+    private final CollectionSetPipeline m_pipeline;
+
     /**
      * Constructs a new instance of a CollectableService object.
      *
@@ -148,10 +150,11 @@ class CollectableService implements ReadyRunnable {
      * @param scheduler a {@link org.opennms.netmgt.scheduler.Scheduler} object.
      * @param schedulingCompletedFlag a {@link org.opennms.netmgt.collectd.Collectd.SchedulingCompletedFlag} object.
      * @param transMgr a {@link org.springframework.transaction.PlatformTransactionManager} object.
+     * @param pipeline the stages persisting and thresholding the collection sets, or null to do it on the scheduler thread
      */
     protected CollectableService(OnmsIpInterface iface, IpInterfaceDao ifaceDao, CollectionSpecification spec,
             Scheduler scheduler, SchedulingCompletedFlag schedulingCompletedFlag, PlatformTransactionManager transMgr,
-            PersisterFactory persisterFactory, ThresholdingService thresholdingService) throws CollectionInitializationException {
+            PersisterFactory persisterFactory, ThresholdingService thresholdingService, CollectionSetPipeline pipeline) throws CollectionInitializationException {
 
         m_agent = DefaultSnmpCollectionAgent.create(iface.getId(), ifaceDao, transMgr);
         m_spec = spec;
@@ -160,6 +163,7 @@ class CollectableService implements ReadyRunnable {
         m_ifaceDao = ifaceDao;
         m_transMgr = transMgr;
         m_persisterFactory = persisterFactory;
+        m_pipeline = pipeline;
 
         m_nodeId = iface.getNode().getId().intValue();
         m_status = CollectionStatus.SUCCEEDED;
@@ -421,28 +425,15 @@ class CollectableService implements ReadyRunnable {
 		try {
 		    result = m_spec.collect(m_agent);
 		    if (result != null) {
-                        Collectd.instrumentation().beginPersistingServiceData(m_spec.getPackageName(), m_nodeId, getHostAddress(), m_spec.getServiceName());
-                        try {
-                            CollectionSetVisitor persister = m_persisterFactory.createPersister(m_params, m_repository, result.ignorePersist(), false, false);
-                            if (Boolean.getBoolean(USE_COLLECTION_START_TIME_SYS_PROP)) {
-                                final ConstantTimeKeeper timeKeeper = new ConstantTimeKeeper(new Date(m_lastScheduledCollectionTime));
-                                // Wrap the persister visitor such that calls to CollectionResource.getTimeKeeper() return the given timeKeeper
-                                persister = wrapResourcesWithTimekeeper(persister, timeKeeper);
-                            }
-                            result.visit(persister);
-                        } finally {
-                            Collectd.instrumentation().endPersistingServiceData(m_spec.getPackageName(), m_nodeId, getHostAddress(), m_spec.getServiceName());
-                        }
-
-                        // Do thresholding
-                        if (m_thresholdingSession != null) {
-                            try {
-                                m_thresholdingSession.accept(result);
-                            } catch (ThresholdInitializationException e) {
-                                LOG.warn("ThresholdInitializationException for {}. Thresholding skipped.", this, e);
-                            }
+                        final CollectionSet collectionSet = result;
+                        final long collectionTime = m_lastScheduledCollectionTime;
+                        if (m_pipeline == null) {
+                            persist(collectionSet, collectionTime);
+                            threshold(collectionSet);
                         } else {
-                            LOG.warn("No thresholding session for {}. Thresholding skipped.", this);
+                            // Persist and threshold off the scheduler thread, in the order the sets are collected for the node
+                            m_pipeline.persist(m_nodeId, () -> persist(collectionSet, collectionTime));
+                            m_pipeline.threshold(m_nodeId, () -> threshold(collectionSet));
                         }
 
                         if (!CollectionStatus.SUCCEEDED.equals(result.getStatus())) {
@@ -459,6 +450,33 @@ class CollectableService implements ReadyRunnable {
 		LOG.info("run: finished collection for {}/{}/{}/{}", m_nodeId, getHostAddress(), m_spec.getServiceName(), m_spec.getPackageName());
 	}
 
+    private void persist(CollectionSet result, long collectionTime) {
+        Collectd.instrumentation().beginPersistingServiceData(m_spec.getPackageName(), m_nodeId, getHostAddress(), m_spec.getServiceName());
+        try {
+            CollectionSetVisitor persister = m_persisterFactory.createPersister(m_params, m_repository, result.ignorePersist(), false, false);
+            if (Boolean.getBoolean(USE_COLLECTION_START_TIME_SYS_PROP)) {
+                final ConstantTimeKeeper timeKeeper = new ConstantTimeKeeper(new Date(collectionTime));
+                // Wrap the persister visitor such that calls to CollectionResource.getTimeKeeper() return the given timeKeeper
+                persister = wrapResourcesWithTimekeeper(persister, timeKeeper);
+            }
+            result.visit(persister);
+        } finally {
+            Collectd.instrumentation().endPersistingServiceData(m_spec.getPackageName(), m_nodeId, getHostAddress(), m_spec.getServiceName());
+        }
+    }
+
+    private void threshold(CollectionSet result) {
+        if (m_thresholdingSession != null) {
+            try {
+                m_thresholdingSession.accept(result);
+            } catch (ThresholdInitializationException e) {
+                LOG.warn("ThresholdInitializationException for {}. Thresholding skipped.", this, e);
+            }
+        } else {
+            LOG.warn("No thresholding session for {}. Thresholding skipped.", this);
+        }
+    }
+
 	/**
      * Process any outstanding updates.
      * 
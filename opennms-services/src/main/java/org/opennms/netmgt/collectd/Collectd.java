@@ -202,6 +202,11 @@ public class Collectd extends AbstractServiceDaemon implements
 
     private AtomicInteger sessionID = new AtomicInteger();
 
+    /**
+     * The stages persisting and thresholding the collection sets, null when done on the scheduler threads.
+     */
+    private volatile CollectionSetPipeline m_pipeline;
+
     /**
      * Constructor.
      */
@@ -227,6 +232,7 @@ public class Collectd extends AbstractServiceDaemon implements
         
         // make sure the instrumentation gets initialized
         instrumentation();
+        m_pipeline = CollectionSetPipeline.fromSystemProperties();
         //initialize and schedule collectors
         instantiateCollectors();
         //listen to the events
@@ -341,6 +347,10 @@ public class Collectd extends AbstractServiceDaemon implements
     protected void onStop() {
         getScheduler().stop();
         deinstallMessageSelectors();
+        if (m_pipeline != null) {
+            m_pipeline.shutdown();
+            m_pipeline = null;
+        }
 
         setScheduler(null);
     }
@@ -487,7 +497,8 @@ public class Collectd extends AbstractServiceDaemon implements
                     m_schedulingCompletedFlag,
                     m_transTemplate.getTransactionManager(),
                     m_persisterFactory,
-                    m_thresholdingService
+                    m_thresholdingService,
+                    m_pipeline
                 );
 
                 // Add new collectable service to the collectable service list.
@@ -1525,6 +1536,15 @@ public class Collectd extends AbstractServiceDaemon implements
         return m_collectableServices.size();
     }
 
+    /**
+     * <p>getCollectionSetPipeline</p>
+     *
+     * @return the stages persisting and thresholding the collection sets, or null if they are processed on the scheduler threads
+     */
+    public CollectionSetPipeline getCollectionSetPipeline() {
+        return m_pipeline;
+    }
+
     @VisibleForTesting
     public void setPollOutagesDao(ReadablePollOutagesDao pollOutagesDao) {
         this.pollOutagesDao = Objects.requireNonNull(pollOutagesDao);
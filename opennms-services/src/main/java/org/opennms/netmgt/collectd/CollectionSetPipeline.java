@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.logging.Logging;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands the collection sets off the scheduler threads to independent persistence
+ * and thresholding stages.
+ * <p>Each stage is made of lanes, each one with a single thread and a bounded queue.
+ * All the work for a given node goes through the same lane of a stage, so the
+ * collection sets of a resource are persisted and thresholded in the order they
+ * were collected.</p>
+ * <p>When the queue of a lane is full, the submitter either waits for room
+ * (<code>block</code>, the default) or the oldest pending task of the lane is
+ * discarded (<code>drop-oldest</code>).</p>
+ */
+public class CollectionSetPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CollectionSetPipeline.class);
+
+    protected static final String ENABLED_SYS_PROP = "org.opennms.netmgt.collectd.pipeline.enabled";
+
+    protected static final String PERSIST_THREADS_SYS_PROP = "org.opennms.netmgt.collectd.pipeline.persistThreads";
+
+    protected static final String PERSIST_QUEUE_SIZE_SYS_PROP = "org.opennms.netmgt.collectd.pipeline.persistQueueSize";
+
+    protected static final String THRESHOLD_THREADS_SYS_PROP = "org.opennms.netmgt.collectd.pipeline.thresholdThreads";
+
+    protected static final String THRESHOLD_QUEUE_SIZE_SYS_PROP = "org.opennms.netmgt.collectd.pipeline.thresholdQueueSize";
+
+    protected static final String OVERFLOW_POLICY_SYS_PROP = "org.opennms.netmgt.collectd.pipeline.overflowPolicy";
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 30000;
+
+    public enum OverflowPolicy {
+        BLOCK,
+        DROP_OLDEST;
+
+        public static OverflowPolicy fromString(String value) {
+            if (value == null) {
+                return BLOCK;
+            }
+            for (OverflowPolicy policy : values()) {
+                if (policy.name().replace('_', '-').equalsIgnoreCase(value.trim()) || policy.name().equalsIgnoreCase(value.trim())) {
+                    return policy;
+                }
+            }
+            LOG.warn("Unknown overflow policy {} for the collection set pipeline, using {}", value, BLOCK);
+            return BLOCK;
+        }
+    }
+
+    private final Stage m_persistStage;
+
+    private final Stage m_thresholdStage;
+
+    public CollectionSetPipeline(int persistThreads, int persistQueueSize, int thresholdThreads, int thresholdQueueSize, OverflowPolicy overflowPolicy) {
+        m_persistStage = new Stage("Collectd-Persister", persistThreads, persistQueueSize, overflowPolicy);
+        m_thresholdStage = new Stage("Collectd-Thresholder", thresholdThreads, thresholdQueueSize, overflowPolicy);
+    }
+
+    /**
+     * Builds the pipeline configured with the system properties.
+     *
+     * @return the pipeline, or null if it is disabled, in which case collection sets are processed inline
+     */
+    public static CollectionSetPipeline fromSystemProperties() {
+        if (!Boolean.getBoolean(ENABLED_SYS_PROP)) {
+            return null;
+        }
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final CollectionSetPipeline pipeline = new CollectionSetPipeline(
+                Integer.getInteger(PERSIST_THREADS_SYS_PROP, processors),
+                Integer.getInteger(PERSIST_QUEUE_SIZE_SYS_PROP, 1000),
+                Integer.getInteger(THRESHOLD_THREADS_SYS_PROP, Math.max(1, processors / 2)),
+                Integer.getInteger(THRESHOLD_QUEUE_SIZE_SYS_PROP, 1000),
+                OverflowPolicy.fromString(System.getProperty(OVERFLOW_POLICY_SYS_PROP)));
+        LOG.info("Persisting and thresholding collection sets with {}", pipeline);
+        return pipeline;
+    }
+
+    /**
+     * Queues the persistence of a collection set.
+     *
+     * @param nodeId the node the collection set belongs to
+     * @param task the task persisting the collection set
+     */
+    public void persist(int nodeId, Runnable task) {
+        m_persistStage.submit(nodeId, task);
+    }
+
+    /**
+     * Queues the thresholding of a collection set.
+     *
+     * @param nodeId the node the collection set belongs to
+     * @param task the task thresholding the collection set
+     */
+    public void threshold(int nodeId, Runnable task) {
+        m_thresholdStage.submit(nodeId, task);
+    }
+
+    public Stage getPersistStage() {
+        return m_persistStage;
+    }
+
+    public Stage getThresholdStage() {
+        return m_thresholdStage;
+    }
+
+    /**
+     * Stops accepting collection sets, and waits for the pending ones to be processed.
+     */
+    public void shutdown() {
+        m_persistStage.shutdown();
+        m_thresholdStage.shutdown();
+        m_persistStage.awaitTermination(SHUTDOWN_TIMEOUT_MS);
+        m_thresholdStage.awaitTermination(SHUTDOWN_TIMEOUT_MS);
+    }
+
+    @Override
+    public String toString() {
+        return "CollectionSetPipeline[persist=" + m_persistStage + ", threshold=" + m_thresholdStage + "]";
+    }
+
+    public static class Stage {
+        private final String m_name;
+        private final int m_queueSize;
+        private final OverflowPolicy m_overflowPolicy;
+        private final ThreadPoolExecutor[] m_lanes;
+        private final AtomicLong m_dropped = new AtomicLong();
+        private final AtomicLong m_failed = new AtomicLong();
+
+        private Stage(String name, int threads, int queueSize, OverflowPolicy overflowPolicy) {
+            if (threads < 1 || queueSize < 1) {
+                throw new IllegalArgumentException("The " + name + " stage needs at least one thread and a queue size of at least one");
+            }
+            m_name = name;
+            m_queueSize = queueSize;
+            m_overflowPolicy = overflowPolicy;
+            m_lanes = new ThreadPoolExecutor[threads];
+            final LogPreservingThreadFactory threadFactory = new LogPreservingThreadFactory(name, threads);
+            final RejectedExecutionHandler rejectedExecutionHandler = overflowPolicy == OverflowPolicy.DROP_OLDEST ? new DropOldest() : new Block();
+            for (int i = 0; i < threads; i++) {
+                m_lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), threadFactory, rejectedExecutionHandler);
+            }
+        }
+
+        private void submit(int key, Runnable task) {
+            m_lanes[Math.floorMod(key, m_lanes.length)].execute(() -> {
+                Logging.withPrefix(Collectd.LOG4J_CATEGORY, () -> {
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        m_failed.incrementAndGet();
+                        LOG.warn("{}: failed to process a collection set", m_name, t);
+                    }
+                });
+            });
+        }
+
+        /**
+         * @return the number of collection sets waiting to be processed
+         */
+        public long getPendingCount() {
+            long pending = 0;
+            for (ThreadPoolExecutor lane : m_lanes) {
+                pending += lane.getQueue().size();
+            }
+            return pending;
+        }
+
+        /**
+         * @return the number of collection sets processed since startup
+         */
+        public long getCompletedCount() {
+            long completed = 0;
+            for (ThreadPoolExecutor lane : m_lanes) {
+                completed += lane.getCompletedTaskCount();
+            }
+            return completed;
+        }
+
+        /**
+         * @return the number of collection sets discarded because the stage was full
+         */
+        public long getDroppedCount() {
+            return m_dropped.get();
+        }
+
+        /**
+         * @return the number of collection sets that failed to be processed
+         */
+        public long getFailedCount() {
+            return m_failed.get();
+        }
+
+        private void shutdown() {
+            for (ThreadPoolExecutor lane : m_lanes) {
+                lane.shutdown();
+            }
+        }
+
+        private void awaitTermination(long timeoutMs) {
+            final long deadline = System.currentTimeMillis() + timeoutMs;
+            try {
+                for (ThreadPoolExecutor lane : m_lanes) {
+                    if (!lane.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                        LOG.warn("{}: giving up on {} pending collection sets", m_name, lane.shutdownNow().size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return m_name + "[threads=" + m_lanes.length + ", queueSize=" + m_queueSize + ", overflowPolicy=" + m_overflowPolicy + "]";
+        }
+
+        /**
+         * Waits for room in the lane, slowing the scheduler threads down to the pace of the stage.
+         */
+        private static class Block implements RejectedExecutionHandler {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("The collection set pipeline has been shut down");
+                }
+                try {
+                    executor.getQueue().put(r);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting to queue a collection set", e);
+                }
+            }
+        }
+
+        /**
+         * Discards the oldest pending collection set of the lane to make room.
+         */
+        private class DropOldest implements RejectedExecutionHandler {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("The collection set pipeline has been shut down");
+                }
+                if (executor.getQueue().poll() != null) {
+                    m_dropped.incrementAndGet();
+                    LOG.warn("{}: queue is full, dropped the oldest pending collection set", m_name);
+                }
+                executor.execute(r);
+            }
+        }
+    }
+}
@@ -29,6 +29,8 @@
 package org.opennms.netmgt.collectd.jmx;
 
 import java.util.concurrent.ThreadPoolExecutor;
+
+import org.opennms.netmgt.collectd.CollectionSetPipeline;
 import org.opennms.netmgt.scheduler.LegacyScheduler;
 
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
@@ -153,6 +155,54 @@ public class Collectd extends AbstractSpringContextJmxServiceDaemon<org.opennms.
         return getDaemon().getCollectableServiceCount();
     }
     
+    @Override
+    public long getPersistQueuePendingCount() {
+        final CollectionSetPipeline pipeline = getDaemon().getCollectionSetPipeline();
+        return pipeline == null ? 0L : pipeline.getPersistStage().getPendingCount();
+    }
+
+    @Override
+    public long getPersistCompletedCount() {
+        final CollectionSetPipeline pipeline = getDaemon().getCollectionSetPipeline();
+        return pipeline == null ? 0L : pipeline.getPersistStage().getCompletedCount();
+    }
+
+    @Override
+    public long getPersistDroppedCount() {
+        final CollectionSetPipeline pipeline = getDaemon().getCollectionSetPipeline();
+        return pipeline == null ? 0L : pipeline.getPersistStage().getDroppedCount();
+    }
+
+    @Override
+    public long getPersistFailedCount() {
+        final CollectionSetPipeline pipeline = getDaemon().getCollectionSetPipeline();
+        return pipeline == null ? 0L : pipeline.getPersistStage().getFailedCount();
+    }
+
+    @Override
+    public long getThresholdQueuePendingCount() {
+        final CollectionSetPipeline pipeline = getDaemon().getCollectionSetPipeline();
+        return pipeline == null ? 0L : pipeline.getThresholdStage().getPendingCount();
+    }
+
+    @Override
+    public long getThresholdCompletedCount() {
+        final CollectionSetPipeline pipeline = getDaemon().getCollectionSetPipeline();
+        return pipeline == null ? 0L : pipeline.getThresholdStage().getCompletedCount();
+    }
+
+    @Override
+    public long getThresholdDroppedCount() {
+        final CollectionSetPipeline pipeline = getDaemon().getCollectionSetPipeline();
+        return pipeline == null ? 0L : pipeline.getThresholdStage().getDroppedCount();
+    }
+
+    @Override
+    public long getThresholdFailedCount() {
+        final CollectionSetPipeline pipeline = getDaemon().getCollectionSetPipeline();
+        return pipeline == null ? 0L : pipeline.getThresholdStage().getFailedCount();
+    }
+
     private ThreadPoolExecutor getExecutor() {
         return (ThreadPoolExecutor) ((LegacyScheduler) getDaemon().getScheduler()).getRunner();
     }
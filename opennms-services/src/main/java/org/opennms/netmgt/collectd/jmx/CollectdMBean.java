@@ -91,4 +91,44 @@ public interface CollectdMBean extends BaseOnmsMBean {
      * @return The number of pending tasks
      */
     public long getTaskQueueRemainingCapacity();
+
+    /**
+     * @return The number of collection sets waiting for persistence
+     */
+    public long getPersistQueuePendingCount();
+
+    /**
+     * @return The cumulative number of collection sets processed by persistence since collector startup
+     */
+    public long getPersistCompletedCount();
+
+    /**
+     * @return The cumulative number of collection sets discarded because persistence was full
+     */
+    public long getPersistDroppedCount();
+
+    /**
+     * @return The cumulative number of collection sets that failed persistence
+     */
+    public long getPersistFailedCount();
+
+    /**
+     * @return The number of collection sets waiting for thresholding
+     */
+    public long getThresholdQueuePendingCount();
+
+    /**
+     * @return The cumulative number of collection sets processed by thresholding since collector startup
+     */
+    public long getThresholdCompletedCount();
+
+    /**
+     * @return The cumulative number of collection sets discarded because thresholding was full
+     */
+    public long getThresholdDroppedCount();
+
+    /**
+     * @return The cumulative number of collection sets that failed thresholding
+     */
+    public long getThresholdFailedCount();
 }
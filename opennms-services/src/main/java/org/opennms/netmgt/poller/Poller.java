@@ -53,7 +53,9 @@ import org.opennms.netmgt.model.OnmsIpInterface;
 import org.opennms.netmgt.model.OnmsMonitoredService;
 import org.opennms.netmgt.model.OnmsOutage;
 import org.opennms.netmgt.poller.pollables.DbPollEvent;
+import org.opennms.netmgt.poller.pollables.NodeAlignedSchedule;
 import org.opennms.netmgt.poller.pollables.PollEvent;
+import org.opennms.netmgt.poller.pollables.PollScheduleStats;
 import org.opennms.netmgt.poller.pollables.PollableNetwork;
 import org.opennms.netmgt.poller.pollables.PollableNode;
 import org.opennms.netmgt.poller.pollables.PollableService;
@@ -86,6 +88,17 @@ public class Poller extends AbstractServiceDaemon {
 
     private static final String LOG4J_CATEGORY = "poller";
 
+    /**
+     * When set to true, the services of a node that share an interval are
+     * polled together in a single scheduled run and nodes are spread evenly
+     * over the interval.  See {@link NodeAlignedSchedule}.
+     */
+    public static final String NODE_ALIGNED_SCHEDULING_PROPERTY = "org.opennms.netmgt.poller.nodeAlignedScheduling";
+
+    private final boolean m_nodeAlignedScheduling = Boolean.getBoolean(NODE_ALIGNED_SCHEDULING_PROPERTY);
+
+    private final PollScheduleStats m_scheduleStats = new PollScheduleStats();
+
     private boolean m_initialized = false;
 
     private LegacyScheduler m_scheduler = null;
@@ -336,6 +349,7 @@ public class Poller extends AbstractServiceDaemon {
             LOG.debug("init: Creating poller scheduler");
 
             setScheduler(new LegacyScheduler("Poller", getPollerConfig().getThreads()));
+            LOG.debug("init: node aligned scheduling is {}", m_nodeAlignedScheduling ? "enabled" : "disabled");
         } catch (RuntimeException e) {
             LOG.error("init: Failed to create poller scheduler", e);
             throw e;
@@ -520,7 +534,9 @@ public class Poller extends AbstractServiceDaemon {
         svc.setPollConfig(pollConfig);
         synchronized(svc) {
             if (svc.getSchedule() == null) {
-                Schedule schedule = new Schedule(svc, pollConfig, getScheduler());
+                Schedule schedule = m_nodeAlignedScheduling
+                        ? new NodeAlignedSchedule(svc, pollConfig, getScheduler(), m_scheduleStats)
+                        : new Schedule(svc, pollConfig, getScheduler());
                 svc.setSchedule(schedule);
             }
         }
@@ -632,6 +648,16 @@ public class Poller extends AbstractServiceDaemon {
         }
     }
 
+    /**
+     * Returns the poll rate and schedule skew of the node aligned schedule.
+     * Nothing is recorded unless node aligned scheduling is enabled.
+     *
+     * @return the schedule statistics
+     */
+    public PollScheduleStats getScheduleStats() {
+        return m_scheduleStats;
+    }
+
     public static String getLoggingCategory() {
         return LOG4J_CATEGORY;
     }
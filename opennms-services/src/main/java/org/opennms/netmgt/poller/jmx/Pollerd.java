@@ -31,6 +31,7 @@ package org.opennms.netmgt.poller.jmx;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
+import org.opennms.netmgt.poller.pollables.TreeLockStats;
 import org.opennms.netmgt.scheduler.LegacyScheduler;
 
 /**
@@ -159,6 +160,55 @@ public class Pollerd extends AbstractSpringContextJmxServiceDaemon<org.opennms.n
         }
     }
     
+    @Override
+    public double getAlignedPollRate() {
+        return getDaemon().getScheduleStats().getPollRate(System.currentTimeMillis());
+    }
+
+    @Override
+    public long getScheduleSkewMedian() {
+        return getDaemon().getScheduleStats().getSkewPercentile(50);
+    }
+
+    @Override
+    public long getScheduleSkew95thPercentile() {
+        return getDaemon().getScheduleStats().getSkewPercentile(95);
+    }
+
+    @Override
+    public long getScheduleSkew99thPercentile() {
+        return getDaemon().getScheduleStats().getSkewPercentile(99);
+    }
+
+    @Override
+    public long getTreeLockAcquisitions() {
+        return getTreeLockStats().getAcquisitions();
+    }
+
+    @Override
+    public long getTreeLockContentions() {
+        return getTreeLockStats().getContendedAcquisitions();
+    }
+
+    @Override
+    public long getTreeLockTimeouts() {
+        return getTreeLockStats().getTimeouts();
+    }
+
+    @Override
+    public long getTreeLockWaitTimeTotal() {
+        return getTreeLockStats().getTotalWaitTime();
+    }
+
+    @Override
+    public long getTreeLockWaitTimeMax() {
+        return getTreeLockStats().getMaxWaitTime();
+    }
+
+    private TreeLockStats getTreeLockStats() {
+        return getDaemon().getNetwork().getTreeLockStats();
+    }
+
     private ThreadPoolExecutor getExecutor() {
         return (ThreadPoolExecutor) ((LegacyScheduler) getDaemon().getScheduler()).getRunner();
     }
@@ -93,4 +93,49 @@ public interface PollerdMBean extends BaseOnmsMBean {
      * @return The number of open slots on our ExecutorService queue.
      */
     public long getTaskQueueRemainingCapacity();
+
+    /**
+     * @return The number of services polled per second over the last minute when node aligned scheduling is enabled
+     */
+    public double getAlignedPollRate();
+
+    /**
+     * @return The median delay in milliseconds between the time a node batch was due and the time it started
+     */
+    public long getScheduleSkewMedian();
+
+    /**
+     * @return The 95th percentile of the delay in milliseconds between the time a node batch was due and the time it started
+     */
+    public long getScheduleSkew95thPercentile();
+
+    /**
+     * @return The 99th percentile of the delay in milliseconds between the time a node batch was due and the time it started
+     */
+    public long getScheduleSkew99thPercentile();
+
+    /**
+     * @return The number of times a node tree lock was acquired
+     */
+    public long getTreeLockAcquisitions();
+
+    /**
+     * @return The number of times a thread had to wait for a node tree lock
+     */
+    public long getTreeLockContentions();
+
+    /**
+     * @return The number of times a node tree lock could not be acquired within its timeout
+     */
+    public long getTreeLockTimeouts();
+
+    /**
+     * @return The total time in milliseconds spent waiting for node tree locks
+     */
+    public long getTreeLockWaitTimeTotal();
+
+    /**
+     * @return The longest time in milliseconds a thread waited for a node tree lock
+     */
+    public long getTreeLockWaitTimeMax();
 }
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.pollables;
+
+import java.util.Random;
+
+import org.opennms.netmgt.scheduler.PostponeNecessary;
+import org.opennms.netmgt.scheduler.ReadyRunnable;
+import org.opennms.netmgt.scheduler.Schedule;
+import org.opennms.netmgt.scheduler.ScheduleInterval;
+import org.opennms.netmgt.scheduler.ScheduleTimer;
+
+/**
+ * A {@link Schedule} that does not put its service on the timer directly
+ * but hands it to a {@link NodePollBatch} of its {@link PollableNode}.
+ * All services of a node that currently share the same interval (as
+ * determined by the downtime model) are polled together, and every node
+ * is given a fixed phase within the interval so that nodes are spread
+ * evenly instead of all being polled right after startup.
+ *
+ * As with a plain {@link Schedule}, a newly scheduled service is polled
+ * right away; it only joins its batch once that first poll is done.
+ *
+ * When the interval of a service changes, either because its status
+ * changed or because it moved to another downtime period, it leaves its
+ * current batch and joins the batch for the new interval.  It is next
+ * polled on that batch's next run, which is never further away than the
+ * new interval.
+ */
+public class NodeAlignedSchedule extends Schedule {
+
+    /**
+     * The number of phases an interval is split into.  Initial delays are
+     * multiples of the interval divided by this value, which keeps the
+     * number of distinct delays handed to the scheduler bounded.
+     */
+    static final int SLOTS_PER_INTERVAL = 60;
+
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+
+    private static final Random random = new Random();
+
+    private final PollableService m_service;
+
+    private final ScheduleInterval m_interval;
+
+    private final ScheduleTimer m_timer;
+
+    private final PollScheduleStats m_stats;
+
+    private volatile NodePollBatch m_batch;
+
+    private boolean m_scheduled = false;
+
+    private InitialPoll m_initialPoll;
+
+    /**
+     * <p>Constructor for NodeAlignedSchedule.</p>
+     *
+     * @param service the service being scheduled
+     * @param interval the interval (and downtime model) of the service
+     * @param timer the timer the node batches are scheduled on
+     * @param stats receives the poll rate and schedule skew of the batches
+     */
+    public NodeAlignedSchedule(final PollableService service, final ScheduleInterval interval, final ScheduleTimer timer, final PollScheduleStats stats) {
+        super(service, interval, timer);
+        m_service = service;
+        m_interval = interval;
+        m_timer = timer;
+        m_stats = stats;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void schedule() {
+        m_scheduled = true;
+        leave();
+        m_initialPoll = new InitialPoll();
+        m_timer.schedule(0, m_initialPoll);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void adjustSchedule() {
+        if (m_scheduled) {
+            m_initialPoll = null;
+            join(m_interval.getInterval());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void unschedule() {
+        m_scheduled = false;
+        m_initialPoll = null;
+        leave();
+    }
+
+    /**
+     * Called by a batch after it has polled this service.  Re-evaluates the
+     * interval and moves the service to another batch if it changed.  The
+     * interval is evaluated outside of the schedule's monitor since it may
+     * send a delete event.
+     */
+    void reschedule(final NodePollBatch batch) {
+        if (m_batch != batch) {
+            // the status changed during the poll and the service was already moved
+            return;
+        }
+        final long interval = m_interval.getInterval();
+        synchronized (this) {
+            if (m_scheduled && m_batch == batch && interval != batch.getInterval()) {
+                join(interval);
+            }
+        }
+    }
+
+    boolean isSuspended() {
+        return m_interval.scheduledSuspension();
+    }
+
+    NodePollBatch getBatch() {
+        return m_batch;
+    }
+
+    PollableService getService() {
+        return m_service;
+    }
+
+    /**
+     * Polls a newly scheduled service once and then adds it to the batch
+     * for its interval.  It is dropped if the service is unscheduled or
+     * rescheduled in the meantime.
+     */
+    private class InitialPoll implements ReadyRunnable {
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void run() {
+            synchronized (NodeAlignedSchedule.this) {
+                if (m_initialPoll != this) {
+                    return;
+                }
+            }
+            if (!isSuspended()) {
+                try {
+                    NodeAlignedSchedule.this.run();
+                } catch (PostponeNecessary e) {
+                    // Chose a random number of seconds between 5 and 14 to wait before trying again
+                    m_timer.schedule(random.nextInt(10) * 1000L + 5000L, this);
+                    return;
+                }
+            }
+            final long interval = m_interval.getInterval();
+            synchronized (NodeAlignedSchedule.this) {
+                if (m_initialPoll == this) {
+                    m_initialPoll = null;
+                    join(interval);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "InitialPoll[" + m_service + "]";
+        }
+    }
+
+    private void join(final long interval) {
+        leave();
+        if (interval >= 0) {
+            m_batch = m_service.getNode().joinPollBatch(this, interval, m_timer, m_stats);
+        }
+    }
+
+    private void leave() {
+        final NodePollBatch batch = m_batch;
+        if (batch != null) {
+            m_service.getNode().leavePollBatch(this, batch);
+            m_batch = null;
+        }
+    }
+
+    /**
+     * Returns the phase of the given node within the interval.  Consecutive
+     * node IDs are spread over the interval using the fractional part of
+     * multiples of the golden ratio.
+     *
+     * @param nodeId the node
+     * @param interval the interval in milliseconds
+     * @return the phase offset in milliseconds, a multiple of the slot length
+     */
+    static long getPhaseOffset(final int nodeId, final long interval) {
+        final int slots = getSlots(interval);
+        if (slots == 0) {
+            return 0L;
+        }
+        final double fraction = (nodeId * GOLDEN_RATIO_FRACTION) % 1.0;
+        return (long)(Math.abs(fraction) * slots) * (interval / slots);
+    }
+
+    /**
+     * Returns the delay until the next slot of the node's phase, where
+     * slots are aligned to the wall clock so that every batch of the node
+     * with the same interval lands on the same slot.
+     *
+     * @param nodeId the node
+     * @param interval the interval in milliseconds
+     * @param now the current time in milliseconds
+     * @return the delay in milliseconds, a multiple of the slot length
+     */
+    static long getInitialDelay(final int nodeId, final long interval, final long now) {
+        final int slots = getSlots(interval);
+        if (slots == 0) {
+            return 0L;
+        }
+        final long slotLength = interval / slots;
+        final long phaseSlot = getPhaseOffset(nodeId, interval) / slotLength;
+        final long currentSlot = Math.min(slots - 1, (now % interval) / slotLength);
+        return ((phaseSlot - currentSlot + slots) % slots) * slotLength;
+    }
+
+    private static int getSlots(final long interval) {
+        return (int)Math.min(SLOTS_PER_INTERVAL, Math.max(0, interval));
+    }
+
+    @Override
+    public String toString() {
+        return "NodeAlignedSchedule[" + m_service + "]";
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.pollables;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.opennms.netmgt.scheduler.ReadyRunnable;
+import org.opennms.netmgt.scheduler.ScheduleTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls all services of a node that share the same interval in a single
+ * scheduled run, holding the node's tree lock once for the whole batch
+ * instead of once per service.  The batch reschedules itself every
+ * interval and retires once it no longer has any members.
+ */
+class NodePollBatch implements ReadyRunnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NodePollBatch.class);
+
+    private static final Random random = new Random();
+
+    private static final long LOCK_TIMEOUT = 500;
+
+    private final PollableNode m_node;
+
+    private final long m_interval;
+
+    private final ScheduleTimer m_timer;
+
+    private final PollScheduleStats m_stats;
+
+    /** Guarded by the poll batch monitor of the node. */
+    private final Set<NodeAlignedSchedule> m_members = new LinkedHashSet<>();
+
+    private volatile long m_due;
+
+    NodePollBatch(final PollableNode node, final long interval, final ScheduleTimer timer, final PollScheduleStats stats) {
+        m_node = node;
+        m_interval = interval;
+        m_timer = timer;
+        m_stats = stats;
+    }
+
+    long getInterval() {
+        return m_interval;
+    }
+
+    Set<NodeAlignedSchedule> getMembers() {
+        return m_members;
+    }
+
+    /**
+     * Schedules the first run of the batch at the next slot of the node's phase.
+     */
+    void start() {
+        final long now = m_timer.getCurrentTime();
+        schedule(NodeAlignedSchedule.getInitialDelay(m_node.getNodeId(), m_interval, now), now);
+    }
+
+    private void schedule(final long delay, final long now) {
+        m_due = now + delay;
+        m_timer.schedule(delay, this);
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void run() {
+        final long start = m_timer.getCurrentTime();
+        final List<NodeAlignedSchedule> members = m_node.getPollBatchMembers(this);
+        if (members.isEmpty()) {
+            LOG.debug("{} has no more services. Retiring.", this);
+            return;
+        }
+
+        final int[] polled = new int[1];
+        final Runnable polls = new Runnable() {
+            @Override
+            public void run() {
+                for (final NodeAlignedSchedule member : members) {
+                    if (member.getBatch() != NodePollBatch.this || member.isSuspended()) {
+                        continue;
+                    }
+                    try {
+                        member.run();
+                        polled[0]++;
+                    } catch (RuntimeException e) {
+                        LOG.warn("Unexpected exception while polling {}", member.getService(), e);
+                    }
+                }
+            }
+        };
+
+        if (m_node.getContext().isNodeProcessingEnabled()) {
+            try {
+                m_node.withTreeLock(polls, LOCK_TIMEOUT);
+            } catch (LockUnavailable e) {
+                LOG.info("Postponing polls for {}. Another thread is currently holding the lock.", this);
+                // Chose a random number of seconds between 5 and 14 to wait before trying again.
+                // The due time is kept so that the delay shows up in the schedule skew.
+                m_timer.schedule(random.nextInt(10) * 1000L + 5000L, this);
+                return;
+            }
+        } else {
+            polls.run();
+        }
+
+        m_stats.record(start, start - m_due, polled[0]);
+
+        for (final NodeAlignedSchedule member : members) {
+            member.reschedule(this);
+        }
+
+        schedule(m_interval, m_timer.getCurrentTime());
+    }
+
+    @Override
+    public String toString() {
+        return "NodePollBatch[node=" + m_node.getNodeId() + ", interval=" + m_interval + "]";
+    }
+}
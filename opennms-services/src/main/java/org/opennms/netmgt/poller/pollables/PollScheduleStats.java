@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.pollables;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how well the node aligned poll schedule keeps up: the number of
+ * polls executed per second over the last minute and the distribution of
+ * the delay between the time a batch was due and the time it actually
+ * started (the schedule skew).
+ */
+public class PollScheduleStats {
+
+    private static final int SKEW_SAMPLES = 1024;
+
+    private static final int RATE_WINDOW_SECONDS = 60;
+
+    private final long[] m_skews = new long[SKEW_SAMPLES];
+
+    private int m_nextSkew = 0;
+
+    private int m_skewCount = 0;
+
+    private final long[] m_rateSeconds = new long[RATE_WINDOW_SECONDS];
+
+    private final long[] m_ratePolls = new long[RATE_WINDOW_SECONDS];
+
+    private final AtomicLong m_totalPolls = new AtomicLong(0);
+
+    /**
+     * Records a single batch run.
+     *
+     * @param time the time the batch started, in milliseconds
+     * @param skew how late the batch started compared to when it was due, in milliseconds
+     * @param polls the number of services polled by the batch
+     */
+    public synchronized void record(final long time, final long skew, final int polls) {
+        m_skews[m_nextSkew] = Math.max(0, skew);
+        m_nextSkew = (m_nextSkew + 1) % SKEW_SAMPLES;
+        m_skewCount = Math.min(m_skewCount + 1, SKEW_SAMPLES);
+
+        final long second = time / 1000;
+        final int bucket = (int)(second % RATE_WINDOW_SECONDS);
+        if (m_rateSeconds[bucket] != second) {
+            m_rateSeconds[bucket] = second;
+            m_ratePolls[bucket] = 0;
+        }
+        m_ratePolls[bucket] += polls;
+        m_totalPolls.addAndGet(polls);
+    }
+
+    /**
+     * @param percentile a value between 0 and 100
+     * @return the given percentile of the recently recorded schedule skews, in milliseconds
+     */
+    public synchronized long getSkewPercentile(final double percentile) {
+        if (m_skewCount == 0) {
+            return 0L;
+        }
+        final long[] sorted = Arrays.copyOf(m_skews, m_skewCount);
+        Arrays.sort(sorted);
+        final int index = (int)Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * @param now the current time, in milliseconds
+     * @return the average number of polls per second over the last minute
+     */
+    public synchronized double getPollRate(final long now) {
+        final long second = now / 1000;
+        long polls = 0;
+        for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+            if (second - m_rateSeconds[i] < RATE_WINDOW_SECONDS) {
+                polls += m_ratePolls[i];
+            }
+        }
+        return polls / (double)RATE_WINDOW_SECONDS;
+    }
+
+    /**
+     * @return the total number of polls recorded
+     */
+    public long getTotalPolls() {
+        return m_totalPolls.get();
+    }
+}
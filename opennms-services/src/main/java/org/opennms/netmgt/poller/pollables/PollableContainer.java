@@ -30,9 +30,11 @@ package org.opennms.netmgt.poller.pollables;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.opennms.netmgt.poller.PollStatus;
@@ -49,6 +51,14 @@ abstract public class PollableContainer extends PollableElement {
 
     private final Map<Object, PollableElement> m_members = new HashMap<Object, PollableElement>();
 
+    /**
+     * Copy of the members taken whenever they change.  Members are walked
+     * on every poll and status change but rarely added or removed, so
+     * readers use this snapshot instead of copying the map under the
+     * container's monitor each time.
+     */
+    private volatile List<PollableElement> m_memberSnapshot = Collections.emptyList();
+
     /**
      * <p>Constructor for PollableContainer.</p>
      *
@@ -74,17 +84,17 @@ abstract public class PollableContainer extends PollableElement {
      *
      * @return a int.
      */
-    protected synchronized int getMemberCount() {
-        return m_members.size();
+    protected int getMemberCount() {
+        return m_memberSnapshot.size();
     }
     
     /**
      * <p>getMembers</p>
      *
-     * @return a {@link java.util.Collection} object.
+     * @return an unmodifiable snapshot of the members
      */
-    protected synchronized Collection<PollableElement> getMembers() {
-        return new ArrayList<PollableElement>(m_members.values());
+    protected Collection<PollableElement> getMembers() {
+        return m_memberSnapshot;
     }
     
     /**
@@ -103,6 +113,11 @@ abstract public class PollableContainer extends PollableElement {
     protected synchronized void addMember(PollableElement member) {
         Object key = createMemberKey(member);
         m_members.put(key, member);
+        updateMemberSnapshot();
+    }
+
+    private void updateMemberSnapshot() {
+        m_memberSnapshot = Collections.unmodifiableList(new ArrayList<PollableElement>(m_members.values()));
     }
     
     /**
@@ -113,6 +128,7 @@ abstract public class PollableContainer extends PollableElement {
     public synchronized void removeMember(PollableElement member) {
         Object key = createMemberKey(member);
         m_members.remove(key);
+        updateMemberSnapshot();
     }
 
     
@@ -123,7 +139,7 @@ abstract public class PollableContainer extends PollableElement {
      */
     public void deleteMember(PollableElement member) {
         removeMember(member);
-        if (m_members.size() == 0)
+        if (getMemberCount() == 0)
             this.delete();
     }
     
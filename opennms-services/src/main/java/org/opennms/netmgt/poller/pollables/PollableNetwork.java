@@ -48,6 +48,8 @@ public class PollableNetwork extends PollableContainer {
 
     private final PollContext m_context;
 
+    private final TreeLockStats m_treeLockStats = new TreeLockStats();
+
     /**
      * <p>Constructor for PollableNetwork.</p>
      *
@@ -68,6 +70,15 @@ public class PollableNetwork extends PollableContainer {
         return m_context;
     }
 
+    /**
+     * <p>getTreeLockStats</p>
+     *
+     * @return the lock statistics of all nodes in this network
+     */
+    public TreeLockStats getTreeLockStats() {
+        return m_treeLockStats;
+    }
+
     /**
      * <p>createNode</p>
      *
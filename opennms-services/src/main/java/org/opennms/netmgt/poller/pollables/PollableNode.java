@@ -30,13 +30,17 @@ package org.opennms.netmgt.poller.pollables;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.opennms.netmgt.events.api.EventConstants;
 import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.scheduler.ScheduleTimer;
 import org.opennms.netmgt.xml.event.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,10 +53,22 @@ import org.slf4j.LoggerFactory;
 public class PollableNode extends PollableContainer {
     private static final Logger LOG = LoggerFactory.getLogger(PollableNode.class);
 
+    /**
+     * Whether the tree lock hands itself to waiting threads in arrival
+     * order.  A fair lock avoids starving a poll behind a stream of status
+     * changes on busy nodes, but forces a hand-off to a waiting thread on
+     * every release, so it is off by default.
+     */
+    public static final String FAIR_TREE_LOCK_PROPERTY = "org.opennms.netmgt.poller.fairTreeLock";
+
+    private static final boolean FAIR_TREE_LOCK = Boolean.getBoolean(FAIR_TREE_LOCK_PROPERTY);
+
     private final int m_nodeId;
     private String m_nodeLabel;
     private final String m_nodeLocation;
-    private final ReentrantLock m_lock = new ReentrantLock(true);
+    private final ReentrantLock m_lock;
+    private final TreeLockStats m_lockStats;
+    private final Map<Long, NodePollBatch> m_pollBatches = new HashMap<>();
 
     /**
      * <p>Constructor for PollableNode.</p>
@@ -63,10 +79,16 @@ public class PollableNode extends PollableContainer {
      * @param nodeLocation a {@link java.lang.String} object.
      */
     public PollableNode(PollableNetwork network, int nodeId, String nodeLabel, String nodeLocation) {
+        this(network, nodeId, nodeLabel, nodeLocation, FAIR_TREE_LOCK);
+    }
+
+    PollableNode(PollableNetwork network, int nodeId, String nodeLabel, String nodeLocation, boolean fairTreeLock) {
         super(network, Scope.NODE);
+        m_lock = new ReentrantLock(fairTreeLock);
         m_nodeId = nodeId;
         m_nodeLabel = nodeLabel;
         m_nodeLocation = nodeLocation;
+        m_lockStats = network.getTreeLockStats();
     }
 
     /**
@@ -240,7 +262,13 @@ public class PollableNode extends PollableContainer {
      */
     @Override
     protected void obtainTreeLock() {
+        if (tryLockImmediately()) {
+            m_lockStats.acquired();
+            return;
+        }
+        final long start = System.nanoTime();
         m_lock.lock();
+        m_lockStats.acquiredAfterWait(System.nanoTime() - start);
     }
 
     /** 
@@ -254,19 +282,39 @@ public class PollableNode extends PollableContainer {
     protected void obtainTreeLock(long timeout) throws LockUnavailable {
         if (timeout < 1) {
             obtainTreeLock();
-        } else {
-            try {
-                if (m_lock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
-                    // Lock was successful
-                    return;
-                } else {
-                    // Lock was unsuccessful
-                    throw new LockUnavailable("Unable to obtain lock for " + PollableNode.this + " within " + timeout + " milliseconds");
-                }
-            } catch (InterruptedException e) {
-                throw new LockUnavailable("Interrupted while waiting " + timeout + " milliseconds to obtain lock for " + PollableNode.this);
+            return;
+        }
+        if (tryLockImmediately()) {
+            m_lockStats.acquired();
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            if (m_lock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+                // Lock was successful
+                m_lockStats.acquiredAfterWait(System.nanoTime() - start);
+                return;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            m_lockStats.timedOut(System.nanoTime() - start);
+            throw new LockUnavailable("Interrupted while waiting " + timeout + " milliseconds to obtain lock for " + PollableNode.this);
         }
+        // Lock was unsuccessful
+        m_lockStats.timedOut(System.nanoTime() - start);
+        throw new LockUnavailable("Unable to obtain lock for " + PollableNode.this + " within " + timeout + " milliseconds");
+    }
+
+    /**
+     * Takes the lock if it is free (or already held by this thread)
+     * without waiting.  {@link ReentrantLock#tryLock()} barges, so a fair
+     * lock is only taken this way when no other thread is waiting for it.
+     */
+    private boolean tryLockImmediately() {
+        if (m_lock.isFair() && m_lock.hasQueuedThreads() && !m_lock.isHeldByCurrentThread()) {
+            return false;
+        }
+        return m_lock.tryLock();
     }
     
     /**
@@ -277,6 +325,46 @@ public class PollableNode extends PollableContainer {
         m_lock.unlock();
     }
     
+    /**
+     * Adds the service to the batch polling this node's services at the
+     * given interval, creating and scheduling the batch if there is none.
+     */
+    NodePollBatch joinPollBatch(final NodeAlignedSchedule member, final long interval, final ScheduleTimer timer, final PollScheduleStats stats) {
+        synchronized (m_pollBatches) {
+            NodePollBatch batch = m_pollBatches.get(interval);
+            if (batch == null) {
+                batch = new NodePollBatch(this, interval, timer, stats);
+                m_pollBatches.put(interval, batch);
+                batch.getMembers().add(member);
+                batch.start();
+            } else {
+                batch.getMembers().add(member);
+            }
+            return batch;
+        }
+    }
+
+    void leavePollBatch(final NodeAlignedSchedule member, final NodePollBatch batch) {
+        synchronized (m_pollBatches) {
+            batch.getMembers().remove(member);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the services in the given batch.  A batch
+     * without services is removed from the node so that the next service
+     * with its interval starts a new one.
+     */
+    List<NodeAlignedSchedule> getPollBatchMembers(final NodePollBatch batch) {
+        synchronized (m_pollBatches) {
+            if (batch.getMembers().isEmpty()) {
+                m_pollBatches.remove(batch.getInterval(), batch);
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(batch.getMembers());
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public PollStatus doPoll(final PollableElement elem) {
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.pollables;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often the node tree locks of a {@link PollableNetwork} are
+ * acquired, how often a thread had to wait for one and for how long.
+ */
+public class TreeLockStats {
+
+    private final LongAdder m_acquisitions = new LongAdder();
+
+    private final LongAdder m_contended = new LongAdder();
+
+    private final LongAdder m_timeouts = new LongAdder();
+
+    private final LongAdder m_waitNanos = new LongAdder();
+
+    private final AtomicLong m_maxWaitNanos = new AtomicLong(0);
+
+    void acquired() {
+        m_acquisitions.increment();
+    }
+
+    void acquiredAfterWait(final long waitNanos) {
+        m_acquisitions.increment();
+        waited(waitNanos);
+    }
+
+    void timedOut(final long waitNanos) {
+        m_timeouts.increment();
+        waited(waitNanos);
+    }
+
+    private void waited(final long waitNanos) {
+        m_contended.increment();
+        m_waitNanos.add(waitNanos);
+        m_maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * @return the number of times a tree lock was acquired
+     */
+    public long getAcquisitions() {
+        return m_acquisitions.sum();
+    }
+
+    /**
+     * @return the number of times a thread had to wait for a tree lock, including timeouts
+     */
+    public long getContendedAcquisitions() {
+        return m_contended.sum();
+    }
+
+    /**
+     * @return the number of times a tree lock could not be acquired within the timeout
+     */
+    public long getTimeouts() {
+        return m_timeouts.sum();
+    }
+
+    /**
+     * @return the total time spent waiting for tree locks, in milliseconds
+     */
+    public long getTotalWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(m_waitNanos.sum());
+    }
+
+    /**
+     * @return the longest single wait for a tree lock, in milliseconds
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(m_maxWaitNanos.get());
+    }
+}
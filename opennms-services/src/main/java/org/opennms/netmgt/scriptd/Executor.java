@@ -29,16 +29,26 @@
 package org.opennms.netmgt.scriptd;
 
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Optional;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
-import org.apache.bsf.BSFException;
 import org.apache.bsf.BSFManager;
 import org.opennms.core.concurrent.LogPreservingThreadFactory;
 import org.opennms.netmgt.config.ScriptdConfigFactory;
@@ -61,6 +71,15 @@ import org.slf4j.LoggerFactory;
 /**
  * This class is used as a thread for launching scripts to handle received
  * events.
+ * <p>Events are dispatched to a configurable number of threads by UEI, so the
+ * events with the same UEI are handled one at a time, in the order they were
+ * received. Events with different UEIs may be handled concurrently and out of
+ * order.</p>
+ * <p>Each thread has its own {@link ScriptWorker}. The start, stop and reload
+ * scripts run once, on the first thread, which also handles the reload events.
+ * With more than one thread, this means that the state set up by these scripts,
+ * like the state changed by an event script, is only visible to the scripts
+ * handling events which are dispatched to the same thread.</p>
  * 
  * @author <a href="mailto:jim.doble@tavve.com">Jim Doble</a>
  * @author <a href="http://www.opennms.org"/>OpenNMS</a>
@@ -69,15 +88,16 @@ public class Executor {
 
     private static final Logger LOG = LoggerFactory.getLogger(Executor.class);
 
-    /**
-     * The configured scripts (no UEI specified).
-     */
-    private final Set<EventScript> m_eventScripts = new CopyOnWriteArraySet<>();
+    protected static final String THREADS_SYS_PROP = "org.opennms.netmgt.scriptd.threads";
+
+    protected static final String USE_SCRIPT_ENGINES_SYS_PROP = "org.opennms.netmgt.scriptd.useScriptEngines";
+
+    private static final long STOP_TIMEOUT_MS = 60000;
 
     /**
-     * The configured scripts (UEI specified).
+     * The configured event scripts, replaced as a whole when the configuration is reloaded.
      */
-    private final Map<String,Set<EventScript>> m_eventScriptMap = new ConcurrentHashMap<>();
+    private volatile EventScripts m_eventScripts = new EventScripts();
 
     /**
      * The DAO object for fetching nodes
@@ -85,15 +105,19 @@ public class Executor {
     private final NodeDao m_nodeDao;
 
     /**
-     * The BSF manager
+     * The threads that will execute tasks for each event, by UEI.
      */
-    private BSFManager m_scriptManager = null;
+    private ThreadPoolExecutor[] m_lanes;
 
     /**
-     * The {@link ExecutorService} that will execute tasks for each
-     * event.
+     * The script workers, one for each thread.
      */
-    private ExecutorService m_executorService;
+    private ScriptWorker[] m_workers;
+
+    /**
+     * The execution statistics, by script.
+     */
+    private final Map<String, ScriptStatistics> m_statistics = new ConcurrentHashMap<>();
 
     /**
      * The broadcast event receiver.
@@ -103,7 +127,7 @@ public class Executor {
     /**
      * The configuration.
      */
-    private ScriptdConfigFactory m_config;
+    private volatile ScriptdConfigFactory m_config;
 
 
     private SessionUtils m_sessionUtils;
@@ -127,51 +151,56 @@ public class Executor {
     }
 
     /**
-     * Load the m_scripts and m_scriptMap data structures from the
-     * configuration.
-     * 
-     * TODO: If we ever make Scriptd multithreaded then we will need
-     * to handle synchronization for m_eventScripts and m_eventScriptMap
-     * correctly.
+     * Load the event scripts from the configuration.
      */
     private void loadConfig() {
+        m_eventScripts = new EventScripts(m_config.getEventScripts());
+    }
 
-        m_eventScripts.clear();
-        m_eventScriptMap.clear();
-
-        for (final EventScript script : m_config.getEventScripts()) {
-            List<Uei> ueis = script.getUeis();
-
-            if (ueis.isEmpty()) {
-                m_eventScripts.add(script);
-            } else {
-                for (final Uei uei : ueis) {
-                    final String ueiName = uei.getName();
+    public void addTask(IEvent event) {
+        final int lane = isReloadConfigEvent(event) ? 0 : getLane(event.getUei(), m_lanes.length);
+        m_lanes[lane].execute(new ScriptdRunnable(event, lane));
+    }
 
-                    Set<EventScript> list = m_eventScriptMap.get(ueiName);
+    /**
+     * @return the index of the thread which executes the scripts for events with the given UEI
+     */
+    static int getLane(String uei, int lanes) {
+        return Math.floorMod(String.valueOf(uei).hashCode(), lanes);
+    }
 
-                    if (list == null) {
-                        list = new CopyOnWriteArraySet<>();
-                        list.add(script);
-                        m_eventScriptMap.put(ueiName, list);
-                    } else {
-                        list.add(script);
-                    }
-                }
+    /**
+     * @return the number of events waiting for their scripts to be executed
+     */
+    public long getBacklog() {
+        long backlog = 0;
+        final ThreadPoolExecutor[] lanes = m_lanes;
+        if (lanes != null) {
+            for (ThreadPoolExecutor lane : lanes) {
+                backlog += lane.getQueue().size();
             }
         }
+        return backlog;
     }
 
-    public void addTask(IEvent event) {
-        m_executorService.execute(new ScriptdRunnable(event));
+    /**
+     * @return the execution statistics of each script, sorted by name
+     */
+    public Map<String, String> getScriptStatistics() {
+        final Map<String, String> statistics = new TreeMap<>();
+        m_statistics.forEach((name, stats) -> statistics.put(name, stats.toString()));
+        return statistics;
     }
 
     private class ScriptdRunnable implements Runnable {
 
         private final IEvent m_event;
 
-        public ScriptdRunnable(IEvent event) {
+        private final int m_lane;
+
+        public ScriptdRunnable(IEvent event, int lane) {
             m_event = event;
+            m_lane = lane;
         }
 
         /**
@@ -188,21 +217,7 @@ public class Executor {
             if (isReloadConfigEvent(m_event)) {
                 try {
                     ScriptdConfigFactory.reload();
-                    m_config = ScriptdConfigFactory.getInstance();
-                    loadConfig();
-
-                    for (final ReloadScript script : m_config.getReloadScripts()) {
-                        if (script.getContent().isPresent()) {
-                            try {
-                                m_scriptManager.exec(script.getLanguage(), "", 0, 0, script.getContent().get());
-                            } catch (BSFException e) {
-                                LOG.error("Reload script[{}] failed.", script, e);
-                            }
-                        } else {
-                            LOG.warn("Reload Script does not have script contents: " + script);
-                        }
-                    }
-
+                    reload(ScriptdConfigFactory.getInstance());
                     LOG.debug("Scriptd configuration reloaded");
                 } catch (Throwable e) {
                     LOG.error("Unable to reload Scriptd configuration: ", e);
@@ -211,33 +226,66 @@ public class Executor {
 
             if (m_config.getTransactional()) {
                 m_sessionUtils.withReadOnlyTransaction(() -> {
-                    executeEventScripts(m_event);
+                    executeEventScripts(m_workers[m_lane], m_event);
                     return null;
                 });
             } else {
-                executeEventScripts(m_event);
+                executeEventScripts(m_workers[m_lane], m_event);
             }
 
         } // end run
     }
 
-    private void executeEventScripts(IEvent m_event) {
+    /**
+     * Reloads the workers, on the first thread. The other workers only forget
+     * their compiled scripts, on their own threads, and the first one also runs
+     * the reload scripts. The new configuration is only used once all of them
+     * are done.
+     */
+    private void reload(ScriptdConfigFactory config) {
+        final List<Future<?>> futures = new ArrayList<>(m_lanes.length - 1);
+        for (int i = 1; i < m_lanes.length; i++) {
+            futures.add(m_lanes[i].submit(m_workers[i]::clearCompiledScripts));
+        }
+        m_workers[0].clearCompiledScripts();
+        runReloadScripts(m_workers[0], config);
+        await(futures);
+
+        m_config = config;
+        loadConfig();
+    }
+
+    private void runReloadScripts(ScriptWorker worker, ScriptdConfigFactory config) {
+        for (final ReloadScript script : config.getReloadScripts()) {
+            if (script.getContent().isPresent()) {
+                try {
+                    worker.execLifecycleScript(script.getLanguage(), script.getContent().get());
+                } catch (Exception e) {
+                    LOG.error("Reload script[{}] failed.", script, e);
+                }
+            } else {
+                LOG.warn("Reload Script does not have script contents: " + script);
+            }
+        }
+    }
+
+    private void executeEventScripts(ScriptWorker worker, IEvent m_event) {
 
         IScript[] attachedScripts = m_event.getScript();
 
-        Set<EventScript> mapScripts = null;
+        final EventScripts eventScripts = m_eventScripts;
+
+        List<NamedScript> mapScripts = null;
 
         try {
-            mapScripts = m_eventScriptMap.get(m_event.getUei());
+            mapScripts = eventScripts.getScripts(m_event.getUei());
         } catch (Throwable e) {
             LOG.warn("Unexpected exception: " + e.getMessage(), e);
         }
 
-        if (attachedScripts.length > 0 || mapScripts != null || m_eventScripts.size() > 0) {
+        if (attachedScripts.length > 0 || mapScripts != null || eventScripts.getGlobalScripts().size() > 0) {
             LOG.debug("Executing scripts for: {}", m_event.getUei());
 
-            m_scriptManager.registerBean("event", m_event);
-
             // And the event's node to the script context
             OnmsNode node = null;
 
@@ -245,7 +293,6 @@ public class Executor {
                 Long nodeLong = m_event.getNodeid();
                 Integer nodeInt = Integer.valueOf(nodeLong.intValue());
                 node = m_nodeDao.get(nodeInt);
-                m_scriptManager.registerBean("node", node);
             }
 
             // execute the scripts attached to the event
@@ -253,9 +300,12 @@ public class Executor {
             LOG.debug("Executing attached scripts");
             if (attachedScripts.length > 0) {
                 for (final IScript script : attachedScripts) {
+                    final long start = System.nanoTime();
                     try {
-                        m_scriptManager.exec(script.getLanguage(), "", 0, 0, script.getContent());
-                    } catch (BSFException e) {
+                        worker.execEventScript(script.getLanguage(), script.getContent(), m_event, node);
+                        record("attached:" + m_event.getUei(), start, true);
+                    } catch (Exception e) {
+                        record("attached:" + m_event.getUei(), start, false);
                         LOG.error("Attached script [{}] execution failed", script, e);
                     }
                 }
@@ -265,11 +315,14 @@ public class Executor {
 
             LOG.debug("Executing mapped scripts");
             if (mapScripts != null) {
-                for (final EventScript script : mapScripts) {
+                for (final NamedScript script : mapScripts) {
                     if (script.getContent().isPresent()) {
+                        final long start = System.nanoTime();
                         try {
-                            m_scriptManager.exec(script.getLanguage(), "", 0, 0, script.getContent().get());
-                        } catch (BSFException e) {
+                            worker.execEventScript(script.getLanguage(), script.getContent().get(), m_event, node);
+                            record(script.getName(), start, true);
+                        } catch (Exception e) {
+                            record(script.getName(), start, false);
                             LOG.error("UEI-specific event handler script execution failed: {}", m_event.getUei(), e);
                         }
                     } else {
@@ -281,11 +334,14 @@ public class Executor {
             // execute the scripts that are not mapped to any UEI
 
             LOG.debug("Executing global scripts");
-            for (final EventScript script : m_eventScripts) {
+            for (final NamedScript script : eventScripts.getGlobalScripts()) {
                 if (script.getContent().isPresent()) {
+                    final long start = System.nanoTime();
                     try {
-                        m_scriptManager.exec(script.getLanguage(), "", 0, 0, script.getContent().get());
-                    } catch (BSFException e) {
+                        worker.execEventScript(script.getLanguage(), script.getContent().get(), m_event, node);
+                        record(script.getName(), start, true);
+                    } catch (Exception e) {
+                        record(script.getName(), start, false);
                         LOG.error("Non-UEI-specific event handler script execution failed : " + script, e);
                     }
                 } else {
@@ -293,17 +349,15 @@ public class Executor {
                 }
             }
 
-            if (node != null) {
-                m_scriptManager.unregisterBean("node");
-            }
-
-            m_scriptManager.unregisterBean("event");
-
             LOG.debug("Finished executing scripts for: {}", m_event.getUei());
         }
 
     }
 
+    private void record(String name, long start, boolean succeeded) {
+        m_statistics.computeIfAbsent(name, k -> new ScriptStatistics()).record(System.nanoTime() - start, succeeded);
+    }
+
 
     private static boolean isReloadConfigEvent(IEvent event) {
         boolean isTarget = false;
@@ -348,24 +402,32 @@ public class Executor {
             BSFManager.registerScriptingEngine(engine.getLanguage(), engine.getClassName(), extensions);
         }
 
-        m_scriptManager = new BSFManager();
-        m_scriptManager.registerBean("log", LOG);
+        // Start the thread pool, each thread with its own worker
+        final int threads = Math.max(1, Integer.getInteger(THREADS_SYS_PROP, 1));
+        final boolean useScriptEngines = Boolean.getBoolean(USE_SCRIPT_ENGINES_SYS_PROP);
+        final LogPreservingThreadFactory threadFactory = new LogPreservingThreadFactory("Scriptd-Executor", threads);
+        m_lanes = new ThreadPoolExecutor[threads];
+        m_workers = new ScriptWorker[threads];
+        for (int i = 0; i < threads; i++) {
+            m_lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+            m_workers[i] = new ScriptWorker(LOG, useScriptEngines);
+        }
+        LOG.debug("Executing scripts with {} threads, JSR-223 engines {}", threads, useScriptEngines ? "enabled" : "disabled");
 
-        // Run all start scripts
-        for (final StartScript startScript : m_config.getStartScripts()) {
-            if (startScript.getContent().isPresent()) {
-                try {
-                    m_scriptManager.exec(startScript.getLanguage(), "", 0, 0, startScript.getContent().get());
-                } catch (BSFException e) {
-                    LOG.error("Start script failed: " + startScript, e);
+        // Run all start scripts on the first worker
+        runOnFirstWorker(worker -> {
+            for (final StartScript startScript : m_config.getStartScripts()) {
+                if (startScript.getContent().isPresent()) {
+                    try {
+                        worker.execLifecycleScript(startScript.getLanguage(), startScript.getContent().get());
+                    } catch (Exception e) {
+                        LOG.error("Start script failed: " + startScript, e);
+                    }
+                } else {
+                    LOG.warn("Start script has no script content: " + startScript);
                 }
-            } else {
-                LOG.warn("Start script has no script content: " + startScript);
             }
-        }
-
-        // Start the thread pool
-        m_executorService = Executors.newFixedThreadPool(1, new LogPreservingThreadFactory("Scriptd-Executor", 1));
+        });
 
         // Register the event listener after the thread pool has been
         // started
@@ -388,22 +450,156 @@ public class Executor {
 
         m_broadcastEventProcessor = null;
 
+        // Run all stop scripts on the first worker, after its pending events
+        runOnFirstWorker(worker -> {
+            for (final StopScript stopScript : m_config.getStopScripts()) {
+                if (stopScript.getContent().isPresent()) {
+                    try {
+                        worker.execLifecycleScript(stopScript.getLanguage(), stopScript.getContent().get());
+                    } catch (Exception e) {
+                        LOG.error("Stop script failed: " + stopScript, e);
+                    }
+                } else {
+                    LOG.warn("Stop script has no script contents: " + stopScript);
+                }
+            }
+        });
+
         // Shut down the thread pool
-        m_executorService.shutdown();
+        for (ThreadPoolExecutor lane : m_lanes) {
+            lane.shutdown();
+        }
 
-        // Run all stop scripts
-        for (final StopScript stopScript : m_config.getStopScripts()) {
-            if (stopScript.getContent().isPresent()) {
-                try {
-                    m_scriptManager.exec(stopScript.getLanguage(), "", 0, 0, stopScript.getContent().get());
-                } catch (BSFException e) {
-                    LOG.error("Stop script failed: " + stopScript, e);
+        LOG.debug("Scriptd executor stopped");
+    }
+
+    private interface WorkerTask {
+        void run(ScriptWorker worker);
+    }
+
+    /**
+     * Runs the task on the thread of the first worker, and waits for it to complete.
+     */
+    private void runOnFirstWorker(WorkerTask task) {
+        final ScriptWorker worker = m_workers[0];
+        await(Collections.singletonList(m_lanes[0].submit(() -> task.run(worker))));
+    }
+
+    /**
+     * Waits for the tasks submitted to the Scriptd threads to complete.
+     */
+    private static void await(List<Future<?>> futures) {
+        try {
+            for (Future<?> future : futures) {
+                future.get(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOG.warn("Scripts did not complete on all the Scriptd threads", e);
+        }
+    }
+
+    /**
+     * An event script, with the name used to report its statistics.
+     */
+    private static class NamedScript {
+        private final String m_name;
+        private final EventScript m_script;
+
+        private NamedScript(String name, EventScript script) {
+            m_name = name;
+            m_script = script;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        public String getLanguage() {
+            return m_script.getLanguage();
+        }
+
+        public Optional<String> getContent() {
+            return m_script.getContent();
+        }
+
+        @Override
+        public String toString() {
+            return m_name + ": " + m_script;
+        }
+    }
+
+    /**
+     * The event scripts of the configuration.
+     */
+    private static class EventScripts {
+
+        /**
+         * The configured scripts (no UEI specified).
+         */
+        private final List<NamedScript> m_globalScripts = new ArrayList<>();
+
+        /**
+         * The configured scripts (UEI specified).
+         */
+        private final Map<String,List<NamedScript>> m_scriptsByUei = new LinkedHashMap<>();
+
+        private EventScripts() {
+        }
+
+        private EventScripts(List<EventScript> scripts) {
+            int globalIndex = 0;
+            // Configured scripts are executed once per event, even if they are repeated
+            for (final EventScript script : new LinkedHashSet<>(scripts)) {
+                List<Uei> ueis = script.getUeis();
+
+                if (ueis.isEmpty()) {
+                    m_globalScripts.add(new NamedScript("global:" + (++globalIndex), script));
+                } else {
+                    final NamedScript namedScript = new NamedScript(ueis.stream().map(Uei::getName).collect(Collectors.joining(",")), script);
+                    for (final Uei uei : ueis) {
+                        final List<NamedScript> list = m_scriptsByUei.computeIfAbsent(uei.getName(), k -> new ArrayList<>());
+                        if (!list.contains(namedScript)) {
+                            list.add(namedScript);
+                        }
+                    }
                 }
-            } else {
-                LOG.warn("Stop script has no script contents: " + stopScript);
             }
         }
 
-        LOG.debug("Scriptd executor stopped");
+        private List<NamedScript> getGlobalScripts() {
+            return Collections.unmodifiableList(m_globalScripts);
+        }
+
+        private List<NamedScript> getScripts(String uei) {
+            return m_scriptsByUei.get(uei);
+        }
+    }
+
+    /**
+     * The execution statistics of a script.
+     */
+    private static class ScriptStatistics {
+        private final LongAdder m_executions = new LongAdder();
+        private final LongAdder m_failures = new LongAdder();
+        private final LongAdder m_totalNanos = new LongAdder();
+        private final AtomicLong m_maxNanos = new AtomicLong();
+
+        private void record(long nanos, boolean succeeded) {
+            m_executions.increment();
+            if (!succeeded) {
+                m_failures.increment();
+            }
+            m_totalNanos.add(nanos);
+            m_maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        @Override
+        public String toString() {
+            final long executions = m_executions.sum();
+            final double avgMs = executions == 0 ? 0 : m_totalNanos.sum() / 1e6 / executions;
+            return String.format("executions=%d, failures=%d, avg=%.3fms, max=%.3fms", executions, m_failures.sum(), avgMs, m_maxNanos.get() / 1e6);
+        }
     }
 }
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scriptd;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.apache.bsf.BSFException;
+import org.apache.bsf.BSFManager;
+import org.opennms.netmgt.events.api.model.IEvent;
+import org.opennms.netmgt.model.OnmsNode;
+import org.slf4j.Logger;
+
+/**
+ * Executes the scripts on behalf of a single Scriptd thread.
+ * <p>A worker is confined to its thread: it owns its script engines, the scripts
+ * it has compiled and the state left by the start scripts, so none of them
+ * need to be thread safe.</p>
+ * <p>When enabled, the languages available as JSR-223 engines are executed with
+ * them. Scripts are compiled once when the engine is {@link Compilable}, and each
+ * execution gets its own bindings: <code>event</code>, <code>node</code>, <code>log</code>
+ * and a <code>bsf</code> object whose <code>lookupBean</code> method keeps the scripts
+ * written for BSF working. The state defined by the start scripts is shared through
+ * the global bindings. The other languages are executed through BSF.</p>
+ */
+class ScriptWorker {
+
+    private final Logger m_log;
+
+    private final boolean m_useScriptEngines;
+
+    private final BSFManager m_bsfManager;
+
+    private final ScriptEngineManager m_scriptEngineManager;
+
+    /**
+     * The JSR-223 engines by language, null when the language has none.
+     */
+    private final Map<String, ScriptEngine> m_engines = new HashMap<>();
+
+    /**
+     * The compiled scripts, by language and content.
+     */
+    private final Map<String, CompiledScript> m_compiledScripts = new HashMap<>();
+
+    ScriptWorker(Logger log, boolean useScriptEngines) {
+        this(log, useScriptEngines, new ScriptEngineManager());
+    }
+
+    ScriptWorker(Logger log, boolean useScriptEngines, ScriptEngineManager scriptEngineManager) {
+        m_log = log;
+        m_useScriptEngines = useScriptEngines;
+        m_bsfManager = new BSFManager();
+        m_bsfManager.registerBean("log", log);
+        m_scriptEngineManager = scriptEngineManager;
+        m_scriptEngineManager.put("log", log);
+    }
+
+    /**
+     * Executes a start, stop or reload script. The variables it defines are visible to the event scripts.
+     */
+    void execLifecycleScript(String language, String content) throws BSFException, ScriptException {
+        final ScriptEngine engine = getEngine(language);
+        if (engine == null) {
+            m_bsfManager.exec(language, "", 0, 0, content);
+        } else {
+            // Evaluate in the global bindings, which are visible to all the engines of the worker
+            engine.eval(content, m_scriptEngineManager.getBindings());
+        }
+    }
+
+    /**
+     * Executes an event script.
+     */
+    void execEventScript(String language, String content, IEvent event, OnmsNode node) throws BSFException, ScriptException {
+        final ScriptEngine engine = getEngine(language);
+        if (engine == null) {
+            m_bsfManager.registerBean("event", event);
+            if (node != null) {
+                m_bsfManager.registerBean("node", node);
+            }
+            try {
+                m_bsfManager.exec(language, "", 0, 0, content);
+            } finally {
+                if (node != null) {
+                    m_bsfManager.unregisterBean("node");
+                }
+                m_bsfManager.unregisterBean("event");
+            }
+            return;
+        }
+
+        final Bindings bindings = engine.createBindings();
+        bindings.put("event", event);
+        bindings.put("node", node);
+        bindings.put("log", m_log);
+        bindings.put("bsf", new Beans(bindings));
+        final CompiledScript compiled = getCompiledScript(engine, language, content);
+        if (compiled != null) {
+            compiled.eval(bindings);
+        } else {
+            engine.eval(content, bindings);
+        }
+    }
+
+    /**
+     * Forgets the compiled scripts, after the configuration has been reloaded.
+     */
+    void clearCompiledScripts() {
+        m_compiledScripts.clear();
+    }
+
+    private ScriptEngine getEngine(String language) {
+        if (!m_useScriptEngines) {
+            return null;
+        }
+        if (!m_engines.containsKey(language)) {
+            final ScriptEngine engine = m_scriptEngineManager.getEngineByName(language);
+            if (engine == null) {
+                m_log.debug("No JSR-223 engine for {}, using BSF", language);
+            }
+            m_engines.put(language, engine);
+        }
+        return m_engines.get(language);
+    }
+
+    private CompiledScript getCompiledScript(ScriptEngine engine, String language, String content) throws ScriptException {
+        if (!(engine instanceof Compilable)) {
+            return null;
+        }
+        final String key = language + '\0' + content;
+        CompiledScript compiled = m_compiledScripts.get(key);
+        if (compiled == null) {
+            compiled = ((Compilable) engine).compile(content);
+            m_compiledScripts.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Gives access to the bindings the way {@link BSFManager#lookupBean(String)} does.
+     */
+    public static class Beans {
+        private final Bindings m_bindings;
+
+        private Beans(Bindings bindings) {
+            m_bindings = bindings;
+        }
+
+        public Object lookupBean(String name) {
+            return m_bindings.get(name);
+        }
+    }
+}
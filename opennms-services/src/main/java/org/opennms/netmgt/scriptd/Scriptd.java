@@ -30,6 +30,8 @@ package org.opennms.netmgt.scriptd;
 
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collections;
+import java.util.Map;
 
 import org.opennms.core.spring.BeanUtils;
 import org.opennms.netmgt.config.ScriptdConfigFactory;
@@ -44,7 +46,7 @@ import org.springframework.beans.factory.access.BeanFactoryReference;
  * This class implements a script execution service. This service subscribes to
  * all events, and passes received events to the set of configured scripts.
  *
- * This services uses the Bean Scripting Framework (BSF) in order to allow
+ * This services uses the Bean Scripting Framework (BSF), or JSR-223 engines when enabled, in order to allow
  * scripts to be written in a variety of registered languages.
  *
  * @author <a href="mailto:jim.doble@tavve.com">Jim Doble</a>
@@ -64,7 +66,7 @@ public final class Scriptd extends AbstractServiceDaemon {
     /**
      * The execution launcher
      */
-    private Executor m_executor = null;
+    private volatile Executor m_executor = null;
 
     /**
      * Constructs a new Script execution daemon.
@@ -131,6 +133,26 @@ public final class Scriptd extends AbstractServiceDaemon {
         LOG.info("Scriptd stopped");
     }
 
+    /**
+     * Returns the number of events waiting for their scripts to be executed.
+     *
+     * @return the backlog
+     */
+    public long getBacklog() {
+        final Executor executor = m_executor;
+        return executor == null ? 0L : executor.getBacklog();
+    }
+
+    /**
+     * Returns the execution statistics of each script.
+     *
+     * @return the statistics, by script
+     */
+    public Map<String, String> getScriptStatistics() {
+        final Executor executor = m_executor;
+        return executor == null ? Collections.emptyMap() : executor.getScriptStatistics();
+    }
+
     /**
      * Returns the singular instance of the <em>Scriptd</em> daemon. There can
      * be only one instance of this service per virtual machine.
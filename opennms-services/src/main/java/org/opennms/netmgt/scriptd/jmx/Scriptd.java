@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.scriptd.jmx;
 
+import java.util.Map;
+
 /**
  * <p>Scriptd class.</p>
  *
@@ -92,4 +94,14 @@ public class Scriptd implements ScriptdMBean {
     public String getStatusText() {
         return org.opennms.core.fiber.Fiber.STATUS_NAMES[getStatus()];
     }
+
+    @Override
+    public long getBacklog() {
+        return org.opennms.netmgt.scriptd.Scriptd.getInstance().getBacklog();
+    }
+
+    @Override
+    public Map<String, String> getScriptStatistics() {
+        return org.opennms.netmgt.scriptd.Scriptd.getInstance().getScriptStatistics();
+    }
 }
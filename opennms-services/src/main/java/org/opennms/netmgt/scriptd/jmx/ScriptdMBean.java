@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.scriptd.jmx;
 
+import java.util.Map;
+
 import org.opennms.netmgt.daemon.BaseOnmsMBean;
 
 /**
@@ -37,4 +39,13 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface ScriptdMBean extends BaseOnmsMBean {
+    /**
+     * @return The number of events waiting for their scripts to be executed
+     */
+    public long getBacklog();
+
+    /**
+     * @return The execution count, failures and average and maximum execution time of each script
+     */
+    public Map<String, String> getScriptStatistics();
 }
@@ -41,6 +41,8 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -77,6 +79,10 @@ public class AutomationProcessor implements ReadyRunnable {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(AutomationProcessor.class);
 
+    protected static final String SET_BASED_ACTIONS_SYS_PROP = "org.opennms.netmgt.vacuumd.setBasedActions";
+
+    protected static final String BATCH_SIZE_SYS_PROP = "org.opennms.netmgt.vacuumd.actionBatchSize";
+
     private final Automation m_automation;
     private final TriggerProcessor m_trigger;
     private final ActionProcessor m_action;
@@ -90,6 +96,13 @@ public class AutomationProcessor implements ReadyRunnable {
     private volatile Schedule m_schedule;
     private volatile boolean m_ready = false;
 
+    private final AtomicLong m_runs = new AtomicLong();
+    private final AtomicLong m_totalAffectedRows = new AtomicLong();
+    private volatile int m_lastTriggerRows;
+    private volatile int m_lastAffectedRows;
+    private volatile long m_lastDuration;
+    private volatile boolean m_lastSuccessful;
+
     static class TriggerProcessor {
     	private static final Logger LOG = LoggerFactory.getLogger(TriggerProcessor.class);
 
@@ -221,15 +234,44 @@ public class AutomationProcessor implements ReadyRunnable {
     
     static class ActionProcessor {
     	private static final Logger LOG = LoggerFactory.getLogger(ActionProcessor.class);
-        
+
+        private final int m_batchSize = Integer.getInteger(BATCH_SIZE_SYS_PROP, 1000);
+
         private final String m_automationName;
         private final Action m_action;
+        private String m_setBasedSQL;
+        private int m_affectedRows;
 
         public ActionProcessor(String automationName, Action action) {
             m_automationName = automationName;
             m_action = action;
         }
 
+        /**
+         * Sets the statement processing all the trigger rows at once, used instead
+         * of executing the action for each row.
+         *
+         * @param setBasedSQL the statement, or null to execute the action for each row
+         */
+        void setSetBasedSQL(String setBasedSQL) {
+            m_setBasedSQL = setBasedSQL;
+        }
+
+        String getSetBasedSQL() {
+            return m_setBasedSQL;
+        }
+
+        /**
+         * @return the number of rows affected by the last execution of the action
+         */
+        int getAffectedRows() {
+            return m_affectedRows;
+        }
+
+        void resetAffectedRows() {
+            m_affectedRows = 0;
+        }
+
         public Action getAction() {
             return m_action;
         }
@@ -319,28 +361,57 @@ public class AutomationProcessor implements ReadyRunnable {
             } else {
                 //Convert the sql to a PreparedStatement
                 PreparedStatement actionStatement = createPreparedStatement();
-                actionStatement.executeUpdate();
+                m_affectedRows = actionStatement.executeUpdate();
                 return true;
             }
         }
 
         boolean processTriggerResults(TriggerResults triggerResults) throws SQLException {
+            if (m_setBasedSQL != null) {
+                LOG.debug("processTriggerResults: running action {} for all the trigger rows: {}", m_action.getName(), m_setBasedSQL);
+                Connection conn = Transaction.getConnection(m_action.getDataSource());
+                PreparedStatement stmt = conn.prepareStatement(m_setBasedSQL);
+                Transaction.register(stmt);
+                m_affectedRows = stmt.executeUpdate();
+                return true;
+            }
+
         	ResultSet triggerResultSet = triggerResults.getResultSet();
 
             triggerResultSet.beforeFirst();
             
             PreparedStatement actionStatement = createPreparedStatement();
-        
-            //Loop through the select results
+            m_affectedRows = 0;
+
+            //Loop through the select results, sending the statements in batches
+            int batched = 0;
             while (triggerResultSet.next()) {                        
                 //Convert the sql to a PreparedStatement
                 assignStatementParameters(actionStatement, triggerResultSet);
-                actionStatement.executeUpdate();
+                actionStatement.addBatch();
+                if (++batched >= m_batchSize) {
+                    m_affectedRows += executeBatch(actionStatement);
+                    batched = 0;
+                }
+            }
+            if (batched > 0) {
+                m_affectedRows += executeBatch(actionStatement);
             }
 
             return true;
         }
 
+        private static int executeBatch(PreparedStatement stmt) throws SQLException {
+            int affectedRows = 0;
+            for (int count : stmt.executeBatch()) {
+                // The driver may not know how many rows a statement affected
+                if (count > 0) {
+                    affectedRows += count;
+                }
+            }
+            return affectedRows;
+        }
+
 		boolean processAction(TriggerResults triggerResults) throws SQLException {
 			if (triggerResults.hasTrigger()) {
 			    return processTriggerResults(triggerResults);
@@ -640,6 +711,17 @@ public class AutomationProcessor implements ReadyRunnable {
         m_action = new ActionProcessor(m_automation.getName(), actionForAutomation);
         m_autoEvent = new AutoEventProcessor(m_automation.getName(), VacuumdConfigFactory.getInstance().getAutoEvent(m_automation.getAutoEventName().orElse(null)));
         m_actionEvent = new ActionEventProcessor(m_automation.getName(),VacuumdConfigFactory.getInstance().getActionEvent(m_automation.getActionEvent().orElse(null)));
+
+        if (Boolean.getBoolean(SET_BASED_ACTIONS_SYS_PROP) && m_trigger.hasTrigger()
+                && Objects.equals(m_trigger.getTrigger().getDataSource(), actionForAutomation.getDataSource())) {
+            final String setBasedSQL = SetBasedActionRewriter.rewrite(m_trigger.getTriggerSQL(), m_action.getActionSQL());
+            if (setBasedSQL != null) {
+                LOG.info("Automation {} will run action {} for all the rows of trigger {} at once", m_automation.getName(), m_action.getName(), m_trigger.getName());
+                m_action.setSetBasedSQL(setBasedSQL);
+            } else {
+                LOG.debug("Automation {} will run action {} for each row of trigger {}", m_automation.getName(), m_action.getName(), m_trigger.getName());
+            }
+        }
     }
     
     /**
@@ -710,13 +792,16 @@ public class AutomationProcessor implements ReadyRunnable {
         LOG.debug("runAutomation: Executing trigger: {}", m_automation.getTriggerName().orElse(null));
 
         final List<Event> eventsToSend = new LinkedList<>();
+        final long start = System.currentTimeMillis();
+        boolean success = false;
+        m_lastTriggerRows = 0;
+        m_action.resetAffectedRows();
         Transaction.begin();
         try {
             LOG.debug("runAutomation: Processing automation: {}", m_automation.getName());
 
             TriggerResults results = processTrigger();
             
-            boolean success = false;
             if (results.isSuccessful()) {
                 success = processAction(results, eventsToSend);
             }
@@ -731,6 +816,8 @@ public class AutomationProcessor implements ReadyRunnable {
             LOG.debug("runAutomation: Closing transaction for automation: {}", m_automation.getName());
             Transaction.end();
 
+            recordRun(success, System.currentTimeMillis() - start);
+
             // Always send the events out after the transaction is closed in order to ensure
             // that any event handlers can access the updated records
             LOG.debug("runAutomation: Sending {} events for automation: {}", eventsToSend.size(), m_automation.getName());
@@ -760,6 +847,25 @@ public class AutomationProcessor implements ReadyRunnable {
 		}
 	}
 
+    private void recordRun(boolean success, long duration) {
+        m_runs.incrementAndGet();
+        m_lastSuccessful = success;
+        m_lastDuration = duration;
+        m_lastAffectedRows = success ? m_action.getAffectedRows() : 0;
+        m_totalAffectedRows.addAndGet(m_lastAffectedRows);
+        LOG.debug("runAutomation: automation {} {} in {}ms, trigger rows: {}, affected rows: {}", m_automation.getName(), success ? "completed" : "did not complete", duration, m_lastTriggerRows, m_lastAffectedRows);
+    }
+
+    /**
+     * <p>getStatistics</p>
+     *
+     * @return the number of runs, the row counts and duration of the last run, and the total number of affected rows
+     */
+    public String getStatistics() {
+        return String.format("runs=%d, lastSuccessful=%s, lastDuration=%dms, lastTriggerRows=%d, lastAffectedRows=%d, totalAffectedRows=%d, setBased=%s",
+                m_runs.get(), m_lastSuccessful, m_lastDuration, m_lastTriggerRows, m_lastAffectedRows, m_totalAffectedRows.get(), m_action.getSetBasedSQL() != null);
+    }
+
 	private TriggerResults processTrigger() throws SQLException {
 		
 		if (m_trigger.hasTrigger()) {
@@ -795,6 +901,7 @@ public class AutomationProcessor implements ReadyRunnable {
         //determine if number of rows required by the trigger row-count and operator were
         //met by the trigger query, if so we'll run the action
         resultRows = countRows(triggerResultSet);
+        m_lastTriggerRows = resultRows;
         
         int triggerRowCount = m_trigger.getTrigger().getRowCount();
         String triggerOperator = m_trigger.getTrigger().getOperator();
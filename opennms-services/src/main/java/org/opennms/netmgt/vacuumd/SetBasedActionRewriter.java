@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.vacuumd;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Rewrites the action of an automation so that it processes all the rows of its
+ * trigger in a single statement, instead of being executed once per row.
+ * <p>An <code>UPDATE</code> action becomes an <code>UPDATE ... FROM (trigger)</code>,
+ * and a <code>DELETE</code> action a <code>DELETE ... USING (trigger)</code>, where each
+ * <code>${token}</code> references the corresponding column of the trigger.</p>
+ * <p>This is only equivalent when applying the action to a row once has the same effect
+ * as applying it once per matching trigger row, which is why it must be enabled explicitly.</p>
+ *
+ * @see AutomationProcessor.ActionProcessor
+ */
+public final class SetBasedActionRewriter {
+
+    static final String TRIGGER_ALIAS = "vacuumd_trigger";
+
+    private static final String ROWS_ALIAS = "vacuumd_trigger_rows";
+
+    private static final String COLUMN_PREFIX = "vacuumd_";
+
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("\\$\\{(\\w+)\\}");
+
+    private SetBasedActionRewriter() {}
+
+    /**
+     * Rewrites the action as a set based statement.
+     *
+     * @param triggerSql the trigger statement
+     * @param actionSql the action statement
+     * @return the set based statement, or null if the action can't be rewritten
+     */
+    public static String rewrite(String triggerSql, String actionSql) {
+        if (triggerSql == null || actionSql == null) {
+            return null;
+        }
+        final String trigger = stripTrailingSemicolon(triggerSql.trim());
+        final String action = stripTrailingSemicolon(actionSql.trim());
+        if (!TOKEN_PATTERN.matcher(action).find() || trigger.indexOf(';') >= 0 || action.indexOf(';') >= 0) {
+            return null;
+        }
+        if (findKeyword(action, "RETURNING", 0) >= 0) {
+            return null;
+        }
+
+        final String keyword = firstWord(action);
+        final int where = findKeyword(action, "WHERE", 0);
+        if (where < 0) {
+            return null;
+        }
+        final String source = getTriggerSource(trigger, action);
+        final String rewritten;
+        if ("UPDATE".equals(keyword)) {
+            final int set = findKeyword(action, "SET", 0);
+            if (set < 0 || set > where) {
+                return null;
+            }
+            // The trigger is joined with a FROM clause, so there must not be one already
+            final int from = findKeyword(action, "FROM", set);
+            if (from >= 0 && from < where) {
+                return null;
+            }
+            rewritten = action.substring(0, where) + "FROM " + source + " " + action.substring(where);
+        } else if ("DELETE".equals(keyword)) {
+            if (findKeyword(action, "USING", 0) >= 0) {
+                return null;
+            }
+            rewritten = action.substring(0, where) + "USING " + source + " " + action.substring(where);
+        } else {
+            return null;
+        }
+        // Tokens reference the columns of the trigger
+        final Matcher matcher = TOKEN_PATTERN.matcher(rewritten);
+        return matcher.replaceAll(TRIGGER_ALIAS + "." + COLUMN_PREFIX + "$1");
+    }
+
+    /**
+     * Only the columns used as tokens are exposed, with a prefix, so they can't be
+     * mistaken for the columns of the table the action applies to.
+     */
+    private static String getTriggerSource(String trigger, String action) {
+        final Set<String> tokens = new LinkedHashSet<>();
+        final Matcher matcher = TOKEN_PATTERN.matcher(action);
+        while (matcher.find()) {
+            tokens.add(matcher.group(1));
+        }
+        final String columns = tokens.stream()
+                .map(token -> ROWS_ALIAS + "." + token + " AS " + COLUMN_PREFIX + token)
+                .collect(Collectors.joining(", "));
+        return "(SELECT " + columns + " FROM (" + trigger + ") AS " + ROWS_ALIAS + ") AS " + TRIGGER_ALIAS;
+    }
+
+    private static String stripTrailingSemicolon(String sql) {
+        return sql.endsWith(";") ? sql.substring(0, sql.length() - 1).trim() : sql;
+    }
+
+    private static String firstWord(String sql) {
+        final Matcher matcher = Pattern.compile("^(\\w+)").matcher(sql);
+        return matcher.find() ? matcher.group(1).toUpperCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Finds a keyword outside of any parenthesis, quoted identifier or string literal.
+     *
+     * @return the index of the keyword, or -1 if it is not found
+     */
+    static int findKeyword(String sql, String keyword, int fromIndex) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            final char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && i >= fromIndex && sql.regionMatches(true, i, keyword, 0, keyword.length())
+                    && (i == 0 || !isWordChar(sql.charAt(i - 1)))
+                    && (i + keyword.length() == sql.length() || !isWordChar(sql.charAt(i + keyword.length())))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '{' || c == '}';
+    }
+}
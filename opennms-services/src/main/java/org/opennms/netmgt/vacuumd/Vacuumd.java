@@ -35,6 +35,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 import javax.sql.DataSource;
@@ -70,6 +73,8 @@ import org.slf4j.LoggerFactory;
 public class Vacuumd extends AbstractServiceDaemon implements Runnable, EventListener {
     
     private static final Logger LOG = LoggerFactory.getLogger(Vacuumd.class);
+
+    protected static final String THREADS_SYS_PROP = "org.opennms.netmgt.vacuumd.threads";
     
     private static volatile Vacuumd m_singleton;
 
@@ -83,6 +88,11 @@ public class Vacuumd extends AbstractServiceDaemon implements Runnable, EventLis
 
     private volatile EventIpcManager m_eventMgr;
 
+    /**
+     * The scheduled automations, by name.
+     */
+    private final Map<String, AutomationProcessor> m_automations = new ConcurrentHashMap<>();
+
     /**
      * <p>getSingleton</p>
      *
@@ -298,7 +308,8 @@ public class Vacuumd extends AbstractServiceDaemon implements Runnable, EventLis
     private void createScheduler() {
         try {
             LOG.debug("init: Creating Vacuumd scheduler");
-            m_scheduler = new LegacyScheduler("Vacuumd", 2);
+            // Automations run concurrently, each of them one run at a time
+            m_scheduler = new LegacyScheduler("Vacuumd", Math.max(1, Integer.getInteger(THREADS_SYS_PROP, 2)));
         } catch (RuntimeException e) {
             LOG.error("init: Failed to create Vacuumd scheduler", e);
             throw e;
@@ -315,6 +326,7 @@ public class Vacuumd extends AbstractServiceDaemon implements Runnable, EventLis
     }
 
     private void scheduleAutomations() {
+        m_automations.clear();
         for (Automation auto : getVacuumdConfig().getAutomations()) {
             try {
                 scheduleAutomation(auto);
@@ -327,6 +339,7 @@ public class Vacuumd extends AbstractServiceDaemon implements Runnable, EventLis
     private void scheduleAutomation(Automation auto) {
         if (auto.getActive()) {
             AutomationProcessor ap = new AutomationProcessor(auto);
+            m_automations.put(auto.getName(), ap);
             Schedule s = new Schedule(ap, new AutomationInterval(auto.getInterval()), m_scheduler);
             ap.setSchedule(s);
             s.schedule();
@@ -441,6 +454,17 @@ public class Vacuumd extends AbstractServiceDaemon implements Runnable, EventLis
         }
     }
 
+    /**
+     * Returns the execution statistics of the scheduled automations.
+     *
+     * @return the statistics, by automation name
+     */
+    public Map<String, String> getAutomationStatistics() {
+        final Map<String, String> statistics = new TreeMap<>();
+        m_automations.forEach((name, automation) -> statistics.put(name, automation.getStatistics()));
+        return statistics;
+    }
+
     private VacuumdConfigFactory getVacuumdConfig() {
         return VacuumdConfigFactory.getInstance();
     }
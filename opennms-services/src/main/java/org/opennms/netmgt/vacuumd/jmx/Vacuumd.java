@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.vacuumd.jmx;
 
+import java.util.Map;
+
 import org.opennms.netmgt.events.api.EventIpcManager;
 import org.opennms.netmgt.events.api.EventIpcManagerFactory;
 
@@ -135,6 +137,12 @@ public class Vacuumd implements VacuumdMBean {
         return getVacuumd().getNumAutomations();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, String> getAutomationStatistics() {
+        return getVacuumd().getAutomationStatistics();
+    }
+
     private org.opennms.netmgt.vacuumd.Vacuumd getVacuumd() {
         return org.opennms.netmgt.vacuumd.Vacuumd.getSingleton();
     }
@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.vacuumd.jmx;
 
+import java.util.Map;
+
 import org.opennms.netmgt.daemon.BaseOnmsMBean;
 
 /**
@@ -46,4 +48,11 @@ public interface VacuumdMBean extends BaseOnmsMBean {
      * @return the number of automations that have been executed
      */
     public long getNumAutomations();
+
+    /**
+     * Returns the number of runs, the row counts and the duration of the last run of each automation.
+     *
+     * @return the statistics, by automation name
+     */
+    public Map<String, String> getAutomationStatistics();
 }
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.netmgt.collectd.CollectionSetPipeline.OverflowPolicy;
+
+public class CollectionSetPipelineTest {
+
+    private CollectionSetPipeline m_pipeline;
+
+    @After
+    public void tearDown() {
+        if (m_pipeline != null) {
+            m_pipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void canPreserveTheOrderPerNode() {
+        m_pipeline = new CollectionSetPipeline(4, 10, 2, 10, OverflowPolicy.BLOCK);
+        final Map<Integer, List<Integer>> persisted = new ConcurrentHashMap<>();
+        final Map<Integer, List<Integer>> thresholded = new ConcurrentHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            for (int nodeId = 1; nodeId <= 8; nodeId++) {
+                final int nodeIdRef = nodeId;
+                final int collection = i;
+                m_pipeline.persist(nodeId, () -> persisted.computeIfAbsent(nodeIdRef, k -> Collections.synchronizedList(new ArrayList<>())).add(collection));
+                m_pipeline.threshold(nodeId, () -> thresholded.computeIfAbsent(nodeIdRef, k -> Collections.synchronizedList(new ArrayList<>())).add(collection));
+            }
+        }
+        m_pipeline.shutdown();
+
+        for (int nodeId = 1; nodeId <= 8; nodeId++) {
+            for (Map<Integer, List<Integer>> processed : Arrays.asList(persisted, thresholded)) {
+                final List<Integer> collections = processed.get(nodeId);
+                assertEquals(100, collections.size());
+                for (int i = 0; i < 100; i++) {
+                    assertEquals(Integer.valueOf(i), collections.get(i));
+                }
+            }
+        }
+        assertEquals(800, m_pipeline.getPersistStage().getCompletedCount());
+        assertEquals(800, m_pipeline.getThresholdStage().getCompletedCount());
+        assertEquals(0, m_pipeline.getPersistStage().getDroppedCount());
+    }
+
+    @Test
+    public void canDropTheOldestWhenFull() throws InterruptedException {
+        m_pipeline = new CollectionSetPipeline(1, 2, 1, 2, OverflowPolicy.DROP_OLDEST);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+
+        // Keep the only persister busy
+        m_pipeline.persist(1, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 5; i++) {
+            final int collection = i;
+            m_pipeline.persist(1, () -> persisted.add(collection));
+        }
+        assertEquals(2, m_pipeline.getPersistStage().getPendingCount());
+        assertEquals(3, m_pipeline.getPersistStage().getDroppedCount());
+
+        release.countDown();
+        m_pipeline.shutdown();
+        assertEquals(Arrays.asList(3, 4), persisted);
+    }
+
+    @Test
+    public void canContinueAfterFailures() {
+        m_pipeline = new CollectionSetPipeline(1, 10, 1, 10, OverflowPolicy.BLOCK);
+        final List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+        m_pipeline.persist(1, () -> {
+            throw new IllegalStateException("Disk full");
+        });
+        m_pipeline.persist(1, () -> persisted.add(1));
+        m_pipeline.shutdown();
+
+        assertEquals(Collections.singletonList(1), persisted);
+        assertEquals(1, m_pipeline.getPersistStage().getFailedCount());
+    }
+
+    @Test
+    public void canParseOverflowPolicies() {
+        assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.fromString(null));
+        assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.fromString("block"));
+        assertEquals(OverflowPolicy.DROP_OLDEST, OverflowPolicy.fromString("drop-oldest"));
+        assertEquals(OverflowPolicy.DROP_OLDEST, OverflowPolicy.fromString("DROP_OLDEST"));
+        assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.fromString("unknown"));
+    }
+}
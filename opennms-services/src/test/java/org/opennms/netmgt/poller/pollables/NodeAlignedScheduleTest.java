@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.pollables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.scheduler.ReadyRunnable;
+import org.opennms.netmgt.scheduler.ScheduleInterval;
+import org.opennms.netmgt.scheduler.ScheduleTimer;
+
+public class NodeAlignedScheduleTest {
+
+    private static final long INTERVAL = 300000L;
+
+    private final List<Long> m_delays = new ArrayList<>();
+
+    private final List<ReadyRunnable> m_scheduled = new ArrayList<>();
+
+    private final ScheduleTimer m_timer = new ScheduleTimer() {
+        @Override
+        public void schedule(long interval, ReadyRunnable schedule) {
+            m_delays.add(interval);
+            m_scheduled.add(schedule);
+        }
+
+        @Override
+        public long getCurrentTime() {
+            return m_now;
+        }
+    };
+
+    private final PollScheduleStats m_stats = new PollScheduleStats();
+
+    private long m_now = 1234567L;
+
+    private PollContext m_context;
+
+    private PollableNode m_node;
+
+    @Before
+    public void setUp() {
+        m_context = mock(PollContext.class);
+        m_node = new PollableNetwork(m_context).createNode(1, "node1", "Default");
+    }
+
+    @Test
+    public void testNodesAreSpreadOverTheInterval() {
+        final Set<Long> offsets = new HashSet<>();
+        for (int nodeId = 1; nodeId <= NodeAlignedSchedule.SLOTS_PER_INTERVAL; nodeId++) {
+            final long offset = NodeAlignedSchedule.getPhaseOffset(nodeId, INTERVAL);
+            assertTrue(offset >= 0 && offset < INTERVAL);
+            assertEquals(0, offset % (INTERVAL / NodeAlignedSchedule.SLOTS_PER_INTERVAL));
+            offsets.add(offset);
+        }
+        // consecutive node IDs should land on (nearly) every slot
+        assertTrue("too many collisions: " + offsets.size(), offsets.size() > NodeAlignedSchedule.SLOTS_PER_INTERVAL * 3 / 4);
+        assertEquals(NodeAlignedSchedule.getPhaseOffset(42, INTERVAL), NodeAlignedSchedule.getPhaseOffset(42, INTERVAL));
+    }
+
+    @Test
+    public void testInitialDelayLandsOnTheNodePhase() {
+        final long slotLength = INTERVAL / NodeAlignedSchedule.SLOTS_PER_INTERVAL;
+        for (final long now : new long[] { 0L, 1000L, 299999L, 1634567890123L }) {
+            final long delay = NodeAlignedSchedule.getInitialDelay(7, INTERVAL, now);
+            assertTrue(delay >= 0 && delay < INTERVAL);
+            assertEquals(0, delay % slotLength);
+            final long slotStart = (now % INTERVAL) / slotLength * slotLength;
+            assertEquals(NodeAlignedSchedule.getPhaseOffset(7, INTERVAL), (slotStart + delay) % INTERVAL);
+        }
+        assertEquals(0L, NodeAlignedSchedule.getInitialDelay(7, 0L, 1000L));
+    }
+
+    @Test
+    public void testServicesOfANodeShareABatchPerInterval() throws Exception {
+        final StubInterval icmpInterval = new StubInterval(INTERVAL);
+        final StubInterval httpInterval = new StubInterval(INTERVAL);
+        final NodeAlignedSchedule icmp = createSchedule("ICMP", icmpInterval);
+        final NodeAlignedSchedule http = createSchedule("HTTP", httpInterval);
+
+        icmp.schedule();
+        http.schedule();
+        runScheduled();
+        assertSame(icmp.getBatch(), http.getBatch());
+        assertEquals("only the batch should be scheduled", 1, m_scheduled.size());
+
+        // the service goes down and the downtime model shortens its interval
+        icmpInterval.m_interval = 30000L;
+        icmp.adjustSchedule();
+        assertNotSame(icmp.getBatch(), http.getBatch());
+        assertEquals(30000L, icmp.getBatch().getInterval());
+        assertEquals(2, m_scheduled.size());
+
+        // the old batch still polls the remaining service
+        assertEquals(1, m_node.getPollBatchMembers(http.getBatch()).size());
+
+        // once unscheduled the shortened batch retires without rescheduling
+        final NodePollBatch shortBatch = icmp.getBatch();
+        icmp.unschedule();
+        assertNull(icmp.getBatch());
+        shortBatch.run();
+        assertEquals(2, m_scheduled.size());
+    }
+
+    @Test
+    public void testNewServicesArePolledBeforeJoiningTheirBatch() throws Exception {
+        final StubInterval interval = new StubInterval(INTERVAL);
+        final NodeAlignedSchedule icmp = createSchedule("ICMP", interval);
+
+        icmp.schedule();
+        assertNull(icmp.getBatch());
+        assertEquals(Long.valueOf(0L), m_delays.get(0));
+        assertEquals(0, ((CountingSchedule)icmp).m_polls);
+
+        runScheduled();
+        assertEquals(1, ((CountingSchedule)icmp).m_polls);
+        assertEquals(INTERVAL, icmp.getBatch().getInterval());
+
+        // an initial poll that is still pending when the service is unscheduled is dropped
+        final NodeAlignedSchedule http = createSchedule("HTTP", interval);
+        http.schedule();
+        http.unschedule();
+        runScheduled();
+        assertEquals(0, ((CountingSchedule)http).m_polls);
+        assertNull(http.getBatch());
+    }
+
+    @Test
+    public void testPostponedRunsKeepTheirDueTime() throws Exception {
+        when(m_context.isNodeProcessingEnabled()).thenReturn(true);
+        final NodeAlignedSchedule icmp = createSchedule("ICMP", new StubInterval(INTERVAL));
+        icmp.schedule();
+        runScheduled();
+
+        final NodePollBatch batch = icmp.getBatch();
+        final long due = m_now + m_delays.get(m_delays.size() - 1);
+
+        // another thread holds the tree lock when the batch comes due
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread holder = new Thread(() -> m_node.withTreeLock(() -> {
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        m_now = due;
+        try {
+            batch.run();
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+        assertEquals(1, ((CountingSchedule)icmp).m_polls);
+
+        // the postponed run is measured against the original due time
+        m_now = due + 10000L;
+        batch.run();
+        assertEquals(2, ((CountingSchedule)icmp).m_polls);
+        assertEquals(10000L, m_stats.getSkewPercentile(100));
+    }
+
+    @Test
+    public void testStats() {
+        for (int i = 1; i <= 100; i++) {
+            m_stats.record(100000L, i, 2);
+        }
+        assertEquals(50L, m_stats.getSkewPercentile(50));
+        assertEquals(95L, m_stats.getSkewPercentile(95));
+        assertEquals(100L, m_stats.getSkewPercentile(100));
+        assertEquals(200L, m_stats.getTotalPolls());
+        assertEquals(200 / 60.0, m_stats.getPollRate(100000L), 0.0001);
+        assertEquals(0.0, m_stats.getPollRate(1000000L), 0.0001);
+    }
+
+    private NodeAlignedSchedule createSchedule(final String svcName, final ScheduleInterval interval) throws Exception {
+        final PollableService svc = m_node.createService(InetAddress.getByName("192.0.2.1"), svcName);
+        final NodeAlignedSchedule schedule = new CountingSchedule(svc, interval);
+        svc.setSchedule(schedule);
+        return schedule;
+    }
+
+    private void runScheduled() {
+        final List<ReadyRunnable> scheduled = new ArrayList<>(m_scheduled);
+        m_scheduled.clear();
+        m_delays.clear();
+        for (final ReadyRunnable runnable : scheduled) {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Counts polls instead of running the poller.
+     */
+    private class CountingSchedule extends NodeAlignedSchedule {
+        private int m_polls = 0;
+
+        CountingSchedule(final PollableService svc, final ScheduleInterval interval) {
+            super(svc, interval, m_timer, m_stats);
+        }
+
+        @Override
+        public void run() {
+            m_polls++;
+        }
+    }
+
+    private static class StubInterval implements ScheduleInterval {
+        private long m_interval;
+
+        StubInterval(final long interval) {
+            m_interval = interval;
+        }
+
+        @Override
+        public long getInterval() {
+            return m_interval;
+        }
+
+        @Override
+        public boolean scheduledSuspension() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.pollables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PollableNodeLockTest {
+
+    private PollableNetwork m_network;
+
+    private PollableNode m_node;
+
+    @Before
+    public void setUp() {
+        m_network = new PollableNetwork(mock(PollContext.class));
+        m_node = m_network.createNode(1, "node1", "Default");
+    }
+
+    @Test
+    public void testUncontendedLockIsCounted() throws Exception {
+        m_node.obtainTreeLock(500);
+        try {
+            // reentrant acquisition does not wait either
+            m_node.obtainTreeLock();
+            m_node.releaseTreeLock();
+        } finally {
+            m_node.releaseTreeLock();
+        }
+
+        final TreeLockStats stats = m_network.getTreeLockStats();
+        assertEquals(2, stats.getAcquisitions());
+        assertEquals(0, stats.getContendedAcquisitions());
+        assertEquals(0, stats.getTimeouts());
+    }
+
+    @Test
+    public void testTimeoutsAndWaitsAreCounted() throws Exception {
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread holder = new Thread(() -> m_node.withTreeLock(() -> {
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        try {
+            m_node.obtainTreeLock(50);
+            fail("the lock is held by another thread");
+        } catch (LockUnavailable e) {
+            // expected
+        }
+
+        release.countDown();
+        holder.join();
+        m_node.obtainTreeLock(10000);
+        m_node.releaseTreeLock();
+
+        final TreeLockStats stats = m_network.getTreeLockStats();
+        assertEquals(2, stats.getAcquisitions());
+        assertEquals(1, stats.getTimeouts());
+        assertEquals(1, stats.getContendedAcquisitions());
+        assertTrue(stats.getMaxWaitTime() >= 50);
+        assertTrue(stats.getTotalWaitTime() >= stats.getMaxWaitTime());
+    }
+
+    @Test
+    public void testNonFairLockReducesContention() throws Exception {
+        final long fair = contendedAcquisitions(true);
+        final long nonFair = contendedAcquisitions(false);
+        // A fair lock hands itself to a waiting thread on every release, while a
+        // non-fair one lets the releasing thread take it again
+        assertTrue("fair: " + fair + ", non-fair: " + nonFair, nonFair < fair);
+    }
+
+    @Test
+    public void testInterruptedWaitKeepsInterruptStatus() throws Exception {
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread holder = new Thread(() -> m_node.withTreeLock(() -> {
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        Thread.currentThread().interrupt();
+        try {
+            m_node.obtainTreeLock(10000);
+            fail("the wait should have been interrupted");
+        } catch (LockUnavailable e) {
+            assertTrue(Thread.interrupted());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+        assertEquals(1, m_network.getTreeLockStats().getTimeouts());
+    }
+
+    private static long contendedAcquisitions(boolean fair) throws Exception {
+        final PollableNetwork network = new PollableNetwork(mock(PollContext.class));
+        final PollableNode node = new PollableNode(network, 1, "node1", "Default", fair);
+        final int threads = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 2000; j++) {
+                    node.withTreeLock(() -> {
+                        // hold the lock for a short status update's worth of work
+                        final long held = System.nanoTime();
+                        while (System.nanoTime() - held < 20000) {
+                            // spin
+                        }
+                    });
+                }
+            });
+            workers[i].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(threads * 2000, network.getTreeLockStats().getAcquisitions());
+        return network.getTreeLockStats().getContendedAcquisitions();
+    }
+
+    @Test
+    public void testMemberSnapshotFollowsChanges() throws Exception {
+        final InetAddress addr = InetAddress.getByName("192.0.2.1");
+        final PollableService icmp = m_node.createService(addr, "ICMP");
+        final Collection<PollableElement> before = m_node.getInterface(addr).getMembers();
+        m_node.createService(addr, "HTTP");
+
+        assertEquals(1, before.size());
+        assertEquals(2, m_node.getInterface(addr).getMemberCount());
+
+        m_node.getInterface(addr).removeMember(icmp);
+        assertEquals(1, m_node.getInterface(addr).getMembers().size());
+        try {
+            m_node.getInterface(addr).getMembers().clear();
+            fail("member snapshots are read only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+}
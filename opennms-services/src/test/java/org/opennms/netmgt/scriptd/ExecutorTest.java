@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.scriptd;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.netmgt.config.ScriptdConfigFactory;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.dao.api.SessionUtils;
+import org.opennms.netmgt.dao.mock.MockEventIpcManager;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventIpcManagerFactory;
+import org.opennms.netmgt.events.api.model.IEvent;
+import org.opennms.netmgt.events.api.model.ImmutableMapper;
+import org.opennms.netmgt.model.events.EventBuilder;
+
+public class ExecutorTest {
+
+    private static final int THREADS = 4;
+
+    private static final List<Execution> EXECUTIONS = Collections.synchronizedList(new ArrayList<>());
+
+    private static final AtomicInteger STARTS = new AtomicInteger();
+
+    private static final AtomicInteger RELOADS = new AtomicInteger();
+
+    private static CountDownLatch s_latch;
+
+    @Rule
+    public TemporaryFolder m_folder = new TemporaryFolder();
+
+    private Executor m_executor;
+
+    @Before
+    public void setUp() throws Exception {
+        writeConfig("");
+        System.setProperty("opennms.home", m_folder.getRoot().getAbsolutePath());
+        System.setProperty(Executor.THREADS_SYS_PROP, Integer.toString(THREADS));
+        ScriptdConfigFactory.reload();
+        EventIpcManagerFactory.setIpcManager(new MockEventIpcManager());
+
+        EXECUTIONS.clear();
+        STARTS.set(0);
+        RELOADS.set(0);
+        m_executor = new Executor(ScriptdConfigFactory.getInstance(), mock(NodeDao.class), mock(SessionUtils.class));
+        m_executor.start();
+    }
+
+    @After
+    public void tearDown() {
+        m_executor.stop();
+        System.clearProperty(Executor.THREADS_SYS_PROP);
+        EventIpcManagerFactory.reset();
+    }
+
+    /**
+     * Called by the start script.
+     */
+    public static void started() {
+        STARTS.incrementAndGet();
+    }
+
+    /**
+     * Called by the reload script.
+     */
+    public static void reloaded() {
+        RELOADS.incrementAndGet();
+    }
+
+    /**
+     * Called by the event script.
+     */
+    public static void executed(Object event) {
+        EXECUTIONS.add(new Execution((IEvent) event, Thread.currentThread()));
+        s_latch.countDown();
+    }
+
+    @Test
+    public void shouldRunStartScriptsOnce() {
+        assertEquals(1, STARTS.get());
+    }
+
+    @Test
+    public void shouldRunReloadScriptsOnceBeforeUsingTheNewConfiguration() throws Exception {
+        writeConfig("  <reload-script language=\"beanshell\">org.opennms.netmgt.scriptd.ExecutorTest.reloaded();</reload-script>\n");
+
+        // the event script runs for the reload event, and for the next event
+        s_latch = new CountDownLatch(2);
+        m_executor.addTask(ImmutableMapper.fromMutableEvent(new EventBuilder(EventConstants.RELOAD_DAEMON_CONFIG_UEI, "Test")
+                .addParam(EventConstants.PARM_DAEMON_NAME, "Scriptd")
+                .getEvent()));
+        m_executor.addTask(ImmutableMapper.fromMutableEvent(new EventBuilder("uei.opennms.org/test/afterReload", "Test").getEvent()));
+        assertTrue(s_latch.await(30, TimeUnit.SECONDS));
+
+        assertEquals(1, RELOADS.get());
+        assertEquals(1, STARTS.get());
+    }
+
+    @Test
+    public void shouldHandleEventsWithTheSameUeiInOrderOnOneThread() throws Exception {
+        // find UEIs which are handled by different threads
+        final List<String> ueis = new ArrayList<>();
+        final Set<Integer> lanes = new HashSet<>();
+        for (int i = 0; ueis.size() < 3; i++) {
+            final String uei = "uei.opennms.org/test/" + i;
+            if (lanes.add(Executor.getLane(uei, THREADS))) {
+                ueis.add(uei);
+            }
+        }
+
+        final int eventsPerUei = 20;
+        s_latch = new CountDownLatch(ueis.size() * eventsPerUei);
+        final List<IEvent> events = new ArrayList<>();
+        for (int i = 0; i < eventsPerUei; i++) {
+            for (String uei : ueis) {
+                final IEvent event = ImmutableMapper.fromMutableEvent(new EventBuilder(uei, "Test").getEvent());
+                events.add(event);
+                m_executor.addTask(event);
+            }
+        }
+        assertTrue(s_latch.await(30, TimeUnit.SECONDS));
+
+        final Set<Thread> threads = new HashSet<>();
+        for (String uei : ueis) {
+            final List<Execution> executions = EXECUTIONS.stream()
+                    .filter(e -> uei.equals(e.event.getUei()))
+                    .collect(Collectors.toList());
+            assertThat(executions, hasSize(eventsPerUei));
+            assertEquals(events.stream().filter(e -> uei.equals(e.getUei())).collect(Collectors.toList()),
+                    executions.stream().map(e -> e.event).collect(Collectors.toList()));
+            final Set<Thread> threadsOfUei = executions.stream().map(e -> e.thread).collect(Collectors.toSet());
+            assertThat(threadsOfUei, hasSize(1));
+            threads.addAll(threadsOfUei);
+        }
+        assertThat(threads, hasSize(ueis.size()));
+    }
+
+    @Test
+    public void shouldSpreadUeisOverAllThreads() {
+        final Set<Integer> lanes = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            final int lane = Executor.getLane("uei.opennms.org/test/" + i, THREADS);
+            assertTrue(lane >= 0 && lane < THREADS);
+            assertEquals(lane, Executor.getLane("uei.opennms.org/test/" + i, THREADS));
+            lanes.add(lane);
+        }
+        assertThat(lanes, hasSize(THREADS));
+        // the hash code of this UEI is Integer.MIN_VALUE
+        final int lane = Executor.getLane("polygenelubricants", THREADS);
+        assertTrue(lane >= 0 && lane < THREADS);
+    }
+
+    private void writeConfig(String lifecycleScripts) throws Exception {
+        final File etc = new File(m_folder.getRoot(), "etc");
+        etc.mkdirs();
+        Files.write(new File(etc, "scriptd-configuration.xml").toPath(), (
+                "<scriptd-configuration transactional=\"false\">\n" +
+                "  <engine language=\"beanshell\" className=\"bsh.util.BeanShellBSFEngine\" extensions=\"bsh\"/>\n" +
+                "  <start-script language=\"beanshell\">org.opennms.netmgt.scriptd.ExecutorTest.started();</start-script>\n" +
+                lifecycleScripts +
+                "  <event-script language=\"beanshell\">org.opennms.netmgt.scriptd.ExecutorTest.executed(bsf.lookupBean(\"event\"));</event-script>\n" +
+                "</scriptd-configuration>\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class Execution {
+        private final IEvent event;
+        private final Thread thread;
+
+        private Execution(IEvent event, Thread thread) {
+            this.event = event;
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.scriptd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptEngineManager;
+import javax.script.SimpleBindings;
+
+import org.apache.bsf.BSFException;
+import org.apache.bsf.BSFManager;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opennms.netmgt.events.api.model.IEvent;
+import org.opennms.netmgt.model.OnmsNode;
+import org.slf4j.Logger;
+
+public class ScriptWorkerTest {
+
+    private static final List<Object[]> BSF_EXECUTIONS = Collections.synchronizedList(new ArrayList<>());
+
+    private final Logger m_log = mock(Logger.class);
+
+    private final IEvent m_event = mock(IEvent.class);
+
+    private final OnmsNode m_node = new OnmsNode();
+
+    private ScriptEngineManager m_scriptEngineManager;
+
+    private RecordingScriptEngine m_engine;
+
+    @BeforeClass
+    public static void registerBeanShell() {
+        BSFManager.registerScriptingEngine("beanshell", "bsh.util.BeanShellBSFEngine", new String[]{"bsh"});
+    }
+
+    @Before
+    public void setUp() {
+        BSF_EXECUTIONS.clear();
+        m_engine = new RecordingScriptEngine();
+        m_scriptEngineManager = new ScriptEngineManager();
+        m_scriptEngineManager.registerEngineName("recording", new RecordingScriptEngineFactory(m_engine));
+    }
+
+    /**
+     * Called by the BeanShell scripts of the tests.
+     */
+    public static void recordBsfExecution(Object event, Object node, Object log) {
+        BSF_EXECUTIONS.add(new Object[]{event, node, log});
+    }
+
+    @Test
+    public void shouldCompileEachScriptOnce() throws Exception {
+        final ScriptWorker worker = new ScriptWorker(m_log, true, m_scriptEngineManager);
+
+        worker.execEventScript("recording", "script1", m_event, m_node);
+        worker.execEventScript("recording", "script1", m_event, m_node);
+        worker.execEventScript("recording", "script2", m_event, m_node);
+        assertEquals(Arrays.asList("script1", "script2"), m_engine.compiled);
+        assertEquals(Arrays.asList("script1", "script1", "script2"), m_engine.evaluated);
+
+        // the configuration was reloaded
+        worker.clearCompiledScripts();
+        worker.execEventScript("recording", "script1", m_event, m_node);
+        assertEquals(Arrays.asList("script1", "script2", "script1"), m_engine.compiled);
+    }
+
+    @Test
+    public void shouldBindEventNodeAndLog() throws Exception {
+        final ScriptWorker worker = new ScriptWorker(m_log, true, m_scriptEngineManager);
+
+        worker.execEventScript("recording", "script", m_event, m_node);
+        worker.execEventScript("recording", "script", m_event, null);
+        assertEquals(2, m_engine.bindings.size());
+
+        final Bindings bindings = m_engine.bindings.get(0);
+        assertSame(m_event, bindings.get("event"));
+        assertSame(m_node, bindings.get("node"));
+        assertSame(m_log, bindings.get("log"));
+        assertSame(m_event, ((ScriptWorker.Beans) bindings.get("bsf")).lookupBean("event"));
+
+        // each execution gets its own bindings
+        assertNotSame(bindings, m_engine.bindings.get(1));
+        assertNull(m_engine.bindings.get(1).get("node"));
+    }
+
+    @Test
+    public void shouldEvaluateLifecycleScriptsInGlobalBindings() throws Exception {
+        final ScriptWorker worker = new ScriptWorker(m_log, true, m_scriptEngineManager);
+
+        worker.execLifecycleScript("recording", "start");
+        assertEquals(Arrays.asList("start"), m_engine.evaluated);
+        assertEquals(Collections.emptyList(), m_engine.compiled);
+        assertSame(m_scriptEngineManager.getBindings(), m_engine.bindings.get(0));
+    }
+
+    @Test
+    public void shouldFallBackToBsfWithoutScriptEngine() throws Exception {
+        final String script = "org.opennms.netmgt.scriptd.ScriptWorkerTest.recordBsfExecution("
+                + "bsf.lookupBean(\"event\"), bsf.lookupBean(\"node\"), bsf.lookupBean(\"log\"));";
+
+        // there is no JSR-223 engine for BeanShell
+        new ScriptWorker(m_log, true, m_scriptEngineManager).execEventScript("beanshell", script, m_event, m_node);
+
+        assertEquals(1, BSF_EXECUTIONS.size());
+        assertSame(m_event, BSF_EXECUTIONS.get(0)[0]);
+        assertSame(m_node, BSF_EXECUTIONS.get(0)[1]);
+        assertSame(m_log, BSF_EXECUTIONS.get(0)[2]);
+    }
+
+    @Test
+    public void shouldOnlyUseBsfWhenScriptEnginesAreDisabled() throws Exception {
+        final ScriptWorker worker = new ScriptWorker(m_log, false, m_scriptEngineManager);
+        try {
+            worker.execEventScript("recording", "script", m_event, m_node);
+            fail("BSF has no engine for the language");
+        } catch (BSFException e) {
+            // expected
+        }
+        assertEquals(Collections.emptyList(), m_engine.evaluated);
+    }
+
+    /**
+     * Records the scripts it compiles and evaluates, and the bindings they are evaluated with.
+     */
+    private static class RecordingScriptEngine extends AbstractScriptEngine implements Compilable {
+        private final List<String> compiled = new ArrayList<>();
+        private final List<String> evaluated = new ArrayList<>();
+        private final List<Bindings> bindings = new ArrayList<>();
+
+        @Override
+        public Object eval(String script, ScriptContext context) {
+            evaluated.add(script);
+            bindings.add(context.getBindings(ScriptContext.ENGINE_SCOPE));
+            return null;
+        }
+
+        @Override
+        public Object eval(Reader reader, ScriptContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Bindings createBindings() {
+            return new SimpleBindings();
+        }
+
+        @Override
+        public ScriptEngineFactory getFactory() {
+            return null;
+        }
+
+        @Override
+        public CompiledScript compile(String script) {
+            compiled.add(script);
+            return new CompiledScript() {
+                @Override
+                public Object eval(ScriptContext context) {
+                    return RecordingScriptEngine.this.eval(script, context);
+                }
+
+                @Override
+                public ScriptEngine getEngine() {
+                    return RecordingScriptEngine.this;
+                }
+            };
+        }
+
+        @Override
+        public CompiledScript compile(Reader reader) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class RecordingScriptEngineFactory implements ScriptEngineFactory {
+        private final ScriptEngine m_engine;
+
+        private RecordingScriptEngineFactory(ScriptEngine engine) {
+            m_engine = engine;
+        }
+
+        @Override
+        public ScriptEngine getScriptEngine() {
+            return m_engine;
+        }
+
+        @Override
+        public String getEngineName() {
+            return "recording";
+        }
+
+        @Override
+        public String getEngineVersion() {
+            return "1";
+        }
+
+        @Override
+        public List<String> getExtensions() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<String> getMimeTypes() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<String> getNames() {
+            return Collections.singletonList("recording");
+        }
+
+        @Override
+        public String getLanguageName() {
+            return "recording";
+        }
+
+        @Override
+        public String getLanguageVersion() {
+            return "1";
+        }
+
+        @Override
+        public Object getParameter(String key) {
+            return null;
+        }
+
+        @Override
+        public String getMethodCallSyntax(String obj, String m, String... args) {
+            return null;
+        }
+
+        @Override
+        public String getOutputStatement(String toDisplay) {
+            return null;
+        }
+
+        @Override
+        public String getProgram(String... statements) {
+            return null;
+        }
+    }
+}
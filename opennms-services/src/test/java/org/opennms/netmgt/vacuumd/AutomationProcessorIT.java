@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.vacuumd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
+import org.opennms.core.test.db.MockDatabase;
+import org.opennms.core.test.db.TemporaryDatabaseAware;
+import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
+import org.opennms.netmgt.config.VacuumdConfigFactory;
+import org.opennms.test.JUnitConfigurationEnvironment;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * Runs automations against a temporary database, with the action executed
+ * for each trigger row in JDBC batches, and rewritten as a single statement.
+ */
+@RunWith(OpenNMSJUnit4ClassRunner.class)
+@ContextConfiguration(locations={
+        "classpath:/META-INF/opennms/applicationContext-soa.xml",
+        "classpath:/META-INF/opennms/applicationContext-commonConfigs.xml",
+        "classpath:/META-INF/opennms/applicationContext-minimal-conf.xml",
+        "classpath:/META-INF/opennms/applicationContext-dao.xml",
+        "classpath*:/META-INF/opennms/component-dao.xml"
+})
+@JUnitConfigurationEnvironment
+@JUnitTemporaryDatabase(tempDbClass=MockDatabase.class,reuseDatabase=false)
+public class AutomationProcessorIT implements TemporaryDatabaseAware<MockDatabase> {
+
+    private static final String CONFIG = "<VacuumdConfiguration period=\"86400000\">\n"
+            + "  <automations>\n"
+            + "    <automation name=\"escalateOpen\" interval=\"30000\" active=\"true\" trigger-name=\"selectOpen\" action-name=\"escalate\"/>\n"
+            + "    <automation name=\"resetAll\" interval=\"30000\" active=\"true\" action-name=\"reset\"/>\n"
+            + "  </automations>\n"
+            + "  <triggers>\n"
+            + "    <trigger name=\"selectOpen\" operator=\"&gt;=\" row-count=\"1\">\n"
+            + "      <statement>SELECT id FROM vacuumd_test WHERE severity &lt; 7</statement>\n"
+            + "    </trigger>\n"
+            + "  </triggers>\n"
+            + "  <actions>\n"
+            + "    <action name=\"escalate\">\n"
+            + "      <statement>UPDATE vacuumd_test SET severity = 7 WHERE id = ${id} AND NOT acked</statement>\n"
+            + "    </action>\n"
+            + "    <action name=\"reset\">\n"
+            + "      <statement>UPDATE vacuumd_test SET severity = 1 WHERE severity = 7</statement>\n"
+            + "    </action>\n"
+            + "  </actions>\n"
+            + "</VacuumdConfiguration>\n";
+
+    private MockDatabase m_db;
+
+    @Override
+    public void setTemporaryDatabase(MockDatabase database) {
+        m_db = database;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        VacuumdConfigFactory.setInstance(new VacuumdConfigFactory(new ByteArrayInputStream(CONFIG.getBytes(StandardCharsets.UTF_8))));
+
+        m_db.update("CREATE TABLE vacuumd_test (id integer NOT NULL PRIMARY KEY, severity integer NOT NULL, acked boolean NOT NULL)");
+        m_db.update("INSERT INTO vacuumd_test VALUES (1, 1, false), (2, 2, false), (3, 3, true), (4, 7, false), (5, 7, false)");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(AutomationProcessor.BATCH_SIZE_SYS_PROP);
+        System.clearProperty(AutomationProcessor.SET_BASED_ACTIONS_SYS_PROP);
+    }
+
+    @Test
+    public void canRunActionForEachTriggerRowInBatches() throws Exception {
+        // Two rows need more than one batch
+        System.setProperty(AutomationProcessor.BATCH_SIZE_SYS_PROP, "1");
+        final AutomationProcessor processor = createProcessor("escalateOpen");
+        assertNull(processor.getAction().getSetBasedSQL());
+
+        assertTrue(processor.runAutomation());
+
+        // The acknowledged row is selected by the trigger, but not updated
+        assertEquals(2, processor.getAction().getAffectedRows());
+        assertEquals(4, m_db.countRows("SELECT * FROM vacuumd_test WHERE severity = 7"));
+        assertEquals(1, m_db.countRows("SELECT * FROM vacuumd_test WHERE id = 3 AND severity = 3"));
+        assertTrue(processor.getStatistics(), processor.getStatistics().contains("lastTriggerRows=3, lastAffectedRows=2, totalAffectedRows=2"));
+    }
+
+    @Test
+    public void canRunActionForAllTriggerRowsAtOnce() throws Exception {
+        System.setProperty(AutomationProcessor.SET_BASED_ACTIONS_SYS_PROP, "true");
+        final AutomationProcessor processor = createProcessor("escalateOpen");
+        assertNotNull(processor.getAction().getSetBasedSQL());
+
+        assertTrue(processor.runAutomation());
+
+        assertEquals(2, processor.getAction().getAffectedRows());
+        assertEquals(4, m_db.countRows("SELECT * FROM vacuumd_test WHERE severity = 7"));
+        assertEquals(1, m_db.countRows("SELECT * FROM vacuumd_test WHERE id = 3 AND severity = 3"));
+        assertTrue(processor.getStatistics(), processor.getStatistics().contains("lastTriggerRows=3, lastAffectedRows=2, totalAffectedRows=2"));
+    }
+
+    @Test
+    public void shouldCountAffectedRowsOfEachRun() throws Exception {
+        final AutomationProcessor processor = createProcessor("escalateOpen");
+        assertTrue(processor.runAutomation());
+        assertEquals(2, processor.getAction().getAffectedRows());
+
+        // Only the acknowledged row is left, and the action doesn't update it
+        assertTrue(processor.runAutomation());
+        assertEquals(0, processor.getAction().getAffectedRows());
+
+        // The trigger no longer returns enough rows, so the action doesn't run
+        m_db.update("UPDATE vacuumd_test SET severity = 7 WHERE id = 3");
+        assertFalse(processor.runAutomation());
+        assertEquals(0, processor.getAction().getAffectedRows());
+        assertTrue(processor.getStatistics(), processor.getStatistics().contains("runs=3, lastSuccessful=false"));
+        assertTrue(processor.getStatistics(), processor.getStatistics().contains("totalAffectedRows=2"));
+
+        // Without a trigger, the action runs once
+        final AutomationProcessor reset = createProcessor("resetAll");
+        assertTrue(reset.runAutomation());
+        assertEquals(5, reset.getAction().getAffectedRows());
+        assertTrue(reset.runAutomation());
+        assertEquals(0, reset.getAction().getAffectedRows());
+    }
+
+    private static AutomationProcessor createProcessor(String automationName) {
+        return new AutomationProcessor(VacuumdConfigFactory.getInstance().getAutomation(automationName));
+    }
+}
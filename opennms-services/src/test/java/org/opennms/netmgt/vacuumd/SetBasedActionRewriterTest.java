@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.vacuumd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class SetBasedActionRewriterTest {
+
+    private static final String TRIGGER = "SELECT nodeId AS _nodeid, now() AS _ts, lastEventTime AS _eventtime_from_node_up\n"
+            + "  FROM alarms\n"
+            + " WHERE eventuei='uei.opennms.org/nodes/nodeUp'";
+
+    @Test
+    public void canRewriteUpdates() {
+        final String action = "UPDATE alarms\n"
+                + "   SET severity = 2, lastautomationtime = ${_ts}\n"
+                + " WHERE eventuei = 'uei.opennms.org/nodes/pathOutage'\n"
+                + "   AND nodeid = ${_nodeid}\n"
+                + "   AND lasteventtime <= ${_eventtime_from_node_up}";
+        assertEquals("UPDATE alarms\n"
+                + "   SET severity = 2, lastautomationtime = vacuumd_trigger.vacuumd__ts\n"
+                + " FROM (SELECT vacuumd_trigger_rows._ts AS vacuumd__ts, vacuumd_trigger_rows._nodeid AS vacuumd__nodeid,"
+                + " vacuumd_trigger_rows._eventtime_from_node_up AS vacuumd__eventtime_from_node_up"
+                + " FROM (" + TRIGGER + ") AS vacuumd_trigger_rows) AS vacuumd_trigger WHERE eventuei = 'uei.opennms.org/nodes/pathOutage'\n"
+                + "   AND nodeid = vacuumd_trigger.vacuumd__nodeid\n"
+                + "   AND lasteventtime <= vacuumd_trigger.vacuumd__eventtime_from_node_up",
+                SetBasedActionRewriter.rewrite(TRIGGER, action));
+    }
+
+    @Test
+    public void canRewriteDeletes() {
+        // The trigger columns can have the same name as the ones of the table
+        assertEquals("DELETE FROM alarms USING (SELECT vacuumd_trigger_rows.alarmid AS vacuumd_alarmid"
+                + " FROM (SELECT alarmid FROM alarms WHERE severity = 2) AS vacuumd_trigger_rows) AS vacuumd_trigger"
+                + " WHERE alarmid = vacuumd_trigger.vacuumd_alarmid",
+                SetBasedActionRewriter.rewrite("SELECT alarmid FROM alarms WHERE severity = 2;", "DELETE FROM alarms WHERE alarmid = ${alarmid}"));
+    }
+
+    @Test
+    public void cannotRewriteOtherStatements() {
+        // No tokens, the action doesn't depend on the rows of the trigger
+        assertNull(SetBasedActionRewriter.rewrite(TRIGGER, "UPDATE alarms SET severity = 2 WHERE severity = 3"));
+        // No WHERE clause to join the trigger with
+        assertNull(SetBasedActionRewriter.rewrite(TRIGGER, "UPDATE alarms SET lastautomationtime = ${_ts}"));
+        // Already has a FROM clause
+        assertNull(SetBasedActionRewriter.rewrite(TRIGGER, "UPDATE alarms SET severity = 2 FROM node WHERE node.nodeid = alarms.nodeid AND alarms.nodeid = ${_nodeid}"));
+        assertNull(SetBasedActionRewriter.rewrite(TRIGGER, "DELETE FROM alarms USING node WHERE node.nodeid = ${_nodeid}"));
+        assertNull(SetBasedActionRewriter.rewrite(TRIGGER, "INSERT INTO alarms (nodeid) VALUES (${_nodeid})"));
+        assertNull(SetBasedActionRewriter.rewrite(TRIGGER, "UPDATE alarms SET severity = 2 WHERE nodeid = ${_nodeid} RETURNING alarmid"));
+        assertNull(SetBasedActionRewriter.rewrite(TRIGGER, "UPDATE alarms SET severity = 2 WHERE nodeid = ${_nodeid}; DELETE FROM node"));
+    }
+
+    @Test
+    public void canIgnoreKeywordsInSubqueriesAndLiterals() {
+        assertEquals("UPDATE alarms SET x = 'a where b'"
+                + " FROM (SELECT vacuumd_trigger_rows._id AS vacuumd__id FROM (SELECT 1 AS _id) AS vacuumd_trigger_rows) AS vacuumd_trigger"
+                + " WHERE alarmid IN (SELECT alarmid FROM alarms WHERE nodeid = vacuumd_trigger.vacuumd__id)",
+                SetBasedActionRewriter.rewrite("SELECT 1 AS _id", "UPDATE alarms SET x = 'a where b' WHERE alarmid IN (SELECT alarmid FROM alarms WHERE nodeid = ${_id})"));
+    }
+}
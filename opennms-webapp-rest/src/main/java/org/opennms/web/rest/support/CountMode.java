@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.web.rest.support;
+
+import java.util.Locale;
+
+/**
+ * How the total number of matching rows is determined when returning a page of results.
+ */
+public enum CountMode {
+    /**
+     * Count all matching rows for every request.
+     */
+    EXACT,
+    /**
+     * Reuse the exact count of an identical query for a short time.
+     */
+    CACHED,
+    /**
+     * Use the row estimate of the PostgreSQL statistics when the query is not filtered,
+     * otherwise behave like {@link #CACHED}.
+     */
+    ESTIMATED,
+    /**
+     * Do not count the matching rows.
+     */
+    NONE;
+
+    /**
+     * @return the matching mode, or the given default if the value is empty
+     * @throws IllegalArgumentException if the value does not name a mode
+     */
+    public static CountMode fromString(final String value, final CountMode defaultMode) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultMode;
+        }
+        return CountMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.web.rest.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Objects;
+
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
+
+/**
+ * <p>Opaque cursor for keyset (seek) pagination. The cursor holds the value of the
+ * order attribute and of the identifier of the last row of a page, so that the
+ * next page can be fetched with a restriction on the ordered columns instead of
+ * an {@code OFFSET} which makes the database scan and discard all the preceding rows.</p>
+ *
+ * <p>The identifier is used as tie-breaker and must be ordered in the same direction
+ * as the order attribute. Rows with a {@code null} order attribute are expected in
+ * the PostgreSQL default position: last when ascending, first when descending.</p>
+ */
+public class KeysetCursor {
+
+    private static final byte VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_SHORT = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_FLOAT = 6;
+    private static final byte TYPE_BOOLEAN = 7;
+    private static final byte TYPE_DATE = 8;
+    private static final byte TYPE_TIMESTAMP = 9;
+    private static final byte TYPE_INET_ADDRESS = 10;
+
+    private final String m_attribute;
+    private final boolean m_ascending;
+    private final int m_position;
+    private final Object m_value;
+    private final Object m_id;
+
+    /**
+     * @param attribute the order attribute
+     * @param ascending the order direction
+     * @param position the number of rows preceding the next page
+     * @param value the value of the order attribute of the last row
+     * @param id the identifier of the last row
+     */
+    public KeysetCursor(final String attribute, final boolean ascending, final int position, final Object value, final Object id) {
+        m_attribute = Objects.requireNonNull(attribute);
+        m_ascending = ascending;
+        m_position = position;
+        m_value = value;
+        m_id = Objects.requireNonNull(id);
+        if (!supports(value) || !supports(id)) {
+            throw new IllegalArgumentException("Unsupported cursor value: " + value + ", " + id);
+        }
+    }
+
+    public String getAttribute() {
+        return m_attribute;
+    }
+
+    public boolean isAscending() {
+        return m_ascending;
+    }
+
+    public int getPosition() {
+        return m_position;
+    }
+
+    public Object getValue() {
+        return m_value;
+    }
+
+    public Object getId() {
+        return m_id;
+    }
+
+    /**
+     * @return the restriction selecting the rows following the row of this cursor
+     */
+    public Restriction toRestriction(final String idAttribute) {
+        if (m_attribute.equals(idAttribute)) {
+            return m_ascending ? Restrictions.gt(idAttribute, m_id) : Restrictions.lt(idAttribute, m_id);
+        }
+        if (m_ascending) {
+            if (m_value == null) {
+                return Restrictions.and(Restrictions.isNull(m_attribute), Restrictions.gt(idAttribute, m_id));
+            }
+            return Restrictions.or(
+                    Restrictions.gt(m_attribute, m_value),
+                    Restrictions.and(Restrictions.eq(m_attribute, m_value), Restrictions.gt(idAttribute, m_id)),
+                    Restrictions.isNull(m_attribute));
+        } else {
+            if (m_value == null) {
+                return Restrictions.or(
+                        Restrictions.and(Restrictions.isNull(m_attribute), Restrictions.lt(idAttribute, m_id)),
+                        Restrictions.isNotNull(m_attribute));
+            }
+            return Restrictions.or(
+                    Restrictions.lt(m_attribute, m_value),
+                    Restrictions.and(Restrictions.eq(m_attribute, m_value), Restrictions.lt(idAttribute, m_id)));
+        }
+    }
+
+    /**
+     * @return true if values of the given type can be stored in a cursor
+     */
+    public static boolean supports(final Class<?> type) {
+        return String.class.equals(type)
+                || Integer.class.equals(type) || Integer.TYPE.equals(type)
+                || Long.class.equals(type) || Long.TYPE.equals(type)
+                || Short.class.equals(type) || Short.TYPE.equals(type)
+                || Double.class.equals(type) || Double.TYPE.equals(type)
+                || Float.class.equals(type) || Float.TYPE.equals(type)
+                || Boolean.class.equals(type) || Boolean.TYPE.equals(type)
+                || Date.class.isAssignableFrom(type)
+                || InetAddress.class.isAssignableFrom(type);
+    }
+
+    private static boolean supports(final Object value) {
+        return value == null || supports(value.getClass());
+    }
+
+    /**
+     * @return the URL-safe representation of this cursor
+     */
+    public String encode() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(m_attribute);
+            out.writeBoolean(m_ascending);
+            out.writeInt(m_position);
+            writeValue(out, m_value);
+            writeValue(out, m_id);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to encode cursor", e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the given string is not a valid cursor
+     */
+    public static KeysetCursor decode(final String cursor) {
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            if (in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Unsupported cursor version");
+            }
+            final String attribute = in.readUTF();
+            final boolean ascending = in.readBoolean();
+            final int position = in.readInt();
+            final Object value = readValue(in);
+            final Object id = readValue(in);
+            if (id == null || position < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new KeysetCursor(attribute, ascending, position, value, id);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static void writeValue(final DataOutputStream out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            final byte[] utf8 = ((String)value).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(TYPE_STRING);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer)value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long)value);
+        } else if (value instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short)value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double)value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float)value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        } else if (value instanceof Timestamp) {
+            // Keep the sub-millisecond part, otherwise rows within the same millisecond are skipped
+            out.writeByte(TYPE_TIMESTAMP);
+            out.writeLong(((Timestamp)value).getTime());
+            out.writeInt(((Timestamp)value).getNanos());
+        } else if (value instanceof Date) {
+            out.writeByte(TYPE_DATE);
+            out.writeLong(((Date)value).getTime());
+        } else if (value instanceof InetAddress) {
+            final byte[] address = ((InetAddress)value).getAddress();
+            out.writeByte(TYPE_INET_ADDRESS);
+            out.writeByte(address.length);
+            out.write(address);
+        } else {
+            throw new IllegalArgumentException("Unsupported cursor value: " + value);
+        }
+    }
+
+    private static Object readValue(final DataInputStream in) throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                final int length = in.readInt();
+                if (length < 0 || length > in.available()) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                final byte[] utf8 = new byte[length];
+                in.readFully(utf8);
+                return new String(utf8, StandardCharsets.UTF_8);
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_SHORT:
+                return in.readShort();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_DATE:
+                return new Date(in.readLong());
+            case TYPE_TIMESTAMP:
+                final Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case TYPE_INET_ADDRESS:
+                final byte[] address = new byte[in.readUnsignedByte()];
+                in.readFully(address);
+                try {
+                    return InetAddress.getByAddress(address);
+                } catch (final UnknownHostException e) {
+                    throw new IllegalArgumentException("Invalid cursor", e);
+                }
+            default:
+                throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor[attribute=" + m_attribute + ", ascending=" + m_ascending + ", position=" + m_position
+                + ", value=" + m_value + ", id=" + m_id + "]";
+    }
+}
@@ -28,7 +28,11 @@
 
 package org.opennms.web.rest.v2;
 
+import java.beans.IntrospectionException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -40,6 +44,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
@@ -54,23 +60,34 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import javax.xml.bind.annotation.XmlElement;
 
 import org.apache.cxf.jaxrs.ext.search.SearchBean;
 import org.apache.cxf.jaxrs.ext.search.SearchCondition;
 import org.apache.cxf.jaxrs.ext.search.SearchConditionVisitor;
 import org.apache.cxf.jaxrs.ext.search.SearchContext;
 import org.apache.cxf.jaxrs.ext.search.SearchParseException;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 import org.opennms.core.config.api.JaxbListWrapper;
+import org.opennms.core.criteria.Alias;
 import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.core.criteria.Order;
@@ -82,10 +99,12 @@ import org.opennms.netmgt.xml.event.Event;
 import org.opennms.web.api.ISO8601DateEditor;
 import org.opennms.web.api.RestUtils;
 import org.opennms.web.rest.support.CriteriaBehavior;
+import org.opennms.web.rest.support.CountMode;
 import org.opennms.web.rest.support.CriteriaBuilderSearchVisitor;
 import org.opennms.web.rest.support.DateCollection;
 import org.opennms.web.rest.support.FloatCollection;
 import org.opennms.web.rest.support.IntegerCollection;
+import org.opennms.web.rest.support.KeysetCursor;
 import org.opennms.web.rest.support.LongCollection;
 import org.opennms.web.rest.support.MultivaluedMapImpl;
 import org.opennms.web.rest.support.SearchProperty;
@@ -97,6 +116,8 @@ import org.opennms.web.utils.QueryParametersBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.MessageFormatter;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.NullValueInNestedPathException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.orm.hibernate3.HibernateCallback;
@@ -104,6 +125,9 @@ import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.googlecode.concurentlocks.ReadWriteUpdateLock;
 import com.googlecode.concurentlocks.ReentrantReadWriteUpdateLock;
 
@@ -135,11 +159,32 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
     @Autowired
     private SessionFactory m_sessionFactory;
 
+    @Context
+    private HttpHeaders m_httpHeaders;
+
     private final ReadWriteUpdateLock m_globalLock = new ReentrantReadWriteUpdateLock();
     private final Lock m_writeLock = m_globalLock.writeLock();
 
     protected static final int DEFAULT_LIMIT = 10;
 
+    protected static final String CURSOR_PARAM = "cursor";
+
+    protected static final String COUNT_MODE_PARAM = "countMode";
+
+    protected static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final CountMode DEFAULT_COUNT_MODE = CountMode.fromString(
+            System.getProperty("org.opennms.web.rest.v2.countMode"), CountMode.EXACT);
+
+    /**
+     * Exact counts keyed by entity and criteria, shared by all endpoints and users.
+     * Not used when ACLs are enabled.
+     */
+    private static final Cache<String, Integer> COUNT_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Long.getLong("org.opennms.web.rest.v2.countCacheSeconds", 30), TimeUnit.SECONDS)
+            .build();
+
     protected abstract OnmsDao<T,K> getDao();
     protected abstract Class<T> getDaoClass();
     protected abstract Class<Q> getQueryBeanClass();
@@ -251,21 +296,39 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
         return crit;
     }
 
+    /**
+     * <p>Get a page of the matching objects.</p>
+     *
+     * <p>By default, pages are selected with the {@code offset} parameter. When the {@code cursor}
+     * parameter is given, keyset pagination is used instead: an empty cursor selects the first page
+     * and the cursor of the following page is returned in the {@value #NEXT_CURSOR_HEADER} header.
+     * This avoids the cost of skipping rows when paging deep into large tables.</p>
+     *
+     * <p>The {@code countMode} parameter selects how the total count is determined, see {@link CountMode}.</p>
+     */
     @GET
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.APPLICATION_ATOM_XML})
     public Response get(@Context final UriInfo uriInfo, @Context final SearchContext searchContext) {
-        Criteria crit = getCriteria(uriInfo, searchContext);
+        final MultivaluedMap<String, String> params = uriInfo.getQueryParameters();
+        final CountMode countMode = getCountMode(params);
+        final Criteria crit = getCriteria(uriInfo, searchContext);
+
+        // Remove limit, offset and ordering when fetching count
+        final Criteria countCrit = crit.clone();
+        countCrit.setLimit(null);
+        countCrit.setOffset(null);
+        countCrit.setOrders(new ArrayList<Order>());
+
+        if (params.containsKey(CURSOR_PARAM)) {
+            return getPage(crit, countCrit, countMode, params.getFirst(CURSOR_PARAM));
+        }
+
         final List<T> coll = getDao().findMatching(crit);
         if (coll == null || coll.size() < 1) {
             return Response.status(Status.NO_CONTENT).build();
         } else {
             Integer offset = crit.getOffset();
-
-            // Remove limit, offset and ordering when fetching count
-            crit.setLimit(null);
-            crit.setOffset(null);
-            crit.setOrders(new ArrayList<Order>());
-            int totalCount = getDao().countMatching(crit);
+            final Integer totalCount = getTotalCount(countCrit, countMode);
 
             // Map the entities to the corresponding DTOs
             final List<D> collOfDtos = coll.stream()
@@ -277,15 +340,268 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
 
             // Make sure that offset is set to a numeric value when setting the Content-Range header
             offset = (offset == null ? 0 : offset);
-            return Response.ok(list).header("Content-Range", String.format("items %d-%d/%d", offset, offset + coll.size() - 1, totalCount)).build();
+            return Response.ok(list).header("Content-Range", getContentRange(offset, coll.size(), totalCount)).build();
         }
     }
 
+    private Response getPage(final Criteria crit, final Criteria countCrit, final CountMode countMode, final String cursorParam) {
+        // Seek on the order attribute, using the identifier as tie-breaker
+        final String idAttribute = getIdentifierAttribute();
+        final Order order = crit.getOrders().isEmpty() ? Order.asc(idAttribute) : crit.getOrders().iterator().next();
+        if (crit.getOrders().size() > 1 || !isKeysetSupported(crit, order.getAttribute())) {
+            throw getException(Status.BAD_REQUEST, "Keyset pagination is not supported when ordering by {}.", order.getAttribute());
+        }
+        final List<Order> orders = new ArrayList<>();
+        orders.add(order);
+        if (!order.getAttribute().equals(idAttribute)) {
+            orders.add(new Order(idAttribute, order.asc()));
+        }
+        crit.setOrders(orders);
+        crit.setOffset(null);
+
+        int offset = 0;
+        if (!Strings.isNullOrEmpty(cursorParam)) {
+            final KeysetCursor cursor;
+            try {
+                cursor = KeysetCursor.decode(cursorParam);
+            } catch (final IllegalArgumentException e) {
+                throw getException(Status.BAD_REQUEST, "Invalid cursor: {}", e.getMessage());
+            }
+            if (!cursor.getAttribute().equals(order.getAttribute()) || cursor.isAscending() != order.asc()) {
+                throw getException(Status.BAD_REQUEST, "The cursor does not match the order of the request.");
+            }
+            crit.addRestriction(cursor.toRestriction(idAttribute));
+            offset = cursor.getPosition();
+        }
+
+        final List<T> coll = getDao().findMatching(crit);
+        if (coll == null || coll.size() < 1) {
+            return Response.status(Status.NO_CONTENT).build();
+        }
+        final Integer totalCount = getTotalCount(countCrit, countMode);
+
+        // A full page may be followed by more rows
+        String nextCursor = null;
+        if (crit.getLimit() != null && coll.size() >= crit.getLimit()) {
+            final T last = coll.get(coll.size() - 1);
+            nextCursor = new KeysetCursor(order.getAttribute(), order.asc(), offset + coll.size(),
+                    getPropertyValue(last, resolveAttribute(crit, order.getAttribute())),
+                    getPropertyValue(last, idAttribute)).encode();
+        }
+
+        final Response.ResponseBuilder response;
+        if (isJsonAccepted()) {
+            response = Response.ok(new JsonPageOutput(coll, totalCount, offset, nextCursor), MediaType.APPLICATION_JSON_TYPE);
+        } else {
+            final JaxbListWrapper<D> list = createListWrapper(coll.stream()
+                    .map(this::mapEntityToDTO)
+                    .collect(Collectors.toList()));
+            list.setTotalCount(totalCount);
+            list.setOffset(offset);
+            response = Response.ok(list);
+        }
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.header("Content-Range", getContentRange(offset, coll.size(), totalCount)).build();
+    }
+
+    private static String getContentRange(final int offset, final int size, final Integer totalCount) {
+        return String.format("items %d-%d/%s", offset, offset + size - 1, totalCount == null ? "*" : String.valueOf(totalCount));
+    }
+
+    private CountMode getCountMode(final MultivaluedMap<String, String> params) {
+        try {
+            return CountMode.fromString(params.getFirst(COUNT_MODE_PARAM), DEFAULT_COUNT_MODE);
+        } catch (final IllegalArgumentException e) {
+            throw getException(Status.BAD_REQUEST, "Invalid count mode: {}", params.getFirst(COUNT_MODE_PARAM));
+        }
+    }
+
+    /**
+     * @param countCrit criteria without limit, offset and ordering
+     * @return the number of matching rows, or null if they are not counted
+     */
+    private Integer getTotalCount(final Criteria countCrit, final CountMode countMode) {
+        if (countMode != CountMode.NONE && Boolean.getBoolean("org.opennms.web.aclsEnabled")) {
+            // With ACLs the rows visible depend on the user, so counts can neither be shared nor estimated
+            return getDao().countMatching(countCrit);
+        }
+        switch (countMode) {
+            case NONE:
+                return null;
+            case ESTIMATED:
+                if (countCrit.getRestrictions().isEmpty()) {
+                    final Long estimate = getEstimatedRowCount();
+                    if (estimate != null) {
+                        return (int)Math.min(Integer.MAX_VALUE, estimate);
+                    }
+                }
+                // fall through to the cached count for filtered queries
+            case CACHED:
+                try {
+                    return COUNT_CACHE.get(getDaoClass().getName() + countCrit.toString(), () -> getDao().countMatching(countCrit));
+                } catch (final ExecutionException e) {
+                    throw Throwables.propagate(e.getCause());
+                }
+            case EXACT:
+            default:
+                return getDao().countMatching(countCrit);
+        }
+    }
+
+    /**
+     * @return the number of rows of the table of the entity according to the PostgreSQL statistics,
+     *   or null if there are no statistics
+     */
+    private Long getEstimatedRowCount() {
+        final ClassMetadata metadata = m_sessionFactory.getClassMetadata(getDaoClass());
+        if (!(metadata instanceof AbstractEntityPersister)) {
+            return null;
+        }
+        final String tableName = ((AbstractEntityPersister)metadata).getTableName();
+        final Number estimate = new HibernateTemplate(m_sessionFactory).execute(session ->
+                (Number)session.createSQLQuery("SELECT CAST(reltuples AS bigint) FROM pg_class WHERE oid = to_regclass(:table)")
+                        .setParameter("table", tableName)
+                        .uniqueResult());
+        // reltuples is negative if the table has never been analyzed
+        return estimate == null || estimate.longValue() < 0 ? null : estimate.longValue();
+    }
+
+    private String getIdentifierAttribute() {
+        final ClassMetadata metadata = m_sessionFactory.getClassMetadata(getDaoClass());
+        if (metadata == null || metadata.getIdentifierPropertyName() == null) {
+            throw getException(Status.BAD_REQUEST, "Keyset pagination is not supported for {}.", getDaoClass().getSimpleName());
+        }
+        return metadata.getIdentifierPropertyName();
+    }
+
+    private static boolean isKeysetSupported(final Criteria crit, final String attribute) {
+        try {
+            final Class<?> type = crit.getType(attribute);
+            return type != null && KeysetCursor.supports(type);
+        } catch (final IntrospectionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolve the aliases of the given criteria attribute to a property path of the entity.
+     */
+    private static String resolveAttribute(final Criteria crit, final String attribute) {
+        final int dot = attribute.indexOf('.');
+        if (dot < 0) {
+            return attribute;
+        }
+        final String head = attribute.substring(0, dot);
+        final String tail = attribute.substring(dot + 1);
+        if (head.equals(crit.getRootAlias())) {
+            return resolveAttribute(crit, tail);
+        }
+        for (final Alias alias : crit.getAliases()) {
+            if (alias.getAlias().equals(head) && !alias.getAlias().equals(alias.getAssociationPath())) {
+                return resolveAttribute(crit, alias.getAssociationPath() + "." + tail);
+            }
+        }
+        return attribute;
+    }
+
+    private static Object getPropertyValue(final Object entity, final String path) {
+        try {
+            return new BeanWrapperImpl(entity).getPropertyValue(path);
+        } catch (final NullValueInNestedPathException e) {
+            return null;
+        }
+    }
+
+    private boolean isJsonAccepted() {
+        if (m_httpHeaders == null) {
+            return false;
+        }
+        // The acceptable media types are sorted by preference, JSON is produced for wildcards
+        for (final MediaType mediaType : m_httpHeaders.getAcceptableMediaTypes()) {
+            if (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return true;
+            } else if (mediaType.isCompatible(MediaType.APPLICATION_XML_TYPE) || mediaType.isCompatible(MediaType.APPLICATION_ATOM_XML_TYPE)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a page of results in the same JSON format as the list wrapper of the endpoint,
+     * mapping each entity to its DTO while it is written instead of building the list of DTOs first.
+     */
+    private class JsonPageOutput implements StreamingOutput {
+        private final List<T> m_entities;
+        private final Integer m_totalCount;
+        private final int m_offset;
+        private final String m_nextCursor;
+
+        private JsonPageOutput(final List<T> entities, final Integer totalCount, final int offset, final String nextCursor) {
+            m_entities = entities;
+            m_totalCount = totalCount;
+            m_offset = offset;
+            m_nextCursor = nextCursor;
+        }
+
+        @Override
+        public void write(final OutputStream output) throws IOException {
+            final Class<?> wrapperClass = createListWrapper(Collections.emptyList()).getClass();
+            final ObjectMapper mapper = new JacksonJaxbJsonProvider().locateMapper(wrapperClass, MediaType.APPLICATION_JSON_TYPE);
+            final JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart(getListPropertyName(wrapperClass));
+            for (final T entity : m_entities) {
+                mapper.writeValue(generator, mapEntityToDTO(entity));
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("totalCount", m_totalCount == null ? m_entities.size() : m_totalCount);
+            generator.writeNumberField("count", m_entities.size());
+            generator.writeNumberField("offset", m_offset);
+            if (m_nextCursor != null) {
+                generator.writeStringField("nextCursor", m_nextCursor);
+            }
+            generator.writeEndObject();
+            generator.flush();
+        }
+    }
+
+    /**
+     * @return the name of the list property in the JSON representation of the given list wrapper
+     */
+    private static String getListPropertyName(final Class<?> wrapperClass) {
+        try {
+            final Method getObjects = wrapperClass.getMethod("getObjects");
+            final JsonProperty jsonProperty = getObjects.getAnnotation(JsonProperty.class);
+            if (jsonProperty != null && !jsonProperty.value().isEmpty()) {
+                return jsonProperty.value();
+            }
+            final XmlElement xmlElement = getObjects.getAnnotation(XmlElement.class);
+            if (xmlElement != null && !"##default".equals(xmlElement.name())) {
+                return xmlElement.name();
+            }
+        } catch (final NoSuchMethodException e) {
+            LOG.debug("No list property found on {}.", wrapperClass, e);
+        }
+        return "objects";
+    }
+
     @GET
     @Path("count")
     @Produces({MediaType.TEXT_PLAIN})
     public Response getCount(@Context final UriInfo uriInfo, @Context final SearchContext searchContext) {
-        return Response.ok(String.valueOf(getDao().countMatching(getCriteria(uriInfo, searchContext)))).build();
+        final CountMode countMode = getCountMode(uriInfo.getQueryParameters());
+        if (countMode == CountMode.EXACT) {
+            return Response.ok(String.valueOf(getDao().countMatching(getCriteria(uriInfo, searchContext)))).build();
+        }
+        final Criteria countCrit = getCriteria(uriInfo, searchContext);
+        countCrit.setLimit(null);
+        countCrit.setOffset(null);
+        countCrit.setOrders(new ArrayList<Order>());
+        final Integer totalCount = getTotalCount(countCrit, countMode);
+        return Response.ok(totalCount == null ? "*" : String.valueOf(totalCount)).build();
     }
 
     @GET
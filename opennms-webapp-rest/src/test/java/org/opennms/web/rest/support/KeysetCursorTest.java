@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.web.rest.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.junit.Test;
+import org.opennms.core.criteria.restrictions.Restrictions;
+
+public class KeysetCursorTest {
+
+    @Test
+    public void canRoundTripValues() throws Exception {
+        final Timestamp timestamp = new Timestamp(1600000000123L);
+        timestamp.setNanos(123456789);
+
+        for (final Object value : new Object[] { null, "\u00fcn\u00efc\u00f8de|value", 42, 42L, (short)42, 4.2d, 4.2f, true,
+                new Date(1600000000123L), timestamp, InetAddress.getByName("192.168.0.1"), InetAddress.getByName("fe80::1") }) {
+            final KeysetCursor cursor = KeysetCursor.decode(new KeysetCursor("eventTime", false, 20, value, 1234).encode());
+            assertEquals("eventTime", cursor.getAttribute());
+            assertFalse(cursor.isAscending());
+            assertEquals(20, cursor.getPosition());
+            assertEquals(value, cursor.getValue());
+            assertEquals(1234, cursor.getId());
+        }
+    }
+
+    @Test
+    public void canEncodeUrlSafe() {
+        final String encoded = new KeysetCursor("label", true, 10, "???>>>", "id").encode();
+        assertTrue(encoded, encoded.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    public void canSeekAfterRow() {
+        assertEquals(Restrictions.or(
+                Restrictions.gt("label", "a"),
+                Restrictions.and(Restrictions.eq("label", "a"), Restrictions.gt("id", 5)),
+                Restrictions.isNull("label")).toString(),
+                new KeysetCursor("label", true, 10, "a", 5).toRestriction("id").toString());
+
+        assertEquals(Restrictions.or(
+                Restrictions.lt("label", "a"),
+                Restrictions.and(Restrictions.eq("label", "a"), Restrictions.lt("id", 5))).toString(),
+                new KeysetCursor("label", false, 10, "a", 5).toRestriction("id").toString());
+
+        // Nulls are sorted last when ascending and first when descending
+        assertEquals(Restrictions.and(Restrictions.isNull("label"), Restrictions.gt("id", 5)).toString(),
+                new KeysetCursor("label", true, 10, null, 5).toRestriction("id").toString());
+        assertEquals(Restrictions.or(
+                Restrictions.and(Restrictions.isNull("label"), Restrictions.lt("id", 5)),
+                Restrictions.isNotNull("label")).toString(),
+                new KeysetCursor("label", false, 10, null, 5).toRestriction("id").toString());
+
+        // Only the identifier is compared when ordering by the identifier
+        assertEquals(Restrictions.lt("id", 5).toString(),
+                new KeysetCursor("id", false, 10, 5, 5).toRestriction("id").toString());
+    }
+
+    @Test
+    public void canSupportTypes() {
+        assertTrue(KeysetCursor.supports(Integer.TYPE));
+        assertTrue(KeysetCursor.supports(String.class));
+        assertTrue(KeysetCursor.supports(Timestamp.class));
+        assertTrue(KeysetCursor.supports(InetAddress.class));
+        assertFalse(KeysetCursor.supports(Object.class));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void cannotDecodeGarbage() {
+        KeysetCursor.decode("bm90IGEgY3Vyc29y");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void cannotDecodeInvalidCharacters() {
+        KeysetCursor.decode("not a cursor!");
+    }
+
+    @Test
+    public void canParseCountMode() {
+        assertEquals(CountMode.EXACT, CountMode.fromString(null, CountMode.EXACT));
+        assertEquals(CountMode.ESTIMATED, CountMode.fromString(" estimated ", CountMode.EXACT));
+        assertNull(CountMode.fromString("", null));
+    }
+}
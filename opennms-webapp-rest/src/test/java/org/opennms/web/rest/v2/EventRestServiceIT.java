@@ -28,8 +28,17 @@
 
 package org.opennms.web.rest.v2;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import javax.ws.rs.core.MediaType;
+
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
@@ -48,6 +57,8 @@ import org.opennms.netmgt.model.OnmsServiceType;
 import org.opennms.netmgt.model.OnmsSeverity;
 import org.opennms.test.JUnitConfigurationEnvironment;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.transaction.annotation.Transactional;
@@ -124,6 +135,76 @@ public class EventRestServiceIT extends AbstractSpringJerseyRestTestCase {
         Assert.assertEquals(1, object.getInt("totalCount"));
     }
 
+    @Test
+    @JUnitTemporaryDatabase
+    public void testKeysetPaging() throws Exception {
+        // Each severity is shared by two events, so the pages split ties that are broken by the identifier
+        final List<Integer> expected = m_databasePopulator.getEventDao().findAll().stream()
+                .sorted(Comparator.comparing(OnmsEvent::getEventSeverity).thenComparing(OnmsEvent::getId))
+                .map(OnmsEvent::getId)
+                .collect(Collectors.toList());
+        Assert.assertEquals(6, expected.size());
+
+        // Pages of three split the two WARNING events
+        final List<Integer> ids = new ArrayList<>();
+        final List<String> cursors = new ArrayList<>();
+        String cursor = "";
+        while (true) {
+            final MockHttpServletResponse response = getEvents("orderBy", "eventSeverity", "limit", "3", "cursor", cursor);
+            if (response.getStatus() == 204) {
+                // A full last page is followed by an empty one
+                break;
+            }
+            Assert.assertEquals(200, response.getStatus());
+            Assert.assertEquals("items " + ids.size() + "-" + (ids.size() + 2) + "/6", response.getHeader("Content-Range"));
+
+            final JSONObject object = new JSONObject(response.getContentAsString());
+            Assert.assertEquals(ids.size(), object.getInt("offset"));
+            final JSONArray events = object.getJSONArray("event");
+            Assert.assertEquals(3, events.length());
+            for (int i = 0; i < events.length(); i++) {
+                ids.add(events.getJSONObject(i).getInt("id"));
+            }
+            cursor = response.getHeader("X-Next-Cursor");
+            Assert.assertNotNull(cursor);
+            Assert.assertEquals(cursor, object.getString("nextCursor"));
+            cursors.add(cursor);
+        }
+        Assert.assertEquals(2, cursors.size());
+        Assert.assertEquals(expected, ids);
+
+        // The cursor only applies to the order it was created for
+        Assert.assertEquals(400, getEvents("orderBy", "id", "limit", "3", "cursor", cursors.get(0)).getStatus());
+        Assert.assertEquals(400, getEvents("orderBy", "eventSeverity", "order", "desc", "limit", "3", "cursor", cursors.get(0)).getStatus());
+        Assert.assertEquals(400, getEvents("limit", "3", "cursor", "invalid").getStatus());
+    }
+
+    @Test
+    @JUnitTemporaryDatabase
+    public void testCountModes() throws Exception {
+        Assert.assertEquals("items 0-2/6", getEvents("limit", "3", "countMode", "exact").getHeader("Content-Range"));
+        Assert.assertEquals("items 0-2/*", getEvents("limit", "3", "countMode", "none").getHeader("Content-Range"));
+        Assert.assertEquals(400, getEvents("limit", "3", "countMode", "sometimes").getStatus());
+        Assert.assertEquals("items 0-2/6", getEvents("limit", "3", "countMode", "cached").getHeader("Content-Range"));
+
+        final OnmsNode node = m_databasePopulator.getNodeDao().findByLabel("server01").get(0);
+        createEvent(node, "uei.opennms.org/test/somethingWentWrong", OnmsSeverity.MAJOR);
+
+        // The cached count is reused for the same query, the exact one is not
+        Assert.assertEquals("items 0-2/6", getEvents("limit", "3", "countMode", "cached").getHeader("Content-Range"));
+        Assert.assertEquals("items 0-2/7", getEvents("limit", "3", "countMode", "exact").getHeader("Content-Range"));
+
+        // With ACLs, the visible rows depend on the user, so the count is never shared
+        System.setProperty("org.opennms.web.aclsEnabled", "true");
+        try {
+            Assert.assertEquals("items 0-2/7", getEvents("limit", "3", "countMode", "cached").getHeader("Content-Range"));
+            Assert.assertEquals("items 0-2/7", getEvents("limit", "3", "countMode", "estimated").getHeader("Content-Range"));
+            Assert.assertEquals("items 0-2/*", getEvents("limit", "3", "countMode", "none").getHeader("Content-Range"));
+        } finally {
+            System.clearProperty("org.opennms.web.aclsEnabled");
+        }
+    }
+
     @Test
     @JUnitTemporaryDatabase
     public void testAddEvent() throws Exception {
@@ -132,6 +213,20 @@ public class EventRestServiceIT extends AbstractSpringJerseyRestTestCase {
         sendPost(url, event, 204);
     }
 
+    private MockHttpServletResponse getEvents(final String... parameters) throws Exception {
+        final Map<String, String> parameterMap = new LinkedHashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            parameterMap.put(parameters[i], parameters[i + 1]);
+        }
+        final MockHttpServletRequest request = createRequest(GET, "/events");
+        request.addHeader("Accept", MediaType.APPLICATION_JSON);
+        request.setParameters(parameterMap);
+        request.setQueryString(getQueryString(parameterMap));
+        final MockHttpServletResponse response = createResponse();
+        dispatch(request, response);
+        return response;
+    }
+
     private OnmsNode createNode(final NetworkBuilder builder, final String label, final String ipAddress, final OnmsCategory category) {
         builder.addNode(label).setForeignSource("JUnit").setForeignId(label).setType(NodeType.ACTIVE);
         builder.addCategory(category);
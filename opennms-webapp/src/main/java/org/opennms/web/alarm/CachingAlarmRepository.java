@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.alarm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.opennms.netmgt.dao.api.AlarmRepository;
+import org.opennms.netmgt.model.OnmsAcknowledgment;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsCriteria;
+import org.opennms.netmgt.model.alarm.AlarmSummary;
+import org.opennms.netmgt.model.alarm.SituationSummary;
+import org.opennms.web.filter.QueryResultCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * {@link AlarmRepository} that shares the counts, lists and summaries shown
+ * on the alarm pages between users for a short time.  Single alarms and
+ * their acknowledgments are always read from the delegate, and any change
+ * made to the alarms drops all cached results.
+ *
+ * Queries are identified by the serialized form of their criteria, which
+ * holds the restrictions with their values, the aliases, the orderings and
+ * the limits, unlike its string form which leaves out the values of the
+ * SQL restrictions.
+ */
+public class CachingAlarmRepository implements AlarmRepository {
+    private static final Logger LOG = LoggerFactory.getLogger(CachingAlarmRepository.class);
+
+    private AlarmRepository m_delegate;
+
+    private final QueryResultCache m_cache;
+
+    public CachingAlarmRepository() {
+        this(new QueryResultCache(Long.getLong("org.opennms.web.queryCache.ttl", 0L)));
+    }
+
+    public CachingAlarmRepository(final QueryResultCache cache) {
+        m_cache = cache;
+    }
+
+    public void setDelegate(final AlarmRepository delegate) {
+        m_delegate = delegate;
+    }
+
+    @Override
+    public int countMatchingAlarms(final OnmsCriteria criteria) {
+        return get("count", criteria, () -> m_delegate.countMatchingAlarms(criteria));
+    }
+
+    @Override
+    public int[] countMatchingAlarmsBySeverity(final OnmsCriteria criteria) {
+        final int[] counts = get("severity", criteria, () -> m_delegate.countMatchingAlarmsBySeverity(criteria));
+        return counts.clone();
+    }
+
+    @Override
+    public OnmsAlarm getAlarm(final int alarmId) {
+        return m_delegate.getAlarm(alarmId);
+    }
+
+    @Override
+    public OnmsAlarm[] getMatchingAlarms(final OnmsCriteria criteria) {
+        final OnmsAlarm[] alarms = get("list", criteria, () -> m_delegate.getMatchingAlarms(criteria));
+        return alarms.clone();
+    }
+
+    @Override
+    public void acknowledgeMatchingAlarms(final String user, final Date timestamp, final OnmsCriteria criteria) {
+        m_delegate.acknowledgeMatchingAlarms(user, timestamp, criteria);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void acknowledgeAlarms(final int[] alarmIds, final String user, final Date timestamp) {
+        m_delegate.acknowledgeAlarms(alarmIds, user, timestamp);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void acknowledgeAll(final String user, final Date timestamp) {
+        m_delegate.acknowledgeAll(user, timestamp);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void unacknowledgeMatchingAlarms(final OnmsCriteria criteria, final String user) {
+        m_delegate.unacknowledgeMatchingAlarms(criteria, user);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void unacknowledgeAlarms(final int[] alarmIds, final String user) {
+        m_delegate.unacknowledgeAlarms(alarmIds, user);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void unacknowledgeAll(final String user) {
+        m_delegate.unacknowledgeAll(user);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void escalateAlarms(final int[] alarmIds, final String user, final Date timestamp) {
+        m_delegate.escalateAlarms(alarmIds, user, timestamp);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void clearAlarms(final int[] alarmIds, final String user, final Date timestamp) {
+        m_delegate.clearAlarms(alarmIds, user, timestamp);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void updateStickyMemo(final Integer alarmId, final String body, final String user) {
+        m_delegate.updateStickyMemo(alarmId, body, user);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void updateReductionKeyMemo(final Integer alarmId, final String body, final String user) {
+        m_delegate.updateReductionKeyMemo(alarmId, body, user);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void removeStickyMemo(final Integer alarmId) {
+        m_delegate.removeStickyMemo(alarmId);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void removeReductionKeyMemo(final int alarmId) {
+        m_delegate.removeReductionKeyMemo(alarmId);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public List<OnmsAcknowledgment> getAcknowledgments(final int alarmId) {
+        return m_delegate.getAcknowledgments(alarmId);
+    }
+
+    @Override
+    public List<AlarmSummary> getCurrentNodeAlarmSummaries() {
+        return new ArrayList<>(m_cache.get("nodeSummaries", m_delegate::getCurrentNodeAlarmSummaries));
+    }
+
+    @Override
+    public List<SituationSummary> getCurrentSituationSummaries() {
+        return new ArrayList<>(m_cache.get("situationSummaries", m_delegate::getCurrentSituationSummaries));
+    }
+
+    private <T> T get(final String query, final OnmsCriteria criteria, final Supplier<T> supplier) {
+        final String key = getKey(query, criteria);
+        return key != null ? m_cache.get(key, supplier) : supplier.get();
+    }
+
+    /**
+     * Returns the key of the given query, or null when the criteria can't be
+     * serialized, in which case the query is not cached.
+     */
+    static String getKey(final String query, final OnmsCriteria criteria) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream object = new ObjectOutputStream(bytes)) {
+            object.writeObject(criteria);
+        } catch (IOException e) {
+            LOG.debug("Not caching query {} for criteria {}: {}", query, criteria, e.getMessage());
+            return null;
+        }
+        return query + '|' + Hashing.sha256().hashBytes(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.event;
+
+import java.util.Date;
+
+import org.opennms.web.event.filter.EventCriteria;
+import org.opennms.web.event.filter.EventCriteria.EventCriteriaVisitor;
+import org.opennms.web.filter.Filter;
+import org.opennms.web.filter.QueryResultCache;
+
+/**
+ * {@link WebEventRepository} that shares the counts and lists shown on the
+ * event pages between users for a short time.  Single events are always
+ * read from the delegate and acknowledging events drops all cached results.
+ */
+public class CachingWebEventRepository implements WebEventRepository {
+
+    private WebEventRepository m_delegate;
+
+    private final QueryResultCache m_cache;
+
+    public CachingWebEventRepository() {
+        this(new QueryResultCache(Long.getLong("org.opennms.web.queryCache.ttl", 0L)));
+    }
+
+    public CachingWebEventRepository(final QueryResultCache cache) {
+        m_cache = cache;
+    }
+
+    public void setDelegate(final WebEventRepository delegate) {
+        m_delegate = delegate;
+    }
+
+    @Override
+    public int countMatchingEvents(final EventCriteria criteria) {
+        return m_cache.get(getKey("count", criteria), () -> m_delegate.countMatchingEvents(criteria));
+    }
+
+    @Override
+    public int[] countMatchingEventsBySeverity(final EventCriteria criteria) {
+        final int[] counts = m_cache.get(getKey("severity", criteria), () -> m_delegate.countMatchingEventsBySeverity(criteria));
+        return counts.clone();
+    }
+
+    @Override
+    public Event getEvent(final int eventId) {
+        return m_delegate.getEvent(eventId);
+    }
+
+    @Override
+    public Event[] getMatchingEvents(final EventCriteria criteria) {
+        final Event[] events = m_cache.get(getKey("list", criteria), () -> m_delegate.getMatchingEvents(criteria));
+        return events.clone();
+    }
+
+    @Override
+    public void acknowledgeMatchingEvents(final String user, final Date timestamp, final EventCriteria criteria) {
+        m_delegate.acknowledgeMatchingEvents(user, timestamp, criteria);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void acknowledgeAll(final String user, final Date timestamp) {
+        m_delegate.acknowledgeAll(user, timestamp);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void unacknowledgeMatchingEvents(final EventCriteria criteria) {
+        m_delegate.unacknowledgeMatchingEvents(criteria);
+        m_cache.invalidateAll();
+    }
+
+    @Override
+    public void unacknowledgeAll() {
+        m_delegate.unacknowledgeAll();
+        m_cache.invalidateAll();
+    }
+
+    private static String getKey(final String query, final EventCriteria criteria) {
+        final StringBuilder key = new StringBuilder(query);
+        criteria.visit(new EventCriteriaVisitor<RuntimeException>() {
+            @Override
+            public void visitAckType(final AcknowledgeType ackType) {
+                key.append("|ack=").append(ackType);
+            }
+
+            @Override
+            public void visitFilter(final Filter filter) {
+                key.append('|').append(filter.getClass().getName()).append('=').append(filter.getDescription());
+            }
+
+            @Override
+            public void visitSortStyle(final SortStyle sortStyle) {
+                key.append("|sort=").append(sortStyle);
+            }
+
+            @Override
+            public void visitLimit(final int limit, final int offset) {
+                key.append("|limit=").append(limit).append("|offset=").append(offset);
+            }
+        });
+        return key.toString();
+    }
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.filter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * Shares the results of identical list page queries between users for a
+ * short time.  Concurrent requests for the same key wait for the query
+ * that is already running instead of issuing their own.
+ *
+ * The cache is bypassed entirely when its time to live is not positive
+ * or when ACLs are enabled, since the results then depend on the groups
+ * of the user running the query.
+ */
+public class QueryResultCache {
+
+    private static final int MAX_ENTRIES = 1000;
+
+    private static class Entry {
+        private final long m_expires;
+        private final FutureTask<Object> m_task;
+
+        private Entry(final long expires, final FutureTask<Object> task) {
+            m_expires = expires;
+            m_task = task;
+        }
+
+        private boolean isExpired(final long now) {
+            return now >= m_expires;
+        }
+    }
+
+    private final long m_ttl;
+
+    private final ConcurrentMap<String, Entry> m_entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param ttl how long results are shared, in milliseconds; 0 disables the cache
+     */
+    public QueryResultCache(final long ttl) {
+        m_ttl = ttl;
+    }
+
+    public boolean isEnabled() {
+        return m_ttl > 0 && !Boolean.getBoolean("org.opennms.web.aclsEnabled");
+    }
+
+    /**
+     * Returns the cached result for the given key, running the query if
+     * there is none or it has expired.
+     *
+     * @param key identifies the query, including all its parameters
+     * @param query runs the query
+     * @return the result of the query
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(final String key, final Supplier<T> query) {
+        if (!isEnabled()) {
+            return query.get();
+        }
+
+        final long now = System.currentTimeMillis();
+        Entry entry = m_entries.get(key);
+        if (entry == null || entry.isExpired(now)) {
+            final Entry created = new Entry(now + m_ttl, new FutureTask<Object>(query::get));
+            final boolean added = entry == null ? m_entries.putIfAbsent(key, created) == null : m_entries.replace(key, entry, created);
+            if (added) {
+                prune(now);
+                created.m_task.run();
+                entry = created;
+            } else {
+                entry = m_entries.get(key);
+                if (entry == null) {
+                    // invalidated in the meantime
+                    return query.get();
+                }
+            }
+        }
+
+        try {
+            return (T)entry.m_task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return query.get();
+        } catch (ExecutionException e) {
+            // never keep failures around
+            m_entries.remove(key, entry);
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Drops all cached results, for example after events or outages were
+     * acknowledged.
+     */
+    public void invalidateAll() {
+        m_entries.clear();
+    }
+
+    private void prune(final long now) {
+        if (m_entries.size() > MAX_ENTRIES) {
+            m_entries.values().removeIf(e -> e.isExpired(now));
+            if (m_entries.size() > MAX_ENTRIES) {
+                m_entries.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.outage;
+
+import org.opennms.netmgt.model.outage.OutageSummary;
+import org.opennms.web.filter.Filter;
+import org.opennms.web.filter.QueryResultCache;
+import org.opennms.web.outage.filter.OutageCriteria;
+import org.opennms.web.outage.filter.OutageCriteria.OutageCriteriaVisitor;
+
+/**
+ * {@link WebOutageRepository} that shares the counts and lists shown on the
+ * outage pages between users for a short time.  Single outages are always
+ * read from the delegate.
+ */
+public class CachingWebOutageRepository implements WebOutageRepository {
+
+    private WebOutageRepository m_delegate;
+
+    private final QueryResultCache m_cache;
+
+    public CachingWebOutageRepository() {
+        this(new QueryResultCache(Long.getLong("org.opennms.web.queryCache.ttl", 0L)));
+    }
+
+    public CachingWebOutageRepository(final QueryResultCache cache) {
+        m_cache = cache;
+    }
+
+    public void setDelegate(final WebOutageRepository delegate) {
+        m_delegate = delegate;
+    }
+
+    @Override
+    public int countMatchingOutages(final OutageCriteria criteria) {
+        return m_cache.get(getKey("count", criteria), () -> m_delegate.countMatchingOutages(criteria));
+    }
+
+    @Override
+    public Outage getOutage(final int outageId) {
+        return m_delegate.getOutage(outageId);
+    }
+
+    @Override
+    public Outage[] getMatchingOutages(final OutageCriteria criteria) {
+        final Outage[] outages = m_cache.get(getKey("list", criteria), () -> m_delegate.getMatchingOutages(criteria));
+        return outages.clone();
+    }
+
+    @Override
+    public int countMatchingOutageSummaries(final OutageCriteria criteria) {
+        return m_cache.get(getKey("summaryCount", criteria), () -> m_delegate.countMatchingOutageSummaries(criteria));
+    }
+
+    @Override
+    public OutageSummary[] getMatchingOutageSummaries(final OutageCriteria criteria) {
+        final OutageSummary[] summaries = m_cache.get(getKey("summaryList", criteria), () -> m_delegate.getMatchingOutageSummaries(criteria));
+        return summaries.clone();
+    }
+
+    @Override
+    public int countCurrentOutages() {
+        return m_cache.get("current", () -> m_delegate.countCurrentOutages());
+    }
+
+    @Override
+    public OutageSummary[] getCurrentOutages(final int rows) {
+        final OutageSummary[] summaries = m_cache.get("current|rows=" + rows, () -> m_delegate.getCurrentOutages(rows));
+        return summaries.clone();
+    }
+
+    private static String getKey(final String query, final OutageCriteria criteria) {
+        final StringBuilder key = new StringBuilder(query);
+        criteria.visit(new OutageCriteriaVisitor<RuntimeException>() {
+            @Override
+            public void visitOutageType(final OutageType outageType) {
+                key.append("|type=").append(outageType);
+            }
+
+            @Override
+            public void visitFilter(final Filter filter) {
+                key.append('|').append(filter.getClass().getName()).append('=').append(filter.getDescription());
+            }
+
+            @Override
+            public void visitSortStyle(final SortStyle sortStyle) {
+                key.append("|sort=").append(sortStyle);
+            }
+
+            @Override
+            public void visitGroupBy() {
+                key.append("|groupBy");
+            }
+
+            @Override
+            public void visitLimit(final int limit, final int offset) {
+                key.append("|limit=").append(limit).append("|offset=").append(offset);
+            }
+        });
+        return key.toString();
+    }
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.alarm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.dao.api.AlarmRepository;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsCriteria;
+import org.opennms.netmgt.model.OnmsSeverity;
+import org.opennms.web.alarm.filter.AlarmCriteria;
+import org.opennms.web.alarm.filter.IPAddrLikeFilter;
+import org.opennms.web.alarm.filter.SeverityFilter;
+import org.opennms.web.filter.Filter;
+import org.opennms.web.filter.QueryResultCache;
+
+public class CachingAlarmRepositoryTest {
+
+    private AlarmRepository m_delegate;
+
+    private CachingAlarmRepository m_repository;
+
+    @Before
+    public void setUp() {
+        m_delegate = mock(AlarmRepository.class);
+        m_repository = new CachingAlarmRepository(new QueryResultCache(60000));
+        m_repository.setDelegate(m_delegate);
+    }
+
+    @Test
+    public void testKeysOfIdenticalCriteriaAreEqual() {
+        assertEquals(CachingAlarmRepository.getKey("list", criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0)),
+                CachingAlarmRepository.getKey("list", criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0)));
+    }
+
+    @Test
+    public void testKeysOfDifferentCriteriaDiffer() {
+        final String key = CachingAlarmRepository.getKey("list", criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+        assertNotEquals(key, CachingAlarmRepository.getKey("count", criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0)));
+        assertNotEquals(key, CachingAlarmRepository.getKey("list", criteria(OnmsSeverity.MINOR, "10.0.0.*", SortStyle.ID, 10, 0)));
+        // The values of SQL restrictions are part of the key
+        assertNotEquals(key, CachingAlarmRepository.getKey("list", criteria(OnmsSeverity.MAJOR, "10.0.1.*", SortStyle.ID, 10, 0)));
+        assertNotEquals(key, CachingAlarmRepository.getKey("list", criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.REVERSE_ID, 10, 0)));
+        assertNotEquals(key, CachingAlarmRepository.getKey("list", criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 20, 0)));
+        assertNotEquals(key, CachingAlarmRepository.getKey("list", criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 10)));
+    }
+
+    @Test
+    public void testSharesIdenticalQueries() {
+        when(m_delegate.countMatchingAlarms(any())).thenReturn(5);
+        when(m_delegate.getMatchingAlarms(any())).thenReturn(new OnmsAlarm[] { new OnmsAlarm() });
+
+        assertEquals(5, m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0)));
+        assertEquals(5, m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0)));
+        verify(m_delegate, times(1)).countMatchingAlarms(any());
+
+        assertEquals(1, m_repository.getMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0)).length);
+        assertEquals(1, m_repository.getMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0)).length);
+        verify(m_delegate, times(1)).getMatchingAlarms(any());
+
+        m_repository.countMatchingAlarms(criteria(OnmsSeverity.MINOR, "10.0.0.*", SortStyle.ID, 10, 0));
+        verify(m_delegate, times(2)).countMatchingAlarms(any());
+    }
+
+    @Test
+    public void testReturnsCopies() {
+        when(m_delegate.getMatchingAlarms(any())).thenReturn(new OnmsAlarm[] { new OnmsAlarm() });
+        when(m_delegate.countMatchingAlarmsBySeverity(any())).thenReturn(new int[] { 1, 2 });
+
+        m_repository.getMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0))[0] = null;
+        assertEquals(1, m_repository.getMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0)).length);
+        assertNotNull(m_repository.getMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0))[0]);
+
+        m_repository.countMatchingAlarmsBySeverity(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0))[0] = 99;
+        assertEquals(1, m_repository.countMatchingAlarmsBySeverity(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0))[0]);
+    }
+
+    @Test
+    public void testInvalidatesOnAcknowledgement() {
+        final Date now = new Date();
+        m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+
+        m_repository.acknowledgeAlarms(new int[] { 1 }, "admin", now);
+        m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+        verify(m_delegate, times(2)).countMatchingAlarms(any());
+
+        m_repository.acknowledgeMatchingAlarms("admin", now, criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+        m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+        verify(m_delegate, times(3)).countMatchingAlarms(any());
+
+        m_repository.unacknowledgeAlarms(new int[] { 1 }, "admin");
+        m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+        verify(m_delegate, times(4)).countMatchingAlarms(any());
+
+        m_repository.unacknowledgeAll("admin");
+        m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+        verify(m_delegate, times(5)).countMatchingAlarms(any());
+    }
+
+    @Test
+    public void testInvalidatesOnOtherChanges() {
+        final Date now = new Date();
+        m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+
+        m_repository.clearAlarms(new int[] { 1 }, "admin", now);
+        m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+        verify(m_delegate, times(2)).countMatchingAlarms(any());
+
+        m_repository.escalateAlarms(new int[] { 1 }, "admin", now);
+        m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+        verify(m_delegate, times(3)).countMatchingAlarms(any());
+
+        m_repository.updateStickyMemo(1, "memo", "admin");
+        m_repository.countMatchingAlarms(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, 10, 0));
+        verify(m_delegate, times(4)).countMatchingAlarms(any());
+    }
+
+    @Test
+    public void testSingleAlarmsAreNotCached() {
+        m_repository.getAlarm(1);
+        m_repository.getAlarm(1);
+        verify(m_delegate, times(2)).getAlarm(1);
+
+        m_repository.getAcknowledgments(1);
+        m_repository.getAcknowledgments(1);
+        verify(m_delegate, times(2)).getAcknowledgments(1);
+    }
+
+    private static OnmsCriteria criteria(final OnmsSeverity severity, final String ipLike, final SortStyle sortStyle, final int limit, final int offset) {
+        final Filter[] filters = new Filter[] { new SeverityFilter(severity), new IPAddrLikeFilter(ipLike) };
+        return AlarmUtil.getOnmsCriteria(new AlarmCriteria(filters, sortStyle, AcknowledgeType.UNACKNOWLEDGED, limit, offset));
+    }
+}
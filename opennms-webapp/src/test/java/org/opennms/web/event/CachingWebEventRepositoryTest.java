@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.model.OnmsSeverity;
+import org.opennms.web.event.filter.EventCriteria;
+import org.opennms.web.event.filter.IPAddrLikeFilter;
+import org.opennms.web.event.filter.SeverityFilter;
+import org.opennms.web.filter.Filter;
+import org.opennms.web.filter.QueryResultCache;
+
+public class CachingWebEventRepositoryTest {
+
+    private WebEventRepository m_delegate;
+
+    private CachingWebEventRepository m_repository;
+
+    @Before
+    public void setUp() {
+        m_delegate = mock(WebEventRepository.class);
+        when(m_delegate.countMatchingEvents(any())).thenReturn(5);
+        m_repository = new CachingWebEventRepository(new QueryResultCache(60000));
+        m_repository.setDelegate(m_delegate);
+    }
+
+    @Test
+    public void testSharesIdenticalQueries() {
+        assertEquals(5, m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0)));
+        assertEquals(5, m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0)));
+        verify(m_delegate, times(1)).countMatchingEvents(any());
+    }
+
+    @Test
+    public void testDifferentQueriesAreNotShared() {
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MINOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.1.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.REVERSE_ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.ACKNOWLEDGED, 10, 0));
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 20, 0));
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 10));
+        verify(m_delegate, times(7)).countMatchingEvents(any());
+    }
+
+    @Test
+    public void testCountsAndListsAreNotShared() {
+        when(m_delegate.getMatchingEvents(any())).thenReturn(new Event[0]);
+        when(m_delegate.countMatchingEventsBySeverity(any())).thenReturn(new int[8]);
+
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        m_repository.getMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        m_repository.countMatchingEventsBySeverity(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        verify(m_delegate, times(1)).countMatchingEvents(any());
+        verify(m_delegate, times(1)).getMatchingEvents(any());
+        verify(m_delegate, times(1)).countMatchingEventsBySeverity(any());
+    }
+
+    @Test
+    public void testInvalidatesOnAcknowledgement() {
+        final Date now = new Date();
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+
+        m_repository.acknowledgeMatchingEvents("admin", now, criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        verify(m_delegate, times(2)).countMatchingEvents(any());
+
+        m_repository.acknowledgeAll("admin", now);
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        verify(m_delegate, times(3)).countMatchingEvents(any());
+
+        m_repository.unacknowledgeMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        verify(m_delegate, times(4)).countMatchingEvents(any());
+
+        m_repository.unacknowledgeAll();
+        m_repository.countMatchingEvents(criteria(OnmsSeverity.MAJOR, "10.0.0.*", SortStyle.ID, AcknowledgeType.UNACKNOWLEDGED, 10, 0));
+        verify(m_delegate, times(5)).countMatchingEvents(any());
+    }
+
+    @Test
+    public void testSingleEventsAreNotCached() {
+        m_repository.getEvent(1);
+        m_repository.getEvent(1);
+        verify(m_delegate, times(2)).getEvent(1);
+    }
+
+    private static EventCriteria criteria(final OnmsSeverity severity, final String ipLike, final SortStyle sortStyle, final AcknowledgeType ackType, final int limit, final int offset) {
+        final Filter[] filters = new Filter[] { new SeverityFilter(severity), new IPAddrLikeFilter(ipLike) };
+        return new EventCriteria(filters, sortStyle, ackType, limit, offset);
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class QueryResultCacheTest {
+
+    @Test
+    public void testSharesResults() {
+        final QueryResultCache cache = new QueryResultCache(60000);
+        final AtomicInteger queries = new AtomicInteger();
+
+        assertEquals(1, cache.get("a", queries::incrementAndGet).intValue());
+        assertEquals(1, cache.get("a", queries::incrementAndGet).intValue());
+        assertEquals(2, cache.get("b", queries::incrementAndGet).intValue());
+
+        cache.invalidateAll();
+        assertEquals(3, cache.get("a", queries::incrementAndGet).intValue());
+    }
+
+    @Test
+    public void testDisabled() {
+        final QueryResultCache cache = new QueryResultCache(0);
+        final AtomicInteger queries = new AtomicInteger();
+
+        assertEquals(1, cache.get("a", queries::incrementAndGet).intValue());
+        assertEquals(2, cache.get("a", queries::incrementAndGet).intValue());
+    }
+
+    @Test
+    public void testExpires() throws Exception {
+        final QueryResultCache cache = new QueryResultCache(10);
+        final AtomicInteger queries = new AtomicInteger();
+
+        assertEquals(1, cache.get("a", queries::incrementAndGet).intValue());
+        Thread.sleep(50);
+        assertEquals(2, cache.get("a", queries::incrementAndGet).intValue());
+    }
+
+    @Test
+    public void testFailuresAreNotCached() {
+        final QueryResultCache cache = new QueryResultCache(60000);
+        try {
+            cache.get("a", () -> { throw new IllegalArgumentException("boom"); });
+            fail("expected IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertEquals("ok", cache.get("a", () -> "ok"));
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentQueriesRunOnce() throws Exception {
+        final QueryResultCache cache = new QueryResultCache(60000);
+        final AtomicInteger queries = new AtomicInteger();
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<Integer> first = executor.submit(() -> cache.get("a", () -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return queries.incrementAndGet();
+            }));
+            running.await();
+            final Future<Integer> second = executor.submit(() -> cache.get("a", queries::incrementAndGet));
+            Thread.sleep(100);
+            release.countDown();
+
+            assertEquals(1, first.get().intValue());
+            assertEquals(1, second.get().intValue());
+            assertEquals(1, queries.get());
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
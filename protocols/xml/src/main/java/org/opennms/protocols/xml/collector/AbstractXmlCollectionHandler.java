@@ -43,6 +43,7 @@ import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -56,6 +57,7 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
@@ -216,17 +218,19 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
         NamespaceContext nc = new DocumentNamespaceResolver(doc);
         XPath xpath = XPathFactory.newInstance().newXPath();
         xpath.setNamespaceContext(nc);
+        // The object expressions are evaluated once per resource, so compile them only once per document
+        final Map<String, XPathExpression> expressions = new HashMap<>();
         for (XmlGroup group : source.getXmlGroups()) {
             LOG.debug("fillCollectionSet: getting resources for XML group {} using XPATH {}", group.getName(), group.getResourceXpath());
             Date timestamp = getTimeStamp(doc, xpath, group);
-            NodeList resourceList = (NodeList) xpath.evaluate(group.getResourceXpath(), doc, XPathConstants.NODESET);
+            NodeList resourceList = (NodeList) compile(xpath, expressions, group.getResourceXpath()).evaluate(doc, XPathConstants.NODESET);
             for (int j = 0; j < resourceList.getLength(); j++) {
                 Node resource = resourceList.item(j);
-                String resourceName = getResourceName(xpath, group, resource);
+                String resourceName = getResourceName(xpath, expressions, group, resource);
                 final Resource collectionResource = getCollectionResource(agent, resourceName, group.getResourceType(), timestamp);
                 LOG.debug("fillCollectionSet: processing resource {}", collectionResource);
                 for (XmlObject object : group.getXmlObjects()) {
-                    String value = (String) xpath.evaluate(object.getXpath(), resource, XPathConstants.STRING);
+                    String value = (String) compile(xpath, expressions, object.getXpath()).evaluate(resource, XPathConstants.STRING);
                     builder.withAttribute(collectionResource, group.getName(), object.getName(), value, object.getDataType());
                 }
                 processXmlResource(builder, collectionResource, resourceName, group.getName());
@@ -235,22 +239,97 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
         LOG.debug("fillCollectionSet: finishing collection set with {} resources and {} attributes on {}", builder.getNumResources(), builder.getNumAttributes(), agent);
     }
 
+    /**
+     * Fill collection set using the values extracted while streaming the XML document.
+     *
+     * @param agent the agent
+     * @param builder the collection set builder
+     * @param results the extracted resources
+     */
+    protected void fillCollectionSet(CollectionAgent agent, CollectionSetBuilder builder, List<StreamingXmlExtractor.GroupResult> results) {
+        for (StreamingXmlExtractor.GroupResult result : results) {
+            final XmlGroup group = result.getGroup();
+            LOG.debug("fillCollectionSet: processing {} resources for XML group {}", result.getResources().size(), group.getName());
+            Date timestamp = null;
+            if (group.getTimestampXpath() != null) {
+                if (result.getTimestamp() == null) {
+                    LOG.warn("fillCollectionSet: can't find the custom timestamp using XPATH {}",  group.getTimestampXpath());
+                } else {
+                    timestamp = parseTimeStamp(group, result.getTimestamp());
+                }
+            }
+            final List<XmlObject> objects = group.getXmlObjects();
+            for (StreamingXmlExtractor.ResourceResult resource : result.getResources()) {
+                final Resource collectionResource = getCollectionResource(agent, resource.getName(), group.getResourceType(), timestamp);
+                LOG.debug("fillCollectionSet: processing resource {}", collectionResource);
+                for (int i = 0; i < objects.size(); i++) {
+                    final XmlObject object = objects.get(i);
+                    builder.withAttribute(collectionResource, group.getName(), object.getName(), resource.getValues().get(i), object.getDataType());
+                }
+                processXmlResource(builder, collectionResource, resource.getName(), group.getName());
+            }
+        }
+        LOG.debug("fillCollectionSet: finishing collection set with {} resources and {} attributes on {}", builder.getNumResources(), builder.getNumAttributes(), agent);
+    }
+
+    /**
+     * Fill collection set from the XML document read from the input stream.
+     * <p>The document is processed in a single pass when the extractor is available,
+     * otherwise it is parsed into a DOM.</p>
+     *
+     * @param agent the agent
+     * @param builder the collection set builder
+     * @param source the source
+     * @param request the request
+     * @param is the input stream
+     * @param extractor the compiled extractor for the source, or null if the source is not supported by it
+     * @throws Exception the exception
+     */
+    protected void fillCollectionSetFromStream(CollectionAgent agent, CollectionSetBuilder builder, XmlSource source, Request request, InputStream is, StreamingXmlExtractor extractor) throws Exception {
+        if (extractor == null) {
+            fillCollectionSet(agent, builder, source, getXmlDocument(is, request));
+            return;
+        }
+        is = preProcessHtml(request, is);
+        is = applyXsltTransformation(request, is);
+        fillCollectionSet(agent, builder, extractor.extract(is));
+    }
+
+    /**
+     * Compiles the XPath expression, reusing the expressions already compiled.
+     *
+     * @param xpath the XPath
+     * @param expressions the compiled expressions
+     * @param expression the expression
+     * @return the compiled expression
+     * @throws XPathExpressionException the x path expression exception
+     */
+    private static XPathExpression compile(XPath xpath, Map<String, XPathExpression> expressions, String expression) throws XPathExpressionException {
+        XPathExpression compiled = expressions.get(expression);
+        if (compiled == null) {
+            compiled = xpath.compile(expression);
+            expressions.put(expression, compiled);
+        }
+        return compiled;
+    }
+
     /**
      * Gets the resource name.
      *
      * @param xpath the Xpath
+     * @param expressions the compiled expressions
      * @param group the group
      * @param resource the resource
      * @return the resource name
      * @throws XPathExpressionException the x path expression exception
      */
-    private String getResourceName(XPath xpath, XmlGroup group, Node resource) throws XPathExpressionException {
+    private String getResourceName(XPath xpath, Map<String, XPathExpression> expressions, XmlGroup group, Node resource) throws XPathExpressionException {
         // Processing multiple-key resource name.
         if (group.hasMultipleResourceKey()) {
             List<String> keys = new ArrayList<>();
             for (String key : group.getXmlResourceKey().getKeyXpathList()) {
                 LOG.debug("getResourceName: getting key for resource's name using {}", key);
-                Node keyNode = (Node) xpath.evaluate(key, resource, XPathConstants.NODE);
+                Node keyNode = (Node) compile(xpath, expressions, key).evaluate(resource, XPathConstants.NODE);
                 keys.add(keyNode.getNodeValue() == null ? keyNode.getTextContent() : keyNode.getNodeValue());
             }
             return StringUtils.join(keys, "_");
@@ -262,7 +341,7 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
         }
         // Processing single-key resource name.
         LOG.debug("getResourceName: getting key for resource's name using {}", group.getKeyXpath());
-        Node keyNode = (Node) xpath.evaluate(group.getKeyXpath(), resource, XPathConstants.NODE);
+        Node keyNode = (Node) compile(xpath, expressions, group.getKeyXpath()).evaluate(resource, XPathConstants.NODE);
         return keyNode.getNodeValue() == null ? keyNode.getTextContent() : keyNode.getNodeValue();
     }
 
@@ -322,22 +401,32 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
         if (group.getTimestampXpath() == null) {
             return null;
         }
-        String pattern = group.getTimestampFormat() == null ? "yyyy-MM-dd HH:mm:ss" : group.getTimestampFormat();
-        LOG.debug("getTimeStamp: retrieving custom timestamp to be used when updating RRDs using XPATH {} and pattern {}", group.getTimestampXpath(), pattern);
+        LOG.debug("getTimeStamp: retrieving custom timestamp to be used when updating RRDs using XPATH {}", group.getTimestampXpath());
         Node tsNode = (Node) xpath.evaluate(group.getTimestampXpath(), doc, XPathConstants.NODE);
         if (tsNode == null) {
             LOG.warn("getTimeStamp: can't find the custom timestamp using XPATH {}",  group.getTimestampXpath());
             return null;
         }
+        return parseTimeStamp(group, tsNode.getNodeValue() == null ? tsNode.getTextContent() : tsNode.getNodeValue());
+    }
+
+    /**
+     * Parses the time stamp using the format of the group.
+     *
+     * @param group the group
+     * @param value the time stamp value
+     * @return the time stamp, or null if it can't be parsed
+     */
+    protected Date parseTimeStamp(XmlGroup group, String value) {
+        String pattern = group.getTimestampFormat() == null ? "yyyy-MM-dd HH:mm:ss" : group.getTimestampFormat();
         Date date = null;
-        String value = tsNode.getNodeValue() == null ? tsNode.getTextContent() : tsNode.getNodeValue();
-        LOG.debug("getTimeStamp: time stamp value is {}", value);
+        LOG.debug("parseTimeStamp: time stamp value is {}, pattern is {}", value, pattern);
         try {
             DateTimeFormatter dtf = DateTimeFormat.forPattern(pattern);
             DateTime dateTime = dtf.parseDateTime(value);
             date = dateTime.toDate();
         } catch (Exception e) {
-            LOG.warn("getTimeStamp: can't convert custom timetime {} using pattern {}", value,  pattern);
+            LOG.warn("parseTimeStamp: can't convert custom timetime {} using pattern {}", value,  pattern);
         }
         return date;
     }
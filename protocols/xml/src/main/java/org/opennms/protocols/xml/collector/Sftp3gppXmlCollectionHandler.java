@@ -31,6 +31,7 @@ package org.opennms.protocols.xml.collector;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.List;
 import java.util.Map;
 
@@ -50,7 +51,6 @@ import org.opennms.protocols.xml.config.XmlDataCollection;
 import org.opennms.protocols.xml.config.XmlSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 
 /**
  * The custom implementation of the interface XmlCollectionHandler for 3GPP XML Data.
@@ -87,14 +87,15 @@ public class Sftp3gppXmlCollectionHandler extends AbstractXmlCollectionHandler {
                 }
                 final String urlStr = source.getUrl();
                 final Request request = source.getRequest();
+                // Each file is read in a single pass when the expressions of the source allow it
+                final StreamingXmlExtractor extractor = StreamingXmlExtractor.compile(source);
                 URL url = UrlFactory.getUrl(urlStr, request);
                 String lastFile = Sftp3gppUtils.getLastFilename(getBlobStore(), getServiceName(), resourcePath, url.getPath());
                 connection = (Sftp3gppUrlConnection) url.openConnection();
                 if (lastFile == null) {
                     lastFile = connection.get3gppFileName();
                     LOG.debug("collect(single): retrieving file from {}{}{} from {}", url.getPath(), File.separatorChar, lastFile, agent.getHostAddress());
-                    Document doc = getXmlDocument(urlStr, request);
-                    fillCollectionSet(agent, builder, source, doc);
+                    fillCollectionSet(agent, builder, source, urlStr, request, extractor);
                     Sftp3gppUtils.setLastFilename(getBlobStore(), getServiceName(), resourcePath, url.getPath(), lastFile);
                     Sftp3gppUtils.deleteFile(connection, lastFile);
                 } else {
@@ -107,9 +108,7 @@ public class Sftp3gppXmlCollectionHandler extends AbstractXmlCollectionHandler {
                             LOG.debug("collect(multiple): retrieving file {} from {}", fileName, agent.getHostAddress());
                             InputStream is = connection.getFile(fileName);
                             try {
-                                Document doc = getXmlDocument(is, request);
-                                IOUtils.closeQuietly(is);
-                                fillCollectionSet(agent, builder, source, doc);
+                                fillCollectionSetFromStream(agent, builder, source, request, is, extractor);
                             } finally {
                                 IOUtils.closeQuietly(is);
                             }
@@ -134,6 +133,31 @@ public class Sftp3gppXmlCollectionHandler extends AbstractXmlCollectionHandler {
         }
     }
 
+    /**
+     * Fill collection set from the file referenced by the URL.
+     *
+     * @param agent the agent
+     * @param builder the collection set builder
+     * @param source the source
+     * @param urlString the URL string
+     * @param request the request
+     * @param extractor the compiled extractor for the source, or null if the source is not supported by it
+     * @throws Exception the exception
+     */
+    private void fillCollectionSet(CollectionAgent agent, CollectionSetBuilder builder, XmlSource source, String urlString, Request request, StreamingXmlExtractor extractor) throws Exception {
+        InputStream is = null;
+        URLConnection c = null;
+        try {
+            URL url = UrlFactory.getUrl(urlString, request);
+            c = url.openConnection();
+            is = c.getInputStream();
+            fillCollectionSetFromStream(agent, builder, source, request, is, extractor);
+        } finally {
+            IOUtils.closeQuietly(is);
+            UrlFactory.disconnect(c);
+        }
+    }
+
     @Override
     protected void fillCollectionSet(String urlString, Request request, CollectionAgent agent, CollectionSetBuilder builder, XmlSource source) throws Exception {
         // This handler has a custom implementation of the collect method, so there is no need to do something special here.
@@ -0,0 +1,663 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.protocols.xml.collector;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.apache.commons.lang.StringUtils;
+import org.opennms.protocols.xml.config.XmlGroup;
+import org.opennms.protocols.xml.config.XmlObject;
+import org.opennms.protocols.xml.config.XmlSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extracts the values of an XML source in a single pass over the document, without building a DOM.
+ * <p>This supports the subset of XPath commonly used on XML collections: location paths made of
+ * child steps (element names or <code>*</code>), each optionally filtered by attribute equality
+ * predicates like <code>[@p=1]</code> or <code>[@name='value']</code>, and optionally ending with
+ * an attribute like <code>@measObjLdn</code>. Resource and timestamp paths must be absolute, key and
+ * object paths must be relative to the resource.</p>
+ * <p>Sources using anything else must be processed with a DOM.</p>
+ *
+ * @see AbstractXmlCollectionHandler#fillCollectionSet(org.opennms.netmgt.collection.api.CollectionAgent, org.opennms.netmgt.collection.support.builder.CollectionSetBuilder, XmlSource, org.w3c.dom.Document)
+ */
+public class StreamingXmlExtractor {
+
+    /** The Constant LOG. */
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingXmlExtractor.class);
+
+    private static final String NAME = "[A-Za-z_][\\w.\\-]*(?::[A-Za-z_][\\w.\\-]*)?";
+
+    private static final Pattern STEP_PATTERN = Pattern.compile("^(\\*|" + NAME + ")((?:\\[.*\\])*)$");
+
+    private static final Pattern PREDICATE_PATTERN = Pattern.compile("\\[\\s*@(" + NAME + ")\\s*=\\s*(?:'([^']*)'|\"([^\"]*)\"|(-?\\d+(?:\\.\\d+)?))\\s*\\]");
+
+    private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile("^@(" + NAME + ")$");
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    /** The compiled groups, in the order of the configuration. */
+    private final List<CompiledGroup> m_groups;
+
+    /** The compiled timestamp paths, by expression. */
+    private final Map<String, Path> m_timestamps;
+
+    private StreamingXmlExtractor(List<CompiledGroup> groups, Map<String, Path> timestamps) {
+        m_groups = groups;
+        m_timestamps = timestamps;
+    }
+
+    /**
+     * Compiles the XPath expressions of the given source.
+     *
+     * @param source the XML source
+     * @return the extractor, or null if any of the expressions is not supported
+     */
+    public static StreamingXmlExtractor compile(XmlSource source) {
+        final List<CompiledGroup> groups = new ArrayList<>();
+        final Map<String, Path> timestamps = new HashMap<>();
+        for (XmlGroup group : source.getXmlGroups()) {
+            final Path resourcePath = parse(group.getResourceXpath(), true);
+            if (resourcePath == null || resourcePath.attribute != null) {
+                LOG.debug("compile: resource XPath {} of group {} is not supported", group.getResourceXpath(), group.getName());
+                return null;
+            }
+            final CompiledGroup compiled = new CompiledGroup(group, resourcePath);
+            if (group.hasMultipleResourceKey()) {
+                for (String key : group.getXmlResourceKey().getKeyXpathList()) {
+                    if (!compiled.addKey(parseRelative(key))) {
+                        LOG.debug("compile: key XPath {} of group {} is not supported", key, group.getName());
+                        return null;
+                    }
+                }
+            } else if (group.getKeyXpath() != null) {
+                if (!compiled.addKey(parseRelative(group.getKeyXpath()))) {
+                    LOG.debug("compile: key XPath {} of group {} is not supported", group.getKeyXpath(), group.getName());
+                    return null;
+                }
+            }
+            for (XmlObject object : group.getXmlObjects()) {
+                final Path objectPath = parseRelative(object.getXpath());
+                if (objectPath == null) {
+                    LOG.debug("compile: XPath {} of object {} is not supported", object.getXpath(), object.getName());
+                    return null;
+                }
+                compiled.objects.add(objectPath);
+            }
+            if (group.getTimestampXpath() != null && !timestamps.containsKey(group.getTimestampXpath())) {
+                final Path timestampPath = parse(group.getTimestampXpath(), true);
+                if (timestampPath == null) {
+                    LOG.debug("compile: timestamp XPath {} of group {} is not supported", group.getTimestampXpath(), group.getName());
+                    return null;
+                }
+                timestamps.put(group.getTimestampXpath(), timestampPath);
+            }
+            groups.add(compiled);
+        }
+        return new StreamingXmlExtractor(groups, timestamps);
+    }
+
+    /**
+     * Extracts the resources of all the groups from the given document.
+     *
+     * @param is the input stream of the XML document
+     * @return the extracted resources, by group in the order of the configuration
+     * @throws XMLStreamException if the document can't be parsed
+     * @throws XPathExpressionException if the key of a resource can't be found
+     */
+    public List<GroupResult> extract(InputStream is) throws XMLStreamException, XPathExpressionException {
+        final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(is);
+        try {
+            return new Pass(reader).run();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static Path parseRelative(String xpath) {
+        return parse(xpath, false);
+    }
+
+    /**
+     * Parses the supported subset of XPath.
+     *
+     * @param xpath the XPath expression
+     * @param absolute whether the expression must be an absolute location path
+     * @return the path, or null if the expression is not supported
+     */
+    static Path parse(String xpath, boolean absolute) {
+        if (xpath == null) {
+            return null;
+        }
+        String expr = xpath.trim();
+        if (absolute) {
+            if (!expr.startsWith("/") || expr.startsWith("//")) {
+                return null;
+            }
+            expr = expr.substring(1);
+        } else if (expr.startsWith("/")) {
+            return null;
+        }
+        final List<String> parts = split(expr);
+        if (parts == null || parts.isEmpty()) {
+            return null;
+        }
+        final Path path = new Path();
+        for (int i = 0; i < parts.size(); i++) {
+            final String part = parts.get(i).trim();
+            final Matcher attribute = ATTRIBUTE_PATTERN.matcher(part);
+            if (attribute.matches()) {
+                // Attributes are only supported as the last step
+                if (i != parts.size() - 1) {
+                    return null;
+                }
+                path.attribute = attribute.group(1);
+                break;
+            }
+            final Step step = parseStep(part);
+            if (step == null) {
+                return null;
+            }
+            path.steps.add(step);
+        }
+        if (absolute && path.steps.isEmpty()) {
+            return null;
+        }
+        return path;
+    }
+
+    private static Step parseStep(String part) {
+        final Matcher matcher = STEP_PATTERN.matcher(part);
+        if (!matcher.matches()) {
+            return null;
+        }
+        final Step step = new Step(matcher.group(1));
+        final String predicates = matcher.group(2);
+        final Matcher predicate = PREDICATE_PATTERN.matcher(predicates);
+        int end = 0;
+        while (predicate.find()) {
+            if (predicate.start() != end) {
+                return null;
+            }
+            end = predicate.end();
+            if (predicate.group(4) != null) {
+                step.predicates.add(new Predicate(predicate.group(1), null, Double.valueOf(predicate.group(4))));
+            } else {
+                step.predicates.add(new Predicate(predicate.group(1), predicate.group(2) != null ? predicate.group(2) : predicate.group(3), null));
+            }
+        }
+        return end == predicates.length() ? step : null;
+    }
+
+    /**
+     * Splits a location path on the slashes that are not within a predicate.
+     */
+    private static List<String> split(String expr) {
+        final List<String> parts = new ArrayList<>();
+        final StringBuilder current = new StringBuilder();
+        int brackets = 0;
+        char quote = 0;
+        for (char c : expr.toCharArray()) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '[') {
+                brackets++;
+            } else if (c == ']') {
+                brackets--;
+            } else if (c == '/' && brackets == 0) {
+                if (current.length() == 0) {
+                    // Descendant axis and the like
+                    return null;
+                }
+                parts.add(current.toString());
+                current.setLength(0);
+                continue;
+            }
+            current.append(c);
+        }
+        if (quote != 0 || brackets != 0 || current.length() == 0) {
+            return null;
+        }
+        parts.add(current.toString());
+        return parts;
+    }
+
+    /**
+     * The resources extracted for a group.
+     */
+    public static class GroupResult {
+        private final XmlGroup m_group;
+        private final List<ResourceResult> m_resources = new ArrayList<>();
+        private String m_timestamp;
+
+        private GroupResult(XmlGroup group) {
+            m_group = group;
+        }
+
+        public XmlGroup getGroup() {
+            return m_group;
+        }
+
+        /**
+         * @return the raw value of the timestamp, or null if the group has none or it wasn't found
+         */
+        public String getTimestamp() {
+            return m_timestamp;
+        }
+
+        public List<ResourceResult> getResources() {
+            return m_resources;
+        }
+    }
+
+    /**
+     * The values extracted for a resource.
+     */
+    public static class ResourceResult {
+        private final String m_name;
+        private final List<String> m_values;
+
+        private ResourceResult(String name, List<String> values) {
+            m_name = name;
+            m_values = values;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        /**
+         * @return the values, in the order of the group's objects
+         */
+        public List<String> getValues() {
+            return m_values;
+        }
+    }
+
+    static class Path {
+        private final List<Step> steps = new ArrayList<>();
+        private String attribute;
+    }
+
+    private static class Step {
+        private final String prefix;
+        private final String localName;
+        private final List<Predicate> predicates = new ArrayList<>();
+
+        private Step(String name) {
+            final int idx = name.indexOf(':');
+            prefix = idx < 0 ? "" : name.substring(0, idx);
+            localName = idx < 0 ? name : name.substring(idx + 1);
+        }
+
+        private boolean isWildcard() {
+            return "*".equals(localName);
+        }
+    }
+
+    private static class Predicate {
+        private final String attribute;
+        private final String literal;
+        private final Double number;
+
+        private Predicate(String attribute, String literal, Double number) {
+            this.attribute = attribute;
+            this.literal = literal;
+            this.number = number;
+        }
+
+        private boolean matches(String value) {
+            if (value == null) {
+                return false;
+            }
+            if (number == null) {
+                return literal.equals(value);
+            }
+            // XPath compares with numbers after converting the attribute to a number
+            try {
+                return Double.parseDouble(value.trim()) == number;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+
+    private static class CompiledGroup {
+        private final XmlGroup group;
+        private final Path resourcePath;
+        private final List<Path> keys = new ArrayList<>();
+        private final List<Path> objects = new ArrayList<>();
+
+        private CompiledGroup(XmlGroup group, Path resourcePath) {
+            this.group = group;
+            this.resourcePath = resourcePath;
+        }
+
+        private boolean addKey(Path key) {
+            if (key == null) {
+                return false;
+            }
+            keys.add(key);
+            return true;
+        }
+    }
+
+    /**
+     * Tracks the evaluation of a path, relative to the element at the base depth.
+     * Only the first node in document order is kept, as the XPath string value would.
+     */
+    private static class PathMatch {
+        private final Path path;
+        private final int baseDepth;
+        /** Whether the ancestors at each relative depth matched the corresponding steps. */
+        private final boolean[] matched;
+        private String value;
+        private StringBuilder text;
+        private int textDepth;
+
+        private PathMatch(Path path, int baseDepth) {
+            this.path = path;
+            this.baseDepth = baseDepth;
+            this.matched = new boolean[path.steps.size()];
+        }
+
+        private boolean isDone() {
+            return value != null;
+        }
+    }
+
+    /**
+     * A resource element being read.
+     */
+    private static class ResourceMatch {
+        private final CompiledGroup group;
+        private final int depth;
+        private final List<PathMatch> keys = new ArrayList<>();
+        private final List<PathMatch> objects = new ArrayList<>();
+
+        private ResourceMatch(CompiledGroup group, int depth) {
+            this.group = group;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * A single pass over a document.
+     */
+    private class Pass {
+        private final XMLStreamReader m_reader;
+        private final Map<String, String> m_rootNamespaces = new HashMap<>();
+        private final Map<CompiledGroup, GroupResult> m_results = new LinkedHashMap<>();
+        private final List<PathMatch> m_resourcePaths = new ArrayList<>();
+        private final Map<String, PathMatch> m_timestampPaths = new HashMap<>();
+        private final Deque<ResourceMatch> m_resources = new ArrayDeque<>();
+        private final List<PathMatch> m_capturing = new ArrayList<>();
+        private boolean m_literalNames;
+        private int m_depth;
+
+        private Pass(XMLStreamReader reader) {
+            m_reader = reader;
+            for (CompiledGroup group : m_groups) {
+                m_results.put(group, new GroupResult(group.group));
+                m_resourcePaths.add(new PathMatch(group.resourcePath, 0));
+            }
+            for (Map.Entry<String, Path> entry : m_timestamps.entrySet()) {
+                m_timestampPaths.put(entry.getKey(), new PathMatch(entry.getValue(), 0));
+            }
+        }
+
+        private List<GroupResult> run() throws XMLStreamException, XPathExpressionException {
+            while (m_reader.hasNext()) {
+                switch (m_reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    startElement();
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    endElement();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (!m_capturing.isEmpty()) {
+                        for (PathMatch match : m_capturing) {
+                            match.text.append(m_reader.getTextCharacters(), m_reader.getTextStart(), m_reader.getTextLength());
+                        }
+                    }
+                    break;
+                default:
+                    break;
+                }
+            }
+            for (CompiledGroup group : m_groups) {
+                final String timestampXpath = group.group.getTimestampXpath();
+                if (timestampXpath != null) {
+                    m_results.get(group).m_timestamp = m_timestampPaths.get(timestampXpath).value;
+                }
+            }
+            return Collections.unmodifiableList(new ArrayList<>(m_results.values()));
+        }
+
+        private void startElement() {
+            m_depth++;
+            if (m_depth == 1) {
+                // Documents with a default namespace are matched on the names as written, like
+                // a DOM that isn't namespace aware. Otherwise prefixes are resolved against the root element.
+                final String prefix = m_reader.getPrefix();
+                m_literalNames = StringUtils.isNotEmpty(m_reader.getNamespaceURI()) && StringUtils.isEmpty(prefix);
+                for (int i = 0; i < m_reader.getNamespaceCount(); i++) {
+                    m_rootNamespaces.put(StringUtils.defaultString(m_reader.getNamespacePrefix(i)), m_reader.getNamespaceURI(i));
+                }
+            }
+
+            // Evaluate the paths within the resources we're in
+            for (ResourceMatch resource : m_resources) {
+                for (PathMatch key : resource.keys) {
+                    advance(key);
+                }
+                for (PathMatch object : resource.objects) {
+                    advance(object);
+                }
+            }
+            for (PathMatch timestamp : m_timestampPaths.values()) {
+                advance(timestamp);
+            }
+
+            // Check if this element is a resource of any of the groups
+            for (int i = 0; i < m_groups.size(); i++) {
+                final PathMatch resourcePath = m_resourcePaths.get(i);
+                if (matchesStep(resourcePath) && m_depth == resourcePath.path.steps.size()) {
+                    final ResourceMatch resource = new ResourceMatch(m_groups.get(i), m_depth);
+                    for (Path key : resource.group.keys) {
+                        resource.keys.add(startRelative(key));
+                    }
+                    for (Path object : resource.group.objects) {
+                        resource.objects.add(startRelative(object));
+                    }
+                    m_resources.push(resource);
+                }
+            }
+        }
+
+        private void endElement() throws XPathExpressionException {
+            // Finish the text of the elements that are closing
+            for (int i = m_capturing.size() - 1; i >= 0; i--) {
+                final PathMatch match = m_capturing.get(i);
+                if (match.textDepth == m_depth) {
+                    match.value = match.text.toString();
+                    match.text = null;
+                    m_capturing.remove(i);
+                }
+            }
+            while (!m_resources.isEmpty() && m_resources.peek().depth == m_depth) {
+                finishResource(m_resources.pop());
+            }
+            m_depth--;
+        }
+
+        /**
+         * Starts a path relative to the current element. A path made of only an
+         * attribute is resolved right away.
+         */
+        private PathMatch startRelative(Path path) {
+            final PathMatch match = new PathMatch(path, m_depth);
+            if (path.steps.isEmpty()) {
+                match.value = getAttributeValue(path.attribute);
+            }
+            return match;
+        }
+
+        /**
+         * Updates the path with the element that was just opened.
+         */
+        private void advance(PathMatch match) {
+            if (match.isDone() || match.text != null) {
+                return;
+            }
+            final int relativeDepth = m_depth - match.baseDepth;
+            if (relativeDepth < 1 || relativeDepth > match.path.steps.size()) {
+                return;
+            }
+            if (!matchesStep(match)) {
+                return;
+            }
+            if (relativeDepth == match.path.steps.size()) {
+                if (match.path.attribute != null) {
+                    match.value = getAttributeValue(match.path.attribute);
+                } else {
+                    match.text = new StringBuilder();
+                    match.textDepth = m_depth;
+                    m_capturing.add(match);
+                }
+            }
+        }
+
+        /**
+         * Checks the current element against the step of the path at the element's depth,
+         * and records the outcome for the elements below it.
+         */
+        private boolean matchesStep(PathMatch match) {
+            final int relativeDepth = m_depth - match.baseDepth;
+            if (relativeDepth < 1 || relativeDepth > match.path.steps.size()) {
+                return false;
+            }
+            final boolean parentMatched = relativeDepth == 1 || match.matched[relativeDepth - 2];
+            final boolean matched = parentMatched && matches(match.path.steps.get(relativeDepth - 1));
+            match.matched[relativeDepth - 1] = matched;
+            return matched;
+        }
+
+        private boolean matches(Step step) {
+            if (!step.isWildcard()) {
+                if (!step.localName.equals(m_reader.getLocalName())) {
+                    return false;
+                }
+                if (m_literalNames) {
+                    if (!step.prefix.equals(StringUtils.defaultString(m_reader.getPrefix()))) {
+                        return false;
+                    }
+                } else {
+                    final String namespace = step.prefix.isEmpty() ? "" : m_rootNamespaces.get(step.prefix);
+                    if (namespace == null || !namespace.equals(StringUtils.defaultString(m_reader.getNamespaceURI()))) {
+                        return false;
+                    }
+                }
+            }
+            for (Predicate predicate : step.predicates) {
+                if (!predicate.matches(getAttributeValue(predicate.attribute))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String getAttributeValue(String name) {
+            for (int i = 0; i < m_reader.getAttributeCount(); i++) {
+                final String prefix = m_reader.getAttributePrefix(i);
+                final String qname = StringUtils.isEmpty(prefix) ? m_reader.getAttributeLocalName(i) : prefix + ":" + m_reader.getAttributeLocalName(i);
+                if (name.equals(qname)) {
+                    return m_reader.getAttributeValue(i);
+                }
+            }
+            return null;
+        }
+
+        private void finishResource(ResourceMatch resource) throws XPathExpressionException {
+            final XmlGroup group = resource.group.group;
+            final String resourceName;
+            if (resource.keys.isEmpty()) {
+                // If key-xpath doesn't exist, a node resource will be assumed.
+                resourceName = "node";
+            } else {
+                final List<String> keys = new ArrayList<>(resource.keys.size());
+                for (PathMatch key : resource.keys) {
+                    if (key.value == null) {
+                        throw new XPathExpressionException("Can't find the key for a resource of group " + group.getName());
+                    }
+                    keys.add(key.value);
+                }
+                resourceName = StringUtils.join(keys, "_");
+            }
+            final List<String> values = new ArrayList<>(resource.objects.size());
+            for (PathMatch object : resource.objects) {
+                // The string value of an empty node set is an empty string
+                values.add(object.value == null ? "" : object.value);
+            }
+            m_results.get(resource.group).m_resources.add(new ResourceResult(resourceName, values));
+        }
+    }
+}
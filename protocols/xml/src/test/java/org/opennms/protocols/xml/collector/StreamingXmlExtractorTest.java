@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2021 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2021 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.protocols.xml.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.opennms.core.xml.JaxbUtils;
+import org.opennms.protocols.xml.config.XmlDataCollectionConfig;
+import org.opennms.protocols.xml.config.XmlGroup;
+import org.opennms.protocols.xml.config.XmlObject;
+import org.opennms.protocols.xml.config.XmlSource;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * The Test class for the streaming extraction of XML sources.
+ * <p>The values must be the same as the ones obtained by evaluating the XPath expressions on a DOM.</p>
+ */
+public class StreamingXmlExtractorTest {
+
+    /**
+     * Test the extraction of 3GPP files, which use a default namespace.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void test3gppFile() throws Exception {
+        XmlSource source = getSource("src/test/resources/3gpp-xml-datacollection-config.xml", "3GPP");
+        List<StreamingXmlExtractor.GroupResult> results = verify(source, "src/test/resources/A20111025.0030-0500-0045-0500_MME00001.xml");
+        assertEquals("2011-10-25T05:45:00Z", results.get(0).getTimestamp());
+        StreamingXmlExtractor.ResourceResult resource = results.get(0).getResources().get(0);
+        assertFalse(resource.getName().isEmpty());
+    }
+
+    /**
+     * Test the extraction of files using prefixed namespaces.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testNamespaceFile() throws Exception {
+        XmlSource source = getSource("src/test/resources/namespace-datacollection-config.xml", "Namespace");
+        List<StreamingXmlExtractor.GroupResult> results = verify(source, "src/test/resources/namespace.xml");
+        assertEquals(1, results.get(0).getResources().size());
+        assertEquals("node", results.get(0).getResources().get(0).getName());
+    }
+
+    /**
+     * Test the expressions that must be handled with a DOM.
+     */
+    @Test
+    public void testUnsupportedExpressions() {
+        assertNotNull(StreamingXmlExtractor.parse("/a/b[@c='d/e']/@f", true));
+        assertNotNull(StreamingXmlExtractor.parse("r[@p = 1]", false));
+        assertNull(StreamingXmlExtractor.parse("//a/b", true));
+        assertNull(StreamingXmlExtractor.parse("a/b", true));
+        assertNull(StreamingXmlExtractor.parse("/a/b", false));
+        assertNull(StreamingXmlExtractor.parse("../a", false));
+        assertNull(StreamingXmlExtractor.parse("a[1]", false));
+        assertNull(StreamingXmlExtractor.parse("a[contains(@b, 'c')]", false));
+        assertNull(StreamingXmlExtractor.parse("@a/b", false));
+        assertNull(StreamingXmlExtractor.parse("count(a)", false));
+
+        XmlSource source = new XmlSource();
+        XmlGroup group = new XmlGroup();
+        group.setName("unsupported");
+        group.setResourceType("node");
+        group.setResourceXpath("//measValue");
+        source.addXmlGroup(group);
+        assertNull(StreamingXmlExtractor.compile(source));
+    }
+
+    private static XmlSource getSource(String configFile, String collection) {
+        XmlDataCollectionConfig config = JaxbUtils.unmarshal(XmlDataCollectionConfig.class, new File(configFile));
+        return config.getDataCollectionByName(collection).getXmlSources().get(0);
+    }
+
+    private static List<StreamingXmlExtractor.GroupResult> verify(XmlSource source, String sampleFile) throws Exception {
+        StreamingXmlExtractor extractor = StreamingXmlExtractor.compile(source);
+        assertNotNull(extractor);
+        List<StreamingXmlExtractor.GroupResult> results;
+        try (InputStream is = new FileInputStream(sampleFile)) {
+            results = extractor.extract(is);
+        }
+
+        MockDocumentBuilder.setXmlFileName(sampleFile);
+        Document doc = MockDocumentBuilder.getXmlDocument();
+        XPath xpath = XPathFactory.newInstance().newXPath();
+        xpath.setNamespaceContext(new DocumentNamespaceResolver(doc));
+
+        assertEquals(source.getXmlGroups().size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            XmlGroup group = source.getXmlGroups().get(i);
+            StreamingXmlExtractor.GroupResult result = results.get(i);
+            assertEquals(group, result.getGroup());
+            if (group.getTimestampXpath() != null) {
+                assertEquals(xpath.evaluate(group.getTimestampXpath(), doc, XPathConstants.STRING), result.getTimestamp());
+            }
+            NodeList resources = (NodeList) xpath.evaluate(group.getResourceXpath(), doc, XPathConstants.NODESET);
+            assertEquals(group.getName(), resources.getLength(), result.getResources().size());
+            for (int j = 0; j < resources.getLength(); j++) {
+                Node resource = resources.item(j);
+                StreamingXmlExtractor.ResourceResult actual = result.getResources().get(j);
+                assertEquals(getResourceName(xpath, group, resource), actual.getName());
+                List<String> values = new ArrayList<>();
+                for (XmlObject object : group.getXmlObjects()) {
+                    values.add((String) xpath.evaluate(object.getXpath(), resource, XPathConstants.STRING));
+                }
+                assertEquals(values, actual.getValues());
+            }
+        }
+        return results;
+    }
+
+    private static String getResourceName(XPath xpath, XmlGroup group, Node resource) throws Exception {
+        if (group.hasMultipleResourceKey()) {
+            List<String> keys = new ArrayList<>();
+            for (String key : group.getXmlResourceKey().getKeyXpathList()) {
+                keys.add((String) xpath.evaluate(key, resource, XPathConstants.STRING));
+            }
+            return StringUtils.join(keys, "_");
+        }
+        if (group.getKeyXpath() == null) {
+            return "node";
+        }
+        return (String) xpath.evaluate(group.getKeyXpath(), resource, XPathConstants.STRING);
+    }
+}